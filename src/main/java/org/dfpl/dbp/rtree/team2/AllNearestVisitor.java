@@ -0,0 +1,14 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * {@link RTreeImpl#allNearest}의 결과를 점 하나씩 받는 콜백. 여러 스레드에서 동시에 불릴 수 있다.
+ */
+@FunctionalInterface
+public interface AllNearestVisitor {
+
+	/**
+	 * @param neighbors point를 뺀 가장 가까운 점들 (가까운 순, 점이 모자라면 k개보다 적다)
+	 * @param distances neighbors[i]까지의 거리. 두 배열 모두 호출마다 새로 만드므로 그대로 보관해도 된다.
+	 */
+	void visit(Point point, Point[] neighbors, double[] distances);
+}
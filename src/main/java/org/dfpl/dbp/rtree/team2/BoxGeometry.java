@@ -0,0 +1,49 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * {@link RTreeND}의 d차원 박스 계산. 박스는 double 배열의 o 위치부터 [min_0 .. min_{d-1}, max_0 .. max_{d-1}] (stride 2d),
+ * 점은 min = max인 박스로 저장한다.
+ * <p>
+ * 노드 하나의 엔트리를 모두 훑는 검사({@link #intersects}, {@link #mindistSq})는 구현 안에서 돌게 해서 노드당 가상 호출이
+ * 한 번뿐이다. 2차원과 3차원은 축 루프를 펼친 전용 구현({@link Geometry2D}, {@link Geometry3D})을, 나머지는 {@link GeometryND}를 쓴다.
+ */
+interface BoxGeometry {
+
+	int dimensions();
+
+	/**
+	 * 질의 박스 q(0 위치)와 겹치는(경계 포함) 엔트리의 비트마스크. count는 64 이하여야 한다.
+	 */
+	long intersects(double[] boxes, int count, double[] q);
+
+	/**
+	 * 점 p에서 각 엔트리 박스까지의 최소 거리 제곱을 out[0..count)에 쓴다.
+	 */
+	void mindistSq(double[] boxes, int count, double[] p, double[] out);
+
+	double volume(double[] b, int o);
+
+	/** 축별 길이의 합 */
+	double margin(double[] b, int o);
+
+	/** 두 박스를 합친 박스의 부피 */
+	double unionVolume(double[] a, int ao, double[] b, int bo);
+
+	double unionMargin(double[] a, int ao, double[] b, int bo);
+
+	/** a 박스를 b 박스까지 넓힌다 */
+	void include(double[] a, int ao, double[] b, int bo);
+
+	static BoxGeometry of(int dimensions) {
+		switch (dimensions) {
+			case 2:
+				return Geometry2D.INSTANCE;
+			case 3:
+				return Geometry3D.INSTANCE;
+			default:
+				if (dimensions < 1)
+					throw new IllegalArgumentException("dimensions must be >= 1: " + dimensions);
+				return new GeometryND(dimensions);
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * search / nearest 결과를 기억하는 크기 제한 캐시. 다른 {@link RTree} 앞에 씌워서 쓴다.
+ * <p>
+ * add/delete가 일어나면 그 점을 덮는 질의만 무효화한다.
+ * <ul>
+ * <li>search: 질의 사각형이 점을 포함할 때</li>
+ * <li>nearest: source에서 점까지 거리가 k번째 결과까지의 거리(kNN 반경) 이하일 때. 결과가 k개보다 적으면 반경은 무한대.
+ * 거리는 감싼 트리와 같은 {@link DistanceMetric}으로 재야 한다 (기본 유클리드)</li>
+ * </ul>
+ * 변경마다 버전을 올리고 최근 변경을 기록해 두므로, 캐시 미스 계산 도중에 그 영역이 바뀌었다면 낡은 결과를 저장하지 않는다.
+ * 교체 정책은 LRU이고, 선택적으로 TinyLFU 빈도 필터로 한 번만 쓰이고 말 질의가 자주 쓰이는 질의를 밀어내지 못하게 한다.
+ * 내부 구조는 이 객체의 모니터로 보호하고, 감싼 트리 호출은 락 밖에서 한다 (감싼 트리가 스레드 안전해야 동시 사용 가능).
+ */
+public class CachedRTree implements RTree {
+
+    private static final int MUTATION_LOG = 1024;
+
+    private final RTree delegate;
+    private final DistanceMetric metric;
+    private final int capacity;
+    private final FrequencySketch admission; // null이면 순수 LRU
+
+    private final LinkedHashMap<Object, Cached> cache;
+
+    // 영역 버전: 변경마다 version++ 하고 최근 MUTATION_LOG개의 변경 지점을 보관
+    private long version = 0;
+    private final Point[] recentPoints = new Point[MUTATION_LOG];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private static final class KnnKey {
+        final Point source;
+        final int k;
+
+        KnnKey(Point source, int k) {
+            this.source = source;
+            this.k = k;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof KnnKey)) return false;
+            KnnKey other = (KnnKey) o;
+            return k == other.k && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * source.hashCode() + k;
+        }
+    }
+
+    private final class Cached {
+        final List<Point> points;
+        final Rectangle region; // search 결과일 때
+        final Point source;     // nearest 결과일 때
+        final double radius;
+
+        Cached(List<Point> points, Rectangle region) {
+            this.points = points;
+            this.region = region;
+            this.source = null;
+            this.radius = 0;
+        }
+
+        Cached(List<Point> points, Point source, int k) {
+            this.points = points;
+            this.region = null;
+            this.source = source;
+            this.radius = points.size() < k ? Double.POSITIVE_INFINITY : source.distance(points.get(points.size() - 1), metric);
+        }
+
+        boolean covers(Point p) {
+            if (region != null) return region.contains(p);
+            return source.distance(p, metric) <= radius;
+        }
+    }
+
+    public CachedRTree(RTree delegate, int capacity) {
+        this(delegate, capacity, false);
+    }
+
+    /**
+     * @param capacity         캐시할 질의 결과 수
+     * @param tinyLfuAdmission true이면 새 결과가 LRU 희생자보다 자주 쓰였을 때만 캐시에 넣는다
+     */
+    public CachedRTree(RTree delegate, int capacity, boolean tinyLfuAdmission) {
+        this(delegate, capacity, tinyLfuAdmission, DistanceMetric.EUCLIDEAN);
+    }
+
+    /**
+     * @param metric 감싼 트리의 nearest가 쓰는 거리 척도 (kNN 반경 무효화 판단에 쓴다)
+     */
+    public CachedRTree(RTree delegate, int capacity, boolean tinyLfuAdmission, DistanceMetric metric) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.delegate = delegate;
+        this.metric = metric;
+        this.capacity = capacity;
+        this.admission = tinyLfuAdmission ? new FrequencySketch(capacity) : null;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // ---------- RTree ----------
+
+    @Override
+    public void add(Point point) {
+        delegate.add(point);
+        invalidate(point);
+    }
+
+    @Override
+    public void delete(Point point) {
+        delegate.delete(point);
+        invalidate(point);
+    }
+
+    @Override
+    public Iterator<Point> search(Rectangle rectangle) {
+        long started;
+        synchronized (this) {
+            Cached c = lookup(rectangle);
+            if (c != null) return c.points.iterator();
+            started = version;
+        }
+        List<Point> result = drain(delegate.search(rectangle));
+        store(rectangle, new Cached(result, rectangle), started);
+        return result.iterator();
+    }
+
+    @Override
+    public Iterator<Point> nearest(Point source, int maxCount) {
+        if (source == null || maxCount <= 0) return delegate.nearest(source, maxCount);
+        KnnKey key = new KnnKey(source, maxCount);
+        long started;
+        synchronized (this) {
+            Cached c = lookup(key);
+            if (c != null) return c.points.iterator();
+            started = version;
+        }
+        List<Point> result = drain(delegate.nearest(source, maxCount));
+        store(key, new Cached(result, source, maxCount), started);
+        return result.iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    // ---------- cache metrics ----------
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    // 용량 때문에 밀려난 수
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // add/delete로 무효화된 수
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    // 계산 도중 영역이 바뀌었거나 빈도 필터에 걸려 저장하지 않은 수
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachedRTree [size=%d/%d, hitRate=%.3f, hits=%d, misses=%d, evictions=%d, invalidations=%d, rejected=%d]",
+                size(), capacity, getHitRate(), getHitCount(), getMissCount(), getEvictionCount(),
+                getInvalidationCount(), getRejectedCount());
+    }
+
+    // ---------- internal ----------
+
+    private Cached lookup(Object key) {
+        if (admission != null) admission.increment(key);
+        Cached c = cache.get(key);
+        if (c != null) hits.increment();
+        else misses.increment();
+        return c;
+    }
+
+    private synchronized void store(Object key, Cached value, long started) {
+        if (!stillValid(value, started)) {
+            rejected.increment();
+            return;
+        }
+        if (!cache.containsKey(key) && cache.size() >= capacity) {
+            Map.Entry<Object, Cached> eldest = cache.entrySet().iterator().next();
+            if (admission != null && admission.frequency(key) <= admission.frequency(eldest.getKey())) {
+                rejected.increment();
+                return;
+            }
+            cache.remove(eldest.getKey());
+            evictions.increment();
+        }
+        cache.put(key, value);
+    }
+
+    // started 이후의 변경 중 이 결과 영역에 들어오는 것이 있으면 낡은 결과
+    private boolean stillValid(Cached value, long started) {
+        if (version - started > MUTATION_LOG) return false;
+        for (long v = started; v < version; v++) {
+            if (value.covers(recentPoints[(int) (v % MUTATION_LOG)])) return false;
+        }
+        return true;
+    }
+
+    private synchronized void invalidate(Point p) {
+        if (p == null) return;
+        recentPoints[(int) (version % MUTATION_LOG)] = p;
+        version++;
+        Iterator<Cached> it = cache.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().covers(p)) {
+                it.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    private static List<Point> drain(Iterator<Point> it) {
+        ArrayList<Point> list = new ArrayList<>();
+        while (it.hasNext()) list.add(it.next());
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * TinyLFU용 count-min sketch (4개 행, 4비트 대신 byte 카운터). 표본 수가 용량의 10배가 되면 모든 카운터를 반으로 줄여
+     * 오래된 인기를 잊는다.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity * 4) - 1) << 1;
+            table = new byte[DEPTH][width];
+            mask = width - 1;
+            sampleSize = 10 * capacity;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        void increment(Object key) {
+            int hash = key.hashCode();
+            for (int r = 0; r < DEPTH; r++) {
+                int i = index(hash, r);
+                if (table[r][i] < 15) table[r][i]++;
+            }
+            if (++additions >= sampleSize) {
+                for (byte[] row : table) {
+                    for (int i = 0; i < row.length; i++) row[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = key.hashCode();
+            int min = Integer.MAX_VALUE;
+            for (int r = 0; r < DEPTH; r++) min = Math.min(min, table[r][index(hash, r)]);
+            return min;
+        }
+    }
+}
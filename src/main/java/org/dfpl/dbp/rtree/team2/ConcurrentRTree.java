@@ -0,0 +1,664 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 여러 스레드가 동시에 add/delete 할 수 있는 R-link 트리 (Kornacker &amp; Banks, "High-Concurrency Locking in R-Trees").
+ * <ul>
+ * <li>노드마다 래치(쓰기 전용)와 불변 스냅샷(엔트리, 오른쪽 형제 링크, NSN)을 둔다. 읽기는 래치 없이 스냅샷만 읽으므로
+ * 분할 중에도 막히지 않는다.</li>
+ * <li>쓰기는 잎에서 위로만 래치를 잡고(같은 레벨에서는 왼쪽에서 오른쪽으로), 실제로 바뀌는 조상까지만 올라간다.
+ * 서로 다른 서브트리에 들어가는 add는 루트까지 올라가지 않는 한 겹치지 않는다.</li>
+ * <li>분할: 새 오른쪽 형제를 먼저 게시하고, 왼쪽 노드를 "오른쪽도 볼 것" 표시와 함께 게시한 뒤, 부모에 형제 엔트리를 넣는다.
+ * 부모를 게시하기 직전에 왼쪽 노드의 NSN을 부모의 새 버전 번호로 바꾸고 표시를 지운다.
+ * 읽기는 부모 스냅샷의 버전을 기억해 두었다가, 자식이 표시되어 있거나 NSN이 기억한 값보다 크면 오른쪽 링크도 따라간다.</li>
+ * <li>MBR 확장은 점을 잎에 게시하기 전에 위에서부터 먼저 게시하므로, 게시된 점은 어느 경로로든 찾을 수 있다.</li>
+ * <li>삭제는 지연 삭제: 잎에서 점만 빼고 노드 병합이나 MBR 축소는 하지 않는다 (R-link에서는 노드가 사라지지 않는다).</li>
+ * </ul>
+ * 같은 좌표에 대한 add/delete는 좌표 해시로 나눈 줄무늬 락으로 직렬화해서 "같은 점은 한 번만" 규칙을 지킨다.
+ * add / delete / {@link #contains}는 선형화 가능하고, search / nearest는 질의 내내 있던 점은 모두, 내내 없던 점은 하나도
+ * 돌려주지 않는 약한 일관성을 보장한다. 질의 도중 지워졌다가 다시 들어간 점은 한 번만 돌려준다. 시각화와 {@link RTreeMetrics}는 없다.
+ */
+public class ConcurrentRTree implements RTree {
+
+    private static final int DEFAULT_MAX_ENTRIES = 16;
+    private static final int STRIPES = 256;
+    private static final Geometry2D GEO = Geometry2D.INSTANCE; // 박스는 [minX, minY, maxX, maxY]
+
+    private final int maxEntries; // M
+    private final int minEntries; // m
+
+    private final AtomicLong clock = new AtomicLong(); // 스냅샷 버전과 NSN에 쓰는 전역 순서 번호
+    private volatile RootRef root;
+    private volatile Node[] heads; // 레벨마다 오른쪽 링크 사슬의 첫 노드 (그 레벨이 생길 때의 루트). 바뀌지 않고 늘어나기만 한다
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    // 노드 내용의 불변 스냅샷
+    private static final class Snap {
+        final int count;
+        final double[] boxes;  // count * 4
+        final Object[] items;  // 잎이면 Point, 아니면 Node
+        final double[] mbr;    // 엔트리 전체의 MBR, 비어 있으면 null
+        final long version;    // 게시할 때의 clock 값. 자식을 읽을 때 이 값을 기억한다
+        final long nsn;
+        final boolean followRight; // 분할 직후 부모에 형제 엔트리가 들어가기 전까지 true
+        final Node right;
+
+        Snap(int count, double[] boxes, Object[] items, long version, long nsn, boolean followRight, Node right) {
+            this.count = count;
+            this.boxes = boxes;
+            this.items = items;
+            this.version = version;
+            this.nsn = nsn;
+            this.followRight = followRight;
+            this.right = right;
+            if (count == 0) {
+                mbr = null;
+            } else {
+                mbr = Arrays.copyOf(boxes, 4);
+                for (int i = 1; i < count; i++) GEO.include(mbr, 0, boxes, i * 4);
+            }
+        }
+
+        // 오른쪽 링크를 따라가야 하는지 (memo: 부모 스냅샷의 버전)
+        boolean moveRight(long memo) {
+            return followRight || nsn > memo;
+        }
+
+        int indexOf(Object item) {
+            for (int i = 0; i < count; i++) {
+                if (items[i] == item || (item instanceof Point && item.equals(items[i]))) return i;
+            }
+            return -1;
+        }
+
+        Snap cleared(long nsn) {
+            return new Snap(count, boxes, items, version, nsn, false, right);
+        }
+
+        Snap enlarged(int slot, double[] b, long version) {
+            double[] copy = boxes.clone();
+            GEO.include(copy, slot * 4, b, 0);
+            return new Snap(count, copy, items, version, nsn, followRight, right);
+        }
+
+        Snap without(int slot, long version) {
+            double[] b = new double[(count - 1) * 4];
+            Object[] it = new Object[count - 1];
+            System.arraycopy(boxes, 0, b, 0, slot * 4);
+            System.arraycopy(boxes, (slot + 1) * 4, b, slot * 4, (count - slot - 1) * 4);
+            System.arraycopy(items, 0, it, 0, slot);
+            System.arraycopy(items, slot + 1, it, slot, count - slot - 1);
+            return new Snap(count - 1, b, it, version, nsn, followRight, right);
+        }
+    }
+
+    private static final class Node {
+        final int level; // 잎이 0
+        final ReentrantLock latch = new ReentrantLock();
+        volatile Snap snap;
+
+        Node(int level) {
+            this.level = level;
+        }
+    }
+
+    // 루트와 그 루트를 게시한 시점의 번호 (루트를 읽을 때 기억하는 값)
+    private static final class RootRef {
+        final Node node;
+        final long version;
+
+        RootRef(Node node, long version) {
+            this.node = node;
+            this.version = version;
+        }
+    }
+
+    // 쓰기 도중 고치는 노드 내용
+    private static final class Work {
+        int count;
+        final double[] boxes;
+        final Object[] items;
+
+        Work(int capacity) {
+            boxes = new double[capacity * 4];
+            items = new Object[capacity];
+        }
+
+        Work(Snap s, int capacity) {
+            this(capacity);
+            count = s.count;
+            System.arraycopy(s.boxes, 0, boxes, 0, count * 4);
+            System.arraycopy(s.items, 0, items, 0, count);
+        }
+
+        void add(double[] b, Object item) {
+            System.arraycopy(b, 0, boxes, count * 4, 4);
+            items[count++] = item;
+        }
+
+        int indexOf(Object item) {
+            for (int i = 0; i < count; i++) if (items[i] == item) return i;
+            return -1;
+        }
+
+        double[] bounds() {
+            double[] out = Arrays.copyOf(boxes, 4);
+            for (int i = 1; i < count; i++) GEO.include(out, 0, boxes, i * 4);
+            return out;
+        }
+
+        Snap toSnap(long version, long nsn, boolean followRight, Node right) {
+            return new Snap(count, Arrays.copyOf(boxes, count * 4), Arrays.copyOf(items, count), version, nsn, followRight, right);
+        }
+    }
+
+    // insert가 래치를 잡은 레벨 하나
+    private static final class Level {
+        final Node node;
+        final Work work;
+        Node sibling;  // 분할했으면 새 오른쪽 형제 (만든 스레드가 래치를 잡고 있다)
+        Work siblingWork;
+        boolean newRoot;
+
+        Level(Node node, Work work) {
+            this.node = node;
+            this.work = work;
+        }
+    }
+
+    public ConcurrentRTree() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries 노드당 최대 엔트리 수 (4 ~ 64)
+     */
+    public ConcurrentRTree(int maxEntries) {
+        if (maxEntries < 4 || maxEntries > 64) {
+            throw new IllegalArgumentException("maxEntries must be in [4, 64]: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.minEntries = Math.max(2, maxEntries * 2 / 5);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+        Node leaf = new Node(0);
+        leaf.snap = new Snap(0, new double[0], new Object[0], 0, 0, false, null);
+        root = new RootRef(leaf, 0);
+        heads = new Node[] { leaf };
+    }
+
+    // ---------- Public API ----------
+
+    @Override
+    public void add(Point point) {
+        if (point == null) return;
+        double[] b = box(point);
+        ReentrantLock stripe = stripeOf(point);
+        stripe.lock();
+        try {
+            if (findLeaf(b, point) != null) return;
+            insert(point, b);
+            size.incrementAndGet();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void delete(Point point) {
+        if (point == null) return;
+        double[] b = box(point);
+        ReentrantLock stripe = stripeOf(point);
+        stripe.lock();
+        try {
+            Node leaf = findLeaf(b, point);
+            if (leaf == null) return;
+            remove(leaf, point);
+            size.decrementAndGet();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    public boolean contains(Point point) {
+        return point != null && findLeaf(box(point), point) != null;
+    }
+
+    @Override
+    public Iterator<Point> search(Rectangle rectangle) {
+        ArrayList<Point> out = new ArrayList<>();
+        double[] q = { rectangle.getMinX(), rectangle.getMinY(), rectangle.getMaxX(), rectangle.getMaxY() };
+        RootRef r = root;
+        collect(r.node, r.version, q, out);
+        if (out.size() > 1) {
+            // 질의 도중 지워졌다가 다른 잎에 다시 들어간 점은 두 번 보일 수 있다
+            Set<Point> seen = new HashSet<>(out);
+            if (seen.size() != out.size()) return new LinkedHashSet<>(out).iterator();
+        }
+        return out.iterator();
+    }
+
+    @Override
+    public Iterator<Point> nearest(Point source, int maxCount) {
+        if (source == null || maxCount <= 0) return Collections.<Point>emptyList().iterator();
+        ArrayList<Point> out = new ArrayList<>(Math.min(maxCount, 1024));
+        nearest(source.getX(), source.getY(), maxCount, (x, y, d) -> out.add(new Point(x, y)));
+        return out.iterator();
+    }
+
+    /**
+     * (x, y)에서 가까운 순서로 최대 maxCount개의 점을 좌표와 거리로 visitor에 넘긴다.
+     */
+    public void nearest(double x, double y, int maxCount, NeighborVisitor visitor) {
+        if (maxCount <= 0) return;
+        double[] p = { x, y };
+        double[] dist = new double[maxEntries];
+        Heap heap = new Heap();
+        RootRef r = root;
+        heap.push(0, r.node, r.version);
+        int emitted = 0;
+        double lastKey = -1;
+        ArrayList<Point> atLastKey = new ArrayList<>(); // lastKey 거리에서 이미 넘긴 점
+        while (heap.size > 0) {
+            double key = heap.keys[0];
+            long memo = heap.memos[0];
+            Object item = heap.pop();
+            if (item instanceof Point) {
+                Point pt = (Point) item;
+                // 지워졌다가 다시 들어간 점은 같은 거리로 두 번 나올 수 있다
+                if (key != lastKey) {
+                    lastKey = key;
+                    atLastKey.clear();
+                } else if (atLastKey.contains(pt)) {
+                    continue;
+                }
+                atLastKey.add(pt);
+                if (!visitor.visit(pt.getX(), pt.getY(), Math.sqrt(key)) || ++emitted == maxCount) return;
+                continue;
+            }
+            // 오른쪽으로 옮겨 간 엔트리도 같은 하한으로 함께 연다
+            for (Node n = (Node) item; n != null; ) {
+                Snap s = n.snap;
+                GEO.mindistSq(s.boxes, s.count, p, dist);
+                for (int i = 0; i < s.count; i++) {
+                    if (n.level > 0) {
+                        heap.push(Math.max(dist[i], key), s.items[i], s.version);
+                    } else if (dist[i] >= key) {
+                        // key보다 가까운 점은 부모 스냅샷을 읽은 뒤에 들어온 점이므로 (질의와 겹친 변경) 건너뛴다
+                        heap.push(dist[i], s.items[i], 0);
+                    }
+                }
+                n = s.moveRight(memo) ? s.right : null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 루트부터 잎까지의 레벨 수
+     */
+    public int height() {
+        return root.node.level + 1;
+    }
+
+    // ---------- 읽기 ----------
+
+    private static double[] box(Point p) {
+        return new double[] { p.getX(), p.getY(), p.getX(), p.getY() };
+    }
+
+    private ReentrantLock stripeOf(Point p) {
+        int h = p.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    // memo: n을 가리킨 부모 스냅샷의 버전
+    private static void collect(Node n, long memo, double[] q, List<Point> out) {
+        while (n != null) {
+            Snap s = n.snap;
+            long hits = GEO.intersects(s.boxes, s.count, q);
+            for (; hits != 0; hits &= hits - 1) {
+                int i = Long.numberOfTrailingZeros(hits);
+                if (n.level == 0) out.add((Point) s.items[i]);
+                else collect((Node) s.items[i], s.version, q, out);
+            }
+            n = s.moveRight(memo) ? s.right : null;
+        }
+    }
+
+    // point가 들어 있던 잎 (그 뒤에 분할로 오른쪽 형제로 옮겨 갔을 수 있다), 없으면 null
+    private Node findLeaf(double[] b, Point point) {
+        RootRef r = root;
+        return find(r.node, r.version, b, point);
+    }
+
+    private static Node find(Node n, long memo, double[] b, Point point) {
+        while (n != null) {
+            Snap s = n.snap;
+            if (n.level == 0) {
+                if (s.indexOf(point) >= 0) return n;
+            } else {
+                long hits = GEO.intersects(s.boxes, s.count, b);
+                for (; hits != 0; hits &= hits - 1) {
+                    Node found = find((Node) s.items[Long.numberOfTrailingZeros(hits)], s.version, b, point);
+                    if (found != null) return found;
+                }
+            }
+            n = s.moveRight(memo) ? s.right : null;
+        }
+        return null;
+    }
+
+    // kNN용 최소 힙 (키, 항목, 기억한 부모 버전)
+    private static final class Heap {
+        double[] keys = new double[64];
+        Object[] items = new Object[64];
+        long[] memos = new long[64];
+        int size;
+
+        void push(double key, Object item, long memo) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                items = Arrays.copyOf(items, size * 2);
+                memos = Arrays.copyOf(memos, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                items[i] = items[parent];
+                memos[i] = memos[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            items[i] = item;
+            memos[i] = memo;
+        }
+
+        Object pop() {
+            Object top = items[0];
+            int last = --size;
+            double key = keys[last];
+            Object item = items[last];
+            long memo = memos[last];
+            items[last] = null;
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= last) break;
+                if (c + 1 < last && keys[c + 1] < keys[c]) c++;
+                if (key <= keys[c]) break;
+                keys[i] = keys[c];
+                items[i] = items[c];
+                memos[i] = memos[c];
+                i = c;
+            }
+            if (last > 0) {
+                keys[i] = key;
+                items[i] = item;
+                memos[i] = memo;
+            }
+            return top;
+        }
+    }
+
+    // ---------- insert ----------
+
+    // 래치 없이 부모에서 자식으로 내려가며 확장량이 가장 작은 경로를 고른다. path[level]
+    private Node[] descend(double[] b) {
+        Node n = root.node;
+        Node[] path = new Node[n.level + 1];
+        while (true) {
+            path[n.level] = n;
+            if (n.level == 0) return path;
+            Snap s = n.snap;
+            int best = 0;
+            double bestGrow = Double.POSITIVE_INFINITY, bestArea = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < s.count; i++) {
+                double area = GEO.volume(s.boxes, i * 4);
+                double grow = GEO.unionVolume(s.boxes, i * 4, b, 0) - area;
+                if (grow < bestGrow || (grow == bestGrow && area < bestArea)) {
+                    best = i;
+                    bestGrow = grow;
+                    bestArea = area;
+                }
+            }
+            n = (Node) s.items[best];
+        }
+    }
+
+    private void insert(Point point, double[] b) {
+        Node[] path = descend(b);
+        ArrayList<Level> held = new ArrayList<>(path.length + 1);
+        Node leaf = path[0];
+        leaf.latch.lock();
+        try {
+            Work w = new Work(leaf.snap, maxEntries + 1);
+            w.add(b, point);
+            Level cur = new Level(leaf, w);
+            held.add(cur);
+            // 분할되거나 MBR이 커지는 동안만 부모 래치를 잡으며 올라간다
+            while (true) {
+                if (cur.work.count > maxEntries) {
+                    cur.sibling = new Node(cur.node.level);
+                    cur.sibling.latch.lock();
+                    cur.siblingWork = split(cur.work);
+                }
+                Snap s = cur.node.snap;
+                boolean grew = s.mbr == null || !covers(s.mbr, 0, b);
+                if (cur.sibling == null && !grew) break;
+                if (root.node == cur.node) {
+                    cur.newRoot = cur.sibling != null;
+                    break;
+                }
+                Node parent = latchParent(cur.node, path);
+                Work pw;
+                try {
+                    pw = new Work(parent.snap, maxEntries + 1);
+                } catch (RuntimeException e) {
+                    parent.latch.unlock();
+                    throw e;
+                }
+                Level up = new Level(parent, pw);
+                held.add(up);
+                int slot = pw.indexOf(cur.node);
+                if (cur.sibling != null) {
+                    System.arraycopy(cur.work.bounds(), 0, pw.boxes, slot * 4, 4);
+                    pw.add(cur.siblingWork.bounds(), cur.sibling);
+                } else {
+                    GEO.include(pw.boxes, slot * 4, b, 0);
+                }
+                cur = up;
+            }
+            publish(held, b);
+        } finally {
+            if (held.isEmpty()) leaf.latch.unlock();
+            for (Level l : held) {
+                if (l.sibling != null) l.sibling.latch.unlock();
+                l.node.latch.unlock();
+            }
+        }
+    }
+
+    // child의 엔트리를 가진 부모 레벨 노드의 래치를 잡는다. 부모가 분할됐으면 엔트리는 오른쪽으로만 옮겨 가므로 오른쪽으로 간다
+    private Node latchParent(Node child, Node[] path) {
+        int level = child.level + 1;
+        boolean fromLeftmost = level >= path.length; // 내려온 뒤 루트가 높아졌다
+        Node p = fromLeftmost ? leftmost(level) : path[level];
+        p.latch.lock();
+        while (true) {
+            Snap s = p.snap;
+            if (s.indexOf(child) >= 0) return p;
+            Node next = s.right;
+            if (next == null) {
+                p.latch.unlock();
+                if (fromLeftmost) throw new IllegalStateException("parent entry not found");
+                fromLeftmost = true;
+                p = leftmost(level);
+                p.latch.lock();
+            } else {
+                next.latch.lock();
+                p.latch.unlock();
+                p = next;
+            }
+        }
+    }
+
+    // 분할은 자식 순서를 섞으므로 루트에서 items[0]을 따라 내려간 노드가 사슬의 처음이라는 보장이 없다
+    private Node leftmost(int level) {
+        Node[] h = heads;
+        if (level >= h.length) throw new IllegalStateException("no level " + level);
+        return h[level];
+    }
+
+    private static boolean covers(double[] a, int o, double[] b) {
+        return a[o] <= b[0] && a[o + 1] <= b[1] && a[o + 2] >= b[2] && a[o + 3] >= b[3];
+    }
+
+    // 래치를 모두 잡은 상태에서 게시한다.
+    // 1) 위에서부터 조상의 엔트리를 새 점까지 넓힌다 (점이 보이기 전에 어느 경로로든 닿게)
+    // 2) 아래에서부터 분할 결과를 게시한다: 형제, 표시한 왼쪽 노드, (부모 버전으로 NSN을 바꾸고 표시를 지운 왼쪽 노드, 부모)
+    private void publish(List<Level> held, double[] b) {
+        for (int i = held.size() - 1; i >= 1; i--) {
+            Node n = held.get(i).node;
+            Snap s = n.snap;
+            int slot = s.indexOf(held.get(i - 1).node);
+            if (!covers(s.boxes, slot * 4, b)) n.snap = s.enlarged(slot, b, clock.incrementAndGet());
+        }
+
+        long cleared = 0; // 아래 레벨이 분할되었으면 그 왼쪽 노드에 줄 NSN (= 이 레벨 새 스냅샷의 버전)
+        for (int i = 0; i < held.size(); i++) {
+            Level l = held.get(i);
+            if (cleared != 0) {
+                Node below = held.get(i - 1).node;
+                below.snap = below.snap.cleared(cleared);
+            }
+            long version = cleared != 0 ? cleared : clock.incrementAndGet();
+            Snap old = l.node.snap;
+            if (l.sibling == null) {
+                l.node.snap = l.work.toSnap(version, old.nsn, false, old.right);
+                return;
+            }
+            l.sibling.snap = l.siblingWork.toSnap(version, old.nsn, false, old.right);
+            l.node.snap = l.work.toSnap(version, old.nsn, true, l.sibling);
+            cleared = clock.incrementAndGet();
+            if (l.newRoot) {
+                Node top = new Node(l.node.level + 1);
+                Work w = new Work(2);
+                w.add(l.work.bounds(), l.node);
+                w.add(l.siblingWork.bounds(), l.sibling);
+                top.snap = w.toSnap(cleared, 0, false, null);
+                l.node.snap = l.node.snap.cleared(cleared);
+                Node[] grown = Arrays.copyOf(heads, top.level + 1);
+                grown[top.level] = top;
+                heads = grown; // 루트를 게시하기 전에: 새 루트 레벨로 올라오는 쓰기가 사슬의 시작을 찾을 수 있게
+                root = new RootRef(top, cleared);
+                return;
+            }
+        }
+    }
+
+    // quadratic split: w를 두 그룹으로 나눠 첫 그룹은 w에 남기고 둘째 그룹을 반환한다
+    private Work split(Work w) {
+        int count = w.count;
+        double[] boxes = w.boxes.clone();
+        Object[] items = w.items.clone();
+        byte[] group = new byte[count];
+
+        int s1 = 0, s2 = 1;
+        double worst = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                double waste = GEO.unionVolume(boxes, i * 4, boxes, j * 4) - GEO.volume(boxes, i * 4) - GEO.volume(boxes, j * 4);
+                if (waste > worst) {
+                    worst = waste;
+                    s1 = i;
+                    s2 = j;
+                }
+            }
+        }
+        double[] g1 = Arrays.copyOfRange(boxes, s1 * 4, s1 * 4 + 4);
+        double[] g2 = Arrays.copyOfRange(boxes, s2 * 4, s2 * 4 + 4);
+        group[s1] = 1;
+        group[s2] = 2;
+        int c1 = 1, c2 = 1, left = count - 2;
+        while (left > 0) {
+            if (c1 + left == minEntries || c2 + left == minEntries) {
+                byte g = c1 + left == minEntries ? (byte) 1 : (byte) 2;
+                for (int i = 0; i < count; i++) if (group[i] == 0) group[i] = g;
+                break;
+            }
+            int pick = -1;
+            double diff = -1, pd1 = 0, pd2 = 0;
+            double a1 = GEO.volume(g1, 0), a2 = GEO.volume(g2, 0);
+            for (int i = 0; i < count; i++) {
+                if (group[i] != 0) continue;
+                double d1 = GEO.unionVolume(g1, 0, boxes, i * 4) - a1;
+                double d2 = GEO.unionVolume(g2, 0, boxes, i * 4) - a2;
+                if (Math.abs(d1 - d2) > diff) {
+                    diff = Math.abs(d1 - d2);
+                    pick = i;
+                    pd1 = d1;
+                    pd2 = d2;
+                }
+            }
+            boolean toFirst = pd1 != pd2 ? pd1 < pd2
+                    : a1 != a2 ? a1 < a2
+                    : GEO.unionMargin(g1, 0, boxes, pick * 4) - GEO.margin(g1, 0) <= GEO.unionMargin(g2, 0, boxes, pick * 4) - GEO.margin(g2, 0);
+            GEO.include(toFirst ? g1 : g2, 0, boxes, pick * 4);
+            group[pick] = toFirst ? (byte) 1 : (byte) 2;
+            if (toFirst) c1++;
+            else c2++;
+            left--;
+        }
+
+        Work other = new Work(maxEntries + 1);
+        w.count = 0;
+        double[] b = new double[4];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(boxes, i * 4, b, 0, 4);
+            if (group[i] == 1) w.add(b, items[i]);
+            else other.add(b, items[i]);
+        }
+        Arrays.fill(w.items, w.count, count, null);
+        return other;
+    }
+
+    // ---------- delete ----------
+
+    // 잎에서 점만 뺀다. 다른 스레드의 분할로 점이 오른쪽 형제로 옮겨 갔으면 따라간다 (같은 점의 변경은 줄무늬 락으로 막혀 있다)
+    private void remove(Node leaf, Point point) {
+        Node n = leaf;
+        n.latch.lock();
+        try {
+            while (true) {
+                Snap s = n.snap;
+                int slot = s.indexOf(point);
+                if (slot >= 0) {
+                    n.snap = s.without(slot, clock.incrementAndGet());
+                    return;
+                }
+                Node next = s.right;
+                if (next == null) throw new IllegalStateException("point moved out of reach: " + point);
+                next.latch.lock();
+                n.latch.unlock();
+                n = next;
+            }
+        } finally {
+            n.latch.unlock();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * 점 사이 거리와, 점에서 MBR까지 거리의 하한을 정하는 거리 척도. {@link RTreeImpl#setDistanceMetric(DistanceMetric)}로 고른다.
+ * <p>
+ * 탐색은 거리 대신 거리와 순서가 같은 키(key)로 비교한다. 유클리드는 제곱 거리, 하버사인은 haversine 값이라
+ * 항목마다 sqrt/asin을 부르지 않는다. {@link #minKey}는 MBR 안 어떤 점의 키보다도 크지 않아야 가지치기가 맞다.
+ */
+public interface DistanceMetric {
+
+	/** 평면 좌표 (x, y)의 유클리드 거리 */
+	DistanceMetric EUCLIDEAN = EuclideanMetric.INSTANCE;
+
+	/** x = 경도, y = 위도 (도 단위, WGS84)로 보고 지구 평균 반지름 구면 위 대권 거리 (미터) */
+	DistanceMetric HAVERSINE = new HaversineMetric(HaversineMetric.EARTH_RADIUS_METERS);
+
+	/** 두 점 사이 거리의 키 */
+	double key(double x1, double y1, double x2, double y2);
+
+	/** (x, y)에서 [minX, maxX] x [minY, maxY] 안의 점까지 거리 키의 하한 (안에 있으면 0) */
+	double minKey(double minX, double minY, double maxX, double maxY, double x, double y);
+
+	double toDistance(double key);
+
+	/** 거리 이하인 점의 키가 이 값 이하가 되도록 바꾼다 */
+	double toKey(double distance);
+
+	default double distance(double x1, double y1, double x2, double y2) {
+		return toDistance(key(x1, y1, x2, y2));
+	}
+
+	/** 반지름 radius인 구면 위 하버사인 거리 (radius와 같은 단위) */
+	static DistanceMetric haversine(double radius) {
+		return new HaversineMetric(radius);
+	}
+}
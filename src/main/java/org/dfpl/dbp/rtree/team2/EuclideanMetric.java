@@ -0,0 +1,40 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * 평면 유클리드 거리. 키는 제곱 거리.
+ */
+final class EuclideanMetric implements DistanceMetric {
+
+    static final EuclideanMetric INSTANCE = new EuclideanMetric();
+
+    private EuclideanMetric() {
+    }
+
+    @Override
+    public double key(double x1, double y1, double x2, double y2) {
+        double dx = x1 - x2, dy = y1 - y2;
+        return dx * dx + dy * dy;
+    }
+
+    @Override
+    public double minKey(double minX, double minY, double maxX, double maxY, double x, double y) {
+        double dx = x < minX ? minX - x : (x > maxX ? x - maxX : 0);
+        double dy = y < minY ? minY - y : (y > maxY ? y - maxY : 0);
+        return dx * dx + dy * dy;
+    }
+
+    @Override
+    public double toDistance(double key) {
+        return Math.sqrt(key);
+    }
+
+    @Override
+    public double toKey(double distance) {
+        return distance * distance;
+    }
+
+    @Override
+    public String toString() {
+        return "euclidean";
+    }
+}
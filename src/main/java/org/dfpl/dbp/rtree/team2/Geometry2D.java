@@ -0,0 +1,68 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * 2차원 {@link BoxGeometry}. 박스는 [minX, minY, maxX, maxY].
+ */
+final class Geometry2D implements BoxGeometry {
+
+    static final Geometry2D INSTANCE = new Geometry2D();
+
+    private Geometry2D() {
+    }
+
+    @Override
+    public int dimensions() {
+        return 2;
+    }
+
+    @Override
+    public long intersects(double[] boxes, int count, double[] q) {
+        double x0 = q[0], y0 = q[1], x1 = q[2], y1 = q[3];
+        long bits = 0;
+        for (int i = 0, o = 0; i < count; i++, o += 4) {
+            boolean hit = boxes[o + 2] >= x0 & boxes[o] <= x1 & boxes[o + 3] >= y0 & boxes[o + 1] <= y1;
+            if (hit) bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void mindistSq(double[] boxes, int count, double[] p, double[] out) {
+        double x = p[0], y = p[1];
+        for (int i = 0, o = 0; i < count; i++, o += 4) {
+            double dx = Math.max(0, Math.max(boxes[o] - x, x - boxes[o + 2]));
+            double dy = Math.max(0, Math.max(boxes[o + 1] - y, y - boxes[o + 3]));
+            out[i] = dx * dx + dy * dy;
+        }
+    }
+
+    @Override
+    public double volume(double[] b, int o) {
+        return (b[o + 2] - b[o]) * (b[o + 3] - b[o + 1]);
+    }
+
+    @Override
+    public double margin(double[] b, int o) {
+        return (b[o + 2] - b[o]) + (b[o + 3] - b[o + 1]);
+    }
+
+    @Override
+    public double unionVolume(double[] a, int ao, double[] b, int bo) {
+        return (Math.max(a[ao + 2], b[bo + 2]) - Math.min(a[ao], b[bo]))
+                * (Math.max(a[ao + 3], b[bo + 3]) - Math.min(a[ao + 1], b[bo + 1]));
+    }
+
+    @Override
+    public double unionMargin(double[] a, int ao, double[] b, int bo) {
+        return (Math.max(a[ao + 2], b[bo + 2]) - Math.min(a[ao], b[bo]))
+                + (Math.max(a[ao + 3], b[bo + 3]) - Math.min(a[ao + 1], b[bo + 1]));
+    }
+
+    @Override
+    public void include(double[] a, int ao, double[] b, int bo) {
+        a[ao] = Math.min(a[ao], b[bo]);
+        a[ao + 1] = Math.min(a[ao + 1], b[bo + 1]);
+        a[ao + 2] = Math.max(a[ao + 2], b[bo + 2]);
+        a[ao + 3] = Math.max(a[ao + 3], b[bo + 3]);
+    }
+}
@@ -0,0 +1,72 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * 3차원 {@link BoxGeometry}. 박스는 [minX, minY, minZ, maxX, maxY, maxZ].
+ */
+final class Geometry3D implements BoxGeometry {
+
+    static final Geometry3D INSTANCE = new Geometry3D();
+
+    private Geometry3D() {
+    }
+
+    @Override
+    public int dimensions() {
+        return 3;
+    }
+
+    @Override
+    public long intersects(double[] boxes, int count, double[] q) {
+        double x0 = q[0], y0 = q[1], z0 = q[2], x1 = q[3], y1 = q[4], z1 = q[5];
+        long bits = 0;
+        for (int i = 0, o = 0; i < count; i++, o += 6) {
+            boolean hit = boxes[o + 3] >= x0 & boxes[o] <= x1 & boxes[o + 4] >= y0 & boxes[o + 1] <= y1
+                    & boxes[o + 5] >= z0 & boxes[o + 2] <= z1;
+            if (hit) bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void mindistSq(double[] boxes, int count, double[] p, double[] out) {
+        double x = p[0], y = p[1], z = p[2];
+        for (int i = 0, o = 0; i < count; i++, o += 6) {
+            double dx = Math.max(0, Math.max(boxes[o] - x, x - boxes[o + 3]));
+            double dy = Math.max(0, Math.max(boxes[o + 1] - y, y - boxes[o + 4]));
+            double dz = Math.max(0, Math.max(boxes[o + 2] - z, z - boxes[o + 5]));
+            out[i] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    @Override
+    public double volume(double[] b, int o) {
+        return (b[o + 3] - b[o]) * (b[o + 4] - b[o + 1]) * (b[o + 5] - b[o + 2]);
+    }
+
+    @Override
+    public double margin(double[] b, int o) {
+        return (b[o + 3] - b[o]) + (b[o + 4] - b[o + 1]) + (b[o + 5] - b[o + 2]);
+    }
+
+    @Override
+    public double unionVolume(double[] a, int ao, double[] b, int bo) {
+        return (Math.max(a[ao + 3], b[bo + 3]) - Math.min(a[ao], b[bo]))
+                * (Math.max(a[ao + 4], b[bo + 4]) - Math.min(a[ao + 1], b[bo + 1]))
+                * (Math.max(a[ao + 5], b[bo + 5]) - Math.min(a[ao + 2], b[bo + 2]));
+    }
+
+    @Override
+    public double unionMargin(double[] a, int ao, double[] b, int bo) {
+        return (Math.max(a[ao + 3], b[bo + 3]) - Math.min(a[ao], b[bo]))
+                + (Math.max(a[ao + 4], b[bo + 4]) - Math.min(a[ao + 1], b[bo + 1]))
+                + (Math.max(a[ao + 5], b[bo + 5]) - Math.min(a[ao + 2], b[bo + 2]));
+    }
+
+    @Override
+    public void include(double[] a, int ao, double[] b, int bo) {
+        for (int k = 0; k < 3; k++) {
+            a[ao + k] = Math.min(a[ao + k], b[bo + k]);
+            a[ao + 3 + k] = Math.max(a[ao + 3 + k], b[bo + 3 + k]);
+        }
+    }
+}
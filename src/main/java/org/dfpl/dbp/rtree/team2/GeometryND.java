@@ -0,0 +1,79 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * 임의 차원 {@link BoxGeometry}. 축마다 루프를 돈다.
+ */
+final class GeometryND implements BoxGeometry {
+
+    private final int d;
+
+    GeometryND(int d) {
+        this.d = d;
+    }
+
+    @Override
+    public int dimensions() {
+        return d;
+    }
+
+    @Override
+    public long intersects(double[] boxes, int count, double[] q) {
+        long bits = 0;
+        for (int i = 0, o = 0; i < count; i++, o += 2 * d) {
+            boolean hit = true;
+            for (int k = 0; k < d && hit; k++) {
+                hit = boxes[o + d + k] >= q[k] && boxes[o + k] <= q[d + k];
+            }
+            if (hit) bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void mindistSq(double[] boxes, int count, double[] p, double[] out) {
+        for (int i = 0, o = 0; i < count; i++, o += 2 * d) {
+            double sum = 0;
+            for (int k = 0; k < d; k++) {
+                double g = Math.max(0, Math.max(boxes[o + k] - p[k], p[k] - boxes[o + d + k]));
+                sum += g * g;
+            }
+            out[i] = sum;
+        }
+    }
+
+    @Override
+    public double volume(double[] b, int o) {
+        double v = 1;
+        for (int k = 0; k < d; k++) v *= b[o + d + k] - b[o + k];
+        return v;
+    }
+
+    @Override
+    public double margin(double[] b, int o) {
+        double m = 0;
+        for (int k = 0; k < d; k++) m += b[o + d + k] - b[o + k];
+        return m;
+    }
+
+    @Override
+    public double unionVolume(double[] a, int ao, double[] b, int bo) {
+        double v = 1;
+        for (int k = 0; k < d; k++) v *= Math.max(a[ao + d + k], b[bo + d + k]) - Math.min(a[ao + k], b[bo + k]);
+        return v;
+    }
+
+    @Override
+    public double unionMargin(double[] a, int ao, double[] b, int bo) {
+        double m = 0;
+        for (int k = 0; k < d; k++) m += Math.max(a[ao + d + k], b[bo + d + k]) - Math.min(a[ao + k], b[bo + k]);
+        return m;
+    }
+
+    @Override
+    public void include(double[] a, int ao, double[] b, int bo) {
+        for (int k = 0; k < d; k++) {
+            a[ao + k] = Math.min(a[ao + k], b[bo + k]);
+            a[ao + d + k] = Math.max(a[ao + d + k], b[bo + d + k]);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * 구면 대권 거리. 좌표는 x = 경도, y = 위도 (도). 키는 haversine 값 a = hav(중심각) ∈ [0, 1].
+ * <p>
+ * 점에서 위경도 박스까지의 최소 거리는 다음으로 정확히 구한다 (Schubert 외, SSTD 2013과 같은 방식).
+ * <ul>
+ * <li>점의 경도가 박스 경도 범위 안이면 가장 가까운 점은 같은 자오선 위이므로 위도 차만 본다.</li>
+ * <li>아니면 같은 위도에서는 경도 차가 작을수록 가까우므로 경도 차(360도로 감아서)가 작은 쪽 경계 자오선만 보면 된다.
+ * 그 자오선 위에서 cos(거리) = sin φq sin φ + cos φq cos φ cos Δλ 는 φ* = atan2(sin φq, cos φq cos Δλ)에서 최대인 정현파다.
+ * Δλ ≤ 90도면 φ*가 [-90, 90] 안이므로 φ*를 박스 위도 범위로 자른 점이 최근접점이고,
+ * Δλ > 90도면 φ*가 극 너머라 범위 안에서는 골짜기만 있으므로 위도 범위 양 끝 중 가까운 쪽이다.</li>
+ * </ul>
+ * 경도 차를 360도로 감아서 재므로 날짜 변경선(±180도) 양쪽의 점과 박스도 가깝게 본다.
+ */
+final class HaversineMetric implements DistanceMetric {
+
+    static final double EARTH_RADIUS_METERS = 6_371_008.8; // IUGG 평균 반지름
+
+    private final double radius;
+
+    HaversineMetric(double radius) {
+        if (!(radius > 0)) throw new IllegalArgumentException("radius must be positive: " + radius);
+        this.radius = radius;
+    }
+
+    @Override
+    public double key(double x1, double y1, double x2, double y2) {
+        double sinLat = Math.sin(Math.toRadians(y2 - y1) * 0.5);
+        double sinLon = Math.sin(Math.toRadians(x2 - x1) * 0.5);
+        return sinLat * sinLat + Math.cos(Math.toRadians(y1)) * Math.cos(Math.toRadians(y2)) * sinLon * sinLon;
+    }
+
+    @Override
+    public double minKey(double minX, double minY, double maxX, double maxY, double x, double y) {
+        if (x >= minX && x <= maxX) {
+            if (y < minY) return key(x, y, x, minY);
+            if (y > maxY) return key(x, y, x, maxY);
+            return 0;
+        }
+        double east = wrap(minX - x), west = wrap(x - maxX);
+        double edge = east <= west ? minX : maxX;
+        double dLon = Math.toRadians(Math.min(east, west));
+        double lat = Math.toRadians(y);
+        double b = Math.cos(lat) * Math.cos(dLon);
+        if (b < 0) return Math.min(key(x, y, edge, minY), key(x, y, edge, maxY));
+        double best = Math.toDegrees(Math.atan2(Math.sin(lat), b));
+        return key(x, y, edge, Math.max(minY, Math.min(maxY, best)));
+    }
+
+    // [0, 360)으로 감은 경도 차
+    private static double wrap(double deg) {
+        double d = deg % 360;
+        return d < 0 ? d + 360 : d;
+    }
+
+    @Override
+    public double toDistance(double key) {
+        return 2 * radius * Math.asin(Math.sqrt(Math.min(1, Math.max(0, key))));
+    }
+
+    @Override
+    public double toKey(double distance) {
+        if (distance >= Math.PI * radius) return Double.POSITIVE_INFINITY;
+        if (distance <= 0) return distance < 0 ? -1 : 0;
+        double s = Math.sin(distance / (2 * radius));
+        return s * s;
+    }
+
+    @Override
+    public String toString() {
+        return "haversine(r=" + radius + ")";
+    }
+}
@@ -0,0 +1,53 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * 2차원 Hilbert 곡선 값 계산. 좌표를 2^ORDER x 2^ORDER 격자로 옮긴 뒤 곡선 위의 순서(0 ~ 4^ORDER - 1)를 구한다.
+ */
+final class HilbertCurve {
+
+    // 4^31 - 1 < 2^63 이므로 signed long 비교로 그대로 정렬할 수 있다.
+    static final int ORDER = 31;
+    private static final long SIDE = 1L << ORDER;
+    private static final long MAX_CELL = SIDE - 1;
+
+    private HilbertCurve() {
+    }
+
+    // (x, y) 격자 좌표 -> Hilbert 값
+    static long index(long x, long y) {
+        long d = 0;
+        for (long s = SIDE >>> 1; s > 0; s >>>= 1) {
+            int rx = (x & s) != 0 ? 1 : 0;
+            int ry = (y & s) != 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            // 사분면 회전
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = MAX_CELL - x;
+                    y = MAX_CELL - y;
+                }
+                long t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    // [min, max] 범위를 격자에 선형으로 매핑 (범위 밖 값은 가장자리 칸으로 clamp)
+    static long cell(double v, double min, double max) {
+        double span = max - min;
+        if (!(span > 0)) return 0;
+        double t = (v - min) / span;
+        if (!(t > 0)) return 0;
+        if (t >= 1) return MAX_CELL;
+        return (long) (t * MAX_CELL);
+    }
+
+    // 범위를 모를 때: double의 순서를 보존하는 비트 변환 후 상위 ORDER 비트를 격자 좌표로 사용
+    static long cell(double v) {
+        long bits = Double.doubleToLongBits(v);
+        long sortable = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        return (sortable ^ Long.MIN_VALUE) >>> (64 - ORDER);
+    }
+}
@@ -0,0 +1,437 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.util.*;
+
+/**
+ * Hilbert R-tree. 리프의 점들을 Hilbert 곡선 값 순서로 유지한다.
+ * <ul>
+ * <li>{@link #pack(Collection)}: 정적인 데이터를 Hilbert 순서로 정렬해 리프를 꽉 채운 packed 트리를 만든다.</li>
+ * <li>{@link #add(Point)}: Hilbert 값 순서 삽입 + 형제 노드와 나누어 갖는 지연 분할(2-to-3 split).</li>
+ * </ul>
+ * 이웃 리프가 곡선 순서대로 나란히 놓이므로 범위 검색은 이웃 리프를 순서대로 훑게 된다.
+ * quadratic split을 쓰는 {@link RTreeImpl} 대신 같은 {@link RTree} 인터페이스로 바꿔 쓸 수 있다.
+ */
+public class HilbertRTree implements RTree {
+
+    private static final int DEFAULT_MAX_ENTRIES = 4;
+
+    private final int maxEntries;  // M
+    private final int minEntries;  // m
+    private final Rectangle domain; // null이면 좌표 범위를 모르는 것으로 보고 double 비트 순서로 매핑
+
+    // ---------- Tree structures ----------
+
+    private static class Entry {
+        Rectangle mbr;
+        Node child;   // null이면 leaf 엔트리
+        Point point;  // leaf에서만 사용
+        long h;       // leaf: 점의 Hilbert 값, non-leaf: child의 LHV
+
+        Entry(Node c) { child = c; mbr = c.mbr; h = c.lhv; }
+        Entry(Point p, long h) { mbr = new Rectangle(p, p); point = p; this.h = h; }
+    }
+
+    private static class Node {
+        boolean isLeaf;
+        ArrayList<Entry> entries = new ArrayList<>();
+        Node parent;
+        Rectangle mbr;
+        long lhv; // 서브트리의 가장 큰 Hilbert 값 (Largest Hilbert Value)
+
+        Node(boolean isLeaf) { this.isLeaf = isLeaf; }
+
+        void recompute() {
+            if (entries.isEmpty()) {
+                mbr = null;
+                lhv = 0;
+                return;
+            }
+            Rectangle agg = null;
+            long max = Long.MIN_VALUE;
+            for (Entry e : entries) {
+                if (e.child != null) {
+                    e.mbr = e.child.mbr;
+                    e.h = e.child.lhv;
+                }
+                agg = (agg == null) ? e.mbr : agg.union(e.mbr);
+                if (e.h > max) max = e.h;
+            }
+            mbr = agg;
+            lhv = max;
+        }
+    }
+
+    private static class QItem {
+        final double dist;
+        final Node node;
+        final Point point;
+
+        QItem(double dist, Node node, Point point) {
+            this.dist = dist;
+            this.node = node;
+            this.point = point;
+        }
+    }
+
+    private Node root = new Node(true);
+    private int size = 0;
+
+    // ---------- ctor ----------
+
+    public HilbertRTree() {
+        this(null, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param domain     점들이 놓이는 좌표 범위. Hilbert 격자를 이 범위에 맞춘다 (밖의 점은 가장자리 칸으로 간다).
+     * @param maxEntries 노드당 최대 엔트리 수 (M)
+     */
+    public HilbertRTree(Rectangle domain, int maxEntries) {
+        if (maxEntries < 3) throw new IllegalArgumentException("maxEntries must be >= 3: " + maxEntries);
+        this.domain = domain;
+        this.maxEntries = maxEntries;
+        this.minEntries = maxEntries / 2;
+    }
+
+    /**
+     * 정적 데이터용 packed 생성. 좌표 범위를 점들에서 구하고, Hilbert 순서로 정렬해 리프를 가득 채운다.
+     */
+    public static HilbertRTree pack(Collection<Point> points) {
+        return pack(points, DEFAULT_MAX_ENTRIES);
+    }
+
+    public static HilbertRTree pack(Collection<Point> points, int maxEntries) {
+        Rectangle bounds = null;
+        for (Point p : points) {
+            Rectangle r = new Rectangle(p, p);
+            bounds = (bounds == null) ? r : bounds.union(r);
+        }
+        HilbertRTree tree = new HilbertRTree(bounds, maxEntries);
+        tree.bulkLoad(points);
+        return tree;
+    }
+
+    // ---------- Public API 구현 ----------
+
+    @Override
+    public void add(Point point) {
+        if (point == null || findLeaf(root, point) != null) return;
+
+        long h = hilbert(point);
+        Node leaf = chooseLeaf(h);
+        insertSorted(leaf, new Entry(point, h));
+        size++;
+
+        Node cur = leaf;
+        while (cur != null) {
+            cur.recompute();
+            cur = (cur.entries.size() > maxEntries) ? handleOverflow(cur) : cur.parent;
+        }
+    }
+
+    @Override
+    public Iterator<Point> search(Rectangle rectangle) {
+        ArrayList<Point> results = new ArrayList<>();
+        if (rectangle != null && root.mbr != null) {
+            search(root, rectangle, results);
+        }
+        return results.iterator();
+    }
+
+    @Override
+    public Iterator<Point> nearest(Point source, int maxCount) {
+        if (source == null || maxCount <= 0 || root.mbr == null) {
+            return Collections.<Point>emptyList().iterator();
+        }
+
+        ArrayList<Point> knn = new ArrayList<>();
+        PriorityQueue<QItem> pq = new PriorityQueue<>(Comparator.comparingDouble(q -> q.dist));
+        pq.add(new QItem(mindist(root.mbr, source), root, null));
+
+        while (!pq.isEmpty() && knn.size() < maxCount) {
+            QItem it = pq.poll();
+            if (it.point != null) {
+                knn.add(it.point);
+                continue;
+            }
+            Node n = it.node;
+            for (Entry e : n.entries) {
+                if (n.isLeaf) {
+                    pq.add(new QItem(source.distance(e.point), null, e.point));
+                } else {
+                    pq.add(new QItem(mindist(e.mbr, source), e.child, null));
+                }
+            }
+        }
+        return knn.iterator();
+    }
+
+    @Override
+    public void delete(Point point) {
+        if (point == null) return;
+        Node leaf = findLeaf(root, point);
+        if (leaf == null) return;
+
+        for (int i = 0; i < leaf.entries.size(); i++) {
+            if (leaf.entries.get(i).point.equals(point)) {
+                leaf.entries.remove(i);
+                break;
+            }
+        }
+        size--;
+
+        Node cur = leaf;
+        while (cur != null) {
+            cur.recompute();
+            cur = (cur != root && cur.entries.size() < minEntries) ? handleUnderflow(cur) : cur.parent;
+        }
+
+        // 루트 수축
+        while (!root.isLeaf && root.entries.size() == 1) {
+            root = root.entries.get(0).child;
+            root.parent = null;
+        }
+        if (root.entries.isEmpty()) root = new Node(true);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ---------- internal helpers ----------
+
+    private long hilbert(Point p) {
+        if (domain == null) {
+            return HilbertCurve.index(HilbertCurve.cell(p.getX()), HilbertCurve.cell(p.getY()));
+        }
+        return HilbertCurve.index(
+                HilbertCurve.cell(p.getX(), domain.getMinX(), domain.getMaxX()),
+                HilbertCurve.cell(p.getY(), domain.getMinY(), domain.getMaxY()));
+    }
+
+    private static double mindist(Rectangle r, Point p) {
+        double x = p.getX();
+        double y = p.getY();
+        double dx = (x < r.getMinX()) ? r.getMinX() - x : (x > r.getMaxX() ? x - r.getMaxX() : 0);
+        double dy = (y < r.getMinY()) ? r.getMinY() - y : (y > r.getMaxY() ? y - r.getMaxY() : 0);
+        return Math.hypot(dx, dy);
+    }
+
+    // LHV가 h 이상인 첫 자식으로 내려간다 (없으면 마지막 자식). B+-tree처럼 리프들이 Hilbert 순서를 유지한다.
+    private Node chooseLeaf(long h) {
+        Node n = root;
+        while (!n.isLeaf) {
+            Entry pick = n.entries.get(n.entries.size() - 1);
+            for (Entry e : n.entries) {
+                if (e.h >= h) {
+                    pick = e;
+                    break;
+                }
+            }
+            n = pick.child;
+        }
+        return n;
+    }
+
+    private static void insertSorted(Node leaf, Entry e) {
+        int i = leaf.entries.size();
+        while (i > 0 && leaf.entries.get(i - 1).h > e.h) i--;
+        leaf.entries.add(i, e);
+    }
+
+    /**
+     * 넘친 노드 처리. 형제(cooperating sibling)에 자리가 있으면 둘이 엔트리를 나눠 갖고,
+     * 둘 다 가득 찼을 때만 새 노드를 만들어 2개를 3개로 나눈다. 다음에 검사할 부모를 반환한다.
+     */
+    private Node handleOverflow(Node n) {
+        Node p = n.parent;
+        if (p == null) {
+            // 루트 분할: 1 -> 2
+            Node right = new Node(n.isLeaf);
+            distribute(new ArrayList<>(n.entries), n, right);
+            Node newRoot = new Node(false);
+            newRoot.entries.add(new Entry(n));
+            newRoot.entries.add(new Entry(right));
+            n.parent = newRoot;
+            right.parent = newRoot;
+            newRoot.recompute();
+            root = newRoot;
+            return null;
+        }
+
+        int idx = indexOf(p, n);
+        if (p.entries.size() == 1) {
+            // 형제가 없으면 혼자 1 -> 2
+            Node right = new Node(n.isLeaf);
+            right.parent = p;
+            distribute(new ArrayList<>(n.entries), n, right);
+            p.entries.add(idx + 1, new Entry(right));
+            return p;
+        }
+
+        int li = (idx + 1 < p.entries.size()) ? idx : idx - 1;
+        Node left = p.entries.get(li).child;
+        Node right = p.entries.get(li + 1).child;
+        ArrayList<Entry> all = merged(left, right);
+
+        if (all.size() <= 2 * maxEntries) {
+            distribute(all, left, right);
+        } else {
+            Node extra = new Node(n.isLeaf);
+            extra.parent = p;
+            distribute(all, left, right, extra);
+            p.entries.add(li + 2, new Entry(extra));
+        }
+        return p;
+    }
+
+    /**
+     * 모자란 노드 처리. 형제에게서 빌릴 수 있으면 둘이 고르게 나누고, 아니면 형제와 합쳐 노드 하나를 없앤다.
+     * 형제가 없는데 비어 버린 노드(m == 1일 때)는 부모에서 떼어 내고, 부모가 이어서 모자라는지 검사한다.
+     */
+    private Node handleUnderflow(Node n) {
+        Node p = n.parent;
+        if (p.entries.size() == 1) {
+            if (n.entries.isEmpty()) {
+                p.entries.clear();
+                n.parent = null;
+            }
+            return p;
+        }
+
+        int idx = indexOf(p, n);
+        int li = (idx + 1 < p.entries.size()) ? idx : idx - 1;
+        Node left = p.entries.get(li).child;
+        Node right = p.entries.get(li + 1).child;
+        ArrayList<Entry> all = merged(left, right);
+
+        if (all.size() >= 2 * minEntries) {
+            distribute(all, left, right);
+        } else {
+            distribute(all, left);
+            p.entries.remove(li + 1);
+            right.parent = null;
+        }
+        return p;
+    }
+
+    private static int indexOf(Node p, Node child) {
+        for (int i = 0; i < p.entries.size(); i++) {
+            if (p.entries.get(i).child == child) return i;
+        }
+        throw new IllegalStateException("child not linked to parent");
+    }
+
+    private static ArrayList<Entry> merged(Node left, Node right) {
+        ArrayList<Entry> all = new ArrayList<>(left.entries.size() + right.entries.size());
+        all.addAll(left.entries);
+        all.addAll(right.entries);
+        all.sort(Comparator.comparingLong(e -> e.h));
+        return all;
+    }
+
+    // Hilbert 순서를 유지한 채 엔트리를 노드들에 고르게 나눠 담는다.
+    private static void distribute(List<Entry> all, Node... nodes) {
+        int k = nodes.length;
+        int base = all.size() / k;
+        int extra = all.size() % k;
+        int from = 0;
+        for (int i = 0; i < k; i++) {
+            int to = from + base + (i < extra ? 1 : 0);
+            Node node = nodes[i];
+            node.entries = new ArrayList<>(all.subList(from, to));
+            if (!node.isLeaf) {
+                for (Entry e : node.entries) e.child.parent = node;
+            }
+            node.recompute();
+            from = to;
+        }
+    }
+
+    private Node findLeaf(Node n, Point p) {
+        if (n.isLeaf) {
+            for (Entry e : n.entries) if (e.point.equals(p)) return n;
+            return null;
+        }
+        for (Entry e : n.entries) {
+            if (e.mbr != null && e.mbr.contains(p)) {
+                Node f = findLeaf(e.child, p);
+                if (f != null) return f;
+            }
+        }
+        return null;
+    }
+
+    // 자식을 Hilbert 순서대로 방문하므로 결과도 곡선 순서로 나온다.
+    private static void search(Node n, Rectangle q, List<Point> out) {
+        if (n.isLeaf) {
+            for (Entry e : n.entries) {
+                if (q.contains(e.point)) out.add(e.point);
+            }
+            return;
+        }
+        for (Entry e : n.entries) {
+            if (e.mbr.intersects(q)) search(e.child, q, out);
+        }
+    }
+
+    private void bulkLoad(Collection<Point> points) {
+        ArrayList<Entry> entries = new ArrayList<>(points.size());
+        for (Point p : points) entries.add(new Entry(p, hilbert(p)));
+        entries.sort(Comparator.<Entry>comparingLong(e -> e.h)
+                .thenComparingDouble(e -> e.point.getX())
+                .thenComparingDouble(e -> e.point.getY()));
+
+        // 같은 점은 정렬 후 인접하므로 한 번만 남긴다
+        ArrayList<Entry> unique = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            if (unique.isEmpty() || !unique.get(unique.size() - 1).point.equals(e.point)) unique.add(e);
+        }
+        size = unique.size();
+        if (unique.isEmpty()) return;
+
+        List<Node> level = packLevel(unique, true);
+        while (level.size() > 1) {
+            ArrayList<Entry> parents = new ArrayList<>(level.size());
+            for (Node n : level) parents.add(new Entry(n));
+            level = packLevel(parents, false);
+        }
+        root = level.get(0);
+        root.parent = null;
+    }
+
+    // 정렬된 엔트리를 M개씩 잘라 노드로 만든다. 마지막 노드가 m보다 작으면 앞 노드와 고르게 나눈다.
+    private List<Node> packLevel(List<Entry> sorted, boolean leaf) {
+        ArrayList<Node> nodes = new ArrayList<>();
+        int n = sorted.size();
+        int from = 0;
+        while (from < n) {
+            int to = Math.min(n, from + maxEntries);
+            int rest = n - to;
+            if (rest > 0 && rest < minEntries) {
+                int half = (to - from + rest + 1) / 2;
+                nodes.add(packNode(sorted.subList(from, from + half), leaf));
+                nodes.add(packNode(sorted.subList(from + half, n), leaf));
+                break;
+            }
+            nodes.add(packNode(sorted.subList(from, to), leaf));
+            from = to;
+        }
+        return nodes;
+    }
+
+    private static Node packNode(List<Entry> entries, boolean leaf) {
+        Node node = new Node(leaf);
+        node.entries = new ArrayList<>(entries);
+        if (!leaf) {
+            for (Entry e : node.entries) e.child.parent = node;
+        }
+        node.recompute();
+        return node;
+    }
+}
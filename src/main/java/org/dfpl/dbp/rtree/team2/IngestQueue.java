@@ -0,0 +1,235 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 여러 생산자 스레드의 add/delete 요청을 락 없는 링 버퍼(다중 생산자 / 단일 소비자)에 받아, 쓰기 스레드 하나가 묶음으로
+ * {@link RTreeImpl}에 적용한다. 생산자는 트리 락을 두고 다투지 않고 슬롯 번호 CAS 한 번으로 끝난다.
+ * <p>
+ * 쓰기 스레드는 쌓인 요청을 최대 maxBatch개씩 꺼내 묶음의 MBR 기준 Hilbert 값으로 정렬한 뒤 적용한다 (같은 점에 대한 요청은
+ * 정렬 후에도 제출 순서를 지킨다). 요청마다 돌려준 future는 적용 직후 트리가 바뀌었는지(add: 새 점이었는지, delete: 있던 점이었는지)로
+ * 완료된다. future의 후속 작업은 쓰기 스레드에서 돌므로 무거운 일은 *Async 변형으로 넘겨야 한다.
+ * <p>
+ * 트리를 바꾸는 쪽이 이 큐 하나뿐이라고 가정한다 (결과 판정에 크기 변화를 쓴다). 읽기는 트리에 바로 해도 된다.
+ * 링이 가득 차면 생산자는 잠깐씩 쉬면서 자리가 날 때까지 기다린다.
+ */
+public class IngestQueue implements AutoCloseable {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int DEFAULT_MAX_BATCH = 1024;
+
+    private static final class Request {
+        final boolean add;
+        final Point point;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Request(boolean add, Point point) {
+            this.add = add;
+            this.point = point;
+        }
+    }
+
+    private final RTreeImpl tree;
+    private final int maxBatch;
+
+    // ---------- 링 버퍼 ----------
+    // 슬롯 i의 sequence가 t이면 번호 t 생산자가 쓸 수 있고, t + 1이면 번호 t 요청이 들어 있다 (소비하면 t + capacity)
+    private final int mask;
+    private final Request[] slots;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong(); // 다음에 생산자가 가져갈 번호
+    private long head = 0;                           // 다음에 소비할 번호 (쓰기 스레드만)
+
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private final AtomicInteger enqueuing = new AtomicInteger(); // close 이후 들어온 요청이 남지 않게
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+
+    public IngestQueue(RTreeImpl tree) {
+        this(tree, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param capacity 링 크기 (2의 거듭제곱으로 올림)
+     * @param maxBatch 쓰기 스레드가 한 번에 정렬해서 적용하는 최대 요청 수
+     */
+    public IngestQueue(RTreeImpl tree, int capacity, int maxBatch) {
+        if (capacity <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("capacity and maxBatch must be positive: " + capacity + ", " + maxBatch);
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.tree = tree;
+        this.maxBatch = maxBatch;
+        this.mask = size - 1;
+        this.slots = new Request[size];
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequence.set(i, i);
+        writer = new Thread(this::drainLoop, "rtree-ingest");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // ---------- 생산자 ----------
+
+    /**
+     * @return 적용되면 점이 새로 들어갔는지로 완료되는 future
+     * @throws IllegalStateException 이미 닫힌 큐
+     */
+    public CompletableFuture<Boolean> add(Point point) {
+        return submit(new Request(true, point));
+    }
+
+    /**
+     * @return 적용되면 점이 있어서 지워졌는지로 완료되는 future
+     * @throws IllegalStateException 이미 닫힌 큐
+     */
+    public CompletableFuture<Boolean> delete(Point point) {
+        return submit(new Request(false, point));
+    }
+
+    private CompletableFuture<Boolean> submit(Request request) {
+        if (request.point == null) return CompletableFuture.completedFuture(false);
+        enqueuing.incrementAndGet();
+        try {
+            if (closed) throw new IllegalStateException("ingest queue is closed");
+            enqueue(request);
+        } finally {
+            enqueuing.decrementAndGet();
+        }
+        if (writerParked) {
+            writerParked = false;
+            LockSupport.unpark(writer);
+        }
+        return request.result;
+    }
+
+    private void enqueue(Request request) {
+        int spins = 0;
+        while (true) {
+            long t = tail.get();
+            int i = (int) t & mask;
+            long diff = sequence.get(i) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    slots[i] = request;
+                    sequence.set(i, t + 1); // 게시
+                    return;
+                }
+            } else if (diff < 0) {
+                // 가득 참: 쓰기 스레드가 비울 때까지 기다린다
+                if (writerParked) LockSupport.unpark(writer);
+                if (++spins < 100) Thread.onSpinWait();
+                else LockSupport.parkNanos(10_000);
+            }
+            // diff > 0: 다른 생산자가 먼저 가져갔다. 다시 시도
+        }
+    }
+
+    // ---------- 쓰기 스레드 ----------
+
+    private Request poll() {
+        int i = (int) head & mask;
+        if (sequence.get(i) != head + 1) return null;
+        Request r = slots[i];
+        slots[i] = null;
+        sequence.set(i, head + mask + 1);
+        head++;
+        return r;
+    }
+
+    private void drainLoop() {
+        Request[] batch = new Request[maxBatch];
+        long[] keys = new long[maxBatch];
+        Integer[] order = new Integer[maxBatch];
+        while (true) {
+            int n = 0;
+            Request r;
+            while (n < maxBatch && (r = poll()) != null) batch[n++] = r;
+            if (n > 0) {
+                apply(batch, n, keys, order);
+                continue;
+            }
+            // 번호를 가져간 생산자가 아직 게시하지 않았으면 head != tail이다
+            if (closed && enqueuing.get() == 0 && head == tail.get()) return;
+            writerParked = true;
+            if (sequence.get((int) head & mask) != head + 1 && !closed) LockSupport.parkNanos(this, 1_000_000);
+            writerParked = false;
+        }
+    }
+
+    private void apply(Request[] batch, int n, long[] keys, Integer[] order) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            Point p = batch[i].point;
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
+        for (int i = 0; i < n; i++) {
+            Point p = batch[i].point;
+            keys[i] = HilbertCurve.index(HilbertCurve.cell(p.getX(), minX, maxX), HilbertCurve.cell(p.getY(), minY, maxY));
+            order[i] = i;
+        }
+        // 안정 정렬이라 같은 점(같은 Hilbert 값)에 대한 요청은 제출 순서대로 남는다
+        Arrays.sort(order, 0, n, (a, b) -> Long.compare(keys[a], keys[b]));
+        for (int j = 0; j < n; j++) {
+            Request r = batch[order[j]];
+            batch[order[j]] = null;
+            try {
+                int before = tree.size();
+                if (r.add) tree.add(r.point);
+                else tree.delete(r.point);
+                r.result.complete(tree.size() != before);
+            } catch (Throwable t) {
+                r.result.completeExceptionally(t);
+            }
+        }
+        batches.incrementAndGet();
+        applied.addAndGet(n);
+    }
+
+    // ---------- 상태 / 종료 ----------
+
+    /**
+     * 받았지만 아직 적용하지 않은 요청 수 (근사값)
+     */
+    public long pending() {
+        return tail.get() - applied.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getAppliedCount() {
+        return applied.get();
+    }
+
+    /**
+     * 새 요청을 막고, 이미 받은 요청을 모두 적용할 때까지 기다린다.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
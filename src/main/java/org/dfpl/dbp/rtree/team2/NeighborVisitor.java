@@ -0,0 +1,13 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * kNN 결과를 가까운 순서대로 좌표와 거리로 받는 콜백.
+ */
+@FunctionalInterface
+public interface NeighborVisitor {
+
+	/**
+	 * @return false를 반환하면 검색을 그 자리에서 멈춘다.
+	 */
+	boolean visit(double x, double y, double distance);
+}
@@ -0,0 +1,77 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 고정 크기 노드 레코드를 direct ByteBuffer 슬랩에 담는 힙 밖(off-heap) 저장소.
+ * 노드는 int id로 가리키며 id의 상위 비트가 슬랩 번호, 하위 비트가 슬랩 안의 레코드 번호이다.
+ * 해제된 레코드는 레코드 첫 4바이트에 다음 빈 id를 적어 두는 free-list로 재사용하므로, 힙에는 슬랩 참조 배열만 남는다.
+ */
+final class NodeArena {
+
+    private static final int SLAB_SHIFT = 12; // 슬랩당 4096 레코드
+    private static final int SLAB_RECORDS = 1 << SLAB_SHIFT;
+    private static final int SLAB_MASK = SLAB_RECORDS - 1;
+
+    private final int recordSize;
+    private ByteBuffer[] slabs = new ByteBuffer[4];
+    private int slabCount = 0;
+    private int watermark = 0;  // 한 번도 쓰지 않은 첫 id
+    private int freeHead = -1;  // free-list 머리 (-1이면 비어 있음)
+    private int live = 0;
+
+    NodeArena(int recordSize) {
+        if (recordSize < Integer.BYTES) throw new IllegalArgumentException("record too small: " + recordSize);
+        this.recordSize = recordSize;
+    }
+
+    int allocate() {
+        int id;
+        if (freeHead >= 0) {
+            id = freeHead;
+            freeHead = buffer(id).getInt(offset(id));
+        } else {
+            id = watermark++;
+            if ((id >>> SLAB_SHIFT) == slabCount) addSlab();
+        }
+        live++;
+        return id;
+    }
+
+    void release(int id) {
+        buffer(id).putInt(offset(id), freeHead);
+        freeHead = id;
+        live--;
+    }
+
+    ByteBuffer buffer(int id) {
+        return slabs[id >>> SLAB_SHIFT];
+    }
+
+    int offset(int id) {
+        return (id & SLAB_MASK) * recordSize;
+    }
+
+    int recordSize() {
+        return recordSize;
+    }
+
+    int liveRecords() {
+        return live;
+    }
+
+    // 확보한 direct 메모리 (슬랩 단위)
+    long reservedBytes() {
+        return (long) slabCount * SLAB_RECORDS * recordSize;
+    }
+
+    private void addSlab() {
+        if (slabCount == slabs.length) {
+            ByteBuffer[] grown = new ByteBuffer[slabs.length * 2];
+            System.arraycopy(slabs, 0, grown, 0, slabCount);
+            slabs = grown;
+        }
+        slabs[slabCount++] = ByteBuffer.allocateDirect(SLAB_RECORDS * recordSize).order(ByteOrder.nativeOrder());
+    }
+}
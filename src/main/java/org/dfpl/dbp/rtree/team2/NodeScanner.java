@@ -0,0 +1,85 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 노드 하나의 자식 MBR들을 한 번에 검사하는 커널. MBR은 minX[], minY[], maxX[], maxY[] 네 개의 double 배열(SoA)로
+ * ByteBuffer에 연속해 있어야 하며, 각 인자는 배열 시작 위치(byte offset)이다. 점은 min과 max 배열을 같게 넘기면 된다.
+ * <p>
+ * 기본은 스칼라 구현이고, jdk.incubator.vector 모듈이 있으면 Vector API 구현({@code VectorNodeScanner})을 리플렉션으로 올린다.
+ * 시스템 속성 {@code rtree.simd=false}로 끌 수 있다.
+ */
+interface NodeScanner {
+
+	NodeScanner BEST = load();
+
+	/**
+	 * 질의 사각형 [qMinX, qMaxX] x [qMinY, qMaxY]와 겹치는(경계 포함) 엔트리의 비트마스크. 비트 i가 엔트리 i이다.
+	 * count는 64 이하여야 한다.
+	 */
+	long intersects(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count,
+			double qMinX, double qMinY, double qMaxX, double qMaxY);
+
+	/**
+	 * (x, y)에서 각 엔트리 MBR까지의 최소 거리 제곱을 out[0..count)에 쓴다.
+	 */
+	void mindistSq(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, double x, double y,
+			double[] out);
+
+	/**
+	 * 배열이 float일 때의 {@link #intersects}. 결과는 float 값을 double로 넓혀 비교한 것과 같다
+	 * (질의 경계를 {@link #ceilFloat} / {@link #floorFloat}로 바꿔 float끼리 비교한다).
+	 */
+	long intersectsFloat(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count,
+			double qMinX, double qMinY, double qMaxX, double qMaxY);
+
+	/**
+	 * 배열이 float일 때의 {@link #mindistSq}. 계산은 double로 한다.
+	 */
+	void mindistSqFloat(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, double x, double y,
+			double[] out);
+
+	/**
+	 * MBR 배열이 부호 있는 정수 코드(codeBytes가 1이면 byte, 2이면 short)일 때의 {@link #intersects}.
+	 * 질의도 같은 코드 공간의 정수로 받으며, maxX 코드 >= qMinX 이고 minX 코드 <= qMaxX 인(y도 같음) 엔트리를 고른다.
+	 */
+	long intersectsCodes(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, int codeBytes,
+			int qMinX, int qMinY, int qMaxX, int qMaxY);
+
+	/**
+	 * 코드 c를 origin + (c - {@link #codeBias}) * step 으로 풀어서 계산하는 {@link #mindistSq}.
+	 */
+	void mindistSqCodes(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, int codeBytes,
+			double originX, double originY, double stepX, double stepY, double x, double y, double[] out);
+
+	boolean isVectorized();
+
+	/** 코드 0에 해당하는 저장 값 (부호 있는 비교가 그대로 통하도록 코드를 이만큼 밀어 저장한다) */
+	static int codeBias(int codeBytes) {
+		return codeBytes == 1 ? Byte.MIN_VALUE : Short.MIN_VALUE;
+	}
+
+	/** v 이하인 가장 큰 float (float f에 대해 f <= v 와 f <= floorFloat(v)가 같다) */
+	static float floorFloat(double v) {
+		float f = (float) v;
+		return f > v ? Math.nextDown(f) : f;
+	}
+
+	/** v 이상인 가장 작은 float (float f에 대해 f >= v 와 f >= ceilFloat(v)가 같다) */
+	static float ceilFloat(double v) {
+		float f = (float) v;
+		return f < v ? Math.nextUp(f) : f;
+	}
+
+	private static NodeScanner load() {
+		if (!Boolean.parseBoolean(System.getProperty("rtree.simd", "true"))) return ScalarNodeScanner.INSTANCE;
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return ScalarNodeScanner.INSTANCE;
+		try {
+			// 기본 빌드에는 이 클래스가 없다 (-Pvector 프로파일에서만 컴파일)
+			return (NodeScanner) Class.forName("org.dfpl.dbp.rtree.team2.VectorNodeScanner")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return ScalarNodeScanner.INSTANCE;
+		}
+	}
+}
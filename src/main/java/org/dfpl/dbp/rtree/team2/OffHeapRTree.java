@@ -0,0 +1,1065 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 노드 내용을 힙 밖 {@link NodeArena}에 두는 R-Tree. Node / Entry / Rectangle / Point 객체 그래프가 없으므로
+ * 데이터 양과 상관없이 힙 사용량이 거의 일정하고 GC가 훑을 객체도 없다.
+ * 알고리즘은 {@link RTreeImpl}과 같다 (least-enlargement chooseLeaf, quadratic split, condenseTree + 재삽입).
+ * <p>
+ * 레코드 형식 (native byte order, S = M+1 슬롯). 엔트리 필드는 배열별로 모아 두어(SoA) {@link NodeScanner}가
+ * 한 노드의 자식 MBR을 벡터 단위로 읽을 수 있다.
+ * <pre>
+ *   leaf  : [count:int][parent:int]                      + x[S] + y[S]                          (double 또는 float)
+ *   inner : [count:int][parent:int][level:int][pad:int]  + minX[S] + minY[S] + maxX[S] + maxY[S] (double 또는 float) + child[S] (int)
+ * </pre>
+ * level 0이 리프이며, inner 엔트리의 child id는 (level - 1) 레벨의 arena를 가리킨다.
+ * <p>
+ * float 좌표 모드에서는 점을 넣을 때 좌표를 가장 가까운 float로 바꿔 저장하고(검색 결과도 그 값), MBR은 하한은 내림, 상한은 올림으로
+ * 저장해 항상 원래 범위를 덮는다. 좌표 메모리가 절반이 되고 캐시 라인 하나에 엔트리가 두 배(64바이트에 16개) 들어간다.
+ * 센서 좌표처럼 float 정밀도(약 7자리)로 충분한 데이터용이다.
+ * <p>
+ * MBR 양자화 모드(8 / 16비트)에서는 내부 노드가 자기 MBR(frame)을 double로 정확히 들고, 자식 MBR은 그 위에 깐 격자의
+ * 정수 코드로만 저장한다. 하한은 내림, 상한은 올림이라 복원한 MBR은 항상 실제 MBR을 덮으므로 가지치기는 보수적이고 결과는 같다.
+ * 정확한 좌표는 리프에만 있다. 격자 간격은 2의 거듭제곱이고 원점은 그 배수에 맞추므로 frame이 조금 커져도 격자가 그대로인
+ * 경우가 많고, 덮지 못할 때만 노드의 엔트리 전체를 다시 부호화한다.
+ * <pre>
+ *   inner : [count][parent][level][pad] + frame(minX, minY, maxX, maxY) + originX, originY, stepX, stepY (double)
+ *           + minX[S] + minY[S] + maxX[S] + maxY[S] (byte 또는 short 코드) + child[S] (int)
+ * </pre>
+ * 헤더가 80바이트라 이득은 M과 좌표 형식에 따라 다르다. 내부 노드 레코드 크기 (M = 4 / 16 / 64)는
+ * double 196 / 628 / 2,356, float 116 / 356 / 1,316바이트에 비해 16비트 코드 144 / 288 / 864, 8비트 120 / 216 / 600바이트다.
+ * float 좌표에 16비트 코드면 M이 8 이상, 8비트면 5 이상이어야 작아지므로, 양자화한 레코드가 더 작지 않으면 양자화하지 않는다.
+ * 작아진 만큼 트리 윗부분이 L2 캐시에 들어가고 search가 내려가며 읽는 캐시 라인 수가 줄어든다.
+ * 대신 격자가 바뀌면 삽입 / 삭제 때 자식 MBR을 다시 읽어야 한다.
+ */
+public class OffHeapRTree implements RTree {
+
+    private static final int DEFAULT_MAX_ENTRIES = 16;
+
+    private static final int COUNT = 0;
+    private static final int PARENT = 4;
+    private static final int LEVEL = 8;
+    private static final int LEAF_HEADER = 8;
+    private static final int INNER_HEADER = 16;
+    // 양자화 모드 내부 노드 헤더 (double 8개)
+    private static final int FRAME = 16;
+    private static final int ORIGIN_X = 48, ORIGIN_Y = 56, STEP_X = 64, STEP_Y = 72;
+    private static final int QUANTIZED_HEADER = 80;
+    private static final int NONE = -1;
+
+    private final int maxEntries; // M
+    private final int minEntries; // m
+    private final NodeArena leaves;
+    private final NodeArena inners;
+    private final NodeScanner scanner;
+    private final boolean floats; // float 좌표 모드
+    private final int width;      // 좌표 하나의 바이트 수
+    private final int codeBytes;  // 내부 노드 MBR 코드 하나의 바이트 수 (0이면 양자화하지 않음)
+    private final int codeMax;    // 코드 최댓값 (2^bits - 1)
+    private final int codeBias;   // 코드 0의 저장 값
+    private final int entryWidth; // 내부 노드 MBR 배열 원소 하나의 바이트 수
+
+    // 레코드 안 배열 시작 위치 (x 배열과 minX 배열은 헤더 바로 뒤)
+    private final int leafY;
+    private final int innerMinX, innerMinY, innerMaxX, innerMaxY, innerChild;
+
+    private int root;
+    private int height = 1; // 1이면 루트가 리프
+    private int size = 0;
+    private double rootMinX, rootMinY, rootMaxX, rootMaxY;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RTreeMetrics metrics = new RTreeMetrics();
+
+    // ---------- 쓰기용 작업 공간 (쓰기 락 아래에서만 사용) ----------
+    private final double[] mbr = new double[4];
+    private final double[] sMinX, sMinY, sMaxX, sMaxY;
+    private final int[] sChild;
+    private final byte[] sGroup;
+    private double[] pendingX = new double[16];
+    private double[] pendingY = new double[16];
+    private int pendingCount = 0;
+
+    public OffHeapRTree() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public OffHeapRTree(int maxEntries) {
+        this(maxEntries, true);
+    }
+
+    /**
+     * @param maxEntries 노드당 최대 엔트리 수 (4 ~ 64)
+     * @param vectorized true이면 가능할 때 Vector API로 노드를 검사한다 (jdk.incubator.vector 모듈이 없으면 스칼라)
+     */
+    public OffHeapRTree(int maxEntries, boolean vectorized) {
+        this(maxEntries, vectorized, false);
+    }
+
+    /**
+     * @param floatCoordinates true이면 좌표와 MBR을 float로 저장한다 (점 좌표는 가장 가까운 float로 바뀐다)
+     */
+    public OffHeapRTree(int maxEntries, boolean vectorized, boolean floatCoordinates) {
+        this(maxEntries, vectorized, floatCoordinates, 0);
+    }
+
+    /**
+     * @param mbrBits 내부 노드 자식 MBR을 양자화할 비트 수 (8 또는 16, 0이면 좌표 그대로 저장).
+     *                헤더가 커서 양자화한 내부 노드가 오히려 커지는 작은 M에서는 양자화하지 않는다 ({@link #getMbrBits()}가 0)
+     */
+    public OffHeapRTree(int maxEntries, boolean vectorized, boolean floatCoordinates, int mbrBits) {
+        if (maxEntries < 4 || maxEntries > 64) {
+            throw new IllegalArgumentException("maxEntries must be in [4, 64]: " + maxEntries);
+        }
+        if (mbrBits != 0 && mbrBits != 8 && mbrBits != 16) {
+            throw new IllegalArgumentException("mbrBits must be 0, 8 or 16: " + mbrBits);
+        }
+        this.maxEntries = maxEntries;
+        this.minEntries = Math.max(2, maxEntries * 2 / 5); // 40%
+        this.scanner = vectorized ? NodeScanner.BEST : ScalarNodeScanner.INSTANCE;
+        this.floats = floatCoordinates;
+        this.width = floatCoordinates ? Float.BYTES : Double.BYTES;
+        this.codeBytes = quantizedInnerSize(maxEntries + 1, mbrBits / 8) < plainInnerSize(maxEntries + 1, width) ? mbrBits / 8 : 0;
+        this.codeMax = (1 << (codeBytes * 8)) - 1;
+        this.codeBias = codeBytes == 0 ? 0 : NodeScanner.codeBias(codeBytes);
+        this.entryWidth = codeBytes == 0 ? width : codeBytes;
+        int slots = maxEntries + 1; // 분할 직전 한 칸 넘치는 것까지
+        int column = slots * width;
+        this.leafY = LEAF_HEADER + column;
+        this.leaves = new NodeArena(LEAF_HEADER + 2 * column);
+        int codes = slots * entryWidth;
+        this.innerMinX = codeBytes == 0 ? INNER_HEADER : QUANTIZED_HEADER;
+        this.innerMinY = innerMinX + codes;
+        this.innerMaxX = innerMinX + 2 * codes;
+        this.innerMaxY = innerMinX + 3 * codes;
+        this.innerChild = innerMinX + 4 * codes;
+        this.inners = new NodeArena(codeBytes == 0 ? plainInnerSize(slots, width) : quantizedInnerSize(slots, codeBytes));
+        sMinX = new double[slots];
+        sMinY = new double[slots];
+        sMaxX = new double[slots];
+        sMaxY = new double[slots];
+        sChild = new int[slots];
+        sGroup = new byte[slots];
+        root = newNode(0, NONE);
+    }
+
+    private static int plainInnerSize(int slots, int width) {
+        return INNER_HEADER + slots * (4 * width + Integer.BYTES);
+    }
+
+    // 양자화 모드는 헤더의 double을 매번 읽으므로 레코드를 8바이트 경계에 맞춘다
+    private static int quantizedInnerSize(int slots, int codeBytes) {
+        if (codeBytes == 0) return Integer.MAX_VALUE;
+        return (QUANTIZED_HEADER + slots * (4 * codeBytes + Integer.BYTES) + 7) & ~7;
+    }
+
+    // ---------- Public API 구현 ----------
+
+    @Override
+    public void add(Point point) {
+        if (point == null) return;
+        lock.writeLock().lock();
+        try {
+            long started = System.nanoTime();
+            double x = stored(point.getX()), y = stored(point.getY());
+            if (findLeaf(root, height - 1, x, y) != NONE) return;
+            insertPoint(x, y);
+            size++;
+            metrics.recordUpdate(RTreeMetrics.Operation.ADD, System.nanoTime() - started);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Point point) {
+        if (point == null) return;
+        lock.writeLock().lock();
+        try {
+            long started = System.nanoTime();
+            if (deletePoint(stored(point.getX()), stored(point.getY()))) {
+                size--;
+                metrics.recordUpdate(RTreeMetrics.Operation.DELETE, System.nanoTime() - started);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Point> search(Rectangle rectangle) {
+        ArrayList<Point> results = new ArrayList<>();
+        search(rectangle.getMinX(), rectangle.getMinY(), rectangle.getMaxX(), rectangle.getMaxY(), (x, y) -> {
+            results.add(new Point(x, y));
+            return true;
+        });
+        return results.iterator();
+    }
+
+    @Override
+    public Iterator<Point> nearest(Point source, int maxCount) {
+        if (source == null || maxCount <= 0) return Collections.<Point>emptyList().iterator();
+        ArrayList<Point> results = new ArrayList<>(maxCount);
+        nearest(source.getX(), source.getY(), maxCount, (x, y, d) -> {
+            results.add(new Point(x, y));
+            return true;
+        });
+        return results.iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public RTreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    // 살아 있는 노드 수 (리프 + 내부)
+    public int nodeCount() {
+        return leaves.liveRecords() + inners.liveRecords();
+    }
+
+    // 힙 밖에 확보한 바이트 수
+    public long offHeapBytes() {
+        return leaves.reservedBytes() + inners.reservedBytes();
+    }
+
+    // 노드 검사에 Vector API 구현을 쓰는지
+    public boolean isVectorized() {
+        return scanner.isVectorized();
+    }
+
+    // 좌표를 float로 저장하는지
+    public boolean isFloatCoordinates() {
+        return floats;
+    }
+
+    // 내부 노드 자식 MBR의 양자화 비트 수 (0이면 양자화하지 않음)
+    public int getMbrBits() {
+        return codeBytes * 8;
+    }
+
+    // 살아 있는 내부 노드가 차지하는 바이트 수
+    public long innerNodeBytes() {
+        return (long) inners.liveRecords() * inners.recordSize();
+    }
+
+    // ---------- visitor API (steady state 할당 없음) ----------
+
+    /**
+     * [minX, maxX] x [minY, maxY] (경계 포함) 안의 점을 좌표로 visitor에 넘긴다.
+     */
+    public void search(double minX, double minY, double maxX, double maxY, PointVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            long started = System.nanoTime();
+            Scratch s = SCRATCH.get();
+            s.visited = 0;
+            s.pruned = 0;
+            if (size > 0 && rootMaxX >= minX && rootMinX <= maxX && rootMaxY >= minY && rootMinY <= maxY) {
+                visitRange(root, height - 1, minX, minY, maxX, maxY, visitor, s);
+            }
+            metrics.recordQuery(RTreeMetrics.Operation.SEARCH, s.visited, s.pruned, System.nanoTime() - started);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * (x, y)에서 가까운 순서로 최대 maxCount개의 점을 좌표와 거리로 visitor에 넘긴다.
+     */
+    public void nearest(double x, double y, int maxCount, NeighborVisitor visitor) {
+        if (maxCount <= 0) return;
+        lock.readLock().lock();
+        try {
+            long started = System.nanoTime();
+            Scratch s = SCRATCH.get();
+            s.visited = 0;
+            s.pruned = 0;
+            if (size > 0) {
+                s.push(mindistSq(rootMinX, rootMinY, rootMaxX, rootMaxY, x, y), nodeItem(height - 1, root));
+                int found = 0;
+                while (s.heapSize > 0) {
+                    long item = s.pop();
+                    if (item < 0) {
+                        int leaf = (int) ((item >>> 16) & 0xFFFFFFFFL);
+                        int slot = (int) (item & 0xFFFF);
+                        if (!visitor.visit(leafX(leaf, slot), leafY(leaf, slot), Math.sqrt(s.topKey))
+                                || ++found >= maxCount) {
+                            break;
+                        }
+                        continue;
+                    }
+                    int level = (int) (item >>> 32);
+                    int id = (int) item;
+                    s.visited++;
+                    double[] dist = s.dist;
+                    if (level == 0) {
+                        ByteBuffer b = leaves.buffer(id);
+                        int base = leaves.offset(id);
+                        int n = b.getInt(base + COUNT);
+                        mindistSq(b, base + LEAF_HEADER, base + leafY, base + LEAF_HEADER, base + leafY, n, x, y, dist);
+                        for (int i = 0; i < n; i++) s.push(dist[i], pointItem(id, i));
+                    } else {
+                        ByteBuffer b = inners.buffer(id);
+                        int base = inners.offset(id);
+                        int n = b.getInt(base + COUNT);
+                        innerMindistSq(b, base, n, x, y, dist);
+                        for (int i = 0; i < n; i++) {
+                            s.push(dist[i], nodeItem(level - 1, b.getInt(base + innerChild + i * Integer.BYTES)));
+                        }
+                    }
+                }
+                for (int i = 0; i < s.heapSize; i++) {
+                    if (s.items[i] >= 0) s.pruned++;
+                }
+                s.heapSize = 0;
+            }
+            metrics.recordQuery(RTreeMetrics.Operation.NEAREST, s.visited, s.pruned, System.nanoTime() - started);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 힙 항목 인코딩: 노드는 (level << 32 | id), 점은 부호 비트 + (leaf id << 16 | slot)
+    private static long nodeItem(int level, int id) {
+        return ((long) level << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static long pointItem(int leaf, int slot) {
+        return Long.MIN_VALUE | ((leaf & 0xFFFFFFFFL) << 16) | slot;
+    }
+
+    private boolean visitRange(int id, int level, double minX, double minY, double maxX, double maxY,
+                               PointVisitor visitor, Scratch s) {
+        s.visited++;
+        if (level == 0) {
+            ByteBuffer b = leaves.buffer(id);
+            int base = leaves.offset(id);
+            int xs = base + LEAF_HEADER, ys = base + leafY;
+            long hits = intersects(b, xs, ys, xs, ys, b.getInt(base + COUNT), minX, minY, maxX, maxY);
+            for (; hits != 0; hits &= hits - 1) {
+                int o = Long.numberOfTrailingZeros(hits) * width;
+                if (!visitor.visit(get(b, xs + o), get(b, ys + o))) return false;
+            }
+            return true;
+        }
+        ByteBuffer b = inners.buffer(id);
+        int base = inners.offset(id);
+        int n = b.getInt(base + COUNT);
+        long hits = innerHits(b, base, n, minX, minY, maxX, maxY);
+        s.pruned += n - Long.bitCount(hits);
+        for (; hits != 0; hits &= hits - 1) {
+            int child = b.getInt(base + innerChild + Long.numberOfTrailingZeros(hits) * Integer.BYTES);
+            if (!visitRange(child, level - 1, minX, minY, maxX, maxY, visitor, s)) return false;
+        }
+        return true;
+    }
+
+    private static double mindistSq(double minX, double minY, double maxX, double maxY, double x, double y) {
+        double dx = (x < minX) ? minX - x : (x > maxX ? x - maxX : 0);
+        double dy = (y < minY) ? minY - y : (y > maxY ? y - maxY : 0);
+        return dx * dx + dy * dy;
+    }
+
+    // 스레드별 kNN 힙 (double 키 + long 항목). 배열은 커지기만 한다.
+    private static final class Scratch {
+        int visited;
+        int pruned;
+        double[] dist = new double[65]; // 노드 하나의 엔트리별 거리 (S 이하)
+        double[] keys = new double[64];
+        long[] items = new long[64];
+        int heapSize;
+        double topKey;
+
+        void push(double key, long item) {
+            if (heapSize == keys.length) {
+                keys = Arrays.copyOf(keys, heapSize * 2);
+                items = Arrays.copyOf(items, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                items[i] = items[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            items[i] = item;
+        }
+
+        long pop() {
+            long top = items[0];
+            topKey = keys[0];
+            int last = --heapSize;
+            double key = keys[last];
+            long item = items[last];
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= last) break;
+                if (c + 1 < last && keys[c + 1] < keys[c]) c++;
+                if (key <= keys[c]) break;
+                keys[i] = keys[c];
+                items[i] = items[c];
+                i = c;
+            }
+            if (last > 0) {
+                keys[i] = key;
+                items[i] = item;
+            }
+            return top;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // ---------- record access ----------
+
+    private long intersects(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count,
+                            double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        return floats ? scanner.intersectsFloat(b, minX, minY, maxX, maxY, count, qMinX, qMinY, qMaxX, qMaxY)
+                : scanner.intersects(b, minX, minY, maxX, maxY, count, qMinX, qMinY, qMaxX, qMaxY);
+    }
+
+    private void mindistSq(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, double x, double y,
+                           double[] out) {
+        if (floats) scanner.mindistSqFloat(b, minX, minY, maxX, maxY, count, x, y, out);
+        else scanner.mindistSq(b, minX, minY, maxX, maxY, count, x, y, out);
+    }
+
+    // 내부 노드 base의 자식 n개 중 질의와 겹치는 것. 양자화 모드에서는 질의를 그 노드의 코드 공간으로 옮겨 정수끼리 비교한다
+    private long innerHits(ByteBuffer b, int base, int n, double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        if (codeBytes == 0) {
+            return intersects(b, base + innerMinX, base + innerMinY, base + innerMaxX, base + innerMaxY, n,
+                    qMinX, qMinY, qMaxX, qMaxY);
+        }
+        double ox = b.getDouble(base + ORIGIN_X), oy = b.getDouble(base + ORIGIN_Y);
+        double sx = b.getDouble(base + STEP_X), sy = b.getDouble(base + STEP_Y);
+        int x0 = lowCode(ox, sx, qMinX), x1 = highCode(ox, sx, qMaxX);
+        int y0 = lowCode(oy, sy, qMinY), y1 = highCode(oy, sy, qMaxY);
+        if (x0 > codeMax || x1 < 0 || y0 > codeMax || y1 < 0) return 0; // 질의가 격자 밖
+        return scanner.intersectsCodes(b, base + innerMinX, base + innerMinY, base + innerMaxX, base + innerMaxY, n,
+                codeBytes, x0 + codeBias, y0 + codeBias, x1 + codeBias, y1 + codeBias);
+    }
+
+    private void innerMindistSq(ByteBuffer b, int base, int n, double x, double y, double[] out) {
+        if (codeBytes == 0) {
+            mindistSq(b, base + innerMinX, base + innerMinY, base + innerMaxX, base + innerMaxY, n, x, y, out);
+        } else {
+            scanner.mindistSqCodes(b, base + innerMinX, base + innerMinY, base + innerMaxX, base + innerMaxY, n,
+                    codeBytes, b.getDouble(base + ORIGIN_X), b.getDouble(base + ORIGIN_Y),
+                    b.getDouble(base + STEP_X), b.getDouble(base + STEP_Y), x, y, out);
+        }
+    }
+
+    // ---------- MBR 코드 ----------
+    // 코드 c의 값은 origin + c * step. 읽기(질의 변환)와 쓰기(부호화) 모두 이 식 하나로 비교하므로 반올림 오차가 있어도 어긋나지 않는다.
+
+    private static double decode(double origin, double step, int c) {
+        return origin + c * step;
+    }
+
+    // 값이 q 이상인 코드가 모두 c 이상이 되는 c (codeMax + 1이면 그런 코드가 없다)
+    private int lowCode(double origin, double step, double q) {
+        double t = Math.ceil((q - origin) / step);
+        if (!(t > 0)) return 0;
+        if (t > codeMax) return codeMax + 1;
+        int c = (int) t;
+        while (c > 0 && decode(origin, step, c - 1) >= q) c--;
+        return c;
+    }
+
+    // 값이 q 이하인 코드가 모두 c 이하가 되는 c (-1이면 그런 코드가 없다)
+    private int highCode(double origin, double step, double q) {
+        double t = Math.floor((q - origin) / step);
+        if (t < 0) return -1;
+        if (!(t < codeMax)) return codeMax;
+        int c = (int) t;
+        while (c < codeMax && decode(origin, step, c + 1) <= q) c++;
+        return c;
+    }
+
+    // 값이 v 이하인 가장 큰 코드 (MBR 하한)
+    private int encodeLow(double origin, double step, double v) {
+        int c = (int) Math.max(0, Math.min(codeMax, Math.floor((v - origin) / step)));
+        while (c > 0 && decode(origin, step, c) > v) c--;
+        return c;
+    }
+
+    // 값이 v 이상인 가장 작은 코드 (MBR 상한)
+    private int encodeHigh(double origin, double step, double v) {
+        int c = (int) Math.max(0, Math.min(codeMax, Math.ceil((v - origin) / step)));
+        while (c < codeMax && decode(origin, step, c) < v) c++;
+        return c;
+    }
+
+    private int code(ByteBuffer b, int offset) {
+        return ScalarNodeScanner.code(b, offset, codeBytes) - codeBias;
+    }
+
+    private void putCode(ByteBuffer b, int offset, int c) {
+        if (codeBytes == 1) b.put(offset, (byte) (c + codeBias));
+        else b.putShort(offset, (short) (c + codeBias));
+    }
+
+    // [lo, hi]를 덮는 격자: 간격은 codeMax칸에 들어가는 가장 작은 2의 거듭제곱, 원점은 lo 이하의 그 배수
+    private void putGrid(ByteBuffer b, int originAt, int stepAt, double lo, double hi) {
+        if (!(lo <= hi)) { // 빈 노드
+            b.putDouble(originAt, Double.NaN);
+            b.putDouble(stepAt, 1);
+            return;
+        }
+        double step = Math.max(Double.MIN_NORMAL, Math.ulp(Math.max(Math.abs(lo), Math.abs(hi))));
+        double need = (hi - lo) / codeMax;
+        if (need > step) {
+            step = Math.scalb(1.0, Math.getExponent(need));
+            if (step < need) step *= 2;
+        }
+        double origin = Math.floor(lo / step) * step;
+        while (decode(origin, step, codeMax) < hi) {
+            step *= 2;
+            origin = Math.floor(lo / step) * step;
+        }
+        b.putDouble(originAt, origin);
+        b.putDouble(stepAt, step);
+    }
+
+    // 노드 격자가 [x0, x1] x [y0, y1]을 덮는지 (빈 노드의 격자는 NaN이라 아무것도 덮지 않는다)
+    private boolean covers(ByteBuffer b, int base, double x0, double y0, double x1, double y1) {
+        double ox = b.getDouble(base + ORIGIN_X), oy = b.getDouble(base + ORIGIN_Y);
+        double sx = b.getDouble(base + STEP_X), sy = b.getDouble(base + STEP_Y);
+        return ox <= x0 && decode(ox, sx, codeMax) >= x1 && oy <= y0 && decode(oy, sy, codeMax) >= y1;
+    }
+
+    private void encodeChild(ByteBuffer b, int base, int i, double x0, double y0, double x1, double y1) {
+        double ox = b.getDouble(base + ORIGIN_X), oy = b.getDouble(base + ORIGIN_Y);
+        double sx = b.getDouble(base + STEP_X), sy = b.getDouble(base + STEP_Y);
+        int o = i * codeBytes;
+        putCode(b, base + innerMinX + o, encodeLow(ox, sx, x0));
+        putCode(b, base + innerMinY + o, encodeLow(oy, sy, y0));
+        putCode(b, base + innerMaxX + o, encodeHigh(ox, sx, x1));
+        putCode(b, base + innerMaxY + o, encodeHigh(oy, sy, y1));
+    }
+
+    private double decoded(int id, int column, int origin, int step, int i) {
+        ByteBuffer b = inners.buffer(id);
+        int base = inners.offset(id);
+        return decode(b.getDouble(base + origin), b.getDouble(base + step), code(b, base + column + i * codeBytes));
+    }
+
+    /**
+     * 양자화 모드: 자식들의 정확한 MBR로 노드의 frame과 격자를 다시 잡고 엔트리 전부를 다시 부호화한다.
+     * 자식 MBR을 sMinX.. 작업 배열에 모으므로 split 도중에는 부르지 않는다.
+     */
+    private void reframe(int id) {
+        ByteBuffer b = inners.buffer(id);
+        int base = inners.offset(id);
+        int level = b.getInt(base + LEVEL), n = b.getInt(base + COUNT);
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            mbrOf(level - 1, child(id, i));
+            x0 = Math.min(x0, sMinX[i] = mbr[0]);
+            y0 = Math.min(y0, sMinY[i] = mbr[1]);
+            x1 = Math.max(x1, sMaxX[i] = mbr[2]);
+            y1 = Math.max(y1, sMaxY[i] = mbr[3]);
+        }
+        putFrame(b, base, x0, y0, x1, y1);
+        putGrid(b, base + ORIGIN_X, base + STEP_X, x0, x1);
+        putGrid(b, base + ORIGIN_Y, base + STEP_Y, y0, y1);
+        for (int i = 0; i < n; i++) encodeChild(b, base, i, sMinX[i], sMinY[i], sMaxX[i], sMaxY[i]);
+    }
+
+    private static void putFrame(ByteBuffer b, int base, double x0, double y0, double x1, double y1) {
+        b.putDouble(base + FRAME, x0);
+        b.putDouble(base + FRAME + 8, y0);
+        b.putDouble(base + FRAME + 16, x1);
+        b.putDouble(base + FRAME + 24, y1);
+    }
+
+    // 저장될 좌표 값 (float 모드면 가장 가까운 float)
+    private double stored(double v) {
+        return floats ? (float) v : v;
+    }
+
+    private double get(ByteBuffer b, int offset) {
+        return floats ? b.getFloat(offset) : b.getDouble(offset);
+    }
+
+    // float 모드에서 MBR 하한은 내림, 상한은 올림으로 저장해 항상 원래 범위를 덮게 한다
+    private void putLow(ByteBuffer b, int offset, double v) {
+        if (floats) b.putFloat(offset, NodeScanner.floorFloat(v));
+        else b.putDouble(offset, v);
+    }
+
+    private void putHigh(ByteBuffer b, int offset, double v) {
+        if (floats) b.putFloat(offset, NodeScanner.ceilFloat(v));
+        else b.putDouble(offset, v);
+    }
+
+    private NodeArena arena(int level) {
+        return level == 0 ? leaves : inners;
+    }
+
+    private int newNode(int level, int parent) {
+        NodeArena a = arena(level);
+        int id = a.allocate();
+        ByteBuffer b = a.buffer(id);
+        int base = a.offset(id);
+        b.putInt(base + COUNT, 0);
+        b.putInt(base + PARENT, parent);
+        if (level > 0) b.putInt(base + LEVEL, level);
+        if (level > 0 && codeBytes != 0) {
+            putFrame(b, base, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+            b.putDouble(base + ORIGIN_X, Double.NaN);
+            b.putDouble(base + ORIGIN_Y, Double.NaN);
+        }
+        return id;
+    }
+
+    private int count(int level, int id) {
+        NodeArena a = arena(level);
+        return a.buffer(id).getInt(a.offset(id) + COUNT);
+    }
+
+    private void setCount(int level, int id, int count) {
+        NodeArena a = arena(level);
+        a.buffer(id).putInt(a.offset(id) + COUNT, count);
+    }
+
+    private int parent(int level, int id) {
+        NodeArena a = arena(level);
+        return a.buffer(id).getInt(a.offset(id) + PARENT);
+    }
+
+    private void setParent(int level, int id, int parent) {
+        NodeArena a = arena(level);
+        a.buffer(id).putInt(a.offset(id) + PARENT, parent);
+    }
+
+    private double leafX(int id, int i) {
+        return get(leaves.buffer(id), leaves.offset(id) + LEAF_HEADER + i * width);
+    }
+
+    private double leafY(int id, int i) {
+        return get(leaves.buffer(id), leaves.offset(id) + leafY + i * width);
+    }
+
+    // 리프 좌표는 이미 stored()를 거친 값이므로 float 모드에서도 그대로 들어간다
+    private void putLeaf(int id, int i, double x, double y) {
+        ByteBuffer b = leaves.buffer(id);
+        int base = leaves.offset(id) + i * width;
+        putLow(b, base + LEAF_HEADER, x);
+        putLow(b, base + leafY, y);
+    }
+
+    // 내부 노드 자식 MBR (양자화 모드에서는 복원한 값이라 실제 MBR을 덮는다)
+    private double minX(int id, int i) {
+        if (codeBytes != 0) return decoded(id, innerMinX, ORIGIN_X, STEP_X, i);
+        return get(inners.buffer(id), inners.offset(id) + innerMinX + i * width);
+    }
+
+    private double minY(int id, int i) {
+        if (codeBytes != 0) return decoded(id, innerMinY, ORIGIN_Y, STEP_Y, i);
+        return get(inners.buffer(id), inners.offset(id) + innerMinY + i * width);
+    }
+
+    private double maxX(int id, int i) {
+        if (codeBytes != 0) return decoded(id, innerMaxX, ORIGIN_X, STEP_X, i);
+        return get(inners.buffer(id), inners.offset(id) + innerMaxX + i * width);
+    }
+
+    private double maxY(int id, int i) {
+        if (codeBytes != 0) return decoded(id, innerMaxY, ORIGIN_Y, STEP_Y, i);
+        return get(inners.buffer(id), inners.offset(id) + innerMaxY + i * width);
+    }
+
+    private int child(int id, int i) {
+        return inners.buffer(id).getInt(inners.offset(id) + innerChild + i * Integer.BYTES);
+    }
+
+    /**
+     * 자식 i를 MBR과 함께 쓴다. 양자화 모드에서는 격자가 MBR을 덮으면 그 엔트리만 부호화하고 frame을 넓히며,
+     * 덮지 못하면 노드 전체를 {@link #reframe}한다 (이때 엔트리 i는 count 안에 있어야 한다).
+     */
+    private void putChild(int id, int i, double minX, double minY, double maxX, double maxY, int child) {
+        ByteBuffer b = inners.buffer(id);
+        int base = inners.offset(id);
+        if (codeBytes != 0) {
+            b.putInt(base + innerChild + i * Integer.BYTES, child);
+            if (!covers(b, base, minX, minY, maxX, maxY)) {
+                reframe(id);
+                return;
+            }
+            encodeChild(b, base, i, minX, minY, maxX, maxY);
+            putFrame(b, base, Math.min(minX, b.getDouble(base + FRAME)), Math.min(minY, b.getDouble(base + FRAME + 8)),
+                    Math.max(maxX, b.getDouble(base + FRAME + 16)), Math.max(maxY, b.getDouble(base + FRAME + 24)));
+            return;
+        }
+        int o = i * width;
+        putLow(b, base + innerMinX + o, minX);
+        putLow(b, base + innerMinY + o, minY);
+        putHigh(b, base + innerMaxX + o, maxX);
+        putHigh(b, base + innerMaxY + o, maxY);
+        b.putInt(base + innerChild + i * Integer.BYTES, child);
+    }
+
+    private void setChildMbr(int id, int i, double[] r) {
+        putChild(id, i, r[0], r[1], r[2], r[3], child(id, i));
+    }
+
+    // 노드의 MBR을 mbr[]에 계산한다 (minX, minY, maxX, maxY)
+    private void mbrOf(int level, int id) {
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        int n = count(level, id);
+        if (level == 0) {
+            for (int i = 0; i < n; i++) {
+                double x = leafX(id, i), y = leafY(id, i);
+                x0 = Math.min(x0, x);
+                y0 = Math.min(y0, y);
+                x1 = Math.max(x1, x);
+                y1 = Math.max(y1, y);
+            }
+        } else if (codeBytes != 0) {
+            // 양자화 모드의 내부 노드는 정확한 frame을 들고 있다
+            ByteBuffer b = inners.buffer(id);
+            int base = inners.offset(id);
+            x0 = b.getDouble(base + FRAME);
+            y0 = b.getDouble(base + FRAME + 8);
+            x1 = b.getDouble(base + FRAME + 16);
+            y1 = b.getDouble(base + FRAME + 24);
+        } else {
+            for (int i = 0; i < n; i++) {
+                x0 = Math.min(x0, minX(id, i));
+                y0 = Math.min(y0, minY(id, i));
+                x1 = Math.max(x1, maxX(id, i));
+                y1 = Math.max(y1, maxY(id, i));
+            }
+        }
+        mbr[0] = x0;
+        mbr[1] = y0;
+        mbr[2] = x1;
+        mbr[3] = y1;
+    }
+
+    private void appendChild(int parent, int childLevel, int child) {
+        mbrOf(childLevel, child);
+        int n = count(childLevel + 1, parent);
+        setCount(childLevel + 1, parent, n + 1);
+        putChild(parent, n, mbr[0], mbr[1], mbr[2], mbr[3], child);
+        setParent(childLevel, child, parent);
+    }
+
+    private int indexOfChild(int parent, int child) {
+        for (int i = 0, n = count(1, parent); i < n; i++) {
+            if (child(parent, i) == child) return i;
+        }
+        throw new IllegalStateException("child " + child + " not linked to parent " + parent);
+    }
+
+    private void refreshRootMbr() {
+        mbrOf(height - 1, root);
+        rootMinX = mbr[0];
+        rootMinY = mbr[1];
+        rootMaxX = mbr[2];
+        rootMaxY = mbr[3];
+    }
+
+    // ---------- insert ----------
+
+    private void insertPoint(double x, double y) {
+        int leaf = chooseLeaf(x, y);
+        int n = count(0, leaf);
+        putLeaf(leaf, n, x, y);
+        setCount(0, leaf, n + 1);
+        int split = (n + 1 > maxEntries) ? split(0, leaf) : NONE;
+        adjustTree(0, leaf, split);
+    }
+
+    private int chooseLeaf(double x, double y) {
+        int id = root;
+        for (int level = height - 1; level > 0; level--) {
+            int best = 0;
+            double bestEnl = Double.POSITIVE_INFINITY, bestArea = Double.POSITIVE_INFINITY;
+            for (int i = 0, n = count(level, id); i < n; i++) {
+                double x0 = minX(id, i), y0 = minY(id, i);
+                double x1 = maxX(id, i), y1 = maxY(id, i);
+                double area = (x1 - x0) * (y1 - y0);
+                double enl = (Math.max(x1, x) - Math.min(x0, x)) * (Math.max(y1, y) - Math.min(y0, y)) - area;
+                if (enl < bestEnl || (enl == bestEnl && area < bestArea)) {
+                    best = i;
+                    bestEnl = enl;
+                    bestArea = area;
+                }
+            }
+            id = child(id, best);
+        }
+        return id;
+    }
+
+    private void adjustTree(int level, int node, int split) {
+        while (true) {
+            int parent = parent(level, node);
+            if (parent == NONE) {
+                if (split != NONE) {
+                    int newRoot = newNode(level + 1, NONE);
+                    appendChild(newRoot, level, node);
+                    appendChild(newRoot, level, split);
+                    root = newRoot;
+                    height++;
+                }
+                break;
+            }
+            mbrOf(level, node);
+            setChildMbr(parent, indexOfChild(parent, node), mbr);
+            if (split != NONE) {
+                appendChild(parent, level, split);
+                split = (count(level + 1, parent) > maxEntries) ? split(level + 1, parent) : NONE;
+            }
+            node = parent;
+            level++;
+        }
+        refreshRootMbr();
+    }
+
+    // quadratic split: 엔트리를 작업 배열로 옮긴 뒤 두 그룹으로 나눠 원래 노드와 새 노드에 다시 쓴다
+    private int split(int level, int id) {
+        metrics.recordSplit();
+        int n = count(level, id);
+        for (int i = 0; i < n; i++) {
+            if (level == 0) {
+                sMinX[i] = sMaxX[i] = leafX(id, i);
+                sMinY[i] = sMaxY[i] = leafY(id, i);
+            } else if (codeBytes != 0) {
+                // 복원한 MBR로 나누면 부호화를 거칠 때마다 넓어지므로 자식의 정확한 MBR을 쓴다
+                sChild[i] = child(id, i);
+                mbrOf(level - 1, sChild[i]);
+                sMinX[i] = mbr[0];
+                sMinY[i] = mbr[1];
+                sMaxX[i] = mbr[2];
+                sMaxY[i] = mbr[3];
+            } else {
+                sMinX[i] = minX(id, i);
+                sMinY[i] = minY(id, i);
+                sMaxX[i] = maxX(id, i);
+                sMaxY[i] = maxY(id, i);
+                sChild[i] = child(id, i);
+            }
+            sGroup[i] = 0;
+        }
+
+        // seed: 함께 묶으면 낭비가 가장 큰 쌍
+        int s1 = 0, s2 = 1;
+        double worst = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double d = unionArea(i, j) - area(i) - area(j);
+                if (d > worst) {
+                    worst = d;
+                    s1 = i;
+                    s2 = j;
+                }
+            }
+        }
+        double[] g1 = { sMinX[s1], sMinY[s1], sMaxX[s1], sMaxY[s1] };
+        double[] g2 = { sMinX[s2], sMinY[s2], sMaxX[s2], sMaxY[s2] };
+        sGroup[s1] = 1;
+        sGroup[s2] = 2;
+        int c1 = 1, c2 = 1, left = n - 2;
+
+        while (left > 0) {
+            if (c1 + left == minEntries || c2 + left == minEntries) {
+                byte g = (c1 + left == minEntries) ? (byte) 1 : (byte) 2;
+                for (int i = 0; i < n; i++) if (sGroup[i] == 0) sGroup[i] = g;
+                break;
+            }
+            int pick = -1;
+            double diff = -1, pd1 = 0, pd2 = 0;
+            for (int i = 0; i < n; i++) {
+                if (sGroup[i] != 0) continue;
+                double d1 = enlarge(g1, i), d2 = enlarge(g2, i);
+                if (Math.abs(d1 - d2) > diff) {
+                    diff = Math.abs(d1 - d2);
+                    pick = i;
+                    pd1 = d1;
+                    pd2 = d2;
+                }
+            }
+            double a1 = (g1[2] - g1[0]) * (g1[3] - g1[1]), a2 = (g2[2] - g2[0]) * (g2[3] - g2[1]);
+            boolean toFirst = pd1 < pd2 || (pd1 == pd2 && (a1 < a2 || (a1 == a2 && c1 <= c2)));
+            double[] g = toFirst ? g1 : g2;
+            g[0] = Math.min(g[0], sMinX[pick]);
+            g[1] = Math.min(g[1], sMinY[pick]);
+            g[2] = Math.max(g[2], sMaxX[pick]);
+            g[3] = Math.max(g[3], sMaxY[pick]);
+            sGroup[pick] = toFirst ? (byte) 1 : (byte) 2;
+            if (toFirst) c1++;
+            else c2++;
+            left--;
+        }
+
+        int other = newNode(level, parent(level, id));
+        int k1 = 0, k2 = 0;
+        for (int i = 0; i < n; i++) {
+            int target = (sGroup[i] == 1) ? id : other;
+            int slot = (sGroup[i] == 1) ? k1++ : k2++;
+            if (level == 0) {
+                putLeaf(target, slot, sMinX[i], sMinY[i]);
+            } else if (codeBytes != 0) {
+                inners.buffer(target).putInt(inners.offset(target) + innerChild + slot * Integer.BYTES, sChild[i]);
+                setParent(level - 1, sChild[i], target);
+            } else {
+                putChild(target, slot, sMinX[i], sMinY[i], sMaxX[i], sMaxY[i], sChild[i]);
+                setParent(level - 1, sChild[i], target);
+            }
+        }
+        setCount(level, id, k1);
+        setCount(level, other, k2);
+        if (level > 0 && codeBytes != 0) {
+            reframe(id);
+            reframe(other);
+        }
+        return other;
+    }
+
+    private double area(int i) {
+        return (sMaxX[i] - sMinX[i]) * (sMaxY[i] - sMinY[i]);
+    }
+
+    private double unionArea(int i, int j) {
+        return (Math.max(sMaxX[i], sMaxX[j]) - Math.min(sMinX[i], sMinX[j]))
+                * (Math.max(sMaxY[i], sMaxY[j]) - Math.min(sMinY[i], sMinY[j]));
+    }
+
+    private double enlarge(double[] g, int i) {
+        double area = (g[2] - g[0]) * (g[3] - g[1]);
+        return (Math.max(g[2], sMaxX[i]) - Math.min(g[0], sMinX[i]))
+                * (Math.max(g[3], sMaxY[i]) - Math.min(g[1], sMinY[i])) - area;
+    }
+
+    // ---------- delete ----------
+
+    // 점을 가진 리프를 찾아 (leaf id << 16 | slot)을 반환, 없으면 NONE
+    private long findLeaf(int id, int level, double x, double y) {
+        if (level == 0) {
+            for (int i = 0, n = count(0, id); i < n; i++) {
+                if (Double.compare(leafX(id, i), x) == 0 && Double.compare(leafY(id, i), y) == 0) {
+                    return ((long) id << 16) | i;
+                }
+            }
+            return NONE;
+        }
+        ByteBuffer b = inners.buffer(id);
+        int base = inners.offset(id);
+        long hits = innerHits(b, base, count(level, id), x, y, x, y);
+        for (; hits != 0; hits &= hits - 1) {
+            long found = findLeaf(child(id, Long.numberOfTrailingZeros(hits)), level - 1, x, y);
+            if (found != NONE) return found;
+        }
+        return NONE;
+    }
+
+    private boolean deletePoint(double x, double y) {
+        long found = findLeaf(root, height - 1, x, y);
+        if (found == NONE) return false;
+        int leaf = (int) (found >>> 16);
+        int slot = (int) (found & 0xFFFF);
+        int n = count(0, leaf);
+        putLeaf(leaf, slot, leafX(leaf, n - 1), leafY(leaf, n - 1));
+        setCount(0, leaf, n - 1);
+        condenseTree(leaf);
+        return true;
+    }
+
+    // 모자란 노드는 떼어 내고 그 아래 점들을 모아 두었다가, 트리 정리가 끝난 뒤 다시 삽입한다
+    private void condenseTree(int leaf) {
+        pendingCount = 0;
+        int node = leaf, level = 0;
+        while (node != root) {
+            int parent = parent(level, node);
+            int idx = indexOfChild(parent, node);
+            if (count(level, node) < minEntries) {
+                metrics.recordUnderflow();
+                removeChild(parent, idx);
+                releaseSubtree(node, level);
+            } else {
+                if (level > 0 && codeBytes != 0) reframe(node); // 아래에서 엔트리가 빠지거나 줄었다
+                mbrOf(level, node);
+                setChildMbr(parent, idx, mbr);
+            }
+            node = parent;
+            level++;
+        }
+        if (height > 1 && codeBytes != 0) reframe(root);
+
+        // 루트 수축
+        while (height > 1 && count(height - 1, root) <= 1) {
+            int old = root;
+            if (count(height - 1, old) == 0) {
+                root = newNode(0, NONE);
+                height = 1;
+            } else {
+                root = child(old, 0);
+                height--;
+                setParent(height - 1, root, NONE);
+            }
+            inners.release(old);
+        }
+        refreshRootMbr();
+
+        for (int i = 0; i < pendingCount; i++) {
+            metrics.recordReinsert();
+            insertPoint(pendingX[i], pendingY[i]);
+        }
+        pendingCount = 0;
+    }
+
+    // 마지막 엔트리를 idx 자리로 옮긴다 (같은 노드 안이므로 저장된 바이트를 그대로 복사)
+    private void removeChild(int parent, int idx) {
+        int n = count(1, parent);
+        if (idx != n - 1) {
+            ByteBuffer b = inners.buffer(parent);
+            int base = inners.offset(parent);
+            int from = (n - 1) * entryWidth, to = idx * entryWidth;
+            for (int column : new int[] { innerMinX, innerMinY, innerMaxX, innerMaxY }) {
+                for (int k = 0; k < entryWidth; k++) b.put(base + column + to + k, b.get(base + column + from + k));
+            }
+            b.putInt(base + innerChild + idx * Integer.BYTES, b.getInt(base + innerChild + (n - 1) * Integer.BYTES));
+        }
+        setCount(1, parent, n - 1);
+    }
+
+    private void releaseSubtree(int id, int level) {
+        int n = count(level, id);
+        if (level == 0) {
+            for (int i = 0; i < n; i++) addPending(leafX(id, i), leafY(id, i));
+            leaves.release(id);
+        } else {
+            for (int i = 0; i < n; i++) releaseSubtree(child(id, i), level - 1);
+            inners.release(id);
+        }
+    }
+
+    private void addPending(double x, double y) {
+        if (pendingCount == pendingX.length) {
+            pendingX = Arrays.copyOf(pendingX, pendingCount * 2);
+            pendingY = Arrays.copyOf(pendingY, pendingCount * 2);
+        }
+        pendingX[pendingCount] = x;
+        pendingY[pendingCount] = y;
+        pendingCount++;
+    }
+}
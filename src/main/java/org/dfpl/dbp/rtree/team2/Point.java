@@ -1,8 +1,9 @@
 package org.dfpl.dbp.rtree.team2;
 
-public class Point {
-	private double x;
-	private double y;
+// 불변(immutable) 좌표 값 객체. 인덱스가 인스턴스를 복사 없이 그대로 공유한다.
+public final class Point {
+	private final double x;
+	private final double y;
 
 	public Point(double x, double y) {
 		this.x = x;
@@ -13,24 +14,37 @@ public class Point {
 		return x;
 	}
 
-	public void setX(double x) {
-		this.x = x;
-	}
-
 	public double getY() {
 		return y;
 	}
 
-	public void setY(double y) {
-		this.y = y;
-	}
-
 	public double distance(Point other) {
 		double dx = this.x - other.getX();
 		double dy = this.y - other.getY();
 		return Math.sqrt(dx * dx + dy * dy);
 	}
 
+	// 주어진 척도로 잰 거리 (위경도 점이면 DistanceMetric.HAVERSINE)
+	public double distance(Point other, DistanceMetric metric) {
+		return metric.distance(x, y, other.getX(), other.getY());
+	}
+
+	// 같은 x, y 값을 갖는 Point는 같은 Point (Double.compare 기준, -0.0 / NaN 포함)
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Point))
+			return false;
+		Point other = (Point) o;
+		return Double.compare(x, other.x) == 0 && Double.compare(y, other.y) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Double.hashCode(x) + Double.hashCode(y);
+	}
+
 	@Override
 	public String toString() {
 		return "Point [x=" + x + ", y=" + y + "]";
@@ -0,0 +1,13 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * {@link PointFileLoader}가 읽은 좌표를 묶음으로 받는 콜백. 여러 스레드에서 동시에 불린다.
+ */
+@FunctionalInterface
+public interface PointBatchVisitor {
+
+	/**
+	 * xs[0..count), ys[0..count)가 이번 묶음의 좌표다. 배열은 반환 뒤 다음 묶음에 다시 쓰이므로 보관하려면 복사해야 한다.
+	 */
+	void visit(double[] xs, double[] ys, int count);
+}
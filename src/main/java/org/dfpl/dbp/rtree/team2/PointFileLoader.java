@@ -0,0 +1,294 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 좌표가 한 줄에 하나씩 있는 텍스트 파일(CSV / TSV / 공백 구분)을 읽어 점을 만든다.
+ * <ul>
+ * <li>파일을 메모리 매핑하고 줄 경계에 맞춘 조각으로 나눠 ForkJoin 공용 풀에서 병렬로 파싱한다.</li>
+ * <li>줄이나 필드마다 String을 만들지 않고 바이트에서 바로 double을 읽는다. 유효 숫자 15자리 이하이고 10의 지수가 ±22 이내이면
+ * (보통의 좌표) 정수 가수와 10의 거듭제곱 한 번의 곱/나눗셈으로 정확히 반올림된 값이 나오므로(Clinger의 fast path) 그대로 쓰고,
+ * 나머지만 {@link Double#parseDouble}로 넘긴다.</li>
+ * <li>결과는 좌표 배열 묶음으로 {@link PointBatchVisitor}에 흘려보내거나, {@link #addTo(RTree)}로 트리에 바로 넣거나,
+ * {@link #loadPacked()}로 모아서 Hilbert packing으로 한 번에 만든다.</li>
+ * </ul>
+ * 필드 구분자는 ',', 탭, ';', 공백 중 아무것이나 되고(구분자 옆의 공백은 무시), 줄 끝의 '\r'과 빈 줄은 무시한다.
+ * 좌표는 유한한 수여야 한다 (NaN / Infinity는 오류).
+ */
+public class PointFileLoader {
+
+    private static final int BATCH = 4096;
+    private static final int MIN_CHUNK = 1 << 20;
+    private static final int MAX_CHUNK = 1 << 28; // 매핑 하나는 2GB를 넘을 수 없다
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final Path file;
+    private final int xColumn;
+    private final int yColumn;
+    private final int skipLines;
+
+    public PointFileLoader(Path file) {
+        this(file, 0, 1, 0);
+    }
+
+    /**
+     * @param xColumn   x 좌표 필드 번호 (0부터)
+     * @param yColumn   y 좌표 필드 번호
+     * @param skipLines 파일 앞에서 건너뛸 줄 수 (헤더)
+     */
+    public PointFileLoader(Path file, int xColumn, int yColumn, int skipLines) {
+        if (xColumn < 0 || yColumn < 0 || xColumn == yColumn) {
+            throw new IllegalArgumentException("bad columns: " + xColumn + ", " + yColumn);
+        }
+        this.file = file;
+        this.xColumn = xColumn;
+        this.yColumn = yColumn;
+        this.skipLines = Math.max(0, skipLines);
+    }
+
+    /**
+     * 파일의 모든 좌표를 묶음으로 visitor에 넘긴다. visitor는 여러 스레드에서 동시에 불리고, 묶음 순서는 파일 순서와 다를 수 있다.
+     *
+     * @return 읽은 점 수
+     * @throws NumberFormatException 좌표를 읽을 수 없는 줄 (바이트 위치를 메시지에 담는다)
+     */
+    public long stream(PointBatchVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunks(channel);
+            AtomicLong total = new AtomicLong();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(bounds.length - 1);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long from = bounds[i], to = bounds[i + 1];
+                boolean first = i == 0;
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    try {
+                        total.addAndGet(parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), from,
+                                first ? skipLines : 0, visitor));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            try {
+                ForkJoinTask.invokeAll(tasks);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return total.get();
+        }
+    }
+
+    /**
+     * 읽은 점을 tree에 바로 add 한다. 여러 스레드가 동시에 add 하므로 tree는 스레드 안전해야 한다 ({@link RTreeImpl} 등).
+     *
+     * @return 파일에서 읽은 점 수 (중복 좌표 포함)
+     */
+    public long addTo(RTree tree) throws IOException {
+        return stream((xs, ys, count) -> {
+            for (int i = 0; i < count; i++) tree.add(new Point(xs[i], ys[i]));
+        });
+    }
+
+    /**
+     * 모든 점을 모은 뒤 중복 좌표를 빼고 Hilbert 순서로 packing한 {@link RTreeImpl}(시각화 없음)을 만든다.
+     */
+    public RTreeImpl loadPacked() throws IOException {
+        List<Point[]> parts = Collections.synchronizedList(new ArrayList<>());
+        stream((xs, ys, count) -> {
+            Point[] part = new Point[count];
+            for (int i = 0; i < count; i++) part[i] = new Point(xs[i], ys[i]);
+            parts.add(part);
+        });
+        LinkedHashSet<Point> unique = new LinkedHashSet<>();
+        for (Point[] part : parts) Collections.addAll(unique, part);
+        RTreeImpl tree = new RTreeImpl(false);
+        tree.load(new ArrayList<>(unique));
+        return tree;
+    }
+
+    // ---------- 조각 나누기 ----------
+
+    // 조각 경계 (첫 값 0, 마지막 값 파일 크기). 경계는 모두 줄의 시작이다
+    private static long[] chunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int parts = Math.max(1, Runtime.getRuntime().availableProcessors() * 4);
+        long target = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / parts + 1));
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(1 << 16);
+        long at = 0;
+        while (size - at > target) {
+            long next = nextLineStart(channel, at + target, size, probe);
+            if (next >= size) break;
+            bounds.add(next);
+            at = next;
+        }
+        bounds.add(size);
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) out[i] = bounds.get(i);
+        return out;
+    }
+
+    // from 위치 이후 첫 '\n' 다음 위치 (없으면 size)
+    private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long pos = from;
+        while (pos < size) {
+            probe.clear();
+            int n = channel.read(probe, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    // ---------- 파싱 ----------
+
+    private long parseChunk(MappedByteBuffer buf, long base, int skip, PointBatchVisitor visitor) {
+        double[] xs = new double[BATCH];
+        double[] ys = new double[BATCH];
+        int n = 0;
+        long total = 0;
+        int limit = buf.limit();
+        int pos = 0;
+        int lastColumn = Math.max(xColumn, yColumn);
+        while (pos < limit) {
+            int lineStart = pos;
+            int eol = pos;
+            while (eol < limit && buf.get(eol) != '\n') eol++;
+            pos = eol + 1;
+            int end = eol;
+            if (end > lineStart && buf.get(end - 1) == '\r') end--;
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            if (end == lineStart) continue;
+
+            // 필드를 하나씩 넘기며 x, y 필드만 읽는다
+            double x = 0, y = 0;
+            int column = 0, fieldStart = lineStart;
+            for (int i = lineStart; i <= end && column <= lastColumn; i++) {
+                if (i < end && !isDelimiter(buf.get(i))) continue;
+                if (i < end && buf.get(i) == ' ' && i == fieldStart) {
+                    fieldStart = i + 1; // 필드 앞의 공백
+                    continue;
+                }
+                int fieldEnd = i;
+                if (i < end && buf.get(i) == ' ') {
+                    // 필드 뒤의 공백: 이어지는 공백과 바로 뒤의 구분자 하나까지 한 구분자로 본다
+                    while (i + 1 < end && buf.get(i + 1) == ' ') i++;
+                    if (i + 1 < end && isDelimiter(buf.get(i + 1))) i++;
+                }
+                if (column == xColumn) x = parseDouble(buf, fieldStart, fieldEnd, base);
+                else if (column == yColumn) y = parseDouble(buf, fieldStart, fieldEnd, base);
+                column++;
+                fieldStart = i + 1;
+            }
+            if (column <= lastColumn) {
+                throw new NumberFormatException("line at byte " + (base + lineStart) + " has only " + column + " fields");
+            }
+            xs[n] = x;
+            ys[n] = y;
+            if (++n == BATCH) {
+                visitor.visit(xs, ys, n);
+                total += n;
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            visitor.visit(xs, ys, n);
+            total += n;
+        }
+        return total;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || b == '\t' || b == ';' || b == ' ';
+    }
+
+    // buf[from, to)의 10진수. fast path에 맞지 않으면 (자릿수가 많거나 지수가 큰 경우 등) Double.parseDouble로
+    static double parseDouble(ByteBuffer buf, int from, int to, long base) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;     // 가수에 담은 유효 숫자 수 (앞의 0 제외)
+        int exponent = 0;   // 10의 지수
+        boolean any = false, dot = false;
+        for (; i < to; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) digits++;
+                    if (dot) exponent--;
+                } else {
+                    digits++; // 19자리를 넘으면 fast path가 아니다
+                    if (!dot) exponent++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (i < to && (buf.get(i) == 'e' || buf.get(i) == 'E') && any) {
+            i++;
+            boolean expNegative = false;
+            if (i < to && (buf.get(i) == '-' || buf.get(i) == '+')) {
+                expNegative = buf.get(i) == '-';
+                i++;
+            }
+            int e = 0;
+            int expDigits = 0;
+            for (; i < to && buf.get(i) >= '0' && buf.get(i) <= '9'; i++, expDigits++) {
+                if (e < 100_000) e = e * 10 + (buf.get(i) - '0');
+            }
+            if (expDigits == 0) i = -1; // 'e' 뒤에 숫자가 없다
+            exponent += expNegative ? -e : e;
+        }
+        if (i == to && any && digits <= 15 && exponent >= -22 && exponent <= 22) {
+            double v = (double) mantissa; // 2^53 미만이라 정확하다
+            v = exponent < 0 ? v / POW10[-exponent] : v * POW10[exponent];
+            return negative ? -v : v;
+        }
+        return slowParse(buf, from, to, base);
+    }
+
+    private static double slowParse(ByteBuffer buf, int from, int to, long base) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buf.get(from + i);
+        String text = new String(bytes, StandardCharsets.ISO_8859_1).trim();
+        double v;
+        try {
+            v = Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            v = Double.NaN;
+        }
+        // 트리에 넣을 수 없는 NaN / Infinity도 잘못된 좌표로 본다
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            throw new NumberFormatException("bad coordinate at byte " + (base + from) + ": \"" + text + "\"");
+        }
+        return v;
+    }
+}
@@ -0,0 +1,66 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.util.Arrays;
+
+// d차원 불변 좌표 값 객체 ((x, y, 고도), (x, y, 시간) 등). RTreeND가 복사 없이 그대로 공유한다.
+public final class PointND {
+	private final double[] coords;
+
+	public PointND(double... coords) {
+		if (coords.length == 0)
+			throw new IllegalArgumentException("a point needs at least one coordinate");
+		this.coords = coords.clone();
+	}
+
+	public static PointND of(Point p) {
+		return new PointND(p.getX(), p.getY());
+	}
+
+	public int getDimensions() {
+		return coords.length;
+	}
+
+	public double get(int axis) {
+		return coords[axis];
+	}
+
+	public double[] toArray() {
+		return coords.clone();
+	}
+
+	// 인덱스 내부용 (복사하지 않은 원본 배열)
+	double[] coords() {
+		return coords;
+	}
+
+	public double distance(PointND other) {
+		if (other.coords.length != coords.length)
+			throw new IllegalArgumentException("dimension mismatch: " + coords.length + " vs " + other.coords.length);
+		double sum = 0;
+		for (int i = 0; i < coords.length; i++) {
+			double d = coords[i] - other.coords[i];
+			sum += d * d;
+		}
+		return Math.sqrt(sum);
+	}
+
+	// 모든 좌표가 Double.compare 기준으로 같으면 같은 점 (Point와 같은 규칙)
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof PointND))
+			return false;
+		return Arrays.equals(coords, ((PointND) o).coords);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(coords);
+	}
+
+	@Override
+	public String toString() {
+		return "PointND " + Arrays.toString(coords);
+	}
+}
@@ -0,0 +1,13 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * 범위 검색 결과를 Point 객체 없이 좌표로 받는 콜백.
+ */
+@FunctionalInterface
+public interface PointVisitor {
+
+	/**
+	 * @return false를 반환하면 검색을 그 자리에서 멈춘다.
+	 */
+	boolean visit(double x, double y);
+}
@@ -0,0 +1,573 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * 헤드리스 R-Tree 측정 모음. 인자로 시나리오 이름을 주면 그것만, 없으면 전부 실행한다.
+ * <pre>
+ *   alloc  : visitor API의 steady state 할당량 (스레드별 할당 바이트 카운터로 측정)
+ *   fanout : OffHeapRTree 노드 크기별 스칼라 / Vector API 노드 검사 속도
+ *            (벡터 쪽은 -Pvector로 빌드하고 --add-modules jdk.incubator.vector로 실행해야 측정된다)
+ *   float32: OffHeapRTree double / float 좌표 모드의 노드 영역 크기와 질의 시간
+ *   quant  : OffHeapRTree 내부 노드 MBR 양자화(없음 / 16비트 / 8비트)별 내부 노드 크기와 질의 시간
+ *   approx : RTreeImpl 근사(1+ε) kNN / maxDistance 제한 kNN의 노드 방문 수, recall, 질의 시간
+ *   shard  : RTreeImpl 하나 / ShardedRTree(kd 분할 샤드 수별)의 Iterator API 검색·kNN 시간과 재분할 전후 샤드 크기 편차
+ *   rlink  : 스레드 수별 add / 혼합(add + kNN) 처리량, 전역 락 RTreeImpl 대 R-link ConcurrentRTree
+ *   ingest : 생산자 스레드 수별로 RTreeImpl에 직접 add / IngestQueue로 넘겨 묶음 적용할 때의 처리량
+ *   nd     : RTreeND 2·3차원에서 전용 기하 구현 / 일반 d차원 구현의 삽입·검색·kNN 시간
+ *   load   : 임시 TSV 파일을 BufferedReader + split + parseDouble로 읽을 때 / PointFileLoader로 읽을 때의 파싱 시간과
+ *            PointFileLoader로 RTreeImpl에 add 할 때 / packing으로 만들 때의 적재 시간
+ *   trace  : TraceRecorder를 걸지 않았을 때 / 링 버퍼에 기록할 때의 질의 시간
+ * </pre>
+ */
+public class RTreeBench {
+
+	private static final int POINTS = 100_000;
+	private static final double WORLD = 10_000;
+
+	private static double sink; // JIT가 결과를 버리지 못하게
+
+	public static void main(String[] args) {
+		String which = args.length > 0 ? args[0] : "all";
+		if (which.equals("all") || which.equals("alloc")) allocation();
+		if (which.equals("all") || which.equals("fanout")) fanout();
+		if (which.equals("all") || which.equals("float32")) float32();
+		if (which.equals("all") || which.equals("quant")) quantized();
+		if (which.equals("all") || which.equals("approx")) approximate();
+		if (which.equals("all") || which.equals("shard")) sharded();
+		if (which.equals("all") || which.equals("rlink")) rlink();
+		if (which.equals("all") || which.equals("ingest")) ingest();
+		if (which.equals("all") || which.equals("nd")) dimensions();
+		if (which.equals("all") || which.equals("load")) load();
+		if (which.equals("all") || which.equals("trace")) trace();
+	}
+
+	static RTreeImpl randomTree(int n, long seed) {
+		RTreeImpl tree = new RTreeImpl(false);
+		Random rnd = new Random(seed);
+		for (int i = 0; i < n; i++) {
+			tree.add(new Point(rnd.nextDouble() * WORLD, rnd.nextDouble() * WORLD));
+		}
+		return tree;
+	}
+
+	// ---------- alloc ----------
+
+	static void allocation() {
+		RTreeImpl tree = randomTree(POINTS, 42);
+		int queries = 20_000;
+		double[] qx = new double[queries];
+		double[] qy = new double[queries];
+		Random rnd = new Random(7);
+		for (int i = 0; i < queries; i++) {
+			qx[i] = rnd.nextDouble() * WORLD;
+			qy[i] = rnd.nextDouble() * WORLD;
+		}
+		PointVisitor range = (x, y) -> {
+			sink += x;
+			return true;
+		};
+		NeighborVisitor knn = (x, y, d) -> {
+			sink += d;
+			return true;
+		};
+
+		// 워밍업: JIT 컴파일과 스레드별 힙 배열 확장을 끝낸다
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < queries; i++) {
+				tree.search(qx[i], qy[i], qx[i] + 100, qy[i] + 100, range);
+				tree.nearest(qx[i], qy[i], 10, knn);
+				tree.search(new Rectangle(qx[i], qy[i], qx[i] + 100, qy[i] + 100));
+			}
+		}
+
+		long before = allocatedBytes();
+		for (int i = 0; i < queries; i++) tree.search(qx[i], qy[i], qx[i] + 100, qy[i] + 100, range);
+		long visitorSearch = allocatedBytes() - before;
+
+		before = allocatedBytes();
+		for (int i = 0; i < queries; i++) tree.nearest(qx[i], qy[i], 10, knn);
+		long visitorNearest = allocatedBytes() - before;
+
+		before = allocatedBytes();
+		for (int i = 0; i < queries; i++) {
+			java.util.Iterator<Point> it = tree.search(new Rectangle(qx[i], qy[i], qx[i] + 100, qy[i] + 100));
+			while (it.hasNext()) sink += it.next().getX();
+		}
+		long iteratorSearch = allocatedBytes() - before;
+
+		before = allocatedBytes();
+		for (int i = 0; i < queries; i++) {
+			java.util.Iterator<Point> it = tree.nearest(new Point(qx[i], qy[i]), 10);
+			while (it.hasNext()) sink += it.next().getX();
+		}
+		long iteratorNearest = allocatedBytes() - before;
+
+		System.out.printf("[alloc] %d points, %d queries%n", POINTS, queries);
+		System.out.printf("  search(visitor)   : %8.1f B/op%n", (double) visitorSearch / queries);
+		System.out.printf("  nearest(visitor)  : %8.1f B/op%n", (double) visitorNearest / queries);
+		System.out.printf("  search(iterator)  : %8.1f B/op%n", (double) iteratorSearch / queries);
+		System.out.printf("  nearest(iterator) : %8.1f B/op%n", (double) iteratorNearest / queries);
+		System.out.println("  (sink " + (sink != 0) + ")");
+	}
+
+	// ---------- fanout ----------
+
+	static void fanout() {
+		int queries = 20_000;
+		double[] qx = new double[queries];
+		double[] qy = new double[queries];
+		Random rnd = new Random(7);
+		for (int i = 0; i < queries; i++) {
+			qx[i] = rnd.nextDouble() * WORLD;
+			qy[i] = rnd.nextDouble() * WORLD;
+		}
+		boolean vector = NodeScanner.BEST.isVectorized();
+		System.out.printf("[fanout] %d points, %d queries, vector API %s%n", POINTS, queries,
+				vector ? "available" : "not available (scalar only)");
+		System.out.println("      M | search scalar  vector | knn scalar  vector   (ns/op)");
+		for (int m : new int[] { 8, 16, 32, 48, 64 }) {
+			double[] scalar = timeOffHeap(new OffHeapRTree(m, false), qx, qy);
+			double[] simd = vector ? timeOffHeap(new OffHeapRTree(m, true), qx, qy) : null;
+			System.out.printf("  %5d | %13.0f %7s | %10.0f %7s%n", m, scalar[0],
+					simd == null ? "-" : String.format("%.0f", simd[0]), scalar[1],
+					simd == null ? "-" : String.format("%.0f", simd[1]));
+		}
+		System.out.println("  (sink " + (sink != 0) + ")");
+	}
+
+	// ---------- float32 ----------
+
+	static void float32() {
+		int queries = 20_000;
+		double[] qx = new double[queries];
+		double[] qy = new double[queries];
+		Random rnd = new Random(7);
+		for (int i = 0; i < queries; i++) {
+			qx[i] = rnd.nextDouble() * WORLD;
+			qy[i] = rnd.nextDouble() * WORLD;
+		}
+		boolean vector = NodeScanner.BEST.isVectorized();
+		System.out.printf("[float32] %d points, %d queries, %s scanner%n", POINTS, queries, vector ? "vector" : "scalar");
+		System.out.println("      M | KB double  float | search double  float | knn double  float   (ns/op)");
+		for (int m : new int[] { 16, 32, 64 }) {
+			OffHeapRTree wide = new OffHeapRTree(m, vector, false);
+			OffHeapRTree narrow = new OffHeapRTree(m, vector, true);
+			double[] d = timeOffHeap(wide, qx, qy);
+			double[] f = timeOffHeap(narrow, qx, qy);
+			System.out.printf("  %5d | %9d %6d | %13.0f %6.0f | %10.0f %6.0f%n", m, wide.offHeapBytes() / 1024,
+					narrow.offHeapBytes() / 1024, d[0], f[0], d[1], f[1]);
+		}
+		System.out.println("  (sink " + (sink != 0) + ")");
+	}
+
+	// ---------- quant ----------
+
+	static void quantized() {
+		int queries = 20_000;
+		double[] qx = new double[queries];
+		double[] qy = new double[queries];
+		Random rnd = new Random(7);
+		for (int i = 0; i < queries; i++) {
+			qx[i] = rnd.nextDouble() * WORLD;
+			qy[i] = rnd.nextDouble() * WORLD;
+		}
+		boolean vector = NodeScanner.BEST.isVectorized();
+		System.out.printf("[quant] %d points, %d queries, %s scanner%n", POINTS, queries, vector ? "vector" : "scalar");
+		System.out.println("      M  bits | inner KB | search ns/op | knn ns/op");
+		for (int m : new int[] { 16, 32, 64 }) {
+			for (int bits : new int[] { 0, 16, 8 }) {
+				OffHeapRTree tree = new OffHeapRTree(m, vector, false, bits);
+				double[] t = timeOffHeap(tree, qx, qy);
+				System.out.printf("  %5d %5d | %8d | %12.0f | %9.0f%n", m, tree.getMbrBits(), tree.innerNodeBytes() / 1024, t[0], t[1]);
+			}
+		}
+		System.out.println("  (sink " + (sink != 0) + ")");
+	}
+
+	// {search ns/op, nearest ns/op}
+	private static double[] timeOffHeap(OffHeapRTree tree, double[] qx, double[] qy) {
+		Random rnd = new Random(42);
+		for (int i = 0; i < POINTS; i++) tree.add(new Point(rnd.nextDouble() * WORLD, rnd.nextDouble() * WORLD));
+		PointVisitor range = (x, y) -> {
+			sink += x;
+			return true;
+		};
+		NeighborVisitor knn = (x, y, d) -> {
+			sink += d;
+			return true;
+		};
+		int queries = qx.length;
+		for (int round = 0; round < 5; round++) {
+			for (int i = 0; i < queries; i++) {
+				tree.search(qx[i], qy[i], qx[i] + 200, qy[i] + 200, range);
+				tree.nearest(qx[i], qy[i], 10, knn);
+			}
+		}
+		long started = System.nanoTime();
+		for (int i = 0; i < queries; i++) tree.search(qx[i], qy[i], qx[i] + 200, qy[i] + 200, range);
+		long search = System.nanoTime() - started;
+		started = System.nanoTime();
+		for (int i = 0; i < queries; i++) tree.nearest(qx[i], qy[i], 10, knn);
+		long nearest = System.nanoTime() - started;
+		return new double[] { (double) search / queries, (double) nearest / queries };
+	}
+
+	// ---------- approx ----------
+
+	static void approximate() {
+		RTreeImpl tree = randomTree(POINTS, 42);
+		int queries = 20_000, k = 10;
+		double[] qx = new double[queries];
+		double[] qy = new double[queries];
+		Random rnd = new Random(7);
+		for (int i = 0; i < queries; i++) {
+			qx[i] = rnd.nextDouble() * WORLD;
+			qy[i] = rnd.nextDouble() * WORLD;
+		}
+		// 정답 (정확한 kNN)
+		double[][] ex = new double[queries][k], ey = new double[queries][k], ed = new double[queries][k];
+		for (int i = 0; i < queries; i++) {
+			int[] n = { 0 };
+			double[] xs = ex[i], ys = ey[i], ds = ed[i];
+			tree.nearest(qx[i], qy[i], k, (x, y, d) -> {
+				xs[n[0]] = x;
+				ys[n[0]] = y;
+				ds[n[0]++] = d;
+				return true;
+			});
+		}
+		System.out.printf("[approx] %d points, %d queries, k = %d%n", POINTS, queries, k);
+		System.out.println("  mode           | visited/query | recall | worst ratio | ns/op");
+		for (double eps : new double[] { 0, 0.1, 0.25, 0.5, 1, 2 }) {
+			approxRow(tree, String.format("epsilon %.2f", eps), Double.POSITIVE_INFINITY, eps, k, qx, qy, ex, ey, ed);
+		}
+		for (double cut : new double[] { 40, 20 }) {
+			approxRow(tree, String.format("maxDistance %.0f", cut), cut, 0, k, qx, qy, ex, ey, ed);
+		}
+		System.out.println("  (recall = exact neighbours returned / k, worst ratio = max of i-th distance / true i-th distance; sink " + (sink != 0) + ")");
+	}
+
+	private static void approxRow(RTreeImpl tree, String label, double maxDistance, double eps, int k, double[] qx,
+			double[] qy, double[][] ex, double[][] ey, double[][] ed) {
+		int queries = qx.length;
+		NeighborVisitor knn = (x, y, d) -> {
+			sink += d;
+			return true;
+		};
+		for (int i = 0; i < queries; i++) tree.nearest(qx[i], qy[i], k, maxDistance, eps, knn); // 워밍업
+		long visitedBefore = tree.getMetrics().getNodesVisited();
+		long started = System.nanoTime();
+		for (int i = 0; i < queries; i++) tree.nearest(qx[i], qy[i], k, maxDistance, eps, knn);
+		long elapsed = System.nanoTime() - started;
+		double visited = (double) (tree.getMetrics().getNodesVisited() - visitedBefore) / queries;
+
+		long hits = 0;
+		double worst = 1;
+		for (int i = 0; i < queries; i++) {
+			double[] xs = ex[i], ys = ey[i], ds = ed[i];
+			long[] found = { 0 };
+			double[] ratio = { 1 };
+			int[] n = { 0 };
+			tree.nearest(qx[i], qy[i], k, maxDistance, eps, (x, y, d) -> {
+				for (int j = 0; j < k; j++) {
+					if (xs[j] == x && ys[j] == y) found[0]++;
+				}
+				if (ds[n[0]] > 0) ratio[0] = Math.max(ratio[0], d / ds[n[0]]);
+				n[0]++;
+				return true;
+			});
+			hits += found[0];
+			worst = Math.max(worst, ratio[0]);
+		}
+		System.out.printf("  %-14s | %13.1f | %6.3f | %11.3f | %5d%n", label, visited, (double) hits / ((long) queries * k),
+				worst, elapsed / queries);
+	}
+
+	// ---------- shard ----------
+
+	static void sharded() {
+		int queries = 20_000;
+		Random rnd = new Random(42);
+		ArrayList<Point> points = new ArrayList<>(POINTS);
+		for (int i = 0; i < POINTS; i++) points.add(new Point(rnd.nextDouble() * WORLD, rnd.nextDouble() * WORLD));
+		Point[] sources = new Point[queries];
+		Rectangle[] boxes = new Rectangle[queries];
+		for (int i = 0; i < queries; i++) {
+			sources[i] = new Point(rnd.nextDouble() * WORLD, rnd.nextDouble() * WORLD);
+			boxes[i] = new Rectangle(sources[i].getX(), sources[i].getY(), sources[i].getX() + 100, sources[i].getY() + 100);
+		}
+		System.out.printf("[shard] %d points, %d queries, %d cores%n", POINTS, queries, Runtime.getRuntime().availableProcessors());
+		System.out.println("  tree        | search ns/op | knn ns/op");
+		RTreeImpl single = new RTreeImpl(false);
+		for (Point p : points) single.add(p);
+		timeIterators("single", single, boxes, sources);
+		for (int shards : new int[] { 4, 16 }) {
+			ShardedRTree tree = new ShardedRTree(points.subList(0, 1000), shards);
+			for (Point p : points) tree.add(p);
+			timeIterators("kd " + shards, tree, boxes, sources);
+		}
+
+		// 한쪽 구석으로 몰리는 데이터: 격자 샤드의 편차가 재분할로 줄어드는지
+		ShardedRTree grid = new ShardedRTree(new Rectangle(0, 0, WORLD, WORLD), 4, 4);
+		for (int i = 0; i < POINTS; i++) grid.add(new Point(rnd.nextDouble() * WORLD / 8, rnd.nextDouble() * WORLD / 8));
+		double before = grid.skew();
+		grid.rebalance().join();
+		System.out.printf("  grid 4x4 on skewed data: max/mean shard size %.2f -> %.2f after rebalance (sink %s)%n", before,
+				grid.skew(), sink != 0);
+	}
+
+	private static void timeIterators(String label, RTree tree, Rectangle[] boxes, Point[] sources) {
+		int queries = boxes.length;
+		for (int round = 0; round < 2; round++) {
+			long started = System.nanoTime();
+			for (int i = 0; i < queries; i++) sink += tree.search(boxes[i]).hasNext() ? 1 : 0;
+			long search = (System.nanoTime() - started) / queries;
+			started = System.nanoTime();
+			for (int i = 0; i < queries; i++) sink += tree.nearest(sources[i], 10).hasNext() ? 1 : 0;
+			long knn = (System.nanoTime() - started) / queries;
+			if (round == 1) System.out.printf("  %-11s | %12d | %9d%n", label, search, knn);
+		}
+	}
+
+	// ---------- rlink ----------
+
+	static void rlink() {
+		int ops = 200_000;
+		Random rnd = new Random(42);
+		Point[] points = new Point[ops];
+		for (int i = 0; i < ops; i++) points[i] = new Point(rnd.nextDouble() * WORLD, rnd.nextDouble() * WORLD);
+		System.out.printf("[rlink] %d operations per run, %d cores%n", ops, Runtime.getRuntime().availableProcessors());
+		System.out.println("  threads | tree       | add ops/s   | add+knn ops/s");
+		for (int threads : new int[] { 1, 2, 4, 8 }) {
+			for (int round = 0; round < 2; round++) {
+				for (boolean concurrent : new boolean[] { false, true }) {
+					double add = throughput(concurrent ? new ConcurrentRTree() : new RTreeImpl(false), points, threads, false);
+					double mixed = throughput(concurrent ? new ConcurrentRTree() : new RTreeImpl(false), points, threads, true);
+					if (round == 1) System.out.printf("  %7d | %-10s | %11.0f | %13.0f%n", threads, concurrent ? "r-link" : "global", add, mixed);
+				}
+			}
+		}
+		System.out.println("  (sink " + (sink != 0) + ")");
+	}
+
+	// 스레드마다 points를 나눠 add (mixed이면 홀수 번째는 그 자리 kNN). 초당 연산 수
+	private static double throughput(RTree tree, Point[] points, int threads, boolean mixed) {
+		double[] partial = new double[threads];
+		long started = System.nanoTime();
+		runProducers(threads, id -> {
+			double local = 0;
+			for (int i = id; i < points.length; i += threads) {
+				if (mixed && (i & 1) == 1) local += tree.nearest(points[i], 10).hasNext() ? 1 : 0;
+				else tree.add(points[i]);
+			}
+			partial[id] = local;
+		});
+		long elapsed = System.nanoTime() - started;
+		for (double v : partial) sink += v;
+		return points.length * 1e9 / elapsed;
+	}
+
+	// ---------- ingest ----------
+
+	static void ingest() {
+		int ops = 200_000;
+		Random rnd = new Random(42);
+		Point[] points = new Point[ops];
+		for (int i = 0; i < ops; i++) points[i] = new Point(rnd.nextDouble() * WORLD, rnd.nextDouble() * WORLD);
+		System.out.printf("[ingest] %d adds per run, %d cores%n", ops, Runtime.getRuntime().availableProcessors());
+		System.out.println("  producers | direct ops/s | queue ops/s | batches");
+		for (int producers : new int[] { 1, 4, 8 }) {
+			for (int round = 0; round < 2; round++) {
+				double direct = throughput(new RTreeImpl(false), points, producers, false);
+				IngestQueue queue = new IngestQueue(new RTreeImpl(false));
+				long started = System.nanoTime();
+				runProducers(producers, id -> {
+					for (int i = id; i < points.length; i += producers) queue.add(points[i]);
+				});
+				queue.close(); // 받은 요청을 모두 적용할 때까지
+				double queued = points.length * 1e9 / (System.nanoTime() - started);
+				if (round == 1) System.out.printf("  %9d | %12.0f | %11.0f | %7d%n", producers, direct, queued, queue.getBatchCount());
+			}
+		}
+	}
+
+	private static void runProducers(int threads, java.util.function.IntConsumer body) {
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int id = t;
+			workers[t] = new Thread(() -> body.accept(id));
+			workers[t].start();
+		}
+		for (Thread w : workers) {
+			try {
+				w.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	// ---------- nd ----------
+
+	static void dimensions() {
+		int queries = 20_000;
+		System.out.printf("[nd] %d points, %d queries, M = 16%n", POINTS, queries);
+		System.out.println("  dims | geometry    | add ns/op | search ns/op | knn ns/op");
+		for (int d = 2; d <= 3; d++) {
+			Random rnd = new Random(42);
+			PointND[] points = new PointND[POINTS];
+			for (int i = 0; i < POINTS; i++) points[i] = randomPointND(rnd, d);
+			PointND[] sources = new PointND[queries];
+			RectangleND[] boxes = new RectangleND[queries];
+			for (int i = 0; i < queries; i++) {
+				sources[i] = randomPointND(rnd, d);
+				double[] min = sources[i].toArray(), max = min.clone();
+				for (int k = 0; k < d; k++) max[k] += d == 2 ? 100 : 500; // 두 경우 모두 결과가 수 개 정도
+				boxes[i] = new RectangleND(min, max);
+			}
+			for (int round = 0; round < 2; round++) {
+				for (BoxGeometry geometry : new BoxGeometry[] { BoxGeometry.of(d), new GeometryND(d) }) {
+					long started = System.nanoTime();
+					RTreeND tree = new RTreeND(geometry, 16);
+					for (PointND p : points) tree.add(p);
+					long add = (System.nanoTime() - started) / POINTS;
+					for (int i = 0; i < queries; i++) sink += tree.search(boxes[i]).hasNext() ? 1 : 0; // 워밍업
+					started = System.nanoTime();
+					for (int i = 0; i < queries; i++) sink += tree.search(boxes[i]).hasNext() ? 1 : 0;
+					long search = (System.nanoTime() - started) / queries;
+					for (int i = 0; i < queries; i++) sink += tree.nearest(sources[i], 10).hasNext() ? 1 : 0;
+					started = System.nanoTime();
+					for (int i = 0; i < queries; i++) sink += tree.nearest(sources[i], 10).hasNext() ? 1 : 0;
+					long knn = (System.nanoTime() - started) / queries;
+					System.out.printf("  %4d | %-11s | %9d | %12d | %9d%n", d,
+							geometry instanceof GeometryND ? "generic" : "specialized", add, search, knn);
+				}
+			}
+		}
+		System.out.println("  (sink " + (sink != 0) + ")");
+	}
+
+	private static PointND randomPointND(Random rnd, int d) {
+		double[] c = new double[d];
+		for (int k = 0; k < d; k++) c[k] = rnd.nextDouble() * WORLD;
+		return new PointND(c);
+	}
+
+	// ---------- load ----------
+
+	static void load() {
+		int lines = 500_000;
+		try {
+			Path file = Files.createTempFile("rtree-bench", ".tsv");
+			try {
+				Random rnd = new Random(42);
+				try (BufferedWriter out = Files.newBufferedWriter(file)) {
+					for (int i = 0; i < lines; i++) {
+						out.write(String.format("%.6f\t%.6f%n", rnd.nextDouble() * WORLD, rnd.nextDouble() * WORLD));
+					}
+				}
+				System.out.printf("[load] %d lines, %.1f MB, %d cores%n", lines, Files.size(file) / 1e6,
+						Runtime.getRuntime().availableProcessors());
+				System.out.println("  round | split ms | mapped ms | addTo ms | packed ms");
+				PointFileLoader loader = new PointFileLoader(file);
+				for (int round = 0; round < 2; round++) {
+					long started = System.nanoTime();
+					double sum = 0;
+					try (BufferedReader in = Files.newBufferedReader(file)) {
+						String line;
+						while ((line = in.readLine()) != null) {
+							String[] fields = line.split("\t");
+							sum += Double.parseDouble(fields[0]) + Double.parseDouble(fields[1]);
+						}
+					}
+					long split = System.nanoTime() - started;
+					DoubleAdder mappedSum = new DoubleAdder();
+					started = System.nanoTime();
+					loader.stream((xs, ys, count) -> {
+						double s = 0;
+						for (int i = 0; i < count; i++) s += xs[i] + ys[i];
+						mappedSum.add(s);
+					});
+					long mapped = System.nanoTime() - started;
+					sink += sum - mappedSum.sum();
+					started = System.nanoTime();
+					RTreeImpl added = new RTreeImpl(false);
+					loader.addTo(added);
+					long addTo = System.nanoTime() - started;
+					started = System.nanoTime();
+					RTreeImpl packed = loader.loadPacked();
+					long pack = System.nanoTime() - started;
+					sink += added.size() - packed.size();
+					System.out.printf("  %5d | %8.0f | %9.0f | %8.0f | %9.0f%n", round, split / 1e6, mapped / 1e6, addTo / 1e6, pack / 1e6);
+				}
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// ---------- trace ----------
+
+	static void trace() {
+		RTreeImpl tree = randomTree(POINTS, 42);
+		int queries = 20_000;
+		double[] qx = new double[queries];
+		double[] qy = new double[queries];
+		Random rnd = new Random(7);
+		for (int i = 0; i < queries; i++) {
+			qx[i] = rnd.nextDouble() * WORLD;
+			qy[i] = rnd.nextDouble() * WORLD;
+		}
+		TraceRecorder ring = new TraceRecorder(1 << 16);
+		System.out.printf("[trace] %d points, %d queries%n", POINTS, queries);
+		System.out.println("  recorder | search ns/op  knn ns/op  events/op");
+		for (int round = 0; round < 3; round++) {
+			for (TraceRecorder rec : new TraceRecorder[] { null, ring }) {
+				tree.setTraceRecorder(rec);
+				long before = ring.recorded();
+				double[] t = timeVisitors(tree, qx, qy);
+				System.out.printf("  %-8s | %12.0f %10.0f %10.1f%n", rec == null ? "off" : "ring", t[0], t[1],
+						(double) (ring.recorded() - before) / (2 * queries));
+			}
+		}
+		tree.setTraceRecorder(null);
+		System.out.println("  (sink " + (sink != 0) + ")");
+	}
+
+	// {search ns/op, nearest ns/op}
+	private static double[] timeVisitors(RTreeImpl tree, double[] qx, double[] qy) {
+		PointVisitor range = (x, y) -> {
+			sink += x;
+			return true;
+		};
+		NeighborVisitor knn = (x, y, d) -> {
+			sink += d;
+			return true;
+		};
+		int queries = qx.length;
+		long started = System.nanoTime();
+		for (int i = 0; i < queries; i++) tree.search(qx[i], qy[i], qx[i] + 100, qy[i] + 100, range);
+		long search = System.nanoTime() - started;
+		started = System.nanoTime();
+		for (int i = 0; i < queries; i++) tree.nearest(qx[i], qy[i], 10, knn);
+		long nearest = System.nanoTime() - started;
+		return new double[] { (double) search / queries, (double) nearest / queries };
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+}
@@ -1,15 +1,18 @@
 package org.dfpl.dbp.rtree.team2;
 
 import javax.swing.*;
-import java.awt.BasicStroke;
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 public class RTreeImpl implements RTree {
 
@@ -17,84 +20,41 @@ public class RTreeImpl implements RTree {
     private static final int MAX_ENTRIES = 4; // M
     private static final int MIN_ENTRIES = 2; // m
 
-    // ---------- geometry helpers (Rectangle ← leftTop/rightBottom 버전 대응) ----------
-
-    private static double xMin(Rectangle r) {
-        return Math.min(r.getLeftTop().getX(), r.getRightBottom().getX());
-    }
-
-    private static double xMax(Rectangle r) {
-        return Math.max(r.getLeftTop().getX(), r.getRightBottom().getX());
-    }
-
-    private static double yMin(Rectangle r) {
-        return Math.min(r.getLeftTop().getY(), r.getRightBottom().getY());
-    }
-
-    private static double yMax(Rectangle r) {
-        return Math.max(r.getLeftTop().getY(), r.getRightBottom().getY());
-    }
+    // ---------- geometry helpers (Rectangle은 생성 시 정규화된 불변 객체) ----------
 
     private static double area(Rectangle r) {
-        double w = xMax(r) - xMin(r);
-        double h = yMax(r) - yMin(r);
-        if (w < 0) w = 0;
-        if (h < 0) h = 0;
-        return w * h;
+        return r.area();
     }
 
     private static Rectangle rectFrom(Point p) {
-        return new Rectangle(new Point(p.getX(), p.getY()),
-                new Point(p.getX(), p.getY()));
-    }
-
-    private static Rectangle copyRect(Rectangle r) {
-        return new Rectangle(
-                new Point(r.getLeftTop().getX(), r.getLeftTop().getY()),
-                new Point(r.getRightBottom().getX(), r.getRightBottom().getY())
-        );
+        return new Rectangle(p, p);
     }
 
     private static Rectangle unionRect(Rectangle a, Rectangle b) {
-        double nx1 = Math.min(xMin(a), xMin(b));
-        double ny1 = Math.min(yMin(a), yMin(b));
-        double nx2 = Math.max(xMax(a), xMax(b));
-        double ny2 = Math.max(yMax(a), yMax(b));
-        return new Rectangle(new Point(nx1, ny1), new Point(nx2, ny2));
+        return a.union(b);
     }
 
     private static double enlargement(Rectangle a, Rectangle b) {
-        double oldArea = area(a);
-        Rectangle u = unionRect(a, b);
-        double newArea = area(u);
-        return newArea - oldArea;
+        double w = Math.max(a.getMaxX(), b.getMaxX()) - Math.min(a.getMinX(), b.getMinX());
+        double h = Math.max(a.getMaxY(), b.getMaxY()) - Math.min(a.getMinY(), b.getMinY());
+        return w * h - a.area();
     }
 
     private static boolean intersects(Rectangle a, Rectangle b) {
-        if (xMax(a) < xMin(b) || xMin(a) > xMax(b)) return false;
-        if (yMax(a) < yMin(b) || yMin(a) > yMax(b)) return false;
-        return true;
+        return a.intersects(b);
     }
 
     private static boolean rectContains(Rectangle r, Point p) {
-        double x = p.getX();
-        double y = p.getY();
-        return x >= xMin(r) && x <= xMax(r) &&
-                y >= yMin(r) && y <= yMax(r);
+        return r.contains(p);
     }
 
-    // 사각형과 점 사이의 최소 거리 (kNN에서 사용)
-    private static double mindist(Rectangle r, Point p) {
-        double x = p.getX();
-        double y = p.getY();
-        double dx = (x < xMin(r)) ? xMin(r) - x : (x > xMax(r) ? x - xMax(r) : 0);
-        double dy = (y < yMin(r)) ? yMin(r) - y : (y > yMax(r) ? y - yMax(r) : 0);
-        return Math.hypot(dx, dy);
+    // 사각형과 점 사이의 최소 거리 키 (kNN에서 사용)
+    private static double minKey(DistanceMetric m, Rectangle r, double x, double y) {
+        return m.minKey(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY(), x, y);
     }
 
     private static boolean same(Point a, Point b) {
-        return Double.compare(a.getX(), b.getX()) == 0 &&
-                Double.compare(a.getY(), b.getY()) == 0;
+        return a.equals(b);
     }
 
     // ---------- Tree structures ----------
@@ -105,6 +65,7 @@ public class RTreeImpl implements RTree {
         Rectangle mbr;
         Node child;      // null이면 leaf 엔트리
         Point userPoint; // leaf에서만 사용
+        long tags;       // leaf에서만 사용: tagger가 준 점의 태그 비트
 
         Entry(Rectangle m, Node c) { mbr = m; child = c; }
         Entry(Rectangle m, Point p) { mbr = m; userPoint = p; }
@@ -116,25 +77,39 @@ public class RTreeImpl implements RTree {
         ArrayList<Entry> entries = new ArrayList<>();
         Node parent;
         Rectangle mbr; // 이 노드를 커버하는 MBR
+        long tags;     // 서브트리 점들의 태그 비트 OR (요약 필터용)
+        long stamp;    // 시각화 스냅샷을 다시 만들 때마다 증가 (스냅샷 재사용 판단용)
+        boolean dirty; // 마지막 스냅샷 뒤에 바뀌었다. dirty인 노드의 조상도 모두 dirty다
 
         Node(boolean isLeaf) { this.isLeaf = isLeaf; }
 
         void recompute() {
+            // 이미 dirty인 조상에서 멈춘다: 화면이 없으면 아무도 지우지 않으므로 연산마다 O(1)
+            dirty = true;
+            for (Node a = parent; a != null && !a.dirty; a = a.parent) a.dirty = true;
             if (entries.isEmpty()) {
                 mbr = null;
+                tags = 0;
                 return;
             }
-            Rectangle agg = copyRect(entries.get(0).mbr);
+            Rectangle agg = entries.get(0).mbr;
+            long t = isLeaf ? entries.get(0).tags : entries.get(0).child.tags;
             for (int i = 1; i < entries.size(); i++) {
-                agg = unionRect(agg, entries.get(i).mbr);
+                Entry e = entries.get(i);
+                agg = unionRect(agg, e.mbr);
+                t |= isLeaf ? e.tags : e.child.tags;
             }
             mbr = agg;
+            tags = t;
         }
     }
 
     private Node root = new Node(true);
     private int size = 0;
 
+    // 읽기(search/nearest)는 동시에, 쓰기(add/delete)와 재구성 교체는 배타적으로
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
     // ---------- Visualization ----------
 
     private static class VisualFrame extends JFrame {
@@ -146,43 +121,25 @@ public class RTreeImpl implements RTree {
         }
     }
 
-    private class Visual extends JPanel {
-        private final VisualFrame frame;
-
-        // 스냅샷용 노드 (실제 트리와 분리)
-        private class SNode {
-            long id;
-            boolean isLeaf;
-            Rectangle mbr;
-            java.util.List<SNode> children = new ArrayList<>();
-            java.util.List<Point> points  = new ArrayList<>(); // leaf points
-        }
-
-        private SNode snapRoot;
-
-        // 월드 좌표 범위 (자동 스케일링용)
-        double wx1 = 0, wy1 = 0, wx2 = 200, wy2 = 200;
-
-        // 마킹용
-        Rectangle lastQuery;
-        Point lastSource;
-        Point lastInserted, lastDeleted;
-        java.util.Set<Long> visited = Collections.synchronizedSet(new HashSet<>());
-        java.util.Set<Long> pruned  = Collections.synchronizedSet(new HashSet<>());
-        java.util.List<Point> knnSoFar = new ArrayList<>();
+    private class Visual extends TreeView {
+        private final VisualFrame frame; // null이면 화면 없이 동작 (스텝 대기도 하지 않음)
 
         // 스텝 진행용 플래그
         private volatile boolean stepRequested = false;
 
-        Visual() {
+        Visual(boolean enabled) {
+            if (!enabled) {
+                frame = null;
+                return;
+            }
             frame = new VisualFrame();
             frame.setContentPane(this);
 
-            // 키 입력으로 스텝 진행
+            // 키 입력으로 스텝 진행 (숫자 키는 레이어 켜기/끄기)
             frame.addKeyListener(new KeyAdapter() {
                 @Override
                 public void keyPressed(KeyEvent e) {
-                    stepRequested = true;
+                    if (!toggleLayer(e.getKeyChar())) stepRequested = true;
                 }
             });
 
@@ -191,49 +148,56 @@ public class RTreeImpl implements RTree {
             frame.requestFocus();
         }
 
-        void resetMarks() {
-            lastQuery = null;
-            lastSource = null;
-            lastInserted = null;
-            lastDeleted = null;
-            visited.clear();
-            pruned.clear();
-            knnSoFar = new ArrayList<>();
-        }
-
-        private SNode snap(Node n) {
+        // 변경 번호가 같은 하위 트리는 이전 스냅샷을 그대로 쓴다
+        private SNode snap(Node n, java.util.List<Rectangle> dirty) {
             if (n == null) return null;
-            SNode s = new SNode();
-            s.id = n.id;
-            s.isLeaf = n.isLeaf;
-            s.mbr = (n.mbr == null) ? null : copyRect(n.mbr);
+            if (n.dirty) {
+                n.dirty = false;
+                n.stamp++;
+            }
+            SNode prev = cached(n.id);
+            if (prev != null && prev.stamp == n.stamp) return prev;
+            SNode s;
             if (n.isLeaf) {
+                double[] xs = new double[n.entries.size()];
+                double[] ys = new double[n.entries.size()];
+                int k = 0;
                 for (Entry e : n.entries) {
                     if (e.userPoint != null) {
-                        s.points.add(new Point(e.userPoint.getX(), e.userPoint.getY()));
+                        xs[k] = e.userPoint.getX();
+                        ys[k++] = e.userPoint.getY();
                     }
                 }
+                s = new SNode(n.id, n.stamp, n.mbr, Arrays.copyOf(xs, k), Arrays.copyOf(ys, k));
             } else {
+                ArrayList<SNode> children = new ArrayList<>(n.entries.size());
                 for (Entry e : n.entries) {
-                    if (e.child != null) {
-                        SNode childSnap = snap(e.child);
-                        if (childSnap != null) {
-                            s.children.add(childSnap);
-                        }
-                    }
+                    SNode childSnap = snap(e.child, dirty);
+                    if (childSnap != null) children.add(childSnap);
                 }
+                s = new SNode(n.id, n.stamp, n.mbr, children.toArray(new SNode[0]));
             }
+            remember(prev, s, dirty);
             return s;
         }
 
         void update(Node r) {
-            this.snapRoot = snap(r);
+            if (frame == null) return;
+            synchronized (this) { // 읽기 락 아래의 질의끼리 dirty 표시를 함께 지우지 않게
+                ArrayList<Rectangle> dirty = new ArrayList<>();
+                publish(snap(r, dirty), dirty);
+            }
+        }
 
-            repaint();
+        // 화면이 없으면 표시를 지울 것도 없다 (질의마다 읽기 락 아래에서 공유 집합을 비우고 목록을 만들지 않게)
+        @Override
+        void resetMarks() {
+            if (frame != null) super.resetMarks();
         }
 
 
         private void waitForStep() {
+            if (frame == null) return;
             stepRequested = false;
             while (!stepRequested) {
                 try {
@@ -247,16 +211,16 @@ public class RTreeImpl implements RTree {
             waitForStep();
         }
 
-        void setQuery(Rectangle q) { lastQuery = q; }
-        void setSource(Point s) { lastSource = s; }
-        void setLastInserted(Point p) { lastInserted = p; }
-        void setLastDeleted(Point p) { lastDeleted = p; }
-        void setKnn(java.util.List<Point> l) { knnSoFar = new ArrayList<>(l); }
-        void markVisited(Node n) { if (n != null) visited.add(n.id); }
-        void markPruned(Node n) { if (n != null) pruned.add(n.id); }
+        void setQuery(Rectangle q) { if (frame != null) lastQuery = q; }
+        void setSource(Point s) { if (frame != null) lastSource = s; }
+        void setLastInserted(Point p) { if (frame != null) lastInserted = p; }
+        void setLastDeleted(Point p) { if (frame != null) lastDeleted = p; }
+        void setKnn(java.util.List<Point> l) { if (frame != null) knnSoFar = new ArrayList<>(l); }
+        void markVisited(Node n) { if (frame != null && n != null) visited.add(n.id); }
+        void markPruned(Node n) { if (frame != null && n != null) pruned.add(n.id); }
 
         void showPath(java.util.List<Node> path) {
-            if (path == null || path.isEmpty()) return;
+            if (frame == null || path == null || path.isEmpty()) return;
             for (Node n : path) {
                 markVisited(n);
                 redrawStep();
@@ -264,7 +228,7 @@ public class RTreeImpl implements RTree {
         }
 
         void flashSplit(Node left, Node right) {
-            if (left == null && right == null) return;
+            if (frame == null || (left == null && right == null)) return;
             for (int i = 0; i < 2; i++) {
                 if (left != null) markVisited(left);
                 if (right != null) markVisited(right);
@@ -278,7 +242,7 @@ public class RTreeImpl implements RTree {
         }
 
         void flashUnderflow(Node n) {
-            if (n == null) return;
+            if (frame == null || n == null) return;
             for (int i = 0; i < 2; i++) {
                 markPruned(n);
                 redrawStep();
@@ -288,186 +252,229 @@ public class RTreeImpl implements RTree {
         }
 
         void flashReinsert(Point p) {
+            if (frame == null) return;
             setLastInserted(p);
             redrawStep();
             setLastInserted(null);
             redrawStep();
         }
+    }
 
-        private void autoFitSnapshot(SNode r) {
-            if (r == null || r.mbr == null) {
-                wx1 = 0; wy1 = 0; wx2 = 200; wy2 = 200;
-                return;
-            }
-            wx1 = xMin(r.mbr);
-            wy1 = yMin(r.mbr);
-            wx2 = xMax(r.mbr);
-            wy2 = yMax(r.mbr);
-            double dx = (wx2 - wx1) * 0.05 + 1;
-            double dy = (wy2 - wy1) * 0.05 + 1;
-            wx1 -= dx; wy1 -= dy; wx2 += dx; wy2 += dy;
-        }
-
-        private java.awt.Point map(double x, double y, int W, int H) {
-            double nx = (x - wx1) / Math.max(1e-9, (wx2 - wx1));
-            double ny = (y - wy1) / Math.max(1e-9, (wy2 - wy1));
-            int sx = (int) Math.round(40 + nx * (W - 80));
-            int sy = (int) Math.round(H - 40 - ny * (H - 80)); // 위쪽이 +Y
-            return new java.awt.Point(sx, sy);
-        }
-
-        private java.awt.Rectangle toAwtRect(Rectangle r, int W, int H) {
-            java.awt.Point a = map(xMin(r), yMin(r), W, H);
-            java.awt.Point b = map(xMax(r), yMax(r), W, H);
-            int x = Math.min(a.x, b.x);
-            int y = Math.min(a.y, b.y);
-            int w = Math.abs(a.x - b.x);
-            int h = Math.abs(a.y - b.y);
-            return new java.awt.Rectangle(x, y, w, h);
-        }
-
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                    RenderingHints.VALUE_ANTIALIAS_ON);
+    private final Visual visual;
 
-            int W = getWidth();
-            int H = getHeight();
+    // ---------- Metrics ----------
 
-            g2.setColor(Color.white);
-            g2.fillRect(0, 0, W, H);
-            g2.setColor(Color.lightGray);
-            g2.drawRect(20, 20, W - 40, H - 40);
+    private final RTreeMetrics metrics = new RTreeMetrics();
 
-            if (snapRoot != null) {
-                drawNode(g2, snapRoot, 0, W, H);
-            }
+    // ---------- Trace ----------
 
-            // 검색 박스 표시
-            if (lastQuery != null) {
-                g2.setStroke(new BasicStroke(2.5f));
-                g2.setColor(new Color(220, 0, 0, 180));
-                java.awt.Rectangle rr = toAwtRect(lastQuery, W, H);
-                g2.draw(rr);
-                g2.setStroke(new BasicStroke(1f));
-            }
+    private TraceRecorder tracer; // 쓰기 락 아래에서만 바뀐다
 
-            // kNN 소스 점
-            if (lastSource != null) {
-                java.awt.Point ps = map(lastSource.getX(), lastSource.getY(), W, H);
-                g2.setColor(new Color(0, 120, 255));
-                int r = 6;
-                g2.fillOval(ps.x - r, ps.y - r, 2 * r, 2 * r);
-                g2.drawString("source", ps.x + 8, ps.y - 8);
-            }
+    // ---------- Distance ----------
 
-            // 마지막 삽입/삭제 포인트 표시
-            if (lastInserted != null) {
-                java.awt.Point sp = map(lastInserted.getX(), lastInserted.getY(), W, H);
-                g2.setColor(new Color(0, 170, 0));
-                int r = 5;
-                g2.fillOval(sp.x - r, sp.y - r, 2 * r, 2 * r);
+    private DistanceMetric distanceMetric = DistanceMetric.EUCLIDEAN; // 쓰기 락 아래에서만 바뀐다
+    private long traceOp;         // 진행 중인 쓰기 연산 번호 (쓰기 락으로 보호)
+    private ToLongFunction<Point> tagger; // 쓰기 락 아래에서만 바뀐다
 
-                String label = String.format("inserted (%.1f, %.1f)",
-                        lastInserted.getX(), lastInserted.getY());
-                g2.drawString(label, sp.x + 8, sp.y - 8);
-            }
+    // ---------- ctor ----------
+    public RTreeImpl() {
+        this(true);
+    }
 
-            if (lastDeleted != null) {
-                java.awt.Point sp = map(lastDeleted.getX(), lastDeleted.getY(), W, H);
-                g2.setColor(new Color(190, 0, 190));
-                int r = 5;
-                g2.fillOval(sp.x - r, sp.y - r, 2 * r, 2 * r);
+    /**
+     * @param visualize false이면 Swing 화면을 띄우지 않고 스텝 대기 없이 바로 동작한다 (서버/배치용).
+     */
+    public RTreeImpl(boolean visualize) {
+        visual = new Visual(visualize);
+        visual.update(root); // empty tree 표시
+    }
 
-                String label = String.format("deleted (%.1f, %.1f)",
-                        lastDeleted.getX(), lastDeleted.getY());
-                g2.drawString(label, sp.x + 8, sp.y - 8);
-            }
+    /**
+     * 항상 켜져 있는 동작 지표. JMX 노출은 {@link RTreeMetrics#register(String)}.
+     */
+    public RTreeMetrics getMetrics() {
+        return metrics;
+    }
 
-            // kNN 결과 포인트 강조 + 좌표 라벨 표시
-            if (!knnSoFar.isEmpty()) {
-                g2.setColor(new Color(255, 0, 0));
+    /**
+     * 이후 연산의 방문/가지치기/분할/언더플로/재삽입/kNN 확정 과정을 recorder에 남긴다. null이면 끈다.
+     * 시각화 스텝과 달리 연산을 멈추지 않으므로 운영 중 질의를 기록해 두었다가 {@link TraceViewer}로 다시 볼 수 있다.
+     */
+    public void setTraceRecorder(TraceRecorder recorder) {
+        lock.writeLock().lock();
+        try {
+            tracer = recorder;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-                int idx = 1; // kNN 순서 표시 (1st, 2nd, 3rd)
-                for (Point p : knnSoFar) {
-                    java.awt.Point sp = map(p.getX(), p.getY(), W, H);
-                    int r = 5;
+    /**
+     * nearest / withinDistance가 쓰는 거리 척도. 기본은 {@link DistanceMetric#EUCLIDEAN}.
+     * 위경도 점(x = 경도, y = 위도)이면 {@link DistanceMetric#HAVERSINE}으로 바꾸면 대권 거리 순서로 정확히 k개에서 멈춘다.
+     * 트리 구조(삽입/분할)는 척도와 무관하므로 언제든 바꿀 수 있다.
+     */
+    public void setDistanceMetric(DistanceMetric metric) {
+        if (metric == null) throw new IllegalArgumentException("metric must not be null");
+        lock.writeLock().lock();
+        try {
+            distanceMetric = metric;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-                    // 점 찍기
-                    g2.fillOval(sp.x - r, sp.y - r, 2 * r, 2 * r);
+    /**
+     * 점마다 태그 비트(예: 영업 중, 카테고리)를 붙이는 함수를 정한다. 노드는 서브트리 태그의 OR를 요약으로 들고 있어서
+     * {@link #nearest(double, double, int, long, Predicate, NeighborVisitor)}가 필요한 비트가 없는 서브트리를 통째로 건너뛴다.
+     * 태그는 점을 넣을 때 계산되므로, 점의 속성이 바뀌면 이 메서드를 다시 불러 전체를 다시 계산한다 (O(n)). null이면 태그를 쓰지 않는다.
+     */
+    public void setTagger(ToLongFunction<Point> tagger) {
+        lock.writeLock().lock();
+        try {
+            this.tagger = tagger;
+            retag(root);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-                    // label: k(#) (x,y)
-                    String label = String.format("k%d (%.1f, %.1f)", idx, p.getX(), p.getY());
-                    g2.drawString(label, sp.x + 6, sp.y - 6);
+    private Entry pointEntry(Rectangle m, Point p) {
+        Entry e = new Entry(m, p);
+        if (tagger != null) e.tags = tagger.applyAsLong(p);
+        return e;
+    }
 
-                    idx++;
-                }
+    // 서브트리의 태그를 다시 계산한다
+    private void retag(Node n) {
+        long t = 0;
+        for (Entry e : n.entries) {
+            if (n.isLeaf) {
+                e.tags = tagger == null ? 0 : tagger.applyAsLong(e.userPoint);
+                t |= e.tags;
+            } else {
+                retag(e.child);
+                t |= e.child.tags;
             }
         }
+        n.tags = t;
+    }
 
-        private void drawNode(Graphics2D g2, SNode n, int depth, int W, int H) {
-            Color[] pal = {
-                    new Color(0, 0, 0, 30),
-                    new Color(0, 120, 255, 40),
-                    new Color(0, 170, 0, 40),
-                    new Color(255, 140, 0, 40),
-                    new Color(190, 0, 190, 40)
-            };
-            Color fill = pal[depth % pal.length];
+    public DistanceMetric getDistanceMetric() {
+        return distanceMetric;
+    }
 
-            if (n.mbr != null) {
-                java.awt.Rectangle rr = toAwtRect(n.mbr, W, H);
-                g2.setColor(fill);
-                g2.fill(rr);
+    private static void trace(TraceRecorder t, long op, TraceRecorder.Kind kind, Node n) {
+        Rectangle r = n.mbr;
+        long parent = n.parent == null ? 0 : n.parent.id;
+        if (r == null) t.record(op, kind, n.isLeaf, n.id, parent, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        else t.record(op, kind, n.isLeaf, n.id, parent, r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
+    }
 
-                if (pruned.contains(n.id)) g2.setColor(new Color(160, 160, 160));
-                else if (visited.contains(n.id)) g2.setColor(Color.red);
-                else g2.setColor(Color.darkGray);
+    private static void tracePoint(TraceRecorder t, long op, TraceRecorder.Kind kind, long node, double x, double y, double d) {
+        t.record(op, kind, false, node, 0, x, y, d, 0);
+    }
 
-                g2.setStroke(new BasicStroke(1.2f));
-                g2.draw(rr);
-            }
+    private void traceWrite(TraceRecorder.Kind kind, Node n) {
+        if (tracer != null) trace(tracer, traceOp, kind, n);
+    }
 
-            if (n.isLeaf) {
-                g2.setColor(Color.black);
-                for (Point p : n.points) {
-                    java.awt.Point sp = map(p.getX(), p.getY(), W, H);
-                    int d = 4;
-                    g2.fillOval(sp.x - d, sp.y - d, 2 * d, 2 * d);
-                }
-            } else {
-                for (SNode ch : n.children) {
-                    drawNode(g2, ch, depth + 1, W, H);
-                }
-            }
-        }
+    private void tracePath(java.util.List<Node> path) {
+        if (tracer == null) return;
+        for (Node n : path) trace(tracer, traceOp, TraceRecorder.Kind.VISITED, n);
     }
 
-    private final Visual visual = new Visual();
+    private void beginWrite(TraceRecorder.Kind kind, Point p) {
+        if (tracer != null) traceOp = tracer.begin(kind, p.getX(), p.getY(), 0, 0);
+    }
 
-    // ---------- ctor ----------
-    public RTreeImpl() {
-        visual.update(root); // empty tree 표시
+    private void endWrite() {
+        if (tracer != null) tracer.record(traceOp, TraceRecorder.Kind.END, false, 0, 0, 0, 0, 0, 0);
     }
 
     // ---------- Public API 구현 ----------
 
     @Override
     public void add(Point point) {
+        lock.writeLock().lock();
+        try {
+            if (rebuildLog != null) rebuildLog.add(new PendingOp(true, point));
+            doAdd(point);
+            checkQuality();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Point> search(Rectangle rectangle) {
+        lock.readLock().lock();
+        try {
+            return doSearch(rectangle);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Point> nearest(Point source, int maxCount) {
+        lock.readLock().lock();
+        try {
+            return doNearest(source, maxCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Point point) {
+        lock.writeLock().lock();
+        try {
+            if (rebuildLog != null) rebuildLog.add(new PendingOp(false, point));
+            doDelete(point);
+            checkQuality();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 전체 점을 덮는 MBR, 비어 있으면 null
+     */
+    public Rectangle getBounds() {
+        lock.readLock().lock();
+        try {
+            return root.mbr;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void doAdd(Point point) {
         if (contains(point)) return;
+        long started = System.nanoTime();
 
         visual.resetMarks();
         visual.update(root); // 현재 상태 스냅샷
 
+        beginWrite(TraceRecorder.Kind.BEGIN_ADD, point);
         Rectangle m = rectFrom(point);
         java.util.List<Node> path = new ArrayList<>();
         Node leaf = chooseLeaf(root, m, path);
+        tracePath(path);
 
         visual.showPath(path); // 삽입 경로 시각화
 
-        leaf.entries.add(new Entry(m, point));
+        leaf.entries.add(pointEntry(m, point));
         leaf.recompute();
 
         Node split = null;
@@ -481,8 +488,8 @@ public class RTreeImpl implements RTree {
             if (cur.parent == null) {
                 if (nn != null) {
                     Node newRoot = new Node(false);
-                    newRoot.entries.add(new Entry(copyRect(cur.mbr), cur));
-                    newRoot.entries.add(new Entry(copyRect(nn.mbr), nn));
+                    newRoot.entries.add(new Entry(cur.mbr, cur));
+                    newRoot.entries.add(new Entry(nn.mbr, nn));
                     cur.parent = newRoot;
                     nn.parent = newRoot;
                     newRoot.recompute();
@@ -496,7 +503,7 @@ public class RTreeImpl implements RTree {
             Node p = cur.parent;
             for (Entry e : p.entries) {
                 if (e.child == cur) {
-                    e.mbr = copyRect(cur.mbr);
+                    e.mbr = cur.mbr;
                     break;
                 }
             }
@@ -507,7 +514,7 @@ public class RTreeImpl implements RTree {
             visual.redrawStep();
 
             if (nn != null) {
-                p.entries.add(new Entry(copyRect(nn.mbr), nn));
+                p.entries.add(new Entry(nn.mbr, nn));
                 nn.parent = p;
                 p.recompute();
 
@@ -526,13 +533,19 @@ public class RTreeImpl implements RTree {
         }
 
         size++;
+        endWrite();
+        metrics.recordUpdate(RTreeMetrics.Operation.ADD, System.nanoTime() - started);
         visual.setLastInserted(point);
         visual.update(root);
         visual.redrawStep();
     }
 
-    @Override
-    public Iterator<Point> search(Rectangle rectangle) {
+    private Iterator<Point> doSearch(Rectangle rectangle) {
+        long started = System.nanoTime();
+        int visitedCount = 0, prunedCount = 0;
+        TraceRecorder t = tracer;
+        long op = t == null ? 0 : t.begin(TraceRecorder.Kind.BEGIN_SEARCH,
+                rectangle.getMinX(), rectangle.getMinY(), rectangle.getMaxX(), rectangle.getMaxY());
         visual.resetMarks();
         visual.setQuery(rectangle);
         visual.update(root);
@@ -546,12 +559,16 @@ public class RTreeImpl implements RTree {
             if (n == null || n.mbr == null) continue;
 
             if (!intersects(n.mbr, rectangle)) {
+                prunedCount++;
+                if (t != null) trace(t, op, TraceRecorder.Kind.PRUNED, n);
                 visual.markPruned(n);
                 visual.update(root);
                 visual.redrawStep();
                 continue;
             }
 
+            visitedCount++;
+            if (t != null) trace(t, op, TraceRecorder.Kind.VISITED, n);
             visual.markVisited(n);
             visual.update(root);
             visual.redrawStep();
@@ -561,6 +578,7 @@ public class RTreeImpl implements RTree {
                     Point p = e.userPoint;
                     if (p != null && rectContains(rectangle, p)) {
                         results.add(p);
+                        if (t != null) tracePoint(t, op, TraceRecorder.Kind.RESULT, n.id, p.getX(), p.getY(), 0);
                     }
                 }
             } else {
@@ -569,6 +587,8 @@ public class RTreeImpl implements RTree {
                             intersects(e.child.mbr, rectangle)) {
                         dq.addLast(e.child);
                     } else if (e.child != null) {
+                        prunedCount++;
+                        if (t != null) trace(t, op, TraceRecorder.Kind.PRUNED, e.child);
                         visual.markPruned(e.child);
                         visual.update(root);
                         visual.redrawStep();
@@ -576,11 +596,13 @@ public class RTreeImpl implements RTree {
                 }
             }
         }
+        if (t != null) t.record(op, TraceRecorder.Kind.END, false, 0, 0, visitedCount, prunedCount, 0, 0);
+        metrics.recordQuery(RTreeMetrics.Operation.SEARCH, visitedCount, prunedCount,
+                System.nanoTime() - started);
         return results.iterator();
     }
 
-    @Override
-    public Iterator<Point> nearest(Point source, int maxCount) {
+    private Iterator<Point> doNearest(Point source, int maxCount) {
         if (source == null || maxCount <= 0) {
             return Collections.<Point>emptyList().iterator();
         }
@@ -588,6 +610,10 @@ public class RTreeImpl implements RTree {
             return Collections.<Point>emptyList().iterator();
         }
 
+        long started = System.nanoTime();
+        int visitedCount = 0;
+        TraceRecorder t = tracer;
+        long op = t == null ? 0 : t.begin(TraceRecorder.Kind.BEGIN_NEAREST, source.getX(), source.getY(), maxCount, 0);
         visual.resetMarks();
         visual.setSource(source);
         visual.update(root);
@@ -595,11 +621,13 @@ public class RTreeImpl implements RTree {
         ArrayList<Point> knn = new ArrayList<>();
         double sx = source.getX();
         double sy = source.getY();
+        DistanceMetric metric = distanceMetric;
 
+        // 키는 거리와 순서가 같은 척도 키 (유클리드면 제곱 거리)
         PriorityQueue<Object[]> pq =
                 new PriorityQueue<>(Comparator.comparingDouble(a -> (double) a[0]));
 
-        pq.add(new Object[]{ mindist(root.mbr, source), 0, root });
+        pq.add(new Object[]{ minKey(metric, root.mbr, sx, sy), 0, root });
 
         while (!pq.isEmpty() && knn.size() < maxCount) {
             Object[] it = pq.poll();
@@ -609,6 +637,8 @@ public class RTreeImpl implements RTree {
                 Node n = (Node) it[2];
                 if (n == null || n.mbr == null) continue;
 
+                visitedCount++;
+                if (t != null) trace(t, op, TraceRecorder.Kind.VISITED, n);
                 visual.markVisited(n);
                 visual.update(root);
                 visual.redrawStep(); // 노드 팝 단계
@@ -617,13 +647,13 @@ public class RTreeImpl implements RTree {
                     for (Entry e : n.entries) {
                         Point p = e.userPoint;
                         if (p == null) continue;
-                        double d = Math.hypot(sx - p.getX(), sy - p.getY());
+                        double d = metric.key(sx, sy, p.getX(), p.getY());
                         pq.add(new Object[]{ d, 1, e });
                     }
                 } else {
                     for (Entry e : n.entries) {
                         if (e.child != null && e.child.mbr != null) {
-                            double d = mindist(e.child.mbr, source);
+                            double d = minKey(metric, e.child.mbr, sx, sy);
                             pq.add(new Object[]{ d, 0, e.child });
                         }
                     }
@@ -632,6 +662,10 @@ public class RTreeImpl implements RTree {
                 Entry e = (Entry) it[2];
                 if (e.userPoint != null) {
                     knn.add(e.userPoint);
+                    if (t != null) {
+                        tracePoint(t, op, TraceRecorder.Kind.KNN_CONFIRMED, 0,
+                                e.userPoint.getX(), e.userPoint.getY(), metric.toDistance((double) it[0]));
+                    }
                     visual.setKnn(knn);
                     visual.update(root);
                     visual.redrawStep(); // NN 확정 단계
@@ -639,20 +673,35 @@ public class RTreeImpl implements RTree {
             }
         }
 
+        // 큐에 남은 노드는 방문하지 않고 가지치기된 것으로 센다
+        int prunedCount = 0;
+        for (Object[] it : pq) {
+            if ((int) it[1] != 0) continue;
+            prunedCount++;
+            if (t != null) trace(t, op, TraceRecorder.Kind.PRUNED, (Node) it[2]);
+        }
+        if (t != null) t.record(op, TraceRecorder.Kind.END, false, 0, 0, visitedCount, prunedCount, 0, 0);
+        metrics.recordQuery(RTreeMetrics.Operation.NEAREST, visitedCount, prunedCount,
+                System.nanoTime() - started);
         return knn.iterator();
     }
 
-    @Override
-    public void delete(Point point) {
+    private void doDelete(Point point) {
         if (point == null) return;
+        long started = System.nanoTime();
 
         visual.resetMarks();
         visual.update(root);   // 현재 상태 먼저 그림
 
         // 1. 리프 찾기 + 경로 하이라이트
+        beginWrite(TraceRecorder.Kind.BEGIN_DELETE, point);
         List<Node> path = new ArrayList<>();
         Node leaf = findLeafTrace(root, point, path);
-        if (leaf == null) return;
+        tracePath(path);
+        if (leaf == null) {
+            endWrite();
+            return;
+        }
         visual.showPath(path);
 
         // 2. 리프에서 엔트리 제거
@@ -663,7 +712,10 @@ public class RTreeImpl implements RTree {
                 break;
             }
         }
-        if (target == null) return;
+        if (target == null) {
+            endWrite();
+            return;
+        }
         leaf.entries.remove(target);
         size--;
 
@@ -681,6 +733,8 @@ public class RTreeImpl implements RTree {
             root.parent = null;
         }
         if (root != null) root.recompute();
+        endWrite();
+        metrics.recordUpdate(RTreeMetrics.Operation.DELETE, System.nanoTime() - started);
 
         // 6. 마지막으로 deleted 마커 끄고, 최종 상태 한 번 보여주기
         visual.setLastDeleted(null);
@@ -688,11 +742,819 @@ public class RTreeImpl implements RTree {
         visual.redrawStep();
     }
 
+    // ---------- Allocation-free visitor API ----------
+
+    // 방문 중 재사용하는 스레드별 작업 공간. 힙 배열은 필요할 때만 커지므로 steady state에서는 할당이 없다.
+    private static final class Scratch {
+        int visited;
+        int pruned;
+        TraceRecorder trace; // null이면 기록하지 않음
+        long op;
+        double[] keys = new double[64];
+        Object[] items = new Object[64];
+        int heapSize;
+        double topKey;
+        double[] best = new double[16]; // 근사 kNN: 지금까지 넣은 점 키 중 작은 것들 (최대 힙)
+        int bestSize;
+
+        // 근사 kNN의 k번째 후보를 갱신한다. k개가 찬 뒤 k번째 키가 바뀌었으면 true
+        boolean offerBest(double key, int k) {
+            if (bestSize < k) {
+                if (bestSize == best.length) best = Arrays.copyOf(best, bestSize * 2);
+                int i = bestSize++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (best[parent] >= key) break;
+                    best[i] = best[parent];
+                    i = parent;
+                }
+                best[i] = key;
+                return bestSize == k;
+            }
+            if (key >= best[0]) return false;
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= k) break;
+                if (c + 1 < k && best[c + 1] > best[c]) c++;
+                if (key >= best[c]) break;
+                best[i] = best[c];
+                i = c;
+            }
+            best[i] = key;
+            return true;
+        }
 
+        void push(double key, Object item) {
+            if (heapSize == keys.length) {
+                keys = Arrays.copyOf(keys, heapSize * 2);
+                items = Arrays.copyOf(items, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                items[i] = items[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            items[i] = item;
+        }
 
-    @Override
-    public boolean isEmpty() {
-        return size == 0;
+        Object pop() {
+            Object top = items[0];
+            topKey = keys[0];
+            int last = --heapSize;
+            double key = keys[last];
+            Object item = items[last];
+            items[last] = null;
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= last) break;
+                if (c + 1 < last && keys[c + 1] < keys[c]) c++;
+                if (key <= keys[c]) break;
+                keys[i] = keys[c];
+                items[i] = items[c];
+                i = c;
+            }
+            if (last > 0) {
+                keys[i] = key;
+                items[i] = item;
+            }
+            return top;
+        }
+
+        void clearHeap() {
+            Arrays.fill(items, 0, heapSize, null);
+            heapSize = 0;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * [minX, maxX] x [minY, maxY] (경계 포함) 안의 점을 좌표로 visitor에 넘긴다.
+     * 결과 리스트, Iterator, Point를 만들지 않으며 시각화 스텝도 거치지 않는다.
+     */
+    public void search(double minX, double minY, double maxX, double maxY, PointVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            long started = System.nanoTime();
+            Scratch s = SCRATCH.get();
+            s.visited = 0;
+            s.pruned = 0;
+            s.trace = tracer;
+            if (s.trace != null) s.op = s.trace.begin(TraceRecorder.Kind.BEGIN_SEARCH, minX, minY, maxX, maxY);
+            if (root.mbr != null) visitRange(root, minX, minY, maxX, maxY, visitor, s);
+            if (s.trace != null) {
+                s.trace.record(s.op, TraceRecorder.Kind.END, false, 0, 0, s.visited, s.pruned, 0, 0);
+                s.trace = null;
+            }
+            metrics.recordQuery(RTreeMetrics.Operation.SEARCH, s.visited, s.pruned, System.nanoTime() - started);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * (x, y)에서 가까운 순서로 최대 maxCount개의 점을 좌표와 거리로 visitor에 넘긴다.
+     * 우선순위 큐는 스레드별로 재사용하는 배열 힙이므로 steady state에서 할당이 없다.
+     */
+    public void nearest(double x, double y, int maxCount, NeighborVisitor visitor) {
+        if (maxCount <= 0) return;
+        bestFirst(x, y, maxCount, Double.POSITIVE_INFINITY, 0, 0, null, visitor);
+    }
+
+    /**
+     * 거리 maxDistance 이내(경계 포함)의 점만 가까운 순서로 최대 maxCount개 넘긴다. MBR까지 거리의 하한이 maxDistance를 넘는
+     * 노드와 점은 큐에 넣지 않으므로, 근처에 점이 적을 때 멀리까지 뒤지지 않는다.
+     */
+    public void nearest(double x, double y, int maxCount, double maxDistance, NeighborVisitor visitor) {
+        nearest(x, y, maxCount, maxDistance, 0, visitor);
+    }
+
+    /**
+     * 근사 kNN. i번째로 넘기는 점까지의 거리는 실제 i번째 최근접 거리의 (1 + epsilon)배를 넘지 않는다.
+     * 지금까지 본 점 중 k번째 거리를 d라 할 때 MBR까지 거리의 하한이 d / (1 + epsilon)보다 먼 노드는 열지 않는다.
+     * epsilon이 0이면 정확한 kNN과 같다.
+     *
+     * @param maxDistance 이 거리보다 먼 점은 넘기지 않는다 (제한이 없으면 {@code Double.POSITIVE_INFINITY})
+     */
+    public void nearest(double x, double y, int maxCount, double maxDistance, double epsilon, NeighborVisitor visitor) {
+        if (!(epsilon >= 0)) throw new IllegalArgumentException("epsilon must be >= 0: " + epsilon);
+        if (maxCount <= 0 || !(maxDistance >= 0)) return;
+        bestFirst(x, y, maxCount, maxDistance, epsilon, 0, null, visitor);
+    }
+
+    /**
+     * {@link #nearest(double, double, int, double, double, NeighborVisitor)}의 Point 버전. 시각화 스텝은 거치지 않는다.
+     */
+    public Iterator<Point> nearest(Point source, int maxCount, double maxDistance, double epsilon) {
+        if (source == null || maxCount <= 0) return Collections.<Point>emptyList().iterator();
+        ArrayList<Point> out = new ArrayList<>(Math.min(maxCount, 1024));
+        nearest(source.getX(), source.getY(), maxCount, maxDistance, epsilon, (px, py, d) -> out.add(new Point(px, py)));
+        return out.iterator();
+    }
+
+    /**
+     * filter를 통과하는 점 중에서 (x, y)에 가까운 순서로 최대 maxCount개를 visitor에 넘긴다. 걸러진 점은 maxCount에 세지 않는다.
+     * filter는 best-first 순회 안에서 점이 거리 순서로 확정될 때만 부르므로 필요한 만큼만 불린다.
+     *
+     * @param requiredTags 이 비트가 모두 있는 점만 찾는다 ({@link #setTagger}의 태그). 요약에 비트가 없는 노드는 열지 않는다. 0이면 태그 무시
+     * @param filter       null이면 모두 통과
+     */
+    public void nearest(double x, double y, int maxCount, long requiredTags, Predicate<? super Point> filter,
+                        NeighborVisitor visitor) {
+        if (maxCount <= 0) return;
+        bestFirst(x, y, maxCount, Double.POSITIVE_INFINITY, 0, requiredTags, filter, visitor);
+    }
+
+    /**
+     * filter를 통과하는 점 중 source에서 가까운 순서로 최대 maxCount개를 반환한다. 시각화 스텝은 거치지 않는다.
+     */
+    public Iterator<Point> nearest(Point source, int maxCount, Predicate<? super Point> filter) {
+        return nearest(source, maxCount, 0, filter);
+    }
+
+    /**
+     * requiredTags 비트가 모두 있고 filter를 통과하는 점 중 source에서 가까운 순서로 최대 maxCount개를 반환한다.
+     */
+    public Iterator<Point> nearest(Point source, int maxCount, long requiredTags, Predicate<? super Point> filter) {
+        if (source == null || maxCount <= 0) return Collections.<Point>emptyList().iterator();
+        ArrayList<Point> out = new ArrayList<>(maxCount);
+        nearest(source.getX(), source.getY(), maxCount, requiredTags, filter, (px, py, d) -> out.add(new Point(px, py)));
+        return out.iterator();
+    }
+
+    /**
+     * (x, y)에서 거리 radius 이내(경계 포함)의 점을 가까운 순서로 visitor에 넘긴다. 거리는 {@link #getDistanceMetric()} 기준.
+     * MBR까지 거리의 하한이 radius를 넘는 노드는 열지 않는다.
+     */
+    public void withinDistance(double x, double y, double radius, NeighborVisitor visitor) {
+        if (!(radius >= 0)) return;
+        bestFirst(x, y, Integer.MAX_VALUE, radius, 0, 0, null, visitor);
+    }
+
+    /**
+     * source에서 거리 radius 이내(경계 포함)의 점을 가까운 순서로 반환한다. 시각화 스텝은 거치지 않는다.
+     */
+    public Iterator<Point> withinDistance(Point source, double radius) {
+        if (source == null) return Collections.<Point>emptyList().iterator();
+        ArrayList<Point> out = new ArrayList<>();
+        withinDistance(source.getX(), source.getY(), radius, (px, py, d) -> out.add(new Point(px, py)));
+        return out.iterator();
+    }
+
+    // 거리 maxDistance 이내만 보는 best-first 탐색. 태그와 filter를 통과한 점을 처음 maxCount개 확정하면 멈춘다.
+    // epsilon > 0이면 (filter 없이) 지금까지 본 k번째 점 거리의 1/(1+epsilon)보다 먼 노드를 버린다
+    private void bestFirst(double x, double y, int maxCount, double maxDistance, double epsilon, long requiredTags,
+                           Predicate<? super Point> filter, NeighborVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            if (requiredTags != 0 && tagger == null) throw new IllegalStateException("no tagger set");
+            long started = System.nanoTime();
+            DistanceMetric metric = distanceMetric;
+            // 키 변환의 반올림으로 경계 위의 점을 놓치지 않게 가지치기는 살짝 넉넉하게, 확정은 거리로 정확히 자른다
+            double maxKey = maxDistance == Double.POSITIVE_INFINITY ? maxDistance : metric.toKey(maxDistance) * (1 + 1e-9);
+            Scratch s = SCRATCH.get();
+            s.visited = 0;
+            s.pruned = 0;
+            boolean approximate = epsilon > 0;
+            s.bestSize = 0;
+            double nodeKey = maxKey; // 이보다 먼 노드는 열지 않는다 (근사 모드에서 줄어든다)
+            TraceRecorder t = tracer;
+            long op = t == null ? 0 : t.begin(TraceRecorder.Kind.BEGIN_NEAREST, x, y, maxCount, 0);
+            if (root.mbr != null && minKey(metric, root.mbr, x, y) <= maxKey && (root.tags & requiredTags) == requiredTags) {
+                s.push(minKey(metric, root.mbr, x, y), root);
+                int found = 0;
+                while (s.heapSize > 0) {
+                    Object item = s.pop();
+                    if (item instanceof Node) {
+                        Node n = (Node) item;
+                        if (s.topKey > nodeKey) { // 큐에 넣은 뒤 근사 기준이 좁아졌다
+                            s.pruned++;
+                            if (t != null) trace(t, op, TraceRecorder.Kind.PRUNED, n);
+                            continue;
+                        }
+                        s.visited++;
+                        if (t != null) trace(t, op, TraceRecorder.Kind.VISITED, n);
+                        ArrayList<Entry> es = n.entries;
+                        for (int i = 0, c = es.size(); i < c; i++) {
+                            Entry e = es.get(i);
+                            if (n.isLeaf) {
+                                if ((e.tags & requiredTags) != requiredTags) continue;
+                                Point p = e.userPoint;
+                                double k = metric.key(x, y, p.getX(), p.getY());
+                                if (k <= maxKey) {
+                                    s.push(k, p);
+                                    if (approximate && s.offerBest(k, maxCount)) {
+                                        nodeKey = Math.min(maxKey, metric.toKey(metric.toDistance(s.best[0]) / (1 + epsilon)));
+                                    }
+                                }
+                            } else if (e.child.mbr != null) {
+                                double k = minKey(metric, e.child.mbr, x, y);
+                                if (k <= nodeKey && (e.child.tags & requiredTags) == requiredTags) {
+                                    s.push(k, e.child);
+                                } else {
+                                    s.pruned++;
+                                    if (t != null) trace(t, op, TraceRecorder.Kind.PRUNED, e.child);
+                                }
+                            }
+                        }
+                    } else {
+                        Point p = (Point) item;
+                        double d = metric.toDistance(s.topKey);
+                        if (d > maxDistance) break;
+                        if (filter != null && !filter.test(p)) continue;
+                        if (t != null) tracePoint(t, op, TraceRecorder.Kind.KNN_CONFIRMED, 0, p.getX(), p.getY(), d);
+                        if (!visitor.visit(p.getX(), p.getY(), d) || ++found >= maxCount) break;
+                    }
+                }
+                for (int i = 0; i < s.heapSize; i++) {
+                    if (!(s.items[i] instanceof Node)) continue;
+                    s.pruned++;
+                    if (t != null) trace(t, op, TraceRecorder.Kind.PRUNED, (Node) s.items[i]);
+                }
+                s.clearHeap();
+            }
+            if (t != null) t.record(op, TraceRecorder.Kind.END, false, 0, 0, s.visited, s.pruned, 0, 0);
+            metrics.recordQuery(RTreeMetrics.Operation.NEAREST, s.visited, s.pruned, System.nanoTime() - started);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean visitRange(Node n, double minX, double minY, double maxX, double maxY,
+                                      PointVisitor visitor, Scratch s) {
+        s.visited++;
+        if (s.trace != null) trace(s.trace, s.op, TraceRecorder.Kind.VISITED, n);
+        ArrayList<Entry> es = n.entries;
+        if (n.isLeaf) {
+            for (int i = 0, c = es.size(); i < c; i++) {
+                Point p = es.get(i).userPoint;
+                double x = p.getX(), y = p.getY();
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    if (s.trace != null) tracePoint(s.trace, s.op, TraceRecorder.Kind.RESULT, n.id, x, y, 0);
+                    if (!visitor.visit(x, y)) return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0, c = es.size(); i < c; i++) {
+            Node child = es.get(i).child;
+            Rectangle r = child.mbr;
+            if (r == null || r.getMaxX() < minX || r.getMinX() > maxX || r.getMaxY() < minY || r.getMinY() > maxY) {
+                s.pruned++;
+                if (s.trace != null) trace(s.trace, s.op, TraceRecorder.Kind.PRUNED, child);
+                continue;
+            }
+            if (!visitRange(child, minX, minY, maxX, maxY, visitor, s)) return false;
+        }
+        return true;
+    }
+
+    // ---------- All nearest neighbors ----------
+
+    /**
+     * 트리의 모든 점에 대해 자신을 뺀 가장 가까운 k개의 점을 구해 visitor에 넘긴다. 거리는 {@link #getDistanceMetric()} 기준.
+     * <p>
+     * 점마다 루트에서 다시 nearest를 도는 대신, 리프 하나의 점들을 한 번의 best-first 순회로 함께 처리한다. 노드는 리프의 점들 중
+     * 가장 가까운 것의 거리 순서로 열고, 모든 점에 대해 현재 k번째 거리보다 먼 노드는 열지 않는다.
+     * 리프들은 서브트리 단위로 ForkJoin 공용 풀에서 병렬로 처리하므로 visitor는 여러 스레드에서 동시에 불린다.
+     * 끝날 때까지 읽기 락을 잡고 있으므로 그동안 add/delete는 기다린다.
+     */
+    public void allNearest(int k, AllNearestVisitor visitor) {
+        if (k <= 0) return;
+        lock.readLock().lock();
+        try {
+            if (root.mbr == null) return;
+            ForkJoinPool.commonPool().invoke(new AllNearestTask(root, root, k, distanceMetric, visitor));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 리프의 부모까지 내려가며 서브트리마다 fork 한다. 리프의 부모 하나(리프 M개)가 작업 하나
+    @SuppressWarnings("serial") // 풀 안에서만 쓰고 직렬화하지 않는다
+    private static final class AllNearestTask extends RecursiveAction {
+        private final Node node, root;
+        private final int k;
+        private final DistanceMetric metric;
+        private final AllNearestVisitor visitor;
+
+        AllNearestTask(Node node, Node root, int k, DistanceMetric metric, AllNearestVisitor visitor) {
+            this.node = node;
+            this.root = root;
+            this.k = k;
+            this.metric = metric;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.isLeaf) {
+                leafNearest(node, root, k, metric, visitor);
+                return;
+            }
+            if (node.entries.get(0).child.isLeaf) {
+                for (Entry e : node.entries) leafNearest(e.child, root, k, metric, visitor);
+                return;
+            }
+            List<AllNearestTask> tasks = new ArrayList<>(node.entries.size());
+            for (Entry e : node.entries) tasks.add(new AllNearestTask(e.child, root, k, metric, visitor));
+            invokeAll(tasks);
+        }
+    }
+
+    // leaf의 점들을 한 번의 순회로 처리한다. 노드 큐는 스레드별 Scratch 힙을 쓴다
+    private static void leafNearest(Node leaf, Node root, int k, DistanceMetric metric, AllNearestVisitor visitor) {
+        ArrayList<Entry> own = leaf.entries;
+        int n = own.size();
+        if (n == 0) return;
+        Neighbors[] best = new Neighbors[n];
+        for (int i = 0; i < n; i++) best[i] = new Neighbors(own.get(i).userPoint, k);
+        // 같은 리프의 점끼리 먼저 재서 처음부터 가지치기 기준을 좁혀 둔다
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                Point q = own.get(j).userPoint;
+                double key = metric.key(best[i].x, best[i].y, q.getX(), q.getY());
+                best[i].offer(key, q);
+                best[j].offer(key, best[i].point);
+            }
+        }
+
+        Scratch s = SCRATCH.get();
+        s.push(0, root);
+        while (s.heapSize > 0) {
+            Node node = (Node) s.pop();
+            if (s.topKey > maxBound(best)) break; // 남은 노드는 어느 점에도 더 가깝지 않다
+            if (node == leaf) continue;
+            ArrayList<Entry> es = node.entries;
+            if (node.isLeaf) {
+                for (Neighbors b : best) {
+                    if (minKey(metric, node.mbr, b.x, b.y) > b.bound()) continue;
+                    for (int j = 0, c = es.size(); j < c; j++) {
+                        Point q = es.get(j).userPoint;
+                        b.offer(metric.key(b.x, b.y, q.getX(), q.getY()), q);
+                    }
+                }
+                continue;
+            }
+            for (int j = 0, c = es.size(); j < c; j++) {
+                Node child = es.get(j).child;
+                if (child.mbr == null) continue;
+                // 어떤 점의 현재 k번째 거리 안에 들어오는 자식만, 그런 점들 중 가장 가까운 거리로 넣는다
+                double key = Double.POSITIVE_INFINITY;
+                for (Neighbors b : best) {
+                    double mk = minKey(metric, child.mbr, b.x, b.y);
+                    if (mk <= b.bound() && mk < key) key = mk;
+                }
+                if (key != Double.POSITIVE_INFINITY) s.push(key, child);
+            }
+        }
+        s.clearHeap();
+
+        for (Neighbors b : best) b.emit(metric, visitor);
+    }
+
+    private static double maxBound(Neighbors[] best) {
+        double max = 0;
+        for (Neighbors b : best) max = Math.max(max, b.bound());
+        return max;
+    }
+
+    // 점 하나의 이웃 후보 k개 (키 기준 최대 힙, 맨 위가 현재 k번째)
+    private static final class Neighbors {
+        final Point point;
+        final double x, y;
+        final double[] keys;
+        final Point[] points;
+        int size;
+
+        Neighbors(Point point, int k) {
+            this.point = point;
+            this.x = point.getX();
+            this.y = point.getY();
+            keys = new double[k];
+            points = new Point[k];
+        }
+
+        double bound() {
+            return size < keys.length ? Double.POSITIVE_INFINITY : keys[0];
+        }
+
+        void offer(double key, Point p) {
+            if (size < keys.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (keys[parent] >= key) break;
+                    keys[i] = keys[parent];
+                    points[i] = points[parent];
+                    i = parent;
+                }
+                keys[i] = key;
+                points[i] = p;
+            } else if (key < keys[0]) {
+                siftDown(key, p, size);
+            }
+        }
+
+        // 맨 위를 (key, p)로 바꾸고 앞쪽 n칸 안에서 내려 보낸다
+        private void siftDown(double key, Point p, int n) {
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= n) break;
+                if (c + 1 < n && keys[c + 1] > keys[c]) c++;
+                if (key >= keys[c]) break;
+                keys[i] = keys[c];
+                points[i] = points[c];
+                i = c;
+            }
+            keys[i] = key;
+            points[i] = p;
+        }
+
+        // 힙 정렬로 가까운 순서를 만들어 넘긴다
+        void emit(DistanceMetric metric, AllNearestVisitor visitor) {
+            Point[] out = new Point[size];
+            double[] distances = new double[size];
+            for (int last = size - 1; last >= 0; last--) {
+                out[last] = points[0];
+                distances[last] = metric.toDistance(keys[0]);
+                siftDown(keys[last], points[last], last);
+            }
+            visitor.visit(point, out, distances);
+        }
+    }
+
+    // ---------- Quality stats / re-optimization ----------
+
+    private static final ExecutorService OPTIMIZER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "rtree-optimizer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 재구성 중에 들어온 변경. 새 트리로 교체한 직후 그대로 다시 적용한다.
+    private static final class PendingOp {
+        final boolean add;
+        final Point point;
+
+        PendingOp(boolean add, Point point) {
+            this.add = add;
+            this.point = point;
+        }
+    }
+
+    private List<PendingOp> rebuildLog;          // null이 아니면 재구성 진행 중 (쓰기 락으로 보호)
+    private final Object optimizeMonitor = new Object();
+    private CompletableFuture<TreeStats> optimizing;
+    private double autoOptimizeQuality = 0;      // 0이면 자동 재구성 끔
+    private int autoOptimizeEvery = 0;
+    private int mutationsSinceCheck = 0;
+
+    /**
+     * 높이, 레벨별 노드 수/채움률, MBR 겹침, dead space, 평균 margin을 계산한다. O(노드 수)
+     */
+    public TreeStats stats() {
+        lock.readLock().lock();
+        try {
+            return computeStats();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 트리를 백그라운드에서 Hilbert 순서로 다시 packing하고, 완성되면 쓰기 락 아래에서 루트를 한 번에 교체한다.
+     * 재구성 도중의 add/delete는 기록해 두었다가 교체 직후 새 트리에 다시 적용한다.
+     * 이미 재구성 중이면 진행 중인 작업의 future를 반환한다.
+     *
+     * @return 교체가 끝난 뒤의 통계
+     */
+    public CompletableFuture<TreeStats> optimize() {
+        CompletableFuture<TreeStats> result = new CompletableFuture<>();
+        synchronized (optimizeMonitor) {
+            if (optimizing != null) return optimizing;
+            optimizing = result;
+        }
+
+        List<Point> points = new ArrayList<>(size);
+        Rectangle bounds;
+        lock.readLock().lock();
+        try {
+            collectPoints(root, points);
+            bounds = root.mbr;
+            rebuildLog = new ArrayList<>();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        OPTIMIZER.execute(() -> {
+            TreeStats after = null;
+            Throwable failure = null;
+            try {
+                Node packed = pack(points, bounds);
+                after = swap(packed, points.size());
+            } catch (Throwable t) {
+                failure = t;
+                lock.writeLock().lock();
+                try {
+                    rebuildLog = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            synchronized (optimizeMonitor) {
+                optimizing = null;
+            }
+            if (failure == null) result.complete(after);
+            else result.completeExceptionally(failure);
+        });
+        return result;
+    }
+
+    /**
+     * churn으로 품질 점수({@link TreeStats#getQuality()})가 minQuality 아래로 떨어지면 자동으로 {@link #optimize()}를 시작한다.
+     * 통계 계산은 O(노드 수)이므로 checkEvery번의 add/delete마다 한 번만 검사한다.
+     *
+     * @param minQuality 0 ~ 1, 0 이하이면 자동 재구성을 끈다
+     */
+    public void setAutoOptimize(double minQuality, int checkEvery) {
+        lock.writeLock().lock();
+        try {
+            autoOptimizeQuality = minQuality;
+            autoOptimizeEvery = Math.max(1, checkEvery);
+            mutationsSinceCheck = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 쓰기 락을 잡은 상태에서 호출
+    private void checkQuality() {
+        if (autoOptimizeQuality <= 0 || ++mutationsSinceCheck < autoOptimizeEvery) return;
+        mutationsSinceCheck = 0;
+        if (rebuildLog == null && size > MAX_ENTRIES && computeStats().getQuality() < autoOptimizeQuality) {
+            optimize();
+        }
+    }
+
+    private TreeStats swap(Node packed, int packedSize) {
+        lock.writeLock().lock();
+        try {
+            List<PendingOp> log = rebuildLog;
+            rebuildLog = null;
+            root = packed;
+            size = packedSize;
+            if (tagger != null) retag(root); // packing은 락 밖에서 하므로 태그가 비어 있다
+            for (PendingOp op : log) {
+                if (op.add) doAdd(op.point);
+                else doDelete(op.point);
+            }
+            visual.resetMarks();
+            visual.update(root);
+            return computeStats();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 빈 트리를 points(중복 없음)로 한 번에 packing해서 채운다 (ShardedRTree가 재분할한 샤드를 만들 때)
+    void load(List<Point> points) {
+        lock.writeLock().lock();
+        try {
+            if (size != 0) throw new IllegalStateException("tree is not empty");
+            if (points.isEmpty()) return;
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (Point p : points) {
+                minX = Math.min(minX, p.getX());
+                minY = Math.min(minY, p.getY());
+                maxX = Math.max(maxX, p.getX());
+                maxY = Math.max(maxY, p.getY());
+            }
+            root = pack(points, new Rectangle(minX, minY, maxX, maxY));
+            size = points.size();
+            if (tagger != null) retag(root);
+            visual.update(root);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void collectPoints(Node n, List<Point> out) {
+        if (n.isLeaf) {
+            for (Entry e : n.entries) out.add(e.userPoint);
+        } else {
+            for (Entry e : n.entries) collectPoints(e.child, out);
+        }
+    }
+
+    private static final class Keyed {
+        final long key;
+        final Point point;
+
+        Keyed(long key, Point point) {
+            this.key = key;
+            this.point = point;
+        }
+    }
+
+    // Hilbert 순서로 정렬해서 아래 레벨부터 M개씩 채워 올린다 (마지막 노드가 m보다 작으면 앞 노드와 나눈다)
+    private static Node pack(List<Point> points, Rectangle bounds) {
+        if (points.isEmpty()) return new Node(true);
+
+        ArrayList<Keyed> keyed = new ArrayList<>(points.size());
+        for (Point p : points) {
+            long h = HilbertCurve.index(
+                    HilbertCurve.cell(p.getX(), bounds.getMinX(), bounds.getMaxX()),
+                    HilbertCurve.cell(p.getY(), bounds.getMinY(), bounds.getMaxY()));
+            keyed.add(new Keyed(h, p));
+        }
+        keyed.sort(Comparator.comparingLong(k -> k.key));
+
+        ArrayList<Entry> entries = new ArrayList<>(keyed.size());
+        for (Keyed k : keyed) entries.add(new Entry(rectFrom(k.point), k.point));
+
+        boolean leaf = true;
+        while (true) {
+            ArrayList<Node> level = new ArrayList<>();
+            int n = entries.size();
+            int from = 0;
+            while (from < n) {
+                int to = Math.min(n, from + MAX_ENTRIES);
+                int rest = n - to;
+                if (rest > 0 && rest < MIN_ENTRIES) {
+                    int half = (n - from + 1) / 2;
+                    level.add(packNode(entries.subList(from, from + half), leaf));
+                    level.add(packNode(entries.subList(from + half, n), leaf));
+                    break;
+                }
+                level.add(packNode(entries.subList(from, to), leaf));
+                from = to;
+            }
+            if (level.size() == 1) return level.get(0);
+
+            entries = new ArrayList<>(level.size());
+            for (Node node : level) entries.add(new Entry(node.mbr, node));
+            leaf = false;
+        }
+    }
+
+    private static Node packNode(List<Entry> entries, boolean leaf) {
+        Node node = new Node(leaf);
+        node.entries.addAll(entries);
+        if (!leaf) {
+            for (Entry e : entries) e.child.parent = node;
+        }
+        node.recompute();
+        return node;
+    }
+
+    private TreeStats computeStats() {
+        ArrayList<Integer> nodeCount = new ArrayList<>();
+        ArrayList<Long> entryCount = new ArrayList<>();
+        ArrayList<double[]> geo = new ArrayList<>(); // overlap, deadSpace, area, margin
+
+        List<Node> level = Collections.singletonList(root);
+        while (!level.isEmpty()) {
+            long entries = 0;
+            double[] g = new double[4];
+            ArrayList<Node> next = new ArrayList<>();
+            for (Node n : level) {
+                entries += n.entries.size();
+                if (n.mbr != null) {
+                    double w = n.mbr.getMaxX() - n.mbr.getMinX();
+                    double h = n.mbr.getMaxY() - n.mbr.getMinY();
+                    g[1] += n.mbr.area() - unionArea(n.entries);
+                    g[2] += n.mbr.area();
+                    g[3] += 2 * (w + h);
+                }
+                for (int i = 0; i < n.entries.size(); i++) {
+                    for (int j = i + 1; j < n.entries.size(); j++) {
+                        g[0] += overlapArea(n.entries.get(i).mbr, n.entries.get(j).mbr);
+                    }
+                }
+                if (!n.isLeaf) {
+                    for (Entry e : n.entries) next.add(e.child);
+                }
+            }
+            nodeCount.add(level.size());
+            entryCount.add(entries);
+            geo.add(g);
+            level = next;
+        }
+
+        int height = nodeCount.size();
+        int[] nc = new int[height];
+        long[] ec = new long[height];
+        double[] overlap = new double[height], dead = new double[height], area = new double[height],
+                margin = new double[height];
+        for (int l = 0; l < height; l++) {
+            nc[l] = nodeCount.get(l);
+            ec[l] = entryCount.get(l);
+            overlap[l] = geo.get(l)[0];
+            dead[l] = Math.max(0, geo.get(l)[1]);
+            area[l] = geo.get(l)[2];
+            margin[l] = geo.get(l)[3];
+        }
+        return new TreeStats(size, MAX_ENTRIES, nc, ec, overlap, dead, area, margin);
+    }
+
+    private static double overlapArea(Rectangle a, Rectangle b) {
+        double w = Math.min(a.getMaxX(), b.getMaxX()) - Math.max(a.getMinX(), b.getMinX());
+        double h = Math.min(a.getMaxY(), b.getMaxY()) - Math.max(a.getMinY(), b.getMinY());
+        return (w > 0 && h > 0) ? w * h : 0;
+    }
+
+    // 엔트리 MBR 합집합의 면적 (x 구간별로 y 구간을 병합하는 sweep)
+    private static double unionArea(List<Entry> entries) {
+        int n = entries.size();
+        double[] xs = new double[2 * n];
+        for (int i = 0; i < n; i++) {
+            xs[2 * i] = entries.get(i).mbr.getMinX();
+            xs[2 * i + 1] = entries.get(i).mbr.getMaxX();
+        }
+        Arrays.sort(xs);
+
+        double total = 0;
+        double[] lo = new double[n], hi = new double[n];
+        for (int s = 0; s + 1 < xs.length; s++) {
+            double x1 = xs[s], x2 = xs[s + 1];
+            if (x2 <= x1) continue;
+            int k = 0;
+            for (Entry e : entries) {
+                if (e.mbr.getMinX() <= x1 && e.mbr.getMaxX() >= x2) {
+                    // lo 기준 삽입 정렬
+                    int j = k++;
+                    while (j > 0 && lo[j - 1] > e.mbr.getMinY()) {
+                        lo[j] = lo[j - 1];
+                        hi[j] = hi[j - 1];
+                        j--;
+                    }
+                    lo[j] = e.mbr.getMinY();
+                    hi[j] = e.mbr.getMaxY();
+                }
+            }
+            double covered = 0, curLo = 0, curHi = 0;
+            for (int i = 0; i < k; i++) {
+                if (i == 0 || lo[i] > curHi) {
+                    covered += curHi - curLo;
+                    curLo = lo[i];
+                    curHi = hi[i];
+                } else if (hi[i] > curHi) {
+                    curHi = hi[i];
+                }
+            }
+            covered += curHi - curLo;
+            total += (x2 - x1) * covered;
+        }
+        return total;
     }
 
     // ---------- internal helpers ----------
@@ -719,6 +1581,7 @@ public class RTreeImpl implements RTree {
     }
 
     private Node splitNode(Node n) {
+        metrics.recordSplit();
         ArrayList<Entry> E = new ArrayList<>(n.entries);
         n.entries.clear();
 
@@ -788,6 +1651,8 @@ public class RTreeImpl implements RTree {
             for (Entry e : g1.entries) if (e.child != null) e.child.parent = g1;
             for (Entry e : g2.entries) if (e.child != null) e.child.parent = g2;
         }
+        traceWrite(TraceRecorder.Kind.SPLIT, g1);
+        traceWrite(TraceRecorder.Kind.SPLIT, g2);
         return g2;
     }
 
@@ -827,6 +1692,8 @@ public class RTreeImpl implements RTree {
         Node cur = n;
         while (cur != null) {
             if (cur != root && cur.entries.size() < MIN_ENTRIES) {
+                metrics.recordUnderflow();
+                traceWrite(TraceRecorder.Kind.UNDERFLOW, cur);
                 visual.flashUnderflow(cur);
 
                 Node parent = cur.parent;
@@ -884,12 +1751,15 @@ public class RTreeImpl implements RTree {
     }
 
     private void reinsertPoint(Point p) {
+        metrics.recordReinsert();
+        if (tracer != null) tracePoint(tracer, traceOp, TraceRecorder.Kind.REINSERT, 0, p.getX(), p.getY(), 0);
         Rectangle m = rectFrom(p);
         java.util.List<Node> path = new ArrayList<>();
         Node where = chooseLeaf(root, m, path);
+        tracePath(path);
         visual.showPath(path);
 
-        where.entries.add(new Entry(m, p));
+        where.entries.add(pointEntry(m, p));
         where.recompute();
         Node sp = null;
         if (where.entries.size() > MAX_ENTRIES) {
@@ -907,8 +1777,8 @@ public class RTreeImpl implements RTree {
             if (cur.parent == null) {
                 if (split != null) {
                     Node newRoot = new Node(false);
-                    newRoot.entries.add(new Entry(copyRect(cur.mbr), cur));
-                    newRoot.entries.add(new Entry(copyRect(split.mbr), split));
+                    newRoot.entries.add(new Entry(cur.mbr, cur));
+                    newRoot.entries.add(new Entry(split.mbr, split));
                     cur.parent = newRoot;
                     split.parent = newRoot;
                     newRoot.recompute();
@@ -922,15 +1792,16 @@ public class RTreeImpl implements RTree {
             Node p = cur.parent;
             for (Entry e : p.entries) {
                 if (e.child == cur) {
-                    e.mbr = copyRect(cur.mbr);
+                    e.mbr = cur.mbr;
                     break;
                 }
             }
             p.recompute();
 
             if (split != null) {
-                p.entries.add(new Entry(copyRect(split.mbr), split));
+                p.entries.add(new Entry(split.mbr, split));
                 split.parent = p;
+                p.recompute(); // 새 형제까지 덮도록 (빠뜨리면 재삽입 후 상위 MBR이 점을 놓친다)
                 if (p.entries.size() > MAX_ENTRIES) {
                     Node ps = splitNode(p);
                     cur = p;
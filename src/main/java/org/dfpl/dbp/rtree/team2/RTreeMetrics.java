@@ -0,0 +1,305 @@
+package org.dfpl.dbp.rtree.team2;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 항상 켜져 있는 R-Tree 동작 카운터. 질의당 방문/가지치기 노드 수, 삽입당 분할 수,
+ * 삭제당 underflow/재삽입 수(재삽입은 삭제 뒤 condenseTree에서만 일어난다), 연산별 지연 시간 히스토그램을 모은다.
+ * 기록은 LongAdder / AtomicLongArray만 사용하므로 락이 없고 할당도 없다.
+ * {@link #snapshot()}으로 프로그램에서 읽거나 {@link #register(String)}로 JMX에 등록해 읽는다.
+ */
+public final class RTreeMetrics implements RTreeMetricsMXBean {
+
+    public enum Operation { SEARCH, NEAREST, ADD, DELETE }
+
+    private static final Operation[] OPS = Operation.values();
+
+    private final Histogram[] latency = new Histogram[OPS.length];
+    private final Histogram visitedPerQuery = new Histogram();
+    private final Histogram prunedPerQuery = new Histogram();
+    private final LongAdder visited = new LongAdder();
+    private final LongAdder pruned = new LongAdder();
+    private final LongAdder splits = new LongAdder();
+    private final LongAdder reinserts = new LongAdder();
+    private final LongAdder underflows = new LongAdder();
+
+    public RTreeMetrics() {
+        for (int i = 0; i < latency.length; i++) latency[i] = new Histogram();
+    }
+
+    // ---------- recording (인덱스 구현이 호출) ----------
+
+    void recordQuery(Operation op, int visitedNodes, int prunedNodes, long nanos) {
+        latency[op.ordinal()].record(nanos);
+        visitedPerQuery.record(visitedNodes);
+        prunedPerQuery.record(prunedNodes);
+        visited.add(visitedNodes);
+        pruned.add(prunedNodes);
+    }
+
+    void recordUpdate(Operation op, long nanos) {
+        latency[op.ordinal()].record(nanos);
+    }
+
+    void recordSplit() {
+        splits.increment();
+    }
+
+    void recordReinsert() {
+        reinserts.increment();
+    }
+
+    void recordUnderflow() {
+        underflows.increment();
+    }
+
+    // ---------- reading ----------
+
+    public Histogram latency(Operation op) {
+        return latency[op.ordinal()];
+    }
+
+    public Histogram visitedPerQuery() {
+        return visitedPerQuery;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * 플랫폼 MBeanServer에 {@code org.dfpl.dbp.rtree:type=RTreeMetrics,name=<name>} 으로 등록한다.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName on = new ObjectName("org.dfpl.dbp.rtree:type=RTreeMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+        return on;
+    }
+
+    public void unregister(ObjectName on) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(on);
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram h : latency) h.reset();
+        visitedPerQuery.reset();
+        prunedPerQuery.reset();
+        visited.reset();
+        pruned.reset();
+        splits.reset();
+        reinserts.reset();
+        underflows.reset();
+    }
+
+    // ---------- MXBean ----------
+
+    @Override
+    public long getSearchCount() { return latency(Operation.SEARCH).count(); }
+
+    @Override
+    public long getNearestCount() { return latency(Operation.NEAREST).count(); }
+
+    @Override
+    public long getInsertCount() { return latency(Operation.ADD).count(); }
+
+    @Override
+    public long getDeleteCount() { return latency(Operation.DELETE).count(); }
+
+    @Override
+    public long getNodesVisited() { return visited.sum(); }
+
+    @Override
+    public long getNodesPruned() { return pruned.sum(); }
+
+    @Override
+    public double getAverageVisitedPerQuery() { return visitedPerQuery.mean(); }
+
+    @Override
+    public double getAveragePrunedPerQuery() { return prunedPerQuery.mean(); }
+
+    @Override
+    public long getVisitedPerQueryP99() { return visitedPerQuery.percentile(0.99); }
+
+    @Override
+    public long getSplitCount() { return splits.sum(); }
+
+    @Override
+    public long getReinsertCount() { return reinserts.sum(); }
+
+    @Override
+    public long getUnderflowCount() { return underflows.sum(); }
+
+    @Override
+    public long getSearchLatencyP50Nanos() { return latency(Operation.SEARCH).percentile(0.5); }
+
+    @Override
+    public long getSearchLatencyP99Nanos() { return latency(Operation.SEARCH).percentile(0.99); }
+
+    @Override
+    public long getNearestLatencyP50Nanos() { return latency(Operation.NEAREST).percentile(0.5); }
+
+    @Override
+    public long getNearestLatencyP99Nanos() { return latency(Operation.NEAREST).percentile(0.99); }
+
+    @Override
+    public long getInsertLatencyP99Nanos() { return latency(Operation.ADD).percentile(0.99); }
+
+    @Override
+    public long getDeleteLatencyP99Nanos() { return latency(Operation.DELETE).percentile(0.99); }
+
+    /**
+     * 락 없는 2의 거듭제곱 버킷 히스토그램. 버킷 i에는 [2^(i-1), 2^i) 범위의 값이 들어간다 (0은 버킷 0).
+     * 백분위는 해당 버킷의 상한으로 근사한다.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            long m = max.get();
+            while (value > m && !max.compareAndSet(m, value)) m = max.get();
+        }
+
+        private static int bucketOf(long value) {
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket == 0 ? 0 : (bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        public long percentile(double q) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+    }
+
+    /**
+     * 특정 시점의 지표 값 (불변).
+     */
+    public static final class Snapshot {
+        private final long[] counts = new long[OPS.length];
+        private final long[] p50 = new long[OPS.length];
+        private final long[] p99 = new long[OPS.length];
+        private final long[] maxNanos = new long[OPS.length];
+        private final long nodesVisited;
+        private final long nodesPruned;
+        private final double averageVisitedPerQuery;
+        private final double averagePrunedPerQuery;
+        private final long splits;
+        private final long reinserts;
+        private final long underflows;
+
+        private Snapshot(RTreeMetrics m) {
+            for (Operation op : OPS) {
+                Histogram h = m.latency(op);
+                counts[op.ordinal()] = h.count();
+                p50[op.ordinal()] = h.percentile(0.5);
+                p99[op.ordinal()] = h.percentile(0.99);
+                maxNanos[op.ordinal()] = h.max();
+            }
+            nodesVisited = m.visited.sum();
+            nodesPruned = m.pruned.sum();
+            averageVisitedPerQuery = m.visitedPerQuery.mean();
+            averagePrunedPerQuery = m.prunedPerQuery.mean();
+            splits = m.splits.sum();
+            reinserts = m.reinserts.sum();
+            underflows = m.underflows.sum();
+        }
+
+        public long getCount(Operation op) { return counts[op.ordinal()]; }
+
+        public long getLatencyP50Nanos(Operation op) { return p50[op.ordinal()]; }
+
+        public long getLatencyP99Nanos(Operation op) { return p99[op.ordinal()]; }
+
+        public long getLatencyMaxNanos(Operation op) { return maxNanos[op.ordinal()]; }
+
+        public long getNodesVisited() { return nodesVisited; }
+
+        public long getNodesPruned() { return nodesPruned; }
+
+        public double getAverageVisitedPerQuery() { return averageVisitedPerQuery; }
+
+        public double getAveragePrunedPerQuery() { return averagePrunedPerQuery; }
+
+        public long getSplits() { return splits; }
+
+        public long getReinserts() { return reinserts; }
+
+        public long getUnderflows() { return underflows; }
+
+        public double getSplitsPerInsert() {
+            long n = getCount(Operation.ADD);
+            return n == 0 ? 0 : (double) splits / n;
+        }
+
+        /** 삭제 한 번에 다시 넣은 점 수 (underflow로 해체된 노드의 점) */
+        public double getReinsertsPerDelete() {
+            long n = getCount(Operation.DELETE);
+            return n == 0 ? 0 : (double) reinserts / n;
+        }
+
+        public double getUnderflowsPerDelete() {
+            long n = getCount(Operation.DELETE);
+            return n == 0 ? 0 : (double) underflows / n;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("RTreeMetrics [");
+            for (Operation op : OPS) {
+                sb.append(op).append("=").append(getCount(op))
+                        .append(" (p50=").append(getLatencyP50Nanos(op))
+                        .append("ns, p99=").append(getLatencyP99Nanos(op)).append("ns), ");
+            }
+            sb.append("visited/query=").append(String.format("%.2f", averageVisitedPerQuery))
+                    .append(", pruned/query=").append(String.format("%.2f", averagePrunedPerQuery))
+                    .append(", splits=").append(splits)
+                    .append(", reinserts=").append(reinserts)
+                    .append(", underflows=").append(underflows).append("]");
+            return sb.toString();
+        }
+    }
+}
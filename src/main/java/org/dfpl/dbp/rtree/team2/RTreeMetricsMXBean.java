@@ -0,0 +1,45 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * JMX로 노출되는 R-Tree 동작 지표. 지연 시간은 나노초 단위이고, 백분위 값은 2의 거듭제곱 버킷의 상한이다.
+ */
+public interface RTreeMetricsMXBean {
+
+	long getSearchCount();
+
+	long getNearestCount();
+
+	long getInsertCount();
+
+	long getDeleteCount();
+
+	long getNodesVisited();
+
+	long getNodesPruned();
+
+	double getAverageVisitedPerQuery();
+
+	double getAveragePrunedPerQuery();
+
+	long getVisitedPerQueryP99();
+
+	long getSplitCount();
+
+	long getReinsertCount();
+
+	long getUnderflowCount();
+
+	long getSearchLatencyP50Nanos();
+
+	long getSearchLatencyP99Nanos();
+
+	long getNearestLatencyP50Nanos();
+
+	long getNearestLatencyP99Nanos();
+
+	long getInsertLatencyP99Nanos();
+
+	long getDeleteLatencyP99Nanos();
+
+	void reset();
+}
@@ -0,0 +1,505 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * d차원 점 R-Tree ((x, y, 고도), (x, y, 시간) 등). 알고리즘은 {@link RTreeImpl}과 같고
+ * (least-enlargement chooseLeaf, quadratic split, condenseTree + 재삽입), 기하 계산은 {@link BoxGeometry}에 맡긴다.
+ * <p>
+ * 노드는 엔트리 박스를 double 배열 하나에 [min.., max..] 순서로 이어 두고, 리프의 점도 min = max인 박스로 둔다.
+ * 2차원과 3차원은 축 루프를 펼친 전용 구현을 쓰므로 일반화 때문에 느려지지 않는다.
+ * <p>
+ * 부피만으로는 납작한 데이터(예: 시간이 모두 같은 점)에서 확장량이 늘 0이라 고를 수 없으므로, 삽입 위치와 분할은 부피 확장량이
+ * 같으면 margin(축별 길이 합) 확장량으로 가른다.
+ */
+public class RTreeND {
+
+    private static final int DEFAULT_MAX_ENTRIES = 16;
+
+    private final BoxGeometry geometry;
+    private final int dims;
+    private final int stride;     // 박스 하나의 double 수 (2d)
+    private final int maxEntries; // M
+    private final int minEntries; // m
+
+    private Node root;
+    private int size = 0;
+    private final double[] rootBox; // size > 0일 때 전체 MBR
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // ---------- 쓰기용 작업 공간 (쓰기 락 아래에서만 사용) ----------
+    private final double[] pointBox;
+    private final double[] sBoxes;
+    private final Object[] sItems;
+    private final byte[] sGroup;
+    private final double[] g1, g2;
+
+    private static final class Node {
+        final boolean leaf;
+        int count;
+        final double[] boxes;    // (M + 1) * stride
+        final Node[] children;   // 내부 노드
+        final PointND[] points;  // 리프
+        Node parent;
+
+        Node(boolean leaf, int slots, int stride) {
+            this.leaf = leaf;
+            boxes = new double[slots * stride];
+            children = leaf ? null : new Node[slots];
+            points = leaf ? new PointND[slots] : null;
+        }
+    }
+
+    public RTreeND(int dimensions) {
+        this(dimensions, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries 노드당 최대 엔트리 수 (4 ~ 64)
+     */
+    public RTreeND(int dimensions, int maxEntries) {
+        this(BoxGeometry.of(dimensions), maxEntries);
+    }
+
+    // 벤치마크에서 전용 구현 대신 GeometryND를 강제할 때
+    RTreeND(BoxGeometry geometry, int maxEntries) {
+        if (maxEntries < 4 || maxEntries > 64) {
+            throw new IllegalArgumentException("maxEntries must be in [4, 64]: " + maxEntries);
+        }
+        this.geometry = geometry;
+        this.dims = geometry.dimensions();
+        this.stride = 2 * dims;
+        this.maxEntries = maxEntries;
+        this.minEntries = Math.max(2, maxEntries * 2 / 5); // 40%
+        int slots = maxEntries + 1;
+        rootBox = new double[stride];
+        pointBox = new double[stride];
+        sBoxes = new double[slots * stride];
+        sItems = new Object[slots];
+        sGroup = new byte[slots];
+        g1 = new double[stride];
+        g2 = new double[stride];
+        root = new Node(true, slots, stride);
+    }
+
+    // ---------- Public API ----------
+
+    public int getDimensions() {
+        return dims;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 전체 점을 덮는 MBR, 비어 있으면 null
+     */
+    public RectangleND getBounds() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? null : RectangleND.wrap(rootBox.clone());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(PointND point) {
+        if (point == null) return;
+        checkDimensions(point.getDimensions());
+        lock.writeLock().lock();
+        try {
+            setPointBox(point.coords());
+            if (findLeaf(root) != null) return;
+            insert(point);
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(PointND point) {
+        if (point == null) return;
+        checkDimensions(point.getDimensions());
+        lock.writeLock().lock();
+        try {
+            setPointBox(point.coords());
+            Node leaf = findLeaf(root);
+            if (leaf == null) return;
+            removeEntry(leaf, foundSlot);
+            size--;
+            condense(leaf);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 사각형 안(경계 포함)의 점들
+     */
+    public Iterator<PointND> search(RectangleND rectangle) {
+        checkDimensions(rectangle.getDimensions());
+        ArrayList<PointND> out = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (size > 0 && geometry.intersects(rootBox, 1, rectangle.box()) != 0) {
+                collect(root, rectangle.box(), out);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out.iterator();
+    }
+
+    /**
+     * source에서 유클리드 거리로 가까운 순서의 점 최대 maxCount개
+     */
+    public Iterator<PointND> nearest(PointND source, int maxCount) {
+        if (source == null || maxCount <= 0) return Collections.<PointND>emptyList().iterator();
+        checkDimensions(source.getDimensions());
+        ArrayList<PointND> out = new ArrayList<>(Math.min(maxCount, 1024));
+        double[] p = source.coords();
+        lock.readLock().lock();
+        try {
+            if (size == 0) return out.iterator();
+            Heap heap = new Heap();
+            double[] dist = new double[maxEntries + 1];
+            geometry.mindistSq(rootBox, 1, p, dist);
+            heap.push(dist[0], root);
+            while (heap.size > 0 && out.size() < maxCount) {
+                Object item = heap.pop();
+                if (item instanceof PointND) {
+                    out.add((PointND) item);
+                    continue;
+                }
+                Node n = (Node) item;
+                geometry.mindistSq(n.boxes, n.count, p, dist);
+                for (int i = 0; i < n.count; i++) {
+                    heap.push(dist[i], n.leaf ? n.points[i] : n.children[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out.iterator();
+    }
+
+    private void checkDimensions(int d) {
+        if (d != dims) throw new IllegalArgumentException("expected " + dims + " dimensions but got " + d);
+    }
+
+    private void collect(Node n, double[] q, List<PointND> out) {
+        long hits = geometry.intersects(n.boxes, n.count, q);
+        for (; hits != 0; hits &= hits - 1) {
+            int i = Long.numberOfTrailingZeros(hits);
+            if (n.leaf) out.add(n.points[i]);
+            else collect(n.children[i], q, out);
+        }
+    }
+
+    // kNN용 최소 힙 (double 키 + 노드 또는 점)
+    private static final class Heap {
+        double[] keys = new double[64];
+        Object[] items = new Object[64];
+        int size;
+
+        void push(double key, Object item) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                items = Arrays.copyOf(items, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                items[i] = items[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            items[i] = item;
+        }
+
+        Object pop() {
+            Object top = items[0];
+            int last = --size;
+            double key = keys[last];
+            Object item = items[last];
+            items[last] = null;
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= last) break;
+                if (c + 1 < last && keys[c + 1] < keys[c]) c++;
+                if (key <= keys[c]) break;
+                keys[i] = keys[c];
+                items[i] = items[c];
+                i = c;
+            }
+            if (last > 0) {
+                keys[i] = key;
+                items[i] = item;
+            }
+            return top;
+        }
+    }
+
+    // ---------- 노드 도우미 ----------
+
+    private void setPointBox(double[] c) {
+        System.arraycopy(c, 0, pointBox, 0, dims);
+        System.arraycopy(c, 0, pointBox, dims, dims);
+    }
+
+    private Node newNode(boolean leaf) {
+        return new Node(leaf, maxEntries + 1, stride);
+    }
+
+    // 노드 n의 MBR을 dst[o..]에 쓴다
+    private void boxOf(Node n, double[] dst, int o) {
+        System.arraycopy(n.boxes, 0, dst, o, stride);
+        for (int i = 1; i < n.count; i++) geometry.include(dst, o, n.boxes, i * stride);
+    }
+
+    private int slotOf(Node parent, Node child) {
+        for (int i = 0; i < parent.count; i++) {
+            if (parent.children[i] == child) return i;
+        }
+        throw new IllegalStateException("child not linked to its parent");
+    }
+
+    private void append(Node parent, Node child) {
+        int i = parent.count++;
+        parent.children[i] = child;
+        child.parent = parent;
+        boxOf(child, parent.boxes, i * stride);
+    }
+
+    // 마지막 엔트리를 slot 자리로 옮긴다
+    private void removeEntry(Node n, int slot) {
+        int last = --n.count;
+        if (slot != last) {
+            System.arraycopy(n.boxes, last * stride, n.boxes, slot * stride, stride);
+            if (n.leaf) n.points[slot] = n.points[last];
+            else n.children[slot] = n.children[last];
+        }
+        if (n.leaf) n.points[last] = null;
+        else n.children[last] = null;
+    }
+
+    private void refreshRootBox() {
+        if (root.count > 0) boxOf(root, rootBox, 0);
+    }
+
+    // ---------- insert ----------
+
+    private void insert(PointND p) {
+        setPointBox(p.coords());
+        Node leaf = chooseLeaf();
+        int i = leaf.count++;
+        leaf.points[i] = p;
+        System.arraycopy(pointBox, 0, leaf.boxes, i * stride, stride);
+        adjust(leaf, leaf.count > maxEntries ? split(leaf) : null);
+    }
+
+    // pointBox를 넣을 리프: 부피 확장량, 같으면 margin 확장량, 같으면 부피가 작은 쪽
+    private Node chooseLeaf() {
+        Node n = root;
+        while (!n.leaf) {
+            int best = 0;
+            double bestVol = Double.POSITIVE_INFINITY, bestMargin = Double.POSITIVE_INFINITY, bestSize = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < n.count; i++) {
+                int o = i * stride;
+                double vol = geometry.volume(n.boxes, o);
+                double dv = geometry.unionVolume(n.boxes, o, pointBox, 0) - vol;
+                double dm = geometry.unionMargin(n.boxes, o, pointBox, 0) - geometry.margin(n.boxes, o);
+                if (dv < bestVol || (dv == bestVol && (dm < bestMargin || (dm == bestMargin && vol < bestSize)))) {
+                    best = i;
+                    bestVol = dv;
+                    bestMargin = dm;
+                    bestSize = vol;
+                }
+            }
+            n = n.children[best];
+        }
+        return n;
+    }
+
+    private void adjust(Node node, Node split) {
+        while (true) {
+            Node parent = node.parent;
+            if (parent == null) {
+                if (split != null) {
+                    Node newRoot = newNode(false);
+                    append(newRoot, node);
+                    append(newRoot, split);
+                    root = newRoot;
+                }
+                break;
+            }
+            boxOf(node, parent.boxes, slotOf(parent, node) * stride);
+            if (split != null) {
+                append(parent, split);
+                split = parent.count > maxEntries ? split(parent) : null;
+            }
+            node = parent;
+        }
+        refreshRootBox();
+    }
+
+    // quadratic split: 엔트리를 작업 배열로 옮긴 뒤 두 그룹으로 나눠 원래 노드와 새 노드에 다시 쓴다
+    private Node split(Node n) {
+        int count = n.count;
+        System.arraycopy(n.boxes, 0, sBoxes, 0, count * stride);
+        for (int i = 0; i < count; i++) {
+            sItems[i] = n.leaf ? n.points[i] : n.children[i];
+            sGroup[i] = 0;
+        }
+
+        // seed: 함께 묶으면 낭비(부피, 같으면 margin)가 가장 큰 쌍
+        int s1 = 0, s2 = 1;
+        double worstVol = Double.NEGATIVE_INFINITY, worstMargin = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                int a = i * stride, b = j * stride;
+                double dv = geometry.unionVolume(sBoxes, a, sBoxes, b) - geometry.volume(sBoxes, a) - geometry.volume(sBoxes, b);
+                double dm = geometry.unionMargin(sBoxes, a, sBoxes, b) - geometry.margin(sBoxes, a) - geometry.margin(sBoxes, b);
+                if (dv > worstVol || (dv == worstVol && dm > worstMargin)) {
+                    worstVol = dv;
+                    worstMargin = dm;
+                    s1 = i;
+                    s2 = j;
+                }
+            }
+        }
+        System.arraycopy(sBoxes, s1 * stride, g1, 0, stride);
+        System.arraycopy(sBoxes, s2 * stride, g2, 0, stride);
+        sGroup[s1] = 1;
+        sGroup[s2] = 2;
+        int c1 = 1, c2 = 1, left = count - 2;
+
+        while (left > 0) {
+            if (c1 + left == minEntries || c2 + left == minEntries) {
+                byte g = (c1 + left == minEntries) ? (byte) 1 : (byte) 2;
+                for (int i = 0; i < count; i++) if (sGroup[i] == 0) sGroup[i] = g;
+                break;
+            }
+            // 두 그룹 확장량 차이가 가장 큰 엔트리부터
+            int pick = -1;
+            double diff = -1, pv1 = 0, pv2 = 0, pm1 = 0, pm2 = 0;
+            double v1 = geometry.volume(g1, 0), v2 = geometry.volume(g2, 0);
+            double m1 = geometry.margin(g1, 0), m2 = geometry.margin(g2, 0);
+            for (int i = 0; i < count; i++) {
+                if (sGroup[i] != 0) continue;
+                int o = i * stride;
+                double d1 = geometry.unionVolume(g1, 0, sBoxes, o) - v1, d2 = geometry.unionVolume(g2, 0, sBoxes, o) - v2;
+                double e1 = geometry.unionMargin(g1, 0, sBoxes, o) - m1, e2 = geometry.unionMargin(g2, 0, sBoxes, o) - m2;
+                double dd = d1 != d2 ? Math.abs(d1 - d2) : 0;
+                if (pick < 0 || dd > diff || (dd == diff && Math.abs(e1 - e2) > Math.abs(pm1 - pm2))) {
+                    pick = i;
+                    diff = dd;
+                    pv1 = d1;
+                    pv2 = d2;
+                    pm1 = e1;
+                    pm2 = e2;
+                }
+            }
+            boolean toFirst = pv1 != pv2 ? pv1 < pv2
+                    : pm1 != pm2 ? pm1 < pm2
+                    : v1 != v2 ? v1 < v2
+                    : c1 <= c2;
+            geometry.include(toFirst ? g1 : g2, 0, sBoxes, pick * stride);
+            sGroup[pick] = toFirst ? (byte) 1 : (byte) 2;
+            if (toFirst) c1++;
+            else c2++;
+            left--;
+        }
+
+        Node other = newNode(n.leaf);
+        other.parent = n.parent;
+        n.count = 0;
+        for (int i = 0; i < count; i++) {
+            Node target = sGroup[i] == 1 ? n : other;
+            int slot = target.count++;
+            System.arraycopy(sBoxes, i * stride, target.boxes, slot * stride, stride);
+            if (n.leaf) {
+                target.points[slot] = (PointND) sItems[i];
+            } else {
+                target.children[slot] = (Node) sItems[i];
+                target.children[slot].parent = target;
+            }
+            sItems[i] = null;
+        }
+        for (int i = n.count; i < count; i++) {
+            if (n.leaf) n.points[i] = null;
+            else n.children[i] = null;
+        }
+        return other;
+    }
+
+    // ---------- delete ----------
+
+    private int foundSlot;
+
+    // pointBox의 점을 가진 리프 (슬롯은 foundSlot), 없으면 null
+    private Node findLeaf(Node n) {
+        if (n.leaf) {
+            for (int i = 0; i < n.count; i++) {
+                if (sameCoords(n.points[i].coords())) {
+                    foundSlot = i;
+                    return n;
+                }
+            }
+            return null;
+        }
+        long hits = geometry.intersects(n.boxes, n.count, pointBox);
+        for (; hits != 0; hits &= hits - 1) {
+            Node found = findLeaf(n.children[Long.numberOfTrailingZeros(hits)]);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private boolean sameCoords(double[] c) {
+        for (int k = 0; k < dims; k++) {
+            if (Double.compare(c[k], pointBox[k]) != 0) return false;
+        }
+        return true;
+    }
+
+    // 모자란 노드는 떼어 내고 그 아래 점들을 모아 두었다가, 트리 정리가 끝난 뒤 다시 삽입한다
+    private void condense(Node n) {
+        ArrayList<PointND> orphans = new ArrayList<>();
+        while (n != root) {
+            Node parent = n.parent;
+            int slot = slotOf(parent, n);
+            if (n.count < minEntries) {
+                removeEntry(parent, slot);
+                collectPoints(n, orphans);
+            } else {
+                boxOf(n, parent.boxes, slot * stride);
+            }
+            n = parent;
+        }
+        while (!root.leaf && root.count == 1) {
+            root = root.children[0];
+            root.parent = null;
+        }
+        if (!root.leaf && root.count == 0) root = newNode(true);
+        refreshRootBox();
+        for (PointND p : orphans) insert(p);
+    }
+
+    private static void collectPoints(Node n, List<PointND> out) {
+        for (int i = 0; i < n.count; i++) {
+            if (n.leaf) out.add(n.points[i]);
+            else collectPoints(n.children[i], out);
+        }
+    }
+}
@@ -1,36 +1,93 @@
 package org.dfpl.dbp.rtree.team2;
 
-public class Rectangle {
+public final class Rectangle {
 
-	// 좌상단 포인트와 우하단 포인트로 표현
-	private Point leftTop;
-	private Point rightBottom;
+	// 생성 시점에 한 번만 min/max로 정규화해서 저장한다 (불변).
+	// leftTop은 (minX, minY) 모서리, rightBottom은 (maxX, maxY) 모서리를 뜻한다.
+	private final double minX;
+	private final double minY;
+	private final double maxX;
+	private final double maxY;
 
 	public Rectangle(Point leftTop, Point rightBottom) {
-		super();
-		this.leftTop = leftTop;
-		this.rightBottom = rightBottom;
+		this(leftTop.getX(), leftTop.getY(), rightBottom.getX(), rightBottom.getY());
 	}
 
-	public Point getLeftTop() {
-		return leftTop;
+	public Rectangle(double x1, double y1, double x2, double y2) {
+		this.minX = Math.min(x1, x2);
+		this.minY = Math.min(y1, y2);
+		this.maxX = Math.max(x1, x2);
+		this.maxY = Math.max(y1, y2);
 	}
 
-	public void setLeftTop(Point leftTop) {
-		this.leftTop = leftTop;
+	public Point getLeftTop() {
+		return new Point(minX, minY);
 	}
 
 	public Point getRightBottom() {
-		return rightBottom;
+		return new Point(maxX, maxY);
+	}
+
+	public double getMinX() {
+		return minX;
+	}
+
+	public double getMinY() {
+		return minY;
+	}
+
+	public double getMaxX() {
+		return maxX;
+	}
+
+	public double getMaxY() {
+		return maxY;
+	}
+
+	public double area() {
+		return (maxX - minX) * (maxY - minY);
+	}
+
+	public boolean intersects(Rectangle other) {
+		return maxX >= other.minX && minX <= other.maxX && maxY >= other.minY && minY <= other.maxY;
 	}
 
-	public void setRightBottom(Point rightBottom) {
-		this.rightBottom = rightBottom;
+	// 경계 포함
+	public boolean contains(Point p) {
+		double x = p.getX();
+		double y = p.getY();
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	public Rectangle union(Rectangle other) {
+		if (other.minX >= minX && other.minY >= minY && other.maxX <= maxX && other.maxY <= maxY)
+			return this;
+		return new Rectangle(Math.min(minX, other.minX), Math.min(minY, other.minY), Math.max(maxX, other.maxX),
+				Math.max(maxY, other.maxY));
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Rectangle))
+			return false;
+		Rectangle other = (Rectangle) o;
+		return Double.compare(minX, other.minX) == 0 && Double.compare(minY, other.minY) == 0
+				&& Double.compare(maxX, other.maxX) == 0 && Double.compare(maxY, other.maxY) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = Double.hashCode(minX);
+		h = 31 * h + Double.hashCode(minY);
+		h = 31 * h + Double.hashCode(maxX);
+		h = 31 * h + Double.hashCode(maxY);
+		return h;
 	}
 
 	@Override
 	public String toString() {
-		return "Rectangle [leftTop=(" + leftTop.getX() + "," + leftTop.getY() + "), rightBottom=(" + rightBottom.getX()
-				+ "," + rightBottom.getY() + ")]";
+		return "Rectangle [leftTop=(" + minX + "," + minY + "), rightBottom=(" + maxX + "," + maxY + ")]";
 	}
 }
@@ -0,0 +1,132 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.util.Arrays;
+
+public final class RectangleND {
+
+	// [min_0 .. min_{d-1}, max_0 .. max_{d-1}]. 생성 시 축마다 min/max로 정규화한다 (불변).
+	private final double[] box;
+
+	public RectangleND(PointND corner1, PointND corner2) {
+		this(corner1.coords(), corner2.coords());
+	}
+
+	public RectangleND(double[] corner1, double[] corner2) {
+		if (corner1.length != corner2.length || corner1.length == 0)
+			throw new IllegalArgumentException("corners must have the same, non-zero dimension");
+		int d = corner1.length;
+		box = new double[2 * d];
+		for (int i = 0; i < d; i++) {
+			box[i] = Math.min(corner1[i], corner2[i]);
+			box[d + i] = Math.max(corner1[i], corner2[i]);
+		}
+	}
+
+	private RectangleND(double[] box, boolean owned) {
+		this.box = box;
+	}
+
+	// 인덱스 내부용: [min.., max..] 배열을 그대로 감싼다
+	static RectangleND wrap(double[] box) {
+		return new RectangleND(box, true);
+	}
+
+	double[] box() {
+		return box;
+	}
+
+	public int getDimensions() {
+		return box.length / 2;
+	}
+
+	public double getMin(int axis) {
+		return box[axis];
+	}
+
+	public double getMax(int axis) {
+		return box[getDimensions() + axis];
+	}
+
+	public PointND getMinCorner() {
+		return new PointND(Arrays.copyOfRange(box, 0, getDimensions()));
+	}
+
+	public PointND getMaxCorner() {
+		return new PointND(Arrays.copyOfRange(box, getDimensions(), box.length));
+	}
+
+	// d차원 부피 (2차원이면 넓이)
+	public double volume() {
+		int d = getDimensions();
+		double v = 1;
+		for (int i = 0; i < d; i++)
+			v *= box[d + i] - box[i];
+		return v;
+	}
+
+	// 축별 길이의 합. 부피가 0인(납작한) 사각형끼리도 크기를 비교할 수 있다
+	public double margin() {
+		int d = getDimensions();
+		double m = 0;
+		for (int i = 0; i < d; i++)
+			m += box[d + i] - box[i];
+		return m;
+	}
+
+	public boolean intersects(RectangleND other) {
+		int d = sameDimensions(other.getDimensions());
+		for (int i = 0; i < d; i++) {
+			if (box[d + i] < other.box[i] || box[i] > other.box[d + i])
+				return false;
+		}
+		return true;
+	}
+
+	// 경계 포함
+	public boolean contains(PointND p) {
+		int d = sameDimensions(p.getDimensions());
+		double[] c = p.coords();
+		for (int i = 0; i < d; i++) {
+			if (c[i] < box[i] || c[i] > box[d + i])
+				return false;
+		}
+		return true;
+	}
+
+	public RectangleND union(RectangleND other) {
+		int d = sameDimensions(other.getDimensions());
+		double[] u = new double[2 * d];
+		for (int i = 0; i < d; i++) {
+			u[i] = Math.min(box[i], other.box[i]);
+			u[d + i] = Math.max(box[d + i], other.box[d + i]);
+		}
+		return new RectangleND(u, true);
+	}
+
+	private int sameDimensions(int d) {
+		if (d != getDimensions())
+			throw new IllegalArgumentException("dimension mismatch: " + getDimensions() + " vs " + d);
+		return d;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof RectangleND))
+			return false;
+		return Arrays.equals(box, ((RectangleND) o).box);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(box);
+	}
+
+	@Override
+	public String toString() {
+		int d = getDimensions();
+		return "RectangleND [min=" + Arrays.toString(Arrays.copyOfRange(box, 0, d)) + ", max="
+				+ Arrays.toString(Arrays.copyOfRange(box, d, box.length)) + "]";
+	}
+}
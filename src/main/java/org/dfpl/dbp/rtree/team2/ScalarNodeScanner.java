@@ -0,0 +1,97 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 엔트리를 하나씩 검사하는 기본 {@link NodeScanner}. 분기 없이 비교 결과를 비트로 모은다.
+ */
+final class ScalarNodeScanner implements NodeScanner {
+
+    static final ScalarNodeScanner INSTANCE = new ScalarNodeScanner();
+
+    private ScalarNodeScanner() {
+    }
+
+    @Override
+    public long intersects(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count,
+                           double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        long bits = 0;
+        for (int i = 0, o = 0; i < count; i++, o += Double.BYTES) {
+            boolean hit = b.getDouble(maxX + o) >= qMinX & b.getDouble(minX + o) <= qMaxX
+                    & b.getDouble(maxY + o) >= qMinY & b.getDouble(minY + o) <= qMaxY;
+            if (hit) bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void mindistSq(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, double x, double y,
+                          double[] out) {
+        for (int i = 0, o = 0; i < count; i++, o += Double.BYTES) {
+            double dx = Math.max(0, Math.max(b.getDouble(minX + o) - x, x - b.getDouble(maxX + o)));
+            double dy = Math.max(0, Math.max(b.getDouble(minY + o) - y, y - b.getDouble(maxY + o)));
+            out[i] = dx * dx + dy * dy;
+        }
+    }
+
+    @Override
+    public long intersectsFloat(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count,
+                                double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        float x0 = NodeScanner.ceilFloat(qMinX), y0 = NodeScanner.ceilFloat(qMinY);
+        float x1 = NodeScanner.floorFloat(qMaxX), y1 = NodeScanner.floorFloat(qMaxY);
+        long bits = 0;
+        for (int i = 0, o = 0; i < count; i++, o += Float.BYTES) {
+            boolean hit = b.getFloat(maxX + o) >= x0 & b.getFloat(minX + o) <= x1
+                    & b.getFloat(maxY + o) >= y0 & b.getFloat(minY + o) <= y1;
+            if (hit) bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void mindistSqFloat(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, double x, double y,
+                               double[] out) {
+        for (int i = 0, o = 0; i < count; i++, o += Float.BYTES) {
+            double dx = Math.max(0, Math.max(b.getFloat(minX + o) - x, x - b.getFloat(maxX + o)));
+            double dy = Math.max(0, Math.max(b.getFloat(minY + o) - y, y - b.getFloat(maxY + o)));
+            out[i] = dx * dx + dy * dy;
+        }
+    }
+
+    @Override
+    public long intersectsCodes(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, int codeBytes,
+                                int qMinX, int qMinY, int qMaxX, int qMaxY) {
+        long bits = 0;
+        for (int i = 0, o = 0; i < count; i++, o += codeBytes) {
+            boolean hit = code(b, maxX + o, codeBytes) >= qMinX & code(b, minX + o, codeBytes) <= qMaxX
+                    & code(b, maxY + o, codeBytes) >= qMinY & code(b, minY + o, codeBytes) <= qMaxY;
+            if (hit) bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void mindistSqCodes(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, int codeBytes,
+                               double originX, double originY, double stepX, double stepY, double x, double y,
+                               double[] out) {
+        int bias = NodeScanner.codeBias(codeBytes);
+        for (int i = 0, o = 0; i < count; i++, o += codeBytes) {
+            double x0 = originX + (code(b, minX + o, codeBytes) - bias) * stepX;
+            double x1 = originX + (code(b, maxX + o, codeBytes) - bias) * stepX;
+            double y0 = originY + (code(b, minY + o, codeBytes) - bias) * stepY;
+            double y1 = originY + (code(b, maxY + o, codeBytes) - bias) * stepY;
+            double dx = Math.max(0, Math.max(x0 - x, x - x1));
+            double dy = Math.max(0, Math.max(y0 - y, y - y1));
+            out[i] = dx * dx + dy * dy;
+        }
+    }
+
+    static int code(ByteBuffer b, int offset, int codeBytes) {
+        return codeBytes == 1 ? b.get(offset) : b.getShort(offset);
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+}
@@ -0,0 +1,459 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 공간을 K개 영역으로 나누고 영역마다 독립된 {@link RTreeImpl} 샤드를 두는 {@link RTree}.
+ * <ul>
+ * <li>분할: 영역 사각형을 균등하게 나눈 격자, 또는 표본 점에서 배운 kd 분할(점이 많이 퍼진 축의 중앙값으로 반씩 자른다).
+ * 바깥 영역은 무한히 뻗으므로 모든 점이 정확히 한 샤드에 들어간다.</li>
+ * <li>락: 샤드마다 자기 읽기/쓰기 락이 있어 다른 샤드에 대한 add/delete는 서로 막지 않는다.</li>
+ * <li>질의: 실제 데이터 MBR이 질의와 겹치는 샤드에만 보내고, 여러 샤드면 ForkJoin 공용 풀에서 병렬로 돌린 뒤 합친다.</li>
+ * <li>kNN: MBR까지 거리가 가장 가까운 샤드에서 먼저 k개를 찾아 k번째 거리를 상한으로 삼고, MBR이 그 상한 안에 드는 샤드만
+ * 그 상한으로 제한된 kNN을 병렬로 돌려 거리순으로 병합한다. 거리는 유클리드.</li>
+ * <li>재분할: 샤드 크기가 치우치면({@link #setAutoRebalance}) 또는 {@link #rebalance()}를 부르면 현재 점들로 kd 분할을 다시 배워
+ * 백그라운드에서 샤드를 새로 packing하고, 그동안의 변경은 기록했다가 교체 직후 다시 적용한다.</li>
+ * </ul>
+ */
+public class ShardedRTree implements RTree {
+
+    private static final ExecutorService REBALANCER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "rtree-rebalancer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // kd 분할 트리. 리프면 shard >= 0, 아니면 좌표 < value인 점은 low, 나머지는 high
+    private static final class Cell {
+        final int shard;
+        final boolean splitX;
+        final double value;
+        final Cell low, high;
+
+        Cell(int shard) {
+            this.shard = shard;
+            this.splitX = false;
+            this.value = 0;
+            this.low = null;
+            this.high = null;
+        }
+
+        Cell(boolean splitX, double value, Cell low, Cell high) {
+            this.shard = -1;
+            this.splitX = splitX;
+            this.value = value;
+            this.low = low;
+            this.high = high;
+        }
+
+        int route(double x, double y) {
+            Cell c = this;
+            while (c.shard < 0) c = (c.splitX ? x : y) < c.value ? c.low : c.high;
+            return c.shard;
+        }
+    }
+
+    // 분할과 샤드는 재분할 때 함께 바뀐다
+    private static final class Layout {
+        final Cell partition;
+        final RTreeImpl[] shards;
+
+        Layout(Cell partition, int count) {
+            this.partition = partition;
+            this.shards = new RTreeImpl[count];
+            for (int i = 0; i < count; i++) shards[i] = new RTreeImpl(false);
+        }
+
+        RTreeImpl shardOf(Point p) {
+            return shards[partition.route(p.getX(), p.getY())];
+        }
+    }
+
+    // 재분할 중에 들어온 변경
+    private static final class PendingOp {
+        final boolean add;
+        final Point point;
+
+        PendingOp(boolean add, Point point) {
+            this.add = add;
+            this.point = point;
+        }
+    }
+
+    private final int shardCount;
+    private Layout layout;                // 바깥 쓰기 락 아래에서만 바뀐다
+
+    // 샤드 연산은 읽기 락, 샤드 교체는 쓰기 락
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private List<PendingOp> rebalanceLog; // null이 아니면 재분할 진행 중 (바깥 락으로 보호, 항목 추가는 로그 모니터로)
+    private final Object rebalanceMonitor = new Object();
+    private CompletableFuture<Void> rebalancing;
+    private volatile double autoRebalanceSkew = 0; // 0이면 자동 재분할 끔
+    private volatile int autoRebalanceEvery = 0;
+    private final AtomicInteger mutationsSinceCheck = new AtomicInteger();
+
+    /**
+     * domain을 columns x rows 격자로 나눈다. domain 밖의 점은 가장 가까운 가장자리 칸으로 간다.
+     */
+    public ShardedRTree(Rectangle domain, int columns, int rows) {
+        if (columns <= 0 || rows <= 0) throw new IllegalArgumentException("grid must be at least 1 x 1: " + columns + " x " + rows);
+        this.shardCount = columns * rows;
+        this.layout = new Layout(grid(domain, columns, 0, columns, rows, 0, rows), shardCount);
+    }
+
+    /**
+     * sample 점들의 분포에서 kd 분할을 배워 공간을 shards개로 나눈다 (각 샤드에 표본이 거의 같은 수만큼 들어가게).
+     */
+    public ShardedRTree(Collection<Point> sample, int shards) {
+        if (shards <= 0) throw new IllegalArgumentException("shards must be positive: " + shards);
+        this.shardCount = shards;
+        this.layout = new Layout(learn(new ArrayList<>(sample), shards), shards);
+    }
+
+    // ---------- 분할 ----------
+
+    private static Cell grid(Rectangle domain, int columns, int c0, int c1, int rows, int r0, int r1) {
+        if (c1 - c0 > 1) {
+            int mid = (c0 + c1) >>> 1;
+            double x = domain.getMinX() + (domain.getMaxX() - domain.getMinX()) * mid / columns;
+            return new Cell(true, x, grid(domain, columns, c0, mid, rows, r0, r1), grid(domain, columns, mid, c1, rows, r0, r1));
+        }
+        if (r1 - r0 > 1) {
+            int mid = (r0 + r1) >>> 1;
+            double y = domain.getMinY() + (domain.getMaxY() - domain.getMinY()) * mid / rows;
+            return new Cell(false, y, grid(domain, columns, c0, c1, rows, r0, mid), grid(domain, columns, c0, c1, rows, mid, r1));
+        }
+        return new Cell(r0 * columns + c0);
+    }
+
+    private static Cell learn(List<Point> sample, int shards) {
+        int[] next = { 0 };
+        return kd(sample, shards, next);
+    }
+
+    // 점이 더 넓게 퍼진 축으로 정렬해서, 왼쪽 샤드 수 비율만큼의 위치를 경계로 삼는다
+    private static Cell kd(List<Point> points, int shards, int[] next) {
+        if (shards == 1) return new Cell(next[0]++);
+        int lowShards = shards / 2;
+        if (points.isEmpty()) {
+            return new Cell(true, 0, kd(points, lowShards, next), kd(points, shards - lowShards, next));
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Point p : points) {
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
+        boolean splitX = maxX - minX >= maxY - minY;
+        points.sort(splitX ? Comparator.comparingDouble(Point::getX) : Comparator.comparingDouble(Point::getY));
+        int cut = (int) ((long) points.size() * lowShards / shards);
+        // 경계 값과 같은 좌표는 모두 high 쪽이므로, cut을 같은 값이 시작하는 위치로 당긴다
+        Point at = points.get(Math.min(cut, points.size() - 1));
+        double value = splitX ? at.getX() : at.getY();
+        while (cut > 0 && (splitX ? points.get(cut - 1).getX() : points.get(cut - 1).getY()) >= value) cut--;
+        Cell low = kd(points.subList(0, cut), lowShards, next);
+        Cell high = kd(points.subList(cut, points.size()), shards - lowShards, next);
+        return new Cell(splitX, value, low, high);
+    }
+
+    // ---------- Public API ----------
+
+    @Override
+    public void add(Point point) {
+        mutate(new PendingOp(true, point));
+    }
+
+    @Override
+    public void delete(Point point) {
+        mutate(new PendingOp(false, point));
+    }
+
+    private void mutate(PendingOp op) {
+        lock.readLock().lock();
+        try {
+            RTreeImpl shard = layout.shardOf(op.point);
+            List<PendingOp> log = rebalanceLog;
+            if (log == null) {
+                apply(shard, op);
+            } else {
+                // 같은 점에 대한 변경이 샤드와 로그에 같은 순서로 남도록 재분할 중에는 직렬화한다
+                synchronized (log) {
+                    apply(shard, op);
+                    log.add(op);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        checkSkew();
+    }
+
+    private static void apply(RTreeImpl shard, PendingOp op) {
+        if (op.add) shard.add(op.point);
+        else shard.delete(op.point);
+    }
+
+    @Override
+    public Iterator<Point> search(Rectangle rectangle) {
+        lock.readLock().lock();
+        try {
+            List<Supplier<List<Point>>> work = new ArrayList<>();
+            for (RTreeImpl shard : layout.shards) {
+                Rectangle bounds = shard.getBounds();
+                if (bounds == null || !bounds.intersects(rectangle)) continue;
+                work.add(() -> {
+                    ArrayList<Point> out = new ArrayList<>();
+                    shard.search(rectangle).forEachRemaining(out::add);
+                    return out;
+                });
+            }
+            ArrayList<Point> result = new ArrayList<>();
+            for (List<Point> part : gather(work)) result.addAll(part);
+            return result.iterator();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Point> nearest(Point source, int maxCount) {
+        if (source == null || maxCount <= 0) return Collections.<Point>emptyList().iterator();
+        double x = source.getX(), y = source.getY();
+        lock.readLock().lock();
+        try {
+            // MBR까지 거리순으로 샤드를 정렬
+            RTreeImpl[] shards = layout.shards;
+            Integer[] order = new Integer[shards.length];
+            double[] mindist = new double[shards.length];
+            int n = 0;
+            for (int i = 0; i < shards.length; i++) {
+                Rectangle bounds = shards[i].getBounds();
+                if (bounds == null) continue;
+                mindist[i] = mindist(bounds, x, y);
+                order[n++] = i;
+            }
+            if (n == 0) return Collections.<Point>emptyList().iterator();
+            Arrays.sort(order, 0, n, Comparator.comparingDouble(i -> mindist[i]));
+
+            Neighbors first = Neighbors.of(shards[order[0]], x, y, maxCount, Double.POSITIVE_INFINITY);
+            double bound = first.size == maxCount ? first.ds[maxCount - 1] : Double.POSITIVE_INFINITY;
+
+            List<Supplier<Neighbors>> work = new ArrayList<>();
+            for (int j = 1; j < n && mindist[order[j]] <= bound; j++) {
+                RTreeImpl shard = shards[order[j]];
+                work.add(() -> Neighbors.of(shard, x, y, maxCount, bound));
+            }
+            List<Neighbors> parts = new ArrayList<>(gather(work));
+            parts.add(first);
+            return merge(parts, maxCount).iterator();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int total = 0;
+            for (RTreeImpl shard : layout.shards) total += shard.size();
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * 샤드별 점 수 (분할 순서)
+     */
+    public int[] shardSizes() {
+        lock.readLock().lock();
+        try {
+            RTreeImpl[] shards = layout.shards;
+            int[] sizes = new int[shards.length];
+            for (int i = 0; i < shards.length; i++) sizes[i] = shards[i].size();
+            return sizes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 가장 큰 샤드의 점 수 / 샤드 평균 점 수. 비어 있으면 1
+     */
+    public double skew() {
+        int[] sizes = shardSizes();
+        long total = 0;
+        int max = 0;
+        for (int s : sizes) {
+            total += s;
+            max = Math.max(max, s);
+        }
+        return total == 0 ? 1 : (double) max * sizes.length / total;
+    }
+
+    // ---------- 병렬 실행 ----------
+
+    // 첫 작업은 호출한 스레드에서, 나머지는 공용 풀에서 돌린다
+    private static <T> List<T> gather(List<Supplier<T>> work) {
+        if (work.isEmpty()) return Collections.emptyList();
+        if (work.size() == 1) return Collections.singletonList(work.get(0).get());
+        List<ForkJoinTask<T>> forked = new ArrayList<>(work.size() - 1);
+        for (int i = 1; i < work.size(); i++) {
+            Supplier<T> w = work.get(i);
+            forked.add(ForkJoinTask.adapt(w::get).fork());
+        }
+        List<T> results = new ArrayList<>(work.size());
+        results.add(work.get(0).get());
+        for (ForkJoinTask<T> task : forked) results.add(task.join());
+        return results;
+    }
+
+    // ---------- kNN 병합 ----------
+
+    // 한 샤드의 kNN 결과 (거리 오름차순)
+    private static final class Neighbors {
+        final double[] xs, ys, ds;
+        int size;
+
+        Neighbors(int capacity) {
+            xs = new double[capacity];
+            ys = new double[capacity];
+            ds = new double[capacity];
+        }
+
+        static Neighbors of(RTreeImpl shard, double x, double y, int k, double maxDistance) {
+            Neighbors out = new Neighbors(Math.min(k, Math.max(1, shard.size())));
+            shard.nearest(x, y, k, maxDistance, (px, py, d) -> {
+                if (out.size == out.xs.length) return false;
+                out.xs[out.size] = px;
+                out.ys[out.size] = py;
+                out.ds[out.size++] = d;
+                return true;
+            });
+            return out;
+        }
+    }
+
+    private static List<Point> merge(List<Neighbors> parts, int k) {
+        int[] head = new int[parts.size()];
+        ArrayList<Point> out = new ArrayList<>(Math.min(k, 1024));
+        while (out.size() < k) {
+            int best = -1;
+            for (int i = 0; i < head.length; i++) {
+                Neighbors p = parts.get(i);
+                if (head[i] < p.size && (best < 0 || p.ds[head[i]] < parts.get(best).ds[head[best]])) best = i;
+            }
+            if (best < 0) break;
+            Neighbors p = parts.get(best);
+            out.add(new Point(p.xs[head[best]], p.ys[head[best]]));
+            head[best]++;
+        }
+        return out;
+    }
+
+    private static double mindist(Rectangle r, double x, double y) {
+        double dx = Math.max(0, Math.max(r.getMinX() - x, x - r.getMaxX()));
+        double dy = Math.max(0, Math.max(r.getMinY() - y, y - r.getMaxY()));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // ---------- 재분할 ----------
+
+    /**
+     * 가장 큰 샤드가 평균의 maxSkew배를 넘으면 자동으로 {@link #rebalance()}를 시작한다.
+     * 샤드 크기 검사는 checkEvery번의 add/delete마다 한 번만 한다.
+     *
+     * @param maxSkew 1보다 커야 하며, 1 이하이면 자동 재분할을 끈다
+     */
+    public void setAutoRebalance(double maxSkew, int checkEvery) {
+        autoRebalanceEvery = Math.max(1, checkEvery);
+        autoRebalanceSkew = maxSkew > 1 ? maxSkew : 0;
+        mutationsSinceCheck.set(0);
+    }
+
+    private void checkSkew() {
+        double maxSkew = autoRebalanceSkew;
+        if (maxSkew == 0 || mutationsSinceCheck.incrementAndGet() < autoRebalanceEvery) return;
+        mutationsSinceCheck.set(0);
+        if (size() >= shardCount * 64 && skew() > maxSkew) rebalance();
+    }
+
+    /**
+     * 현재 점들로 kd 분할을 다시 배워 샤드를 백그라운드에서 새로 만들고, 완성되면 한 번에 교체한다.
+     * 재분할 도중의 add/delete는 기존 샤드에 적용하면서 기록해 두었다가 교체 직후 새 샤드에 다시 적용한다.
+     * 이미 재분할 중이면 진행 중인 작업의 future를 반환한다.
+     */
+    public CompletableFuture<Void> rebalance() {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        synchronized (rebalanceMonitor) {
+            if (rebalancing != null) return rebalancing;
+            rebalancing = result;
+        }
+
+        List<Point> points = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (RTreeImpl shard : layout.shards) {
+                Rectangle bounds = shard.getBounds();
+                if (bounds != null) shard.search(bounds).forEachRemaining(points::add);
+            }
+            rebalanceLog = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        REBALANCER.execute(() -> {
+            Throwable failure = null;
+            try {
+                Layout next = new Layout(learn(new ArrayList<>(points), shardCount), shardCount);
+                List<List<Point>> parts = new ArrayList<>(shardCount);
+                for (int i = 0; i < shardCount; i++) parts.add(new ArrayList<>());
+                for (Point p : points) parts.get(next.partition.route(p.getX(), p.getY())).add(p);
+                for (int i = 0; i < shardCount; i++) next.shards[i].load(parts.get(i));
+                swap(next);
+            } catch (Throwable t) {
+                failure = t;
+                lock.writeLock().lock();
+                try {
+                    rebalanceLog = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            synchronized (rebalanceMonitor) {
+                rebalancing = null;
+            }
+            if (failure == null) result.complete(null);
+            else result.completeExceptionally(failure);
+        });
+        return result;
+    }
+
+    private void swap(Layout next) {
+        lock.writeLock().lock();
+        try {
+            List<PendingOp> log = rebalanceLog;
+            rebalanceLog = null;
+            for (PendingOp op : log) apply(next.shardOf(op.point), op);
+            layout = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.dfpl.dbp.rtree.team2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 인덱스 연산의 진행 과정을 고정 크기 이진 레코드로 남기는 기록기. {@link RTreeImpl#setTraceRecorder(TraceRecorder)}로 건다.
+ * <p>
+ * 시각화 스텝과 달리 알고리즘 스레드를 멈추지 않는다. 레코드는 이벤트 하나에 long 8개(64바이트)이고
+ * <ul>
+ * <li>링 모드: 정해진 개수만 보관하는 원형 버퍼. 가득 차면 가장 오래된 레코드를 덮어쓴다. 쓰기는 잠금이 없고,
+ * 스레드마다 {@value #BLOCK}칸씩 미리 받아 두므로 공유 카운터도 그만큼에 한 번만 올린다.
+ * 받아 둔 블록이 한 바퀴 넘게 뒤처지면 남은 칸은 버리고 새 블록을 받는다.
+ * 같은 연산의 이벤트는 한 스레드가 쓰므로 순서가 유지되고, 다른 스레드의 연산과는 블록 단위로 섞인다.</li>
+ * <li>파일 모드: 64KB 버퍼에 모았다가 파일에 이어 쓴다. {@link #close()}로 남은 버퍼를 내보낸다.</li>
+ * </ul>
+ * 기록한 연산은 {@link TraceViewer}로 한 단계씩 다시 볼 수 있다.
+ */
+public final class TraceRecorder implements Closeable {
+
+    /**
+     * 이벤트 종류. BEGIN_*의 값은 질의 박스/좌표, 노드 이벤트의 값은 노드 MBR이다.
+     */
+    public enum Kind {
+        BEGIN_SEARCH,   // (minX, minY, maxX, maxY)
+        BEGIN_NEAREST,  // (x, y, k)
+        BEGIN_ADD,      // (x, y)
+        BEGIN_DELETE,   // (x, y)
+        END,            // (방문 수, 가지치기 수)
+        VISITED,
+        PRUNED,
+        SPLIT,          // 나뉜 두 노드에 하나씩, 나뉜 뒤의 MBR
+        UNDERFLOW,
+        REINSERT,       // (x, y)
+        RESULT,         // 범위 검색 결과 점 (x, y), 노드 id는 점이 있던 리프
+        KNN_CONFIRMED   // (x, y, 거리)
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final int FLAG_LEAF = 1;
+
+    private static final int MAGIC = 0x52545243; // "RTRC"
+    private static final int VERSION = 1;
+    private static final int SLOTS = 8;          // seq, meta, id, parent, v0..v3
+    private static final int FILE_RECORD = 7 * Long.BYTES; // 파일에는 seq를 빼고 쓴다
+    private static final int BLOCK = 64;
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final AtomicLong ops = new AtomicLong();
+    private final AtomicLong cursor = new AtomicLong();
+    private final ThreadLocal<long[]> claim = ThreadLocal.withInitial(() -> new long[2]); // 받아 둔 칸 [next, limit)
+
+    // 링 모드
+    private final long[] ring;
+    private final int mask;
+
+    // 파일 모드 (this로 보호)
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer out;
+
+    /**
+     * 최근 capacity개(2의 거듭제곱으로 올림) 이벤트를 보관하는 링 모드.
+     * 한 바퀴 도는 사이 같은 칸을 두 스레드가 동시에 쓰지 않도록 동시 질의 수보다 넉넉하게 잡는다.
+     */
+    public TraceRecorder(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 24)) throw new IllegalArgumentException("capacity: " + capacity);
+        int n = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        ring = new long[n * SLOTS];
+        mask = n - 1;
+        file = null;
+        channel = null;
+        out = null;
+    }
+
+    /**
+     * 모든 이벤트를 file에 이어 쓰는 파일 모드. 파일이 있으면 덮어쓴다.
+     */
+    public TraceRecorder(Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION);
+        ring = null;
+        mask = 0;
+    }
+
+    // ---------- 기록 (인덱스가 부른다) ----------
+
+    /**
+     * 새 연산 번호를 받고 BEGIN 이벤트를 남긴다.
+     */
+    long begin(Kind kind, double v0, double v1, double v2, double v3) {
+        long op = ops.incrementAndGet();
+        record(op, kind, false, 0, 0, v0, v1, v2, v3);
+        return op;
+    }
+
+    void record(long op, Kind kind, boolean leaf, long id, long parent,
+                double v0, double v1, double v2, double v3) {
+        long meta = op << 16 | (leaf ? FLAG_LEAF : 0) << 8 | kind.ordinal();
+        if (ring == null) {
+            writeFile(meta, id, parent, v0, v1, v2, v3);
+            return;
+        }
+        long[] c = claim.get();
+        // 블록을 받아 둔 채 쉬는 사이 링이 한 바퀴 넘게 돌았으면 그 칸에는 더 새 레코드가 있다. 버리고 새로 받는다
+        if (c[0] == c[1] || c[0] < cursor.get() - (mask + 1L)) {
+            c[0] = cursor.getAndAdd(BLOCK);
+            c[1] = c[0] + BLOCK;
+        }
+        long seq = c[0]++;
+        int base = (int) (seq & mask) * SLOTS;
+        // seqlock: 쓰는 동안은 0, 다 쓰면 seq + 1을 release로 건다
+        SLOT.setOpaque(ring, base, 0L);
+        VarHandle.storeStoreFence();
+        ring[base + 1] = meta;
+        ring[base + 2] = id;
+        ring[base + 3] = parent;
+        ring[base + 4] = Double.doubleToRawLongBits(v0);
+        ring[base + 5] = Double.doubleToRawLongBits(v1);
+        ring[base + 6] = Double.doubleToRawLongBits(v2);
+        ring[base + 7] = Double.doubleToRawLongBits(v3);
+        SLOT.setRelease(ring, base, seq + 1);
+    }
+
+    private synchronized void writeFile(long meta, long id, long parent, double v0, double v1, double v2, double v3) {
+        if (out.remaining() < FILE_RECORD) flush();
+        out.putLong(meta).putLong(id).putLong(parent)
+                .putDouble(v0).putDouble(v1).putDouble(v2).putDouble(v3);
+        cursor.getAndIncrement();
+    }
+
+    private void flush() {
+        out.flip();
+        try {
+            while (out.hasRemaining()) channel.write(out);
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        } finally {
+            out.clear();
+        }
+    }
+
+    // ---------- 읽기 ----------
+
+    /** 지금까지 기록한 이벤트 수 (덮어쓴 것 포함, 링 모드에서는 스레드가 받아 둔 칸까지 센다) */
+    public long recorded() {
+        return cursor.get();
+    }
+
+    /** 링이 가득 차 덮어쓴 이벤트 수 (파일 모드는 0) */
+    public long overwritten() {
+        return ring == null ? 0 : Math.max(0, cursor.get() - (mask + 1L));
+    }
+
+    /**
+     * 보관 중인 이벤트를 오래된 순서로 돌려준다. 링 모드에서는 읽는 사이 덮어써진 레코드를 건너뛴다.
+     * 파일 모드에서는 버퍼를 내보내고 파일을 다시 읽는다.
+     */
+    public List<Event> events() throws IOException {
+        if (ring == null) {
+            synchronized (this) {
+                flush();
+            }
+            return read(file);
+        }
+        long end = cursor.get();
+        long start = Math.max(0, end - (mask + 1L));
+        ArrayList<Event> list = new ArrayList<>((int) (end - start));
+        long[] rec = new long[SLOTS];
+        for (long seq = start; seq < end; seq++) {
+            int base = (int) (seq & mask) * SLOTS;
+            long before = (long) SLOT.getAcquire(ring, base);
+            if (before != seq + 1) continue; // 아직 쓰는 중이거나 이미 덮어씀
+            System.arraycopy(ring, base, rec, 0, SLOTS);
+            VarHandle.loadLoadFence();
+            if ((long) SLOT.getAcquire(ring, base) != before) continue;
+            list.add(new Event(rec[1], rec[2], rec[3], rec[4], rec[5], rec[6], rec[7]));
+        }
+        return list;
+    }
+
+    /**
+     * 보관 중인 이벤트를 파일 모드와 같은 형식으로 저장한다.
+     */
+    public void writeTo(Path path) throws IOException {
+        List<Event> events = events();
+        ByteBuffer buf = ByteBuffer.allocate(2 * Integer.BYTES + events.size() * FILE_RECORD).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION);
+        for (Event e : events) {
+            buf.putLong(e.meta).putLong(e.id).putLong(e.parent);
+            for (double v : e.values) buf.putDouble(v);
+        }
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+    }
+
+    /**
+     * 파일 모드나 {@link #writeTo(Path)}로 남긴 기록을 읽는다.
+     */
+    public static List<Event> read(Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < 8 || buf.getInt() != MAGIC) throw new IOException("not a trace file: " + path);
+        int version = buf.getInt();
+        if (version != VERSION) throw new IOException("unsupported trace version " + version + ": " + path);
+        ArrayList<Event> list = new ArrayList<>(buf.remaining() / FILE_RECORD);
+        while (buf.remaining() >= FILE_RECORD) {
+            list.add(new Event(buf.getLong(), buf.getLong(), buf.getLong(),
+                    buf.getLong(), buf.getLong(), buf.getLong(), buf.getLong()));
+        }
+        return list;
+    }
+
+    /**
+     * events에서 연산 op의 이벤트만 고른다.
+     */
+    public static List<Event> operation(List<Event> events, long op) {
+        ArrayList<Event> list = new ArrayList<>();
+        for (Event e : events) if (e.getOp() == op) list.add(e);
+        return Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) return;
+        synchronized (this) {
+            flush();
+            channel.close();
+        }
+    }
+
+    /**
+     * 기록된 이벤트 하나 (불변).
+     */
+    public static final class Event {
+        private final long meta;
+        private final long id;
+        private final long parent;
+        private final double[] values;
+
+        private Event(long meta, long id, long parent, long v0, long v1, long v2, long v3) {
+            this.meta = meta;
+            this.id = id;
+            this.parent = parent;
+            this.values = new double[] { Double.longBitsToDouble(v0), Double.longBitsToDouble(v1),
+                    Double.longBitsToDouble(v2), Double.longBitsToDouble(v3) };
+        }
+
+        /** 연산 번호 (1부터, 같은 연산의 이벤트는 같은 번호) */
+        public long getOp() { return meta >>> 16; }
+
+        public Kind getKind() { return KINDS[(int) (meta & 0xFF)]; }
+
+        public boolean isLeaf() { return ((meta >>> 8) & FLAG_LEAF) != 0; }
+
+        /** 노드 이벤트의 노드 id (없으면 0) */
+        public long getNodeId() { return id; }
+
+        /** 노드 이벤트가 일어난 때의 부모 노드 id (루트면 0) */
+        public long getParentId() { return parent; }
+
+        public double get(int i) { return values[i]; }
+
+        public Rectangle getRect() { return new Rectangle(values[0], values[1], values[2], values[3]); }
+
+        public Point getPoint() { return new Point(values[0], values[1]); }
+
+        @Override
+        public String toString() {
+            Kind k = getKind();
+            switch (k) {
+                case BEGIN_SEARCH:
+                    return String.format("#%d %s [%.2f, %.2f]-[%.2f, %.2f]", getOp(), k, values[0], values[1], values[2], values[3]);
+                case BEGIN_NEAREST:
+                    return String.format("#%d %s (%.2f, %.2f) k=%d", getOp(), k, values[0], values[1], (int) values[2]);
+                case END:
+                    return String.format("#%d %s visited=%d pruned=%d", getOp(), k, (int) values[0], (int) values[1]);
+                case KNN_CONFIRMED:
+                    return String.format("#%d %s (%.2f, %.2f) d=%.3f", getOp(), k, values[0], values[1], values[2]);
+                case BEGIN_ADD:
+                case BEGIN_DELETE:
+                case REINSERT:
+                case RESULT:
+                    return String.format("#%d %s (%.2f, %.2f)", getOp(), k, values[0], values[1]);
+                default:
+                    return String.format("#%d %s %s %d [%.2f, %.2f]-[%.2f, %.2f]", getOp(), k, isLeaf() ? "leaf" : "node",
+                            id, values[0], values[1], values[2], values[3]);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.dfpl.dbp.rtree.team2;
+
+import javax.swing.*;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * {@link TraceRecorder}로 남긴 기록을 한 연산씩, 한 이벤트씩 다시 그리는 뷰어. 그리기는 {@link TreeView}를 그대로 쓴다.
+ * <p>
+ * 기록에는 연산이 건드린 노드만 있으므로 화면에는 그 노드들(방문/가지치기/분할/언더플로)과 검색 결과 점만 나온다.
+ * 부모가 기록에 없는 노드가 여럿이면 그 합집합을 덮는 가상 루트(id 0) 아래에 둔다.
+ * <ul>
+ * <li>→, 스페이스, 엔터: 다음 이벤트 / ←, 백스페이스: 이전 이벤트 / Home, End: 처음, 끝</li>
+ * <li>PageDown, n: 다음 연산 / PageUp, p: 이전 연산</li>
+ * </ul>
+ * 실행: {@code java org.dfpl.dbp.rtree.team2.TraceViewer <trace 파일> [연산 번호]}
+ */
+@SuppressWarnings("serial") // 화면용이라 직렬화하지 않는다
+public class TraceViewer extends TreeView {
+
+    private final List<TraceRecorder.Event> events;
+    private final long[] ops;  // 기록에 나오는 연산 번호 (오름차순)
+    private int opIndex;
+    private List<TraceRecorder.Event> current = Collections.emptyList();
+    private int step;          // current에서 이미 적용한 이벤트 수
+    private String status = "";
+
+    public TraceViewer(List<TraceRecorder.Event> events) {
+        this.events = events;
+        TreeSet<Long> seen = new TreeSet<>();
+        for (TraceRecorder.Event e : events) seen.add(e.getOp());
+        ops = new long[seen.size()];
+        int i = 0;
+        for (long op : seen) ops[i++] = op;
+        if (ops.length > 0) selectOp(0);
+    }
+
+    /**
+     * 창을 띄워 events를 보여 준다. 처음에는 op번 연산을 연다 (없으면 첫 연산).
+     */
+    public static TraceViewer open(List<TraceRecorder.Event> events, long op) {
+        TraceViewer viewer = new TraceViewer(events);
+        int idx = Arrays.binarySearch(viewer.ops, op);
+        if (idx >= 0) viewer.selectOp(idx);
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("R-Tree Trace Replay");
+            frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+            frame.setSize(820, 820);
+            frame.setLocationByPlatform(true);
+            frame.setContentPane(viewer);
+            frame.addKeyListener(viewer.keys());
+            frame.setFocusable(true);
+            frame.setVisible(true);
+            frame.requestFocus();
+        });
+        return viewer;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: TraceViewer <trace file> [op]");
+            return;
+        }
+        List<TraceRecorder.Event> events = TraceRecorder.read(Path.of(args[0]));
+        // 연산 목록은 콘솔에 (BEGIN 이벤트 한 줄씩)
+        for (TraceRecorder.Event e : events) {
+            if (e.getKind().name().startsWith("BEGIN_")) System.out.println(e);
+        }
+        open(events, args.length > 1 ? Long.parseLong(args[1]) : 0);
+    }
+
+    private KeyAdapter keys() {
+        return new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (toggleLayer(e.getKeyChar())) return;
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_RIGHT:
+                    case KeyEvent.VK_SPACE:
+                    case KeyEvent.VK_ENTER:
+                        seek(step + 1);
+                        break;
+                    case KeyEvent.VK_LEFT:
+                    case KeyEvent.VK_BACK_SPACE:
+                        seek(step - 1);
+                        break;
+                    case KeyEvent.VK_HOME:
+                        seek(0);
+                        break;
+                    case KeyEvent.VK_END:
+                        seek(current.size());
+                        break;
+                    case KeyEvent.VK_PAGE_DOWN:
+                    case KeyEvent.VK_N:
+                        if (opIndex + 1 < ops.length) selectOp(opIndex + 1);
+                        break;
+                    case KeyEvent.VK_PAGE_UP:
+                    case KeyEvent.VK_P:
+                        if (opIndex > 0) selectOp(opIndex - 1);
+                        break;
+                    default:
+                }
+            }
+        };
+    }
+
+    /** 기록에 있는 연산 번호들 */
+    public long[] operations() {
+        return ops.clone();
+    }
+
+    /**
+     * idx번째 연산을 열고 첫 이벤트(BEGIN)까지 적용한다.
+     */
+    void selectOp(int idx) {
+        opIndex = idx;
+        current = TraceRecorder.operation(events, ops[idx]);
+        seek(Math.min(1, current.size()));
+    }
+
+    /**
+     * 현재 연산의 처음 n개 이벤트를 적용한 상태로 다시 그린다. 뒤로 갈 수도 있도록 매번 처음부터 다시 쌓는다.
+     */
+    void seek(int n) {
+        step = Math.max(0, Math.min(n, current.size()));
+        resetMarks();
+        Map<Long, Replayed> nodes = new LinkedHashMap<>();
+        List<Point> knn = new ArrayList<>();
+        for (int i = 0; i < step; i++) {
+            TraceRecorder.Event e = current.get(i);
+            switch (e.getKind()) {
+                case BEGIN_SEARCH:
+                    lastQuery = e.getRect();
+                    break;
+                case BEGIN_NEAREST:
+                    lastSource = e.getPoint();
+                    break;
+                case BEGIN_ADD:
+                case REINSERT:
+                    lastInserted = e.getPoint();
+                    break;
+                case BEGIN_DELETE:
+                    lastDeleted = e.getPoint();
+                    break;
+                case VISITED:
+                case SPLIT:
+                    apply(nodes, e);
+                    pruned.remove(e.getNodeId());
+                    visited.add(e.getNodeId());
+                    break;
+                case PRUNED:
+                case UNDERFLOW:
+                    apply(nodes, e);
+                    pruned.add(e.getNodeId());
+                    break;
+                case RESULT: {
+                    Replayed leaf = nodes.get(e.getNodeId());
+                    if (leaf != null) {
+                        leaf.xs.add(e.get(0));
+                        leaf.ys.add(e.get(1));
+                    }
+                    break;
+                }
+                case KNN_CONFIRMED:
+                    knn.add(e.getPoint());
+                    break;
+                default:
+            }
+        }
+        knnSoFar = knn;
+        status = current.isEmpty() ? "(empty trace)"
+                : String.format("op %d/%d  step %d/%d  %s", opIndex + 1, ops.length, step, current.size(),
+                step == 0 ? current.get(0) : current.get(step - 1));
+
+        ArrayList<Rectangle> dirty = new ArrayList<>();
+        publish(build(nodes, dirty), dirty);
+    }
+
+    private static void apply(Map<Long, Replayed> nodes, TraceRecorder.Event e) {
+        Replayed r = nodes.computeIfAbsent(e.getNodeId(), Replayed::new);
+        r.parent = e.getParentId();
+        r.leaf = e.isLeaf();
+        if (!Double.isNaN(e.get(0))) r.mbr = e.getRect();
+    }
+
+    // 노드 상태 → 스냅샷 트리. 부모가 기록에 없으면 맨 위 노드로 본다
+    private SNode build(Map<Long, Replayed> nodes, List<Rectangle> dirty) {
+        Map<Long, List<Replayed>> children = new HashMap<>();
+        List<Replayed> tops = new ArrayList<>();
+        for (Replayed r : nodes.values()) {
+            if (r.parent != 0 && nodes.containsKey(r.parent)) children.computeIfAbsent(r.parent, k -> new ArrayList<>()).add(r);
+            else tops.add(r);
+        }
+        if (tops.isEmpty()) return null;
+        if (tops.size() == 1) return snap(tops.get(0), children, dirty);
+        SNode[] kids = new SNode[tops.size()];
+        Rectangle mbr = null;
+        for (int i = 0; i < kids.length; i++) {
+            kids[i] = snap(tops.get(i), children, dirty);
+            if (kids[i].mbr != null) mbr = mbr == null ? kids[i].mbr : union(mbr, kids[i].mbr);
+        }
+        SNode root = new SNode(0, step, mbr, kids);
+        remember(cached(0), root, dirty);
+        return root;
+    }
+
+    private SNode snap(Replayed r, Map<Long, List<Replayed>> children, List<Rectangle> dirty) {
+        SNode s;
+        if (r.leaf) {
+            double[] xs = new double[r.xs.size()], ys = new double[r.ys.size()];
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = r.xs.get(i);
+                ys[i] = r.ys.get(i);
+            }
+            s = new SNode(r.id, step, r.mbr, xs, ys);
+        } else {
+            List<Replayed> cs = children.getOrDefault(r.id, Collections.emptyList());
+            SNode[] kids = new SNode[cs.size()];
+            for (int i = 0; i < kids.length; i++) kids[i] = snap(cs.get(i), children, dirty);
+            s = new SNode(r.id, step, r.mbr, kids);
+        }
+        remember(cached(r.id), s, dirty);
+        return s;
+    }
+
+    private static Rectangle union(Rectangle a, Rectangle b) {
+        return new Rectangle(Math.min(a.getMinX(), b.getMinX()), Math.min(a.getMinY(), b.getMinY()),
+                Math.max(a.getMaxX(), b.getMaxX()), Math.max(a.getMaxY(), b.getMaxY()));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        g.setColor(Color.black);
+        g.drawString(status, 24, 14);
+    }
+
+    // 재생 중인 노드 하나의 상태
+    private static final class Replayed {
+        final long id;
+        long parent;
+        boolean leaf;
+        Rectangle mbr;
+        final ArrayList<Double> xs = new ArrayList<>(), ys = new ArrayList<>();
+
+        Replayed(long id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.dfpl.dbp.rtree.team2;
+
+/**
+ * R-Tree 품질 통계 (불변). level 0이 루트, level height-1이 리프이다.
+ * <ul>
+ * <li>fill: 노드당 엔트리 수 / M</li>
+ * <li>overlap: 같은 노드 안의 자식 MBR끼리 겹치는 면적의 합</li>
+ * <li>dead space: 노드 MBR 중 어떤 자식 MBR에도 덮이지 않는 면적의 합</li>
+ * <li>margin: MBR 둘레 2 * (w + h)</li>
+ * </ul>
+ */
+public final class TreeStats {
+
+    private final int size;
+    private final int maxEntries;
+    private final int[] nodeCount;
+    private final long[] entryCount;
+    private final double[] overlap;
+    private final double[] deadSpace;
+    private final double[] area;
+    private final double[] margin;
+
+    TreeStats(int size, int maxEntries, int[] nodeCount, long[] entryCount, double[] overlap,
+              double[] deadSpace, double[] area, double[] margin) {
+        this.size = size;
+        this.maxEntries = maxEntries;
+        this.nodeCount = nodeCount;
+        this.entryCount = entryCount;
+        this.overlap = overlap;
+        this.deadSpace = deadSpace;
+        this.area = area;
+        this.margin = margin;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getHeight() {
+        return nodeCount.length;
+    }
+
+    public int getNodeCount(int level) {
+        return nodeCount[level];
+    }
+
+    public int getNodeCount() {
+        int n = 0;
+        for (int c : nodeCount) n += c;
+        return n;
+    }
+
+    public double getFillFactor(int level) {
+        return nodeCount[level] == 0 ? 0 : (double) entryCount[level] / ((long) nodeCount[level] * maxEntries);
+    }
+
+    // 루트는 엔트리가 적어도 정상이므로 루트를 뺀 평균 (루트만 있으면 루트 값)
+    public double getFillFactor() {
+        long entries = 0, capacity = 0;
+        for (int l = getHeight() > 1 ? 1 : 0; l < getHeight(); l++) {
+            entries += entryCount[l];
+            capacity += (long) nodeCount[l] * maxEntries;
+        }
+        return capacity == 0 ? 0 : (double) entries / capacity;
+    }
+
+    public double getOverlap(int level) {
+        return overlap[level];
+    }
+
+    public double getOverlap() {
+        return sum(overlap);
+    }
+
+    public double getDeadSpace(int level) {
+        return deadSpace[level];
+    }
+
+    public double getDeadSpace() {
+        return sum(deadSpace);
+    }
+
+    public double getAverageMargin(int level) {
+        return nodeCount[level] == 0 ? 0 : margin[level] / nodeCount[level];
+    }
+
+    public double getAverageMargin() {
+        int n = getNodeCount();
+        return n == 0 ? 0 : sum(margin) / n;
+    }
+
+    /**
+     * 겹침 비율: 내부 노드 안 자식 MBR 겹침 면적 합 / 자식 MBR 면적 합. 0이면 겹침이 없다.
+     */
+    public double getOverlapRatio() {
+        double o = 0, a = 0;
+        for (int l = 0; l + 1 < getHeight(); l++) {
+            o += overlap[l];
+            a += area[l + 1];
+        }
+        return a == 0 ? 0 : o / a;
+    }
+
+    /**
+     * 0 ~ 1 사이 품질 점수 = 채움률 * (1 - min(1, 겹침 비율)). 재구성 기준값으로 사용한다.
+     */
+    public double getQuality() {
+        return getFillFactor() * (1 - Math.min(1, getOverlapRatio()));
+    }
+
+    private static double sum(double[] a) {
+        double s = 0;
+        for (double v : a) s += v;
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("TreeStats [size=%d, height=%d, nodes=%d, fill=%.3f, overlap=%.2f, deadSpace=%.2f, margin=%.2f, quality=%.3f]",
+                size, getHeight(), getNodeCount(), getFillFactor(), getOverlap(), getDeadSpace(), getAverageMargin(),
+                getQuality()));
+        for (int l = 0; l < getHeight(); l++) {
+            sb.append(String.format("%n  level %d: nodes=%d, fill=%.3f, overlap=%.2f, deadSpace=%.2f, margin=%.2f",
+                    l, nodeCount[l], getFillFactor(l), overlap[l], deadSpace[l], getAverageMargin(l)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,745 @@
+package org.dfpl.dbp.rtree.team2;
+
+import javax.swing.*;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * R-Tree 구조를 그리는 패널.
+ * <p>
+ * 트리는 불변 스냅샷({@link SNode})으로 받는다. 노드 id와 변경 번호(stamp)가 같은 하위 트리는 이전 스냅샷을 그대로 재사용하므로
+ * 삽입/삭제 한 번 뒤의 스냅샷 비용은 바뀐 경로 길이에 비례한다.
+ * 그림은 깊이별 BufferedImage 레이어와 점 레이어에 캐시하고 그 합성 결과도 한 장으로 들고 있다가, 스냅샷이 바뀌면
+ * 바뀐 노드가 덮는 영역(dirty region)만 레이어에 다시 그리고 다시 합성한다. 매 프레임은 합성 이미지 한 장 + 표시만 그린다.
+ * <ul>
+ * <li>level of detail: 화면 안 점이 {@value #LOD_POINTS}개를 넘으면 점 대신 픽셀별 밀도 음영으로, 화면에서 {@value #MIN_RECT}px보다 작은 MBR은 생략</li>
+ * <li>휠: 확대/축소, 드래그: 이동, 더블클릭: 전체 보기, 숫자 키 1~9: 해당 깊이 레이어 켜기/끄기 (0: 점 레이어)</li>
+ * </ul>
+ * 질의 박스, kNN, 방문/가지치기 노드 같은 표시는 레이어 위에 매번 덧그린다.
+ */
+@SuppressWarnings("serial") // 화면용이라 직렬화하지 않는다
+class TreeView extends JPanel {
+
+    private static final int LOD_POINTS = 50_000;
+    private static final int MARGIN = 40;
+    private static final int PAD = 6; // 점 반지름 + 테두리 두께
+    private static final double ZOOM_STEP = 1.25;
+    private static final int MAX_DIRTY = 256;
+    private static final int MIN_RECT = 3; // 화면에서 이보다 작은 MBR은 그리지 않는다
+
+    private static final int OUTLINE = Color.darkGray.getRGB(); // 불투명이라 premultiplied 값도 같다
+
+    private static final Color[] PALETTE = {
+            new Color(0, 0, 0, 30),
+            new Color(0, 120, 255, 40),
+            new Color(0, 170, 0, 40),
+            new Color(255, 140, 0, 40),
+            new Color(190, 0, 190, 40)
+    };
+
+    /**
+     * 스냅샷 노드 (불변). 리프면 xs/ys에 점을, 내부 노드면 children에 자식을 가진다.
+     */
+    static final class SNode {
+        private static final SNode[] NO_CHILDREN = new SNode[0];
+        private static final double[] NO_POINTS = new double[0];
+
+        final long id;
+        final long stamp;
+        final Rectangle mbr; // 빈 노드면 null
+        final boolean leaf;
+        final SNode[] children;
+        final double[] xs, ys;
+        final int height;  // 리프 0
+        final int nodes;   // 하위 트리 노드 수
+        final long points; // 하위 트리 점 수
+
+        SNode(long id, long stamp, Rectangle mbr, double[] xs, double[] ys) {
+            this.id = id;
+            this.stamp = stamp;
+            this.mbr = mbr;
+            this.leaf = true;
+            this.children = NO_CHILDREN;
+            this.xs = xs;
+            this.ys = ys;
+            this.height = 0;
+            this.nodes = 1;
+            this.points = xs.length;
+        }
+
+        SNode(long id, long stamp, Rectangle mbr, SNode[] children) {
+            this.id = id;
+            this.stamp = stamp;
+            this.mbr = mbr;
+            this.leaf = false;
+            this.children = children;
+            this.xs = NO_POINTS;
+            this.ys = NO_POINTS;
+            int h = 0, n = 1;
+            long p = 0;
+            for (SNode c : children) {
+                h = Math.max(h, c.height + 1);
+                n += c.nodes;
+                p += c.points;
+            }
+            this.height = h;
+            this.nodes = n;
+            this.points = p;
+        }
+    }
+
+    // ---------- 스냅샷 (갱신 스레드가 쓰고 EDT가 읽는다, this로 보호) ----------
+
+    private SNode snapRoot;
+    private final ArrayList<Rectangle> pendingDirty = new ArrayList<>();
+    private boolean fullRedraw = true;
+    private final Map<Long, SNode> index = new ConcurrentHashMap<>(); // id -> 최신 스냅샷 노드
+
+    // ---------- 화면 상태 (EDT 전용) ----------
+
+    // 월드 좌표 범위
+    double wx1 = 0, wy1 = 0, wx2 = 200, wy2 = 200;
+    private boolean userView = false; // 사용자가 이동/확대하면 자동 맞춤을 멈춘다
+
+    private BufferedImage[] layers = new BufferedImage[0]; // 깊이별 MBR
+    private BufferedImage pointLayer;
+    private BufferedImage composite; // 배경 + 보이는 레이어 합성 (불투명)
+    private boolean recompose;
+    private int[] density;
+    private int[][] rectBuf = new int[0][]; // 깊이별 (x, y, w, h) 묶음
+    private int[] rectCount = new int[0];
+    private boolean densityMode;
+    private int layerW = -1, layerH = -1;
+    private long layerRoot = -1;
+    private final boolean[] hidden = new boolean[10];
+    private int dragX, dragY;
+    private int shiftX, shiftY; // 다음 그리기 전에 레이어를 옮길 픽셀 수
+
+    // ---------- 표시 ----------
+
+    Rectangle lastQuery;
+    Point lastSource;
+    Point lastInserted, lastDeleted;
+    final Set<Long> visited = Collections.synchronizedSet(new HashSet<>());
+    final Set<Long> pruned = Collections.synchronizedSet(new HashSet<>());
+    List<Point> knnSoFar = new ArrayList<>();
+
+    TreeView() {
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                pan(e.getX() - dragX, e.getY() - dragY);
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) fitView();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(e.getX(), e.getY(), Math.pow(ZOOM_STEP, e.getPreciseWheelRotation()));
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    void resetMarks() {
+        lastQuery = null;
+        lastSource = null;
+        lastInserted = null;
+        lastDeleted = null;
+        visited.clear();
+        pruned.clear();
+        knnSoFar = new ArrayList<>();
+    }
+
+    // ---------- 스냅샷 갱신 ----------
+
+    // id의 최신 스냅샷 노드 (없으면 null)
+    SNode cached(long id) {
+        return index.get(id);
+    }
+
+    /**
+     * 새로 만든 스냅샷 노드를 등록하고, 이전 노드(prev)와 비교해 다시 그려야 할 월드 영역을 dirty에 더한다.
+     */
+    void remember(SNode prev, SNode s, List<Rectangle> dirty) {
+        index.put(s.id, s);
+        if (prev == null) {
+            if (s.mbr != null) dirty.add(s.mbr);
+            return;
+        }
+        if (s.leaf || !Objects.equals(prev.mbr, s.mbr)) {
+            if (prev.mbr != null) dirty.add(prev.mbr);
+            if (s.mbr != null) dirty.add(s.mbr);
+        }
+        // 빠진 자식은 그 영역을 지워야 한다 (다른 부모로 옮겨 갔어도 그 자리에 다시 그려진다)
+        for (SNode old : prev.children) {
+            boolean kept = false;
+            for (SNode c : s.children) {
+                if (c.id == old.id) {
+                    kept = true;
+                    break;
+                }
+            }
+            if (!kept && old.mbr != null) dirty.add(old.mbr);
+        }
+    }
+
+    /**
+     * 새 스냅샷을 걸고 다시 그린다. 루트가 바뀌면(분할, 수축, 재구성) 깊이가 달라지므로 전체를 다시 그린다.
+     */
+    void publish(SNode root, List<Rectangle> dirty) {
+        synchronized (this) {
+            if (root == null || snapRoot == null || root.id != snapRoot.id || root.height != snapRoot.height) {
+                fullRedraw = true;
+                pendingDirty.clear();
+            } else if (!fullRedraw) {
+                pendingDirty.addAll(dirty);
+                // 그리기가 밀려 영역이 쌓이면 한 번에 전체를 그리는 편이 싸다
+                if (pendingDirty.size() > MAX_DIRTY) {
+                    fullRedraw = true;
+                    pendingDirty.clear();
+                }
+            }
+            snapRoot = root;
+        }
+        // 트리에서 빠진 노드가 쌓이면 살아 있는 노드만으로 다시 만든다
+        if (root != null && index.size() > 2 * root.nodes + 64) {
+            index.clear();
+            reindex(root);
+        }
+        repaint();
+    }
+
+    private void reindex(SNode n) {
+        index.put(n.id, n);
+        for (SNode c : n.children) reindex(c);
+    }
+
+    // ---------- 화면 이동 ----------
+
+    private void pan(int dx, int dy) {
+        double sx = (wx2 - wx1) / Math.max(1, getWidth() - 2 * MARGIN);
+        double sy = (wy2 - wy1) / Math.max(1, getHeight() - 2 * MARGIN);
+        wx1 -= dx * sx;
+        wx2 -= dx * sx;
+        wy1 += dy * sy;
+        wy2 += dy * sy;
+        userView = true;
+        // 레이어는 통째로 옮기고 새로 드러난 띠만 그린다
+        shiftX += dx;
+        shiftY += dy;
+        repaint();
+    }
+
+    private void zoom(int sx, int sy, double factor) {
+        double cx = worldX(sx, getWidth()), cy = worldY(sy, getHeight());
+        wx1 = cx - (cx - wx1) * factor;
+        wx2 = cx + (wx2 - cx) * factor;
+        wy1 = cy - (cy - wy1) * factor;
+        wy2 = cy + (wy2 - cy) * factor;
+        userView = true;
+        invalidateLayers();
+    }
+
+    private void fitView() {
+        userView = false;
+        SNode root;
+        synchronized (this) {
+            root = snapRoot;
+        }
+        fit(root == null ? null : root.mbr);
+        invalidateLayers();
+    }
+
+    private void fit(Rectangle r) {
+        if (r == null) {
+            wx1 = 0; wy1 = 0; wx2 = 200; wy2 = 200;
+            return;
+        }
+        double dx = (r.getMaxX() - r.getMinX()) * 0.05 + 1;
+        double dy = (r.getMaxY() - r.getMinY()) * 0.05 + 1;
+        wx1 = r.getMinX() - dx;
+        wy1 = r.getMinY() - dy;
+        wx2 = r.getMaxX() + dx;
+        wy2 = r.getMaxY() + dy;
+    }
+
+    private void invalidateLayers() {
+        synchronized (this) {
+            fullRedraw = true;
+            pendingDirty.clear();
+        }
+        repaint();
+    }
+
+    /**
+     * 숫자 키로 레이어를 켜고 끈다. 처리했으면 true.
+     */
+    boolean toggleLayer(char key) {
+        if (key < '0' || key > '9') return false;
+        hidden[key - '0'] = !hidden[key - '0'];
+        recompose = true;
+        repaint();
+        return true;
+    }
+
+    // ---------- 좌표 변환 ----------
+
+    java.awt.Point map(double x, double y, int W, int H) {
+        return new java.awt.Point(screenX(x, W), screenY(y, H));
+    }
+
+    private int screenX(double x, int W) {
+        double nx = (x - wx1) / Math.max(1e-9, (wx2 - wx1));
+        return (int) Math.round(MARGIN + nx * (W - 2 * MARGIN));
+    }
+
+    private int screenY(double y, int H) {
+        double ny = (y - wy1) / Math.max(1e-9, (wy2 - wy1));
+        return (int) Math.round(H - MARGIN - ny * (H - 2 * MARGIN)); // 위쪽이 +Y
+    }
+
+    java.awt.Rectangle toAwtRect(Rectangle r, int W, int H) {
+        java.awt.Point a = map(r.getMinX(), r.getMinY(), W, H);
+        java.awt.Point b = map(r.getMaxX(), r.getMaxY(), W, H);
+        int x = Math.min(a.x, b.x);
+        int y = Math.min(a.y, b.y);
+        int w = Math.abs(a.x - b.x);
+        int h = Math.abs(a.y - b.y);
+        return new java.awt.Rectangle(x, y, w, h);
+    }
+
+    private double worldX(int sx, int W) {
+        return wx1 + (double) (sx - MARGIN) / Math.max(1, W - 2 * MARGIN) * (wx2 - wx1);
+    }
+
+    private double worldY(int sy, int H) {
+        return wy1 + (double) (H - MARGIN - sy) / Math.max(1, H - 2 * MARGIN) * (wy2 - wy1);
+    }
+
+    // 화면 사각형을 덮는 월드 사각형
+    private Rectangle toWorld(java.awt.Rectangle r, int W, int H) {
+        return new Rectangle(worldX(r.x, W), worldY(r.y + r.height, H), worldX(r.x + r.width, W), worldY(r.y, H));
+    }
+
+    // ---------- 그리기 ----------
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        int W = getWidth();
+        int H = getHeight();
+
+        SNode root;
+        List<Rectangle> dirty;
+        boolean full;
+        synchronized (this) {
+            root = snapRoot;
+            dirty = new ArrayList<>(pendingDirty);
+            pendingDirty.clear();
+            full = fullRedraw;
+            fullRedraw = false;
+        }
+        if (root != null && root.mbr != null && !userView
+                && (root.mbr.getMinX() < wx1 || root.mbr.getMinY() < wy1
+                || root.mbr.getMaxX() > wx2 || root.mbr.getMaxY() > wy2)) {
+            fit(root.mbr);
+            full = true;
+        }
+        boolean dense = visiblePoints(root) > LOD_POINTS;
+        long rootId = root == null ? -1 : root.id;
+        if (W != layerW || H != layerH || dense != densityMode || rootId != layerRoot
+                || layers.length != (root == null ? 0 : root.height + 1)) {
+            full = true;
+        }
+
+        java.awt.Rectangle screen = new java.awt.Rectangle(0, 0, W, H);
+        int dx = shiftX, dy = shiftY;
+        shiftX = 0;
+        shiftY = 0;
+        if (!full && (dx != 0 || dy != 0)) {
+            if (Math.abs(dx) >= W || Math.abs(dy) >= H) {
+                full = true;
+            } else {
+                for (BufferedImage layer : layers) shift(pixels(layer), W, H, dx, dy);
+                shift(pixels(pointLayer), W, H, dx, dy);
+                if (densityMode) shift(density, W, H, dx, dy);
+                java.awt.Rectangle cols = new java.awt.Rectangle(dx > 0 ? 0 : W + dx, 0, Math.abs(dx), H);
+                java.awt.Rectangle rows = new java.awt.Rectangle(0, dy > 0 ? 0 : H + dy, W, Math.abs(dy));
+                shift(pixels(composite), W, H, dx, dy);
+                if (!cols.isEmpty()) render(root, cols, W, H);
+                if (!rows.isEmpty()) render(root, rows, W, H);
+                compose(cols);
+                compose(rows);
+                // 테두리는 화면에 고정이므로 옮겨진 자리와 원래 자리를 다시 합성한다
+                for (int k = 0; k < 2; k++) {
+                    int ox = k == 0 ? 0 : dx, oy = k == 0 ? 0 : dy;
+                    compose(new java.awt.Rectangle(20 + ox, 20 + oy, W - 39, 1).intersection(screen));
+                    compose(new java.awt.Rectangle(20 + ox, H - 20 + oy, W - 39, 1).intersection(screen));
+                    compose(new java.awt.Rectangle(20 + ox, 20 + oy, 1, H - 39).intersection(screen));
+                    compose(new java.awt.Rectangle(W - 20 + ox, 20 + oy, 1, H - 39).intersection(screen));
+                }
+            }
+        }
+        if (full) {
+            allocateLayers(root, W, H);
+            densityMode = dense;
+            layerRoot = rootId;
+            render(root, screen, W, H);
+            compose(screen);
+        } else {
+            for (Rectangle r : dirty) {
+                java.awt.Rectangle clip = toAwtRect(r, W, H);
+                clip.grow(PAD, PAD);
+                clip = clip.intersection(screen);
+                render(root, clip, W, H);
+                compose(clip);
+            }
+            if (recompose) compose(screen);
+        }
+        recompose = false;
+
+        if (composite != null) g2.drawImage(composite, 0, 0, null);
+
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        paintMarks(g2, W, H);
+    }
+
+    // 배경 위에 보이는 레이어를 깊이 순서로, 마지막에 점 레이어를 얹는다
+    private void compose(java.awt.Rectangle clip) {
+        if (composite == null || clip.isEmpty()) return;
+        Graphics2D g = composite.createGraphics();
+        g.setClip(clip);
+        g.setColor(Color.white);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        g.setColor(Color.lightGray);
+        g.drawRect(20, 20, layerW - 40, layerH - 40);
+        g.dispose();
+
+        int W = layerW;
+        int[] out = pixels(composite);
+        for (int d = 0; d <= layers.length; d++) {
+            boolean points = d == layers.length;
+            if (points ? hidden[0] : (d + 1 < hidden.length && hidden[d + 1])) continue;
+            int[] px = pixels(points ? pointLayer : layers[d]);
+            for (int y = clip.y; y < clip.y + clip.height; y++) {
+                for (int i = y * W + clip.x, end = i + clip.width; i < end; i++) {
+                    int src = px[i];
+                    if (src != 0) out[i] = srcOver(src, out[i], 255 - (src >>> 24));
+                }
+            }
+        }
+    }
+
+    private long visiblePoints(SNode root) {
+        if (root == null || root.mbr == null) return 0;
+        Rectangle r = root.mbr;
+        double area = r.area();
+        if (area == 0) return root.points;
+        double w = Math.min(r.getMaxX(), wx2) - Math.max(r.getMinX(), wx1);
+        double h = Math.min(r.getMaxY(), wy2) - Math.max(r.getMinY(), wy1);
+        if (w <= 0 || h <= 0) return 0;
+        return (long) (root.points * Math.min(1, w * h / area));
+    }
+
+    private void allocateLayers(SNode root, int W, int H) {
+        int depth = root == null ? 0 : root.height + 1;
+        if (W <= 0 || H <= 0) {
+            layers = new BufferedImage[0];
+            pointLayer = null;
+            composite = null;
+            density = null;
+            layerW = W;
+            layerH = H;
+            return;
+        }
+        if (W != layerW || H != layerH || layers.length != depth) {
+            layers = new BufferedImage[depth];
+            for (int d = 0; d < depth; d++) layers[d] = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB_PRE);
+            pointLayer = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB_PRE);
+            composite = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+            density = new int[W * H];
+            layerW = W;
+            layerH = H;
+        }
+    }
+
+    /**
+     * 화면 영역 clip 안을 모든 레이어에서 지우고 다시 그린다. clip과 닿는 노드만 내려간다.
+     */
+    private void render(SNode root, java.awt.Rectangle clip, int W, int H) {
+        if (pointLayer == null || clip.isEmpty()) return;
+        for (BufferedImage layer : layers) clear(pixels(layer), W, clip);
+        Graphics2D gp = pointLayer.createGraphics();
+        gp.setClip(clip);
+        gp.setComposite(AlphaComposite.Clear);
+        gp.fillRect(clip.x, clip.y, clip.width, clip.height);
+        gp.setComposite(AlphaComposite.SrcOver);
+        gp.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (densityMode) {
+            for (int y = clip.y; y < clip.y + clip.height; y++) Arrays.fill(density, y * W + clip.x, y * W + clip.x + clip.width, 0);
+        }
+
+        if (root != null) {
+            java.awt.Rectangle reach = new java.awt.Rectangle(clip);
+            reach.grow(PAD, PAD);
+            Rectangle worldClip = toWorld(reach, W, H);
+            if (rectCount.length < layers.length) {
+                rectCount = new int[layers.length];
+                rectBuf = Arrays.copyOf(rectBuf, layers.length);
+            }
+            Arrays.fill(rectCount, 0);
+            gp.setColor(Color.black);
+            drawNode(root, 0, true, worldClip, clip, gp, W, H);
+
+            // 깊이마다 채우기 → 테두리 순서로 몰아서 그린다
+            for (int d = 0; d < layers.length; d++) {
+                int[] px = pixels(layers[d]);
+                int[] buf = rectBuf[d];
+                int n = rectCount[d];
+                int fill = premultiplied(PALETTE[d % PALETTE.length]);
+                for (int i = 0; i < n; i += 4) fillRect(px, W, clip, buf[i], buf[i + 1], buf[i + 2], buf[i + 3], fill);
+                for (int i = 0; i < n; i += 4) drawRect(px, W, clip, buf[i], buf[i + 1], buf[i + 2], buf[i + 3]);
+            }
+        }
+
+        if (densityMode) {
+            int[] argb = pixels(pointLayer);
+            for (int y = clip.y; y < clip.y + clip.height; y++) {
+                for (int x = clip.x, i = y * W + clip.x; x < clip.x + clip.width; x++, i++) {
+                    int c = density[i];
+                    argb[i] = c == 0 ? 0 : Math.min(255, 64 + 32 * (31 - Integer.numberOfLeadingZeros(c))) << 24;
+                }
+            }
+        }
+        gp.dispose();
+    }
+
+    // ---------- MBR 레이어 픽셀 쓰기 ----------
+    // MBR은 축에 평행한 정수 좌표 사각형이라 Graphics2D를 거치지 않고 레이어 픽셀(premultiplied ARGB)에 직접 쓴다.
+    // 작은 사각형 수만 개를 그릴 때 호출당 파이프라인 비용이 사라진다.
+
+    // 픽셀 배열 내용을 (dx, dy)만큼 옮긴다. 드러난 부분은 호출한 쪽이 다시 그린다
+    private static void shift(int[] px, int W, int H, int dx, int dy) {
+        int len = W - Math.abs(dx);
+        int from = Math.max(0, -dx), to = Math.max(0, dx);
+        if (dy > 0) {
+            for (int y = H - 1; y >= dy; y--) System.arraycopy(px, (y - dy) * W + from, px, y * W + to, len);
+        } else {
+            for (int y = 0; y < H + dy; y++) System.arraycopy(px, (y - dy) * W + from, px, y * W + to, len);
+        }
+    }
+
+    private static int[] pixels(BufferedImage img) {
+        return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+    }
+
+    private static void clear(int[] px, int W, java.awt.Rectangle clip) {
+        for (int y = clip.y; y < clip.y + clip.height; y++) Arrays.fill(px, y * W + clip.x, y * W + clip.x + clip.width, 0);
+    }
+
+    private static int premultiplied(Color c) {
+        int a = c.getAlpha();
+        return a << 24 | (c.getRed() * a / 255) << 16 | (c.getGreen() * a / 255) << 8 | (c.getBlue() * a / 255);
+    }
+
+    // Graphics.fillRect와 같은 범위 [x, x+w) x [y, y+h)에 src-over로 섞는다
+    private static void fillRect(int[] px, int W, java.awt.Rectangle clip, int x, int y, int w, int h, int src) {
+        int x1 = Math.max(x, clip.x), x2 = Math.min(x + w, clip.x + clip.width);
+        int y1 = Math.max(y, clip.y), y2 = Math.min(y + h, clip.y + clip.height);
+        int inv = 255 - (src >>> 24);
+        for (int yy = y1; yy < y2; yy++) {
+            for (int i = yy * W + x1, end = yy * W + x2; i < end; i++) px[i] = srcOver(src, px[i], inv);
+        }
+    }
+
+    // premultiplied src-over. inv = 255 - src 알파
+    private static int srcOver(int src, int dst, int inv) {
+        int a = (src >>> 24) + div255((dst >>> 24) * inv);
+        int r = ((src >> 16) & 0xFF) + div255(((dst >> 16) & 0xFF) * inv);
+        int g = ((src >> 8) & 0xFF) + div255(((dst >> 8) & 0xFF) * inv);
+        int b = (src & 0xFF) + div255((dst & 0xFF) * inv);
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    // round(v / 255), 0 <= v <= 255 * 255
+    private static int div255(int v) {
+        v += 128;
+        return (v + (v >> 8)) >> 8;
+    }
+
+    // Graphics.drawRect와 같은 1px 테두리 (x..x+w, y..y+h 포함)
+    private static void drawRect(int[] px, int W, java.awt.Rectangle clip, int x, int y, int w, int h) {
+        hline(px, W, clip, x, x + w, y);
+        hline(px, W, clip, x, x + w, y + h);
+        vline(px, W, clip, x, y + 1, y + h - 1);
+        vline(px, W, clip, x + w, y + 1, y + h - 1);
+    }
+
+    private static void hline(int[] px, int W, java.awt.Rectangle clip, int x1, int x2, int y) {
+        if (y < clip.y || y >= clip.y + clip.height) return;
+        int from = Math.max(x1, clip.x), to = Math.min(x2, clip.x + clip.width - 1);
+        if (from <= to) Arrays.fill(px, y * W + from, y * W + to + 1, OUTLINE);
+    }
+
+    private static void vline(int[] px, int W, java.awt.Rectangle clip, int x, int y1, int y2) {
+        if (x < clip.x || x >= clip.x + clip.width) return;
+        int from = Math.max(y1, clip.y), to = Math.min(y2, clip.y + clip.height - 1);
+        for (int y = from; y <= to; y++) px[y * W + x] = OUTLINE;
+    }
+
+    // 점은 바로 그리고(밀도 모드면 센다), MBR은 깊이별 버퍼에 모은다
+    private void drawNode(SNode n, int depth, boolean rects, Rectangle worldClip, java.awt.Rectangle clip,
+                          Graphics2D gp, int W, int H) {
+        if (n.mbr == null || !n.mbr.intersects(worldClip)) return;
+        int x1 = screenX(n.mbr.getMinX(), W), x2 = screenX(n.mbr.getMaxX(), W);
+        int y1 = screenY(n.mbr.getMaxY(), H), y2 = screenY(n.mbr.getMinY(), H);
+        if (densityMode && x1 == x2 && y1 == y2) {
+            // 하위 트리 전체가 한 픽셀에 떨어지므로 점을 하나씩 볼 필요가 없다 (MBR도 이미 MIN_RECT보다 작다)
+            if (clip.contains(x1, y1)) density[y1 * W + x1] += (int) n.points;
+            return;
+        }
+        if (rects) {
+            if (x2 - x1 < MIN_RECT && y2 - y1 < MIN_RECT) {
+                rects = false; // 이보다 깊은 MBR은 더 작으므로 점만 그린다
+            } else if (depth < rectCount.length) {
+                addRect(depth, x1, y1, x2 - x1, y2 - y1);
+            }
+        }
+        if (n.leaf) {
+            for (int i = 0; i < n.xs.length; i++) {
+                double x = n.xs[i], y = n.ys[i];
+                if (x < worldClip.getMinX() || x > worldClip.getMaxX() || y < worldClip.getMinY() || y > worldClip.getMaxY()) {
+                    continue;
+                }
+                int sx = screenX(x, W), sy = screenY(y, H);
+                if (densityMode) {
+                    if (clip.contains(sx, sy)) density[sy * W + sx]++;
+                } else {
+                    int d = 4;
+                    gp.fillOval(sx - d, sy - d, 2 * d, 2 * d);
+                }
+            }
+            return;
+        }
+        for (SNode c : n.children) drawNode(c, depth + 1, rects, worldClip, clip, gp, W, H);
+    }
+
+    private void addRect(int depth, int x, int y, int w, int h) {
+        int[] buf = rectBuf[depth];
+        int n = rectCount[depth];
+        if (buf == null || n + 4 > buf.length) rectBuf[depth] = buf = Arrays.copyOf(buf == null ? new int[0] : buf, Math.max(64, n * 2));
+        buf[n] = x;
+        buf[n + 1] = y;
+        buf[n + 2] = w;
+        buf[n + 3] = h;
+        rectCount[depth] = n + 4;
+    }
+
+    // 방문/가지치기 노드 테두리, 질의 박스, kNN 등
+    private void paintMarks(Graphics2D g2, int W, int H) {
+        g2.setStroke(new BasicStroke(1.2f));
+        g2.setColor(Color.red);
+        synchronized (visited) {
+            for (Long id : visited) {
+                if (pruned.contains(id)) continue;
+                SNode n = index.get(id);
+                if (n != null && n.mbr != null) g2.draw(toAwtRect(n.mbr, W, H));
+            }
+        }
+        g2.setColor(new Color(160, 160, 160));
+        synchronized (pruned) {
+            for (Long id : pruned) {
+                SNode n = index.get(id);
+                if (n != null && n.mbr != null) g2.draw(toAwtRect(n.mbr, W, H));
+            }
+        }
+
+        // 검색 박스 표시
+        if (lastQuery != null) {
+            g2.setStroke(new BasicStroke(2.5f));
+            g2.setColor(new Color(220, 0, 0, 180));
+            java.awt.Rectangle rr = toAwtRect(lastQuery, W, H);
+            g2.draw(rr);
+            g2.setStroke(new BasicStroke(1f));
+        }
+
+        // kNN 소스 점
+        if (lastSource != null) {
+            java.awt.Point ps = map(lastSource.getX(), lastSource.getY(), W, H);
+            g2.setColor(new Color(0, 120, 255));
+            int r = 6;
+            g2.fillOval(ps.x - r, ps.y - r, 2 * r, 2 * r);
+            g2.drawString("source", ps.x + 8, ps.y - 8);
+        }
+
+        // 마지막 삽입/삭제 포인트 표시
+        if (lastInserted != null) {
+            java.awt.Point sp = map(lastInserted.getX(), lastInserted.getY(), W, H);
+            g2.setColor(new Color(0, 170, 0));
+            int r = 5;
+            g2.fillOval(sp.x - r, sp.y - r, 2 * r, 2 * r);
+
+            String label = String.format("inserted (%.1f, %.1f)",
+                    lastInserted.getX(), lastInserted.getY());
+            g2.drawString(label, sp.x + 8, sp.y - 8);
+        }
+
+        if (lastDeleted != null) {
+            java.awt.Point sp = map(lastDeleted.getX(), lastDeleted.getY(), W, H);
+            g2.setColor(new Color(190, 0, 190));
+            int r = 5;
+            g2.fillOval(sp.x - r, sp.y - r, 2 * r, 2 * r);
+
+            String label = String.format("deleted (%.1f, %.1f)",
+                    lastDeleted.getX(), lastDeleted.getY());
+            g2.drawString(label, sp.x + 8, sp.y - 8);
+        }
+
+        // kNN 결과 포인트 강조 + 좌표 라벨 표시
+        List<Point> knn = knnSoFar;
+        if (!knn.isEmpty()) {
+            g2.setColor(new Color(255, 0, 0));
+
+            int idx = 1; // kNN 순서 표시 (1st, 2nd, 3rd)
+            for (Point p : knn) {
+                java.awt.Point sp = map(p.getX(), p.getY(), W, H);
+                int r = 5;
+
+                // 점 찍기
+                g2.fillOval(sp.x - r, sp.y - r, 2 * r, 2 * r);
+
+                // label: k(#) (x,y)
+                String label = String.format("k%d (%.1f, %.1f)", idx, p.getX(), p.getY());
+                g2.drawString(label, sp.x + 6, sp.y - 6);
+
+                idx++;
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.dfpl.dbp.rtree.team2;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * jdk.incubator.vector로 엔트리 여러 개(AVX2에서 4개, AVX-512에서 8개)를 한 명령으로 검사하는 {@link NodeScanner}.
+ * 컴파일과 실행 모두 {@code --add-modules jdk.incubator.vector}가 필요하므로 {@link NodeScanner#BEST}가 리플렉션으로만 만든다.
+ * (JDK 17 incubator API 기준: ByteBuffer 적재는 fromByteBuffer)
+ */
+final class VectorNodeScanner implements NodeScanner {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // double 벡터와 레인 수가 같은 float 벡터 (float 적재 후 double로 넓힐 때)
+    private static final VectorSpecies<Float> HALF =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    @Override
+    public long intersects(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count,
+                           double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        long bits = 0;
+        for (int i = 0; i < count; i += SPECIES.length()) {
+            VectorMask<Double> lanes = SPECIES.indexInRange(i, count);
+            int o = i * Double.BYTES;
+            VectorMask<Double> hit = load(b, maxX + o, lanes).compare(VectorOperators.GE, qMinX)
+                    .and(load(b, minX + o, lanes).compare(VectorOperators.LE, qMaxX))
+                    .and(load(b, maxY + o, lanes).compare(VectorOperators.GE, qMinY))
+                    .and(load(b, minY + o, lanes).compare(VectorOperators.LE, qMaxY))
+                    .and(lanes);
+            bits |= hit.toLong() << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void mindistSq(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, double x, double y,
+                          double[] out) {
+        DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+        for (int i = 0; i < count; i += SPECIES.length()) {
+            VectorMask<Double> lanes = SPECIES.indexInRange(i, count);
+            int o = i * Double.BYTES;
+            DoubleVector dx = load(b, minX + o, lanes).sub(x).max(vx.sub(load(b, maxX + o, lanes))).max(0);
+            DoubleVector dy = load(b, minY + o, lanes).sub(y).max(vy.sub(load(b, maxY + o, lanes))).max(0);
+            dx.mul(dx).add(dy.mul(dy)).intoArray(out, i, lanes);
+        }
+    }
+
+    // float 배열은 레인이 두 배라 비교는 float 그대로 한다
+    @Override
+    public long intersectsFloat(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count,
+                                double qMinX, double qMinY, double qMaxX, double qMaxY) {
+        float x0 = NodeScanner.ceilFloat(qMinX), y0 = NodeScanner.ceilFloat(qMinY);
+        float x1 = NodeScanner.floorFloat(qMaxX), y1 = NodeScanner.floorFloat(qMaxY);
+        long bits = 0;
+        for (int i = 0; i < count; i += FLOATS.length()) {
+            VectorMask<Float> lanes = FLOATS.indexInRange(i, count);
+            int o = i * Float.BYTES;
+            VectorMask<Float> hit = loadFloats(FLOATS, b, maxX + o, lanes).compare(VectorOperators.GE, x0)
+                    .and(loadFloats(FLOATS, b, minX + o, lanes).compare(VectorOperators.LE, x1))
+                    .and(loadFloats(FLOATS, b, maxY + o, lanes).compare(VectorOperators.GE, y0))
+                    .and(loadFloats(FLOATS, b, minY + o, lanes).compare(VectorOperators.LE, y1))
+                    .and(lanes);
+            bits |= hit.toLong() << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void mindistSqFloat(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, double x, double y,
+                               double[] out) {
+        DoubleVector vx = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector vy = DoubleVector.broadcast(SPECIES, y);
+        for (int i = 0; i < count; i += SPECIES.length()) {
+            VectorMask<Float> lanes = HALF.indexInRange(i, count);
+            int o = i * Float.BYTES;
+            DoubleVector dx = widen(b, minX + o, lanes).sub(x).max(vx.sub(widen(b, maxX + o, lanes))).max(0);
+            DoubleVector dy = widen(b, minY + o, lanes).sub(y).max(vy.sub(widen(b, maxY + o, lanes))).max(0);
+            dx.mul(dx).add(dy.mul(dy)).intoArray(out, i, SPECIES.indexInRange(i, count));
+        }
+    }
+
+    // 8비트 코드는 AVX-512에서 64개 엔트리를 한 번에 비교한다
+    @Override
+    public long intersectsCodes(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, int codeBytes,
+                                int qMinX, int qMinY, int qMaxX, int qMaxY) {
+        long bits = 0;
+        if (codeBytes == 1) {
+            for (int i = 0; i < count; i += BYTES.length()) {
+                VectorMask<Byte> lanes = BYTES.indexInRange(i, count);
+                VectorMask<Byte> hit = bytes(b, maxX + i, lanes).compare(VectorOperators.GE, (byte) qMinX)
+                        .and(bytes(b, minX + i, lanes).compare(VectorOperators.LE, (byte) qMaxX))
+                        .and(bytes(b, maxY + i, lanes).compare(VectorOperators.GE, (byte) qMinY))
+                        .and(bytes(b, minY + i, lanes).compare(VectorOperators.LE, (byte) qMaxY))
+                        .and(lanes);
+                bits |= hit.toLong() << i;
+            }
+        } else {
+            for (int i = 0; i < count; i += SHORTS.length()) {
+                VectorMask<Short> lanes = SHORTS.indexInRange(i, count);
+                int o = i * Short.BYTES;
+                VectorMask<Short> hit = shorts(b, maxX + o, lanes).compare(VectorOperators.GE, (short) qMinX)
+                        .and(shorts(b, minX + o, lanes).compare(VectorOperators.LE, (short) qMaxX))
+                        .and(shorts(b, maxY + o, lanes).compare(VectorOperators.GE, (short) qMinY))
+                        .and(shorts(b, minY + o, lanes).compare(VectorOperators.LE, (short) qMaxY))
+                        .and(lanes);
+                bits |= hit.toLong() << i;
+            }
+        }
+        return bits;
+    }
+
+    // 코드를 double로 넓히는 모양이 플랫폼마다 달라(AVX2에는 32비트 byte 벡터가 없다) 거리 계산은 스칼라로 한다
+    @Override
+    public void mindistSqCodes(ByteBuffer b, int minX, int minY, int maxX, int maxY, int count, int codeBytes,
+                               double originX, double originY, double stepX, double stepY, double x, double y,
+                               double[] out) {
+        ScalarNodeScanner.INSTANCE.mindistSqCodes(b, minX, minY, maxX, maxY, count, codeBytes,
+                originX, originY, stepX, stepY, x, y, out);
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    private static DoubleVector load(ByteBuffer b, int offset, VectorMask<Double> lanes) {
+        return DoubleVector.fromByteBuffer(SPECIES, b, offset, ORDER, lanes);
+    }
+
+    private static FloatVector loadFloats(VectorSpecies<Float> species, ByteBuffer b, int offset, VectorMask<Float> lanes) {
+        return FloatVector.fromByteBuffer(species, b, offset, ORDER, lanes);
+    }
+
+    private static ByteVector bytes(ByteBuffer b, int offset, VectorMask<Byte> lanes) {
+        return ByteVector.fromByteBuffer(BYTES, b, offset, ORDER, lanes);
+    }
+
+    private static ShortVector shorts(ByteBuffer b, int offset, VectorMask<Short> lanes) {
+        return ShortVector.fromByteBuffer(SHORTS, b, offset, ORDER, lanes);
+    }
+
+    private static DoubleVector widen(ByteBuffer b, int offset, VectorMask<Float> lanes) {
+        return (DoubleVector) loadFloats(HALF, b, offset, lanes).convertShape(VectorOperators.F2D, SPECIES, 0);
+    }
+}
@@ -0,0 +1,140 @@
+package org.dfpl.dbp.rtree.team2.server;
+
+import org.dfpl.dbp.rtree.team2.RTreeImpl;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link RTreeServer}용 로컬 부하 생성기 (java.net.http). 점을 미리 넣은 뒤 여러 스레드가 정해진 시간 동안
+ * nearest 70% / search 20% / add 10%를 섞어 보내고, 처리량과 지연 분포를 출력한다.
+ * <pre>
+ *   인자: [서버 URL (없으면 임시 포트에 서버를 직접 띄운다)] [스레드 수 = 16] [초 = 10] [미리 넣을 점 수 = 100000]
+ * </pre>
+ */
+public class RTreeLoadClient {
+
+    private static final double WORLD = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        String base = args.length > 0 && !args[0].equals("-") ? args[0] : null;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int preload = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+
+        RTreeServer local = null;
+        if (base == null) {
+            RTreeServer.enableNoDelay();
+            local = new RTreeServer(new RTreeImpl(false), 0);
+            local.start();
+            base = "http://localhost:" + local.getPort();
+            System.out.printf("started local server on %s (%s)%n", base, local.usesVirtualThreads() ? "virtual threads" : "thread pool");
+        }
+        try {
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+            preload(client, base, preload);
+            run(client, base, threads, seconds);
+        } finally {
+            if (local != null) local.stop(0);
+        }
+    }
+
+    private static void preload(HttpClient client, String base, int count) throws IOException, InterruptedException {
+        Random rnd = new Random(42);
+        long started = System.nanoTime();
+        for (int from = 0; from < count; from += 1000) {
+            JSONArray batch = new JSONArray();
+            for (int i = from; i < Math.min(count, from + 1000); i++) {
+                batch.put(new JSONArray().put(rnd.nextDouble() * WORLD).put(rnd.nextDouble() * WORLD));
+            }
+            HttpResponse<String> r = client.send(post(base + "/add", new JSONObject().put("points", batch)),
+                    HttpResponse.BodyHandlers.ofString());
+            if (r.statusCode() != 200) throw new IOException("preload failed: " + r.statusCode() + " " + r.body());
+        }
+        System.out.printf("preloaded %d points in %.1f s%n", count, (System.nanoTime() - started) / 1e9);
+    }
+
+    private static void run(HttpClient client, String base, int threads, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long[][] latencies = new long[threads][];
+        int[] counts = new int[threads];
+        AtomicLong errors = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                Random rnd = new Random(id);
+                long[] lat = new long[1 << 14];
+                int n = 0;
+                while (System.nanoTime() < deadline) {
+                    double x = rnd.nextDouble() * WORLD, y = rnd.nextDouble() * WORLD;
+                    int kind = rnd.nextInt(10);
+                    HttpRequest request;
+                    if (kind < 7) {
+                        request = get(base + "/nearest?x=" + x + "&y=" + y + "&k=10");
+                    } else if (kind < 9) {
+                        request = get(base + "/search?minX=" + x + "&minY=" + y + "&maxX=" + (x + 100) + "&maxY=" + (y + 100));
+                    } else {
+                        request = post(base + "/add", new JSONObject().put("x", x).put("y", y));
+                    }
+                    long started = System.nanoTime();
+                    try {
+                        HttpResponse<String> r = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (r.statusCode() != 200) errors.incrementAndGet();
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    if (n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+                    lat[n++] = System.nanoTime() - started;
+                }
+                latencies[id] = lat;
+                counts[id] = n;
+            }, "load-" + t);
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+
+        int total = 0;
+        for (int c : counts) total += c;
+        long[] all = new long[total];
+        int at = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(latencies[t], 0, all, at, counts[t]);
+            at += counts[t];
+        }
+        Arrays.sort(all);
+        System.out.printf("%d threads, %d s: %d requests (%.0f req/s), %d errors%n", threads, seconds, total,
+                (double) total / seconds, errors.get());
+        if (total > 0) {
+            System.out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n", percentile(all, 0.5),
+                    percentile(all, 0.9), percentile(all, 0.99), all[total - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double q) {
+        return sorted[Math.min(sorted.length - 1, (int) (q * sorted.length))] / 1e6;
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static HttpRequest post(String url, JSONObject body) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+}
@@ -0,0 +1,281 @@
+package org.dfpl.dbp.rtree.team2.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.dfpl.dbp.rtree.team2.Point;
+import org.dfpl.dbp.rtree.team2.RTree;
+import org.dfpl.dbp.rtree.team2.RTreeImpl;
+import org.dfpl.dbp.rtree.team2.Rectangle;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link RTree} 하나를 HTTP/JSON으로 노출하는 내장 서버 (JDK의 com.sun.net.httpserver와 org.json만 사용).
+ * <pre>
+ *   GET  /search?minX=..&amp;minY=..&amp;maxX=..&amp;maxY=..  -> {"count": n, "points": [[x, y], ...]}
+ *   GET  /nearest?x=..&amp;y=..&amp;k=..                     -> {"count": n, "points": [[x, y], ...]}  (가까운 순서)
+ *   POST /add     {"x": .., "y": ..} 또는 {"points": [[x, y], ...]}  -> {"count": 요청한 점 수}
+ *   POST /delete  (add와 같은 본문)
+ * </pre>
+ * 잘못된 요청은 400, 없는 경로는 404, 맞지 않는 메서드는 405에 {"error": ..}를 돌려준다.
+ * <p>
+ * 요청은 실행 환경이 지원하면(Java 21+) 요청마다 가상 스레드로, 아니면 크기가 정해진 스레드 풀로 처리한다.
+ * 풀의 대기열이 차면 요청을 받은 스레드가 직접 처리해서 더 받지 않게 한다. 동시 요청을 받으므로 트리는 스레드 안전해야 한다.
+ * 요청마다 생기는 ~40ms 지연을 없애려면 서버를 만들기 전에 {@link #enableNoDelay()}를 부른다 (JVM 전역 설정이라 기본으로는 켜지 않는다).
+ */
+public class RTreeServer implements AutoCloseable {
+
+    private static final int MAX_K = 10_000;
+
+    /**
+     * JDK 서버의 TCP_NODELAY를 켠다. 서버는 응답 헤더와 본문을 따로 쓰므로 꺼져 있으면 Nagle + delayed ACK로
+     * 요청마다 ~40ms씩 멈춘다. JVM 전역 시스템 속성(sun.net.httpserver.nodelay)이고 첫 HttpServer를 만들 때
+     * 한 번만 읽히므로, 같은 JVM의 다른 서버에도 적용되는 것을 알고 서버를 만들기 전에 부른다.
+     * 이미 직접 지정했으면 그대로 둔다. {@link #main(String[])}과 {@link RTreeLoadClient}는 이것을 부른다.
+     */
+    public static void enableNoDelay() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final RTree tree;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public RTreeServer(RTree tree, int port) throws IOException {
+        this(tree, new InetSocketAddress(port), Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param poolThreads 가상 스레드를 못 쓸 때의 스레드 풀 크기
+     */
+    public RTreeServer(RTree tree, InetSocketAddress address, int poolThreads) throws IOException {
+        this.tree = tree;
+        ExecutorService virtual = virtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : boundedPool(Math.max(1, poolThreads));
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor()가 있으면 (Java 21+) 리플렉션으로 부른다. Java 17로 빌드하므로 직접 부를 수 없다
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService boundedPool(int threads) {
+        AtomicInteger next = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, "rtree-http-" + next.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 64),
+                factory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * 새 연결을 막고 처리 중인 요청을 최대 delaySeconds초 기다린 뒤 멈춘다.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    @Override
+    public void close() {
+        stop(0);
+    }
+
+    // ---------- 요청 처리 ----------
+
+    private static final class BadRequest extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            JSONObject body;
+            switch (path) {
+                case "/search":
+                    requireMethod(method, "GET");
+                    body = search(query(exchange));
+                    break;
+                case "/nearest":
+                    requireMethod(method, "GET");
+                    body = nearest(query(exchange));
+                    break;
+                case "/add":
+                case "/delete":
+                    requireMethod(method, "POST");
+                    body = mutate(path.equals("/add"), readJson(exchange));
+                    break;
+                default:
+                    throw new BadRequest(404, "unknown path: " + path);
+            }
+            respond(exchange, 200, body);
+        } catch (BadRequest e) {
+            respond(exchange, e.status, new JSONObject().put("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            respond(exchange, 500, new JSONObject().put("error", String.valueOf(e)));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private JSONObject search(Map<String, String> q) throws BadRequest {
+        Rectangle r = new Rectangle(number(q, "minX"), number(q, "minY"), number(q, "maxX"), number(q, "maxY"));
+        return points(tree.search(r));
+    }
+
+    private JSONObject nearest(Map<String, String> q) throws BadRequest {
+        double k = number(q, "k");
+        if (k < 1 || k > MAX_K || k != Math.floor(k)) throw new BadRequest(400, "k must be an integer in [1, " + MAX_K + "]");
+        return points(tree.nearest(new Point(number(q, "x"), number(q, "y")), (int) k));
+    }
+
+    private JSONObject mutate(boolean add, JSONObject request) throws BadRequest {
+        int count = 0;
+        try {
+            JSONArray list = request.optJSONArray("points");
+            if (list == null) {
+                apply(add, point(request.getDouble("x"), request.getDouble("y")));
+                count = 1;
+            } else {
+                for (int i = 0; i < list.length(); i++) {
+                    JSONArray xy = list.getJSONArray(i);
+                    apply(add, point(xy.getDouble(0), xy.getDouble(1)));
+                    count++;
+                }
+            }
+        } catch (JSONException e) {
+            // 배열 중간에서 실패하면 앞의 점들은 이미 적용되었다
+            throw new BadRequest(400, e.getMessage() + " (applied " + count + ")");
+        }
+        return new JSONObject().put("count", count);
+    }
+
+    // org.json은 "Infinity" 같은 문자열도 숫자로 읽으므로 트리에 넣을 수 없는 좌표를 여기서 거른다
+    private static Point point(double x, double y) {
+        if (Double.isNaN(x) || Double.isInfinite(x) || Double.isNaN(y) || Double.isInfinite(y)) {
+            throw new JSONException("coordinates must be finite: [" + x + ", " + y + "]");
+        }
+        return new Point(x, y);
+    }
+
+    private void apply(boolean add, Point p) {
+        if (add) tree.add(p);
+        else tree.delete(p);
+    }
+
+    private static JSONObject points(Iterator<Point> it) {
+        JSONArray list = new JSONArray();
+        while (it.hasNext()) {
+            Point p = it.next();
+            list.put(new JSONArray().put(p.getX()).put(p.getY()));
+        }
+        return new JSONObject().put("count", list.length()).put("points", list);
+    }
+
+    private static void requireMethod(String method, String expected) throws BadRequest {
+        if (!expected.equals(method)) throw new BadRequest(405, "use " + expected);
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> out = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    private static double number(Map<String, String> q, String name) throws BadRequest {
+        String v = q.get(name);
+        if (v == null) throw new BadRequest(400, "missing parameter: " + name);
+        try {
+            double d = Double.parseDouble(v);
+            if (Double.isNaN(d) || Double.isInfinite(d)) throw new NumberFormatException();
+            return d;
+        } catch (NumberFormatException e) {
+            throw new BadRequest(400, "not a number: " + name + "=" + v);
+        }
+    }
+
+    private static JSONObject readJson(HttpExchange exchange) throws IOException, BadRequest {
+        try (InputStream in = exchange.getRequestBody()) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                return new JSONObject(text);
+            } catch (JSONException e) {
+                throw new BadRequest(400, "invalid JSON: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 빈 RTreeImpl(시각화 없음)로 서버를 띄운다. 인자: [포트 (기본 8080)]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        enableNoDelay();
+        RTreeServer server = new RTreeServer(new RTreeImpl(false), port);
+        server.start();
+        System.out.printf("R-tree server on http://localhost:%d (%s)%n", server.getPort(),
+                server.usesVirtualThreads() ? "virtual threads" : "thread pool");
+    }
+}
@@ -0,0 +1,126 @@
+package org.dfpl.lecture.database.assignment.assignment21011755;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * 도서현황과 비슷한 EUC-KR CSV를 임시로 만들어 기존 방식(FileReader + readLine + parseCSVLine)과
+ * CSVReader / LibraryBookReader의 처리량과 할당량을 비교한다. 인자: [행 수 = 1000000]
+ */
+public class CSVBench {
+
+    private static final String ENCODING = "euc-kr";
+    private static final char[] SYLLABLES = syllables();
+
+    private static long fileSize;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = Files.createTempFile("library-book", ".csv");
+        try {
+            write(file, rows);
+            System.out.printf("%d rows, %.1f MB (%s)%n", rows, Files.size(file) / 1e6, ENCODING);
+            System.out.println("  round | parser                   | ms     | MB/s  | alloc MB | books   | hash");
+            for (int round = 0; round < 3; round++) {
+                measure(round, "readLine + parseCSVLine", () -> legacy(file.toString()));
+                measure(round, "LibraryBookReader (lazy)", () -> lazy(file.toString()));
+                measure(round, "loadBooksFromCSV (list)", () -> {
+                    long hash = 0;
+                    ArrayList<LibraryBook> list = Assignment.loadBooksFromCSV(file.toString(), ENCODING);
+                    for (LibraryBook b : list) hash = hash * 31 + b.toString().hashCode();
+                    return new long[] { list.size(), hash };
+                });
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    interface Run {
+        long[] run() throws Exception; // { 도서 수, 내용 해시 }
+    }
+
+    private static void measure(int round, String label, Run run) throws Exception {
+        long bytes = allocatedBytes();
+        long started = System.nanoTime();
+        long[] result = run.run();
+        long elapsed = System.nanoTime() - started;
+        bytes = allocatedBytes() - bytes;
+        System.out.printf("  %5d | %-24s | %6.0f | %5.0f | %8.0f | %7d | %x%n", round, label, elapsed / 1e6,
+                fileSize / 1e6 / (elapsed / 1e9), bytes / 1e6, result[0], result[1]);
+    }
+
+    // 바뀌기 전의 loadBooksFromCSV
+    private static long[] legacy(String path) throws Exception {
+        long count = 0, hash = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(path, Charset.forName(ENCODING)))) {
+            String line = br.readLine();
+            while ((line = br.readLine()) != null) {
+                ArrayList<String> colList = Assignment.parseCSVLine(line);
+                if (colList.size() < 4) continue;
+                LibraryBook b = new LibraryBook(colList.get(0), colList.get(1), colList.get(2), colList.get(3));
+                hash = hash * 31 + b.toString().hashCode();
+                count++;
+            }
+        }
+        return new long[] { count, hash };
+    }
+
+    private static long[] lazy(String path) throws Exception {
+        long count = 0, hash = 0;
+        try (LibraryBookReader books = new LibraryBookReader(path, ENCODING)) {
+            for (LibraryBook b : books) {
+                hash = hash * 31 + b.toString().hashCode();
+                count++;
+            }
+        }
+        return new long[] { count, hash };
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    // 따옴표로 감싼 쉼표 / "" 가 섞인 행 (줄바꿈이 든 필드는 기존 파서가 못 읽으므로 넣지 않는다)
+    private static void write(Path file, int rows) throws Exception {
+        Random rnd = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(file, Charset.forName(ENCODING))) {
+            out.write("도서명,저자,출판사,발행년도,ISBN,청구기호,등록번호\r\n");
+            for (int i = 0; i < rows; i++) {
+                String title = hangul(rnd, 2 + rnd.nextInt(12));
+                if (i % 10 == 0) title = "\"" + title + ", " + hangul(rnd, 4) + "\"";
+                else if (i % 25 == 1) title = "\"" + title + " \"\"" + hangul(rnd, 3) + "\"\"\"";
+                out.write(title + "," + hangul(rnd, 3) + " 지음," + hangul(rnd, 4) + "," + (1950 + rnd.nextInt(75))
+                        + "," + (9788900000000L + rnd.nextInt(99999999)) + "," + rnd.nextInt(1000) + "." + rnd.nextInt(100)
+                        + ",EM" + (100000 + i) + "\r\n");
+            }
+        }
+        fileSize = Files.size(file);
+    }
+
+    private static String hangul(Random rnd, int length) {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++) c[i] = SYLLABLES[rnd.nextInt(SYLLABLES.length)];
+        return new String(c);
+    }
+
+    // EUC-KR(KS X 1001)에 있는 한글 음절 2350자: 0xB0A1 ~ 0xC8FE
+    private static char[] syllables() {
+        byte[] bytes = new byte[2 * 25 * 94];
+        int n = 0;
+        for (int lead = 0xB0; lead <= 0xC8; lead++) {
+            for (int trail = 0xA1; trail <= 0xFE; trail++) {
+                bytes[n++] = (byte) lead;
+                bytes[n++] = (byte) trail;
+            }
+        }
+        return new String(bytes, Charset.forName(ENCODING)).toCharArray();
+    }
+}
@@ -0,0 +1,173 @@
+package org.dfpl.lecture.database.assignment.assignment21011755;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * RFC 4180 CSV를 레코드 하나씩 읽는다.
+ * 바이트를 64KB씩 읽어 하나의 CharsetDecoder로 한꺼번에 디코딩하고, 상태 기계 하나가 버퍼와 줄 경계를 넘어 이어서 돌기 때문에
+ * 따옴표 안의 쉼표, 줄바꿈, "" 도 처리된다. 레코드와 필드 경계는 다시 쓰는 배열에 담고 String은 {@link #get(int)}에서만 만든다.
+ * 필드 앞뒤 공백은 잘라낸다 (parseCSVLine과 같다).
+ */
+public class CSVReader implements AutoCloseable {
+
+    private static final int BUFFER = 1 << 16;
+
+    private final ReadableByteChannel in;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER);
+    private boolean eof;      // 입력을 다 읽었다
+    private boolean decoded;  // 디코더까지 다 비웠다
+    private boolean first = true;
+    private boolean skipLF;   // 직전 레코드가 '\r'로 끝났다
+
+    private char[] record = new char[256];
+    private int length;
+    private int[] bounds = new int[16]; // 필드 i는 record[bounds[2i], bounds[2i + 1])
+    private int fieldCount;
+    private long recordCount;
+
+    public CSVReader(Path file, Charset charset) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ), charset);
+    }
+
+    public CSVReader(InputStream in, Charset charset) {
+        this(Channels.newChannel(in), charset);
+    }
+
+    private CSVReader(ReadableByteChannel in, Charset charset) {
+        this.in = in;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars.flip();
+    }
+
+    /**
+     * 다음 레코드로 넘어간다. 빈 줄은 빈 필드 하나짜리 레코드다.
+     *
+     * @return 더 읽을 레코드가 없으면 false
+     */
+    public boolean next() throws IOException {
+        length = 0;
+        fieldCount = 0;
+        int fieldStart = 0;
+        boolean inQuotes = false;
+        boolean quoteInQuotes = false; // 따옴표 안에서 '"'를 봤다: 다음 문자가 '"'면 문자 그대로, 아니면 따옴표가 닫힌 것
+        boolean any = false;
+        while (true) {
+            if (!chars.hasRemaining() && !fill()) {
+                if (!any) return false;
+                endField(fieldStart);
+                recordCount++;
+                return true;
+            }
+            char[] a = chars.array();
+            int p = chars.position();
+            int limit = chars.limit();
+            while (p < limit) {
+                char c = a[p++];
+                if (first) {
+                    first = false;
+                    if (c == '\uFEFF') continue; // BOM
+                }
+                if (skipLF) {
+                    skipLF = false;
+                    if (c == '\n') continue;
+                }
+                any = true;
+                if (quoteInQuotes) {
+                    quoteInQuotes = false;
+                    if (c == '"') {
+                        append('"');
+                        continue;
+                    }
+                    inQuotes = false;
+                }
+                if (inQuotes) {
+                    if (c == '"') quoteInQuotes = true;
+                    else append(c);
+                } else if (c == '"') {
+                    inQuotes = true;
+                } else if (c == ',') {
+                    endField(fieldStart);
+                    fieldStart = length;
+                } else if (c == '\n' || c == '\r') {
+                    skipLF = c == '\r';
+                    chars.position(p);
+                    endField(fieldStart);
+                    recordCount++;
+                    return true;
+                } else {
+                    append(c);
+                }
+            }
+            chars.position(p);
+        }
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public String get(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("field " + index + " of " + fieldCount + " in record " + recordCount);
+        }
+        return new String(record, bounds[2 * index], bounds[2 * index + 1] - bounds[2 * index]);
+    }
+
+    /**
+     * 지금까지 읽은 레코드 수 (헤더 포함)
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void append(char c) {
+        if (length == record.length) record = Arrays.copyOf(record, length * 2);
+        record[length++] = c;
+    }
+
+    private void endField(int from) {
+        int to = length;
+        while (from < to && record[from] <= ' ') from++;
+        while (to > from && record[to - 1] <= ' ') to--;
+        if (2 * fieldCount + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        bounds[2 * fieldCount] = from;
+        bounds[2 * fieldCount + 1] = to;
+        fieldCount++;
+    }
+
+    // chars를 다시 채운다. 더 이상 문자가 없으면 false
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !decoded) {
+            if (!eof && in.read(bytes) < 0) eof = true;
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, eof);
+            bytes.compact();
+            if (eof && result.isUnderflow() && decoder.flush(chars).isUnderflow()) decoded = true;
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
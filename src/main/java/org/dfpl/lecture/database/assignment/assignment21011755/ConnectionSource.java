@@ -0,0 +1,18 @@
+package org.dfpl.lecture.database.assignment.assignment21011755;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * 새 JDBC 연결을 여는 방법. 로컬 MariaDB 대신 다른 드라이버(내장 DB 등)를 넣어 시험할 수 있다.
+ */
+@FunctionalInterface
+public interface ConnectionSource {
+
+    Connection open() throws SQLException;
+
+    static ConnectionSource of(String url, String user, String password) {
+        return () -> DriverManager.getConnection(url, user, password);
+    }
+}
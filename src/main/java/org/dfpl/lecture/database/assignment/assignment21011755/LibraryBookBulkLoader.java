@@ -0,0 +1,300 @@
+package org.dfpl.lecture.database.assignment.assignment21011755;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * LibraryBook을 library_book 테이블(title, author, publisher, pub_year)에 한꺼번에 넣는다.
+ * <ul>
+ * <li>{@link #insert(Iterable)}: addBatch / executeBatch로 batchSize개씩 보내고, autocommit을 끈 채 commitEvery개마다 커밋한다.
+ * connections가 2 이상이면 읽는 스레드 하나가 묶음을 만들고 연결마다 작업 스레드 하나가 받아서 넣는다.
+ * MariaDB 드라이버는 URL에 useBulkStmts=true를 주면 묶음 하나를 한 번의 bulk 명령으로 보낸다.
+ * (MySQL 드라이버라면 rewriteBatchedStatements=true가 같은 역할)</li>
+ * <li>{@link #loadData(Iterable)}: 행을 임시 TSV 파일에 쓴 뒤 LOAD DATA LOCAL INFILE 한 번으로 넣는다.
+ * URL에 allowLocalInfile=true, 서버에 local_infile=ON이 필요하다 (MariaDB / MySQL 전용).</li>
+ * </ul>
+ * 실패하면 진행 중인 트랜잭션만 되돌리고 예외를 던진다. 이미 커밋한 행(병렬이면 다른 연결이 커밋한 행 포함)은 남는다.
+ */
+public class LibraryBookBulkLoader {
+
+    private static final String COLUMNS = "(title, author, publisher, pub_year)";
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private final ConnectionSource source;
+    private final String table;
+    private int batchSize = 1000;
+    private int commitEvery = 10_000;
+    private int connections = 1;
+
+    public LibraryBookBulkLoader(ConnectionSource source) {
+        this(source, "library_book");
+    }
+
+    /**
+     * @param table SQL 문에 그대로 이어 붙이므로 식별자(schema.table 허용)만 받는다
+     */
+    public LibraryBookBulkLoader(ConnectionSource source, String table) {
+        if (table == null || !IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("table must be an identifier: " + table);
+        }
+        this.source = source;
+        this.table = table;
+    }
+
+    /**
+     * executeBatch 한 번에 보낼 행 수
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 트랜잭션 하나에 넣을 최소 행 수 (묶음 단위로 올림)
+     */
+    public void setCommitEvery(int commitEvery) {
+        if (commitEvery <= 0) throw new IllegalArgumentException("commitEvery must be positive: " + commitEvery);
+        this.commitEvery = commitEvery;
+    }
+
+    /**
+     * 동시에 쓸 연결 수. 1이면 부른 스레드에서 연결 하나로 넣는다.
+     */
+    public void setConnections(int connections) {
+        if (connections <= 0) throw new IllegalArgumentException("connections must be positive: " + connections);
+        this.connections = connections;
+    }
+
+    // ---------- addBatch ----------
+
+    /**
+     * @return 넣은 행 수
+     */
+    public long insert(Iterable<LibraryBook> books) throws SQLException {
+        Iterator<LibraryBook> it = books.iterator();
+        if (connections == 1) {
+            try (Connection con = source.open()) {
+                BatchWriter writer = new BatchWriter(con);
+                try {
+                    List<LibraryBook> batch;
+                    while (!(batch = nextBatch(it)).isEmpty()) writer.write(batch);
+                    return writer.finish();
+                } catch (SQLException | RuntimeException e) {
+                    writer.abort();
+                    throw e;
+                }
+            }
+        }
+        return insertParallel(it);
+    }
+
+    private long insertParallel(Iterator<LibraryBook> it) throws SQLException {
+        List<LibraryBook> end = new ArrayList<>(0); // 끝 표시 (작업 스레드마다 하나씩)
+        BlockingQueue<List<LibraryBook>> queue = new ArrayBlockingQueue<>(connections * 2);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        AtomicLong inserted = new AtomicLong();
+        Thread[] workers = new Thread[connections];
+        for (int t = 0; t < connections; t++) {
+            workers[t] = new Thread(() -> {
+                boolean ended = false;
+                try (Connection con = source.open()) {
+                    BatchWriter writer = new BatchWriter(con);
+                    try {
+                        for (List<LibraryBook> batch; (batch = queue.take()) != end; ) {
+                            if (failure.get() == null) writer.write(batch);
+                        }
+                        ended = true;
+                        if (failure.get() == null) inserted.addAndGet(writer.finish());
+                        else writer.abort();
+                    } catch (Exception e) {
+                        writer.abort();
+                        throw e;
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                    if (!ended) drain(queue, end); // 읽는 쪽이 put에서 막히지 않게 끝 표시까지 버린다
+                }
+            }, "library-book-loader-" + t);
+            workers[t].start();
+        }
+        try {
+            List<LibraryBook> batch;
+            while (failure.get() == null && !(batch = nextBatch(it)).isEmpty()) queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            for (int t = 0; t < connections; t++) putUninterruptibly(queue, end);
+            for (Thread w : workers) joinUninterruptibly(w);
+        }
+        Exception e = failure.get();
+        if (e instanceof SQLException) throw (SQLException) e;
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e != null) throw new SQLException("bulk insert interrupted", e);
+        return inserted.get();
+    }
+
+    private List<LibraryBook> nextBatch(Iterator<LibraryBook> it) {
+        List<LibraryBook> batch = new ArrayList<>(batchSize);
+        while (batch.size() < batchSize && it.hasNext()) batch.add(it.next());
+        return batch;
+    }
+
+    // 연결 하나로 묶음을 보내고 commitEvery개마다 커밋한다
+    private final class BatchWriter {
+        private final Connection con;
+        private final boolean autoCommit;
+        private final PreparedStatement ps;
+        private long committed;
+        private long uncommitted;
+
+        BatchWriter(Connection con) throws SQLException {
+            this.con = con;
+            this.autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            this.ps = con.prepareStatement("INSERT INTO " + table + " " + COLUMNS + " VALUES (?, ?, ?, ?)");
+        }
+
+        void write(List<LibraryBook> batch) throws SQLException {
+            for (LibraryBook b : batch) {
+                ps.setString(1, b.title);
+                ps.setString(2, b.author);
+                ps.setString(3, b.publisher);
+                ps.setString(4, b.pubYear);
+                ps.addBatch();
+            }
+            ps.executeBatch(); // bulk 모드에서는 행별 결과 대신 SUCCESS_NO_INFO가 올 수 있어서 묶음 크기로 센다
+            uncommitted += batch.size();
+            if (uncommitted >= commitEvery) commit();
+        }
+
+        long finish() throws SQLException {
+            commit();
+            ps.close();
+            con.setAutoCommit(autoCommit);
+            return committed;
+        }
+
+        void abort() {
+            try {
+                con.rollback();
+                ps.close();
+                con.setAutoCommit(autoCommit);
+            } catch (SQLException ignored) {
+                // 원래 예외를 던진다
+            }
+        }
+
+        private void commit() throws SQLException {
+            con.commit();
+            committed += uncommitted;
+            uncommitted = 0;
+        }
+    }
+
+    private static void drain(BlockingQueue<List<LibraryBook>> queue, List<LibraryBook> end) {
+        while (true) {
+            try {
+                if (queue.take() == end) return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<List<LibraryBook>> queue, List<LibraryBook> item) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(item);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // ---------- LOAD DATA LOCAL INFILE ----------
+
+    /**
+     * 행을 UTF-8 임시 파일에 쓴 뒤 LOAD DATA LOCAL INFILE로 넣는다. 드라이버가 파일을 읽어 서버로 흘려보낸다.
+     *
+     * @return 서버가 알려준 넣은 행 수
+     */
+    public long loadData(Iterable<LibraryBook> books) throws SQLException, IOException {
+        Path file = Files.createTempFile("library_book", ".tsv");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (LibraryBook b : books) {
+                    writeField(out, b.title);
+                    out.write('\t');
+                    writeField(out, b.author);
+                    out.write('\t');
+                    writeField(out, b.publisher);
+                    out.write('\t');
+                    writeField(out, b.pubYear);
+                    out.write('\n');
+                }
+            }
+            String path = file.toAbsolutePath().toString().replace('\\', '/').replace("'", "\\'");
+            try (Connection con = source.open(); Statement stmt = con.createStatement()) {
+                return stmt.executeLargeUpdate("LOAD DATA LOCAL INFILE '" + path + "' INTO TABLE " + table
+                        + " CHARACTER SET utf8mb4"
+                        + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+                        + " LINES TERMINATED BY '\\n' " + COLUMNS);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // LOAD DATA 기본 규칙: 역슬래시 이스케이프, null은 \N
+    private static void writeField(BufferedWriter out, String value) throws IOException {
+        if (value == null) {
+            out.write("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': out.write("\\\\"); break;
+                case '\t': out.write("\\t"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\0': out.write("\\0"); break;
+                default: out.write(c);
+            }
+        }
+    }
+}
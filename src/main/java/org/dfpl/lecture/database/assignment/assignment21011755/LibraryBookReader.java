@@ -0,0 +1,60 @@
+package org.dfpl.lecture.database.assignment.assignment21011755;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 도서현황 CSV에서 LibraryBook을 필요할 때마다 하나씩 읽는다 (전체 목록을 만들지 않는다).
+ * 첫 줄은 헤더로 건너뛰고, 필드가 4개보다 적은 레코드는 버린다. 한 번만 순회할 수 있다.
+ */
+public class LibraryBookReader implements Iterable<LibraryBook>, AutoCloseable {
+
+    private final CSVReader csv;
+    private boolean iterated;
+
+    public LibraryBookReader(String path, String encoding) throws IOException {
+        csv = new CSVReader(Path.of(path), Charset.forName(encoding));
+        csv.next(); // 헤더
+    }
+
+    @Override
+    public Iterator<LibraryBook> iterator() {
+        if (iterated) throw new IllegalStateException("already iterated");
+        iterated = true;
+        return new Iterator<LibraryBook>() {
+            private LibraryBook next;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null) return true;
+                try {
+                    while (csv.next()) {
+                        if (csv.getFieldCount() < 4) continue;
+                        next = new LibraryBook(csv.get(0), csv.get(1), csv.get(2), csv.get(3));
+                        return true;
+                    }
+                    return false;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public LibraryBook next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                LibraryBook book = next;
+                next = null;
+                return book;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        csv.close();
+    }
+}
@@ -0,0 +1,356 @@
+package org.dfpl.lecture.dataloading;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 탭으로 구분된 텍스트 파일을 메모리 매핑해서 읽는다. 인코딩을 주지 않으면 UTF-8이다.
+ * 줄은 바이트 '\n'으로 나누므로 ASCII 바이트를 그대로 쓰는 인코딩(UTF-8, EUC-KR, MS949 등)만 받는다.
+ * 파일을 줄 경계에 맞춘 조각으로 나누는 Spliterator를 주므로 병렬 스트림이면 ForkJoin 공용 풀의 작업자들이 조각을 나눠 파싱한다.
+ * 한 줄은 {@link Record}로 넘어오고, 필드는 줄마다 다시 쓰는 CharSequence 뷰라서 String을 만들지 않는다.
+ * 뷰는 콜백 안에서만 유효하므로 남기려면 {@link Record#getString(int)}로 꺼내야 한다.
+ * 줄 끝의 '\r'과 빈 줄은 무시한다.
+ */
+public class TSVReader implements AutoCloseable {
+
+    private static final int WINDOW = 1 << 26;     // 한 번에 매핑하는 최대 크기 (줄은 이보다 짧아야 한다)
+    private static final long MIN_SPLIT = 1 << 20; // 이보다 작은 조각은 더 나누지 않는다
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long start;
+    private final Charset charset;
+
+    public TSVReader(Path file) throws IOException {
+        this(file, StandardCharsets.UTF_8, false);
+    }
+
+    public TSVReader(Path file, boolean header) throws IOException {
+        this(file, StandardCharsets.UTF_8, header);
+    }
+
+    public TSVReader(Path file, Charset charset) throws IOException {
+        this(file, charset, false);
+    }
+
+    public TSVReader(Path file, Charset charset, boolean header) throws IOException {
+        if (!isAsciiCompatible(charset)) {
+            throw new IllegalArgumentException("charset must encode ASCII as single bytes: " + charset);
+        }
+        this.file = file;
+        this.charset = charset;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.start = header ? nextLineStart(0) : 0;
+    }
+
+    // 0x00~0x7F 바이트가 한 바이트씩 같은 문자로 풀리는지 (UTF-16이나 ISO-2022처럼 상태가 있는 인코딩은 아니다)
+    private static boolean isAsciiCompatible(Charset charset) {
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) ascii[i] = (byte) i;
+        try {
+            CharBuffer decoded = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(ascii));
+            if (decoded.remaining() != ascii.length) return false;
+            for (int i = 0; i < ascii.length; i++) {
+                if (decoded.get(i) != i) return false;
+            }
+            return true;
+        } catch (CharacterCodingException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    public static class Record {
+        private char[] chars = new char[256];
+        private int[] bounds = new int[16]; // 필드 i는 chars[bounds[2i], bounds[2i + 1])
+        private int fieldCount;
+        private long position;
+        private Field[] fields = new Field[0];
+
+        public int getFieldCount() {
+            return fieldCount;
+        }
+
+        /**
+         * 필드 index의 뷰. 다음 줄을 읽으면 내용이 바뀐다.
+         */
+        public CharSequence get(int index) {
+            checkIndex(index);
+            if (fields.length < fieldCount) {
+                Field[] grown = Arrays.copyOf(fields, Math.max(fieldCount, fields.length * 2));
+                for (int i = fields.length; i < grown.length; i++) grown[i] = new Field(this, i);
+                fields = grown;
+            }
+            return fields[index];
+        }
+
+        public String getString(int index) {
+            checkIndex(index);
+            return new String(chars, bounds[2 * index], bounds[2 * index + 1] - bounds[2 * index]);
+        }
+
+        /**
+         * 이 줄이 시작하는 파일 안의 바이트 위치
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= fieldCount) {
+                throw new IndexOutOfBoundsException("field " + index + " of " + fieldCount + " in line at byte " + position);
+            }
+        }
+
+        private void split(int length) {
+            fieldCount = 0;
+            int from = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i < length && chars[i] != '\t') continue;
+                if (2 * fieldCount + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                bounds[2 * fieldCount] = from;
+                bounds[2 * fieldCount + 1] = i;
+                fieldCount++;
+                from = i + 1;
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < fieldCount; i++) {
+                if (i > 0) sb.append('\t');
+                sb.append(get(i));
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class Field implements CharSequence {
+        private final Record record;
+        private final int index;
+
+        Field(Record record, int index) {
+            this.record = record;
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return record.bounds[2 * index + 1] - record.bounds[2 * index];
+        }
+
+        @Override
+        public char charAt(int i) {
+            if (i < 0 || i >= length()) throw new IndexOutOfBoundsException(i);
+            return record.chars[record.bounds[2 * index] + i];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(record.chars, record.bounds[2 * index], length());
+        }
+    }
+
+    // ---------- 읽기 ----------
+
+    /**
+     * 모든 줄을 action에 넘긴다. 여러 작업자 스레드에서 동시에 부르고 순서는 정해지지 않는다.
+     */
+    public void forEach(Consumer<? super Record> action) {
+        records(true).forEach(action);
+    }
+
+    /**
+     * 줄마다 mapper로 만든 객체를 파일 순서대로 모은다 (파싱은 병렬).
+     */
+    public <T> List<T> readAll(Function<? super Record, ? extends T> mapper) {
+        return records(true).map(mapper).collect(Collectors.toList());
+    }
+
+    /**
+     * Record 스트림. 원소는 재사용되므로 map 등으로 바로 변환해야 하고, sorted / collect로 Record 자체를 모으면 안 된다.
+     */
+    public Stream<Record> records(boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    public Spliterator<Record> spliterator() {
+        try {
+            return new Chunk(start, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // from 이후 첫 '\n' 다음 위치 (없으면 파일 끝)
+    private long nextLineStart(long from) throws IOException {
+        long size = channel.size();
+        ByteBuffer probe = ByteBuffer.allocate(1 << 12);
+        long pos = from;
+        while (pos < size) {
+            probe.clear();
+            int n = channel.read(probe, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private final class Chunk implements Spliterator<Record> {
+        private long pos;       // 다음 줄의 시작
+        private final long end; // 줄의 시작이거나 파일 끝
+        private MappedByteBuffer window;
+        private long windowBase;
+        private Record record;
+        private CharsetDecoder decoder;
+
+        Chunk(long pos, long end) {
+            this.pos = pos;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Record> action) {
+            if (!nextLine()) return false;
+            action.accept(record);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Record> action) {
+            while (nextLine()) action.accept(record);
+        }
+
+        @Override
+        public Spliterator<Record> trySplit() {
+            if (window != null || end - pos < 2 * MIN_SPLIT) return null;
+            try {
+                long mid = nextLineStart(pos + (end - pos) / 2);
+                if (mid >= end) return null;
+                Chunk prefix = new Chunk(pos, mid); // 앞부분을 넘겨야 순서 있는 스트림이 파일 순서를 지킨다
+                pos = mid;
+                return prefix;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - pos; // 줄 수 대신 남은 바이트 수
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+        private boolean nextLine() {
+            try {
+                while (pos < end) {
+                    if (window == null || pos >= windowBase + window.limit()) map(pos);
+                    int from = (int) (pos - windowBase);
+                    int limit = window.limit();
+                    int eol = from;
+                    while (eol < limit && window.get(eol) != '\n') eol++;
+                    long next;
+                    if (eol < limit) {
+                        next = windowBase + eol + 1;
+                    } else if (windowBase + limit >= end) {
+                        next = end; // 마지막 줄에 '\n'이 없다
+                    } else if (from > 0) {
+                        map(pos); // 줄이 창 끝에 걸렸다: 줄 시작부터 다시 매핑
+                        continue;
+                    } else {
+                        throw new IllegalStateException(file + ": line at byte " + pos + " is longer than " + WINDOW + " bytes");
+                    }
+                    long lineStart = pos;
+                    pos = next;
+                    int to = eol;
+                    if (to > from && window.get(to - 1) == '\r') to--;
+                    if (to == from) continue;
+                    decode(from, to, lineStart);
+                    return true;
+                }
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void map(long at) throws IOException {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(WINDOW, end - at));
+            windowBase = at;
+        }
+
+        private void decode(int from, int to, long position) {
+            if (record == null) record = new Record();
+            Record r = record;
+            int length = to - from;
+            if (r.chars.length < length) r.chars = new char[Math.max(length, r.chars.length * 2)];
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                byte b = window.get(i);
+                if (b < 0) {
+                    n = decodeCharset(from, to, r);
+                    break;
+                }
+                r.chars[n++] = (char) b; // ASCII
+            }
+            r.position = position;
+            r.split(n);
+        }
+
+        private int decodeCharset(int from, int to, Record r) {
+            if (decoder == null) {
+                decoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            int capacity = (int) Math.ceil((double) (to - from) * decoder.maxCharsPerByte());
+            if (r.chars.length < capacity) r.chars = new char[capacity];
+            ByteBuffer in = window.duplicate();
+            in.position(from).limit(to);
+            CharBuffer out = CharBuffer.wrap(r.chars);
+            decoder.reset();
+            decoder.decode(in, out, true);
+            decoder.flush(out);
+            return out.position();
+        }
+    }
+}
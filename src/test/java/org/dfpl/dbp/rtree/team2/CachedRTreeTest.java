@@ -0,0 +1,172 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachedRTreeTest {
+
+    private static RTreeImpl tree(long seed, int n) {
+        RTreeImpl tree = new RTreeImpl(false);
+        Random rnd = new Random(seed);
+        for (int i = 0; i < n; i++) tree.add(new Point(rnd.nextInt(1000), rnd.nextInt(1000)));
+        return tree;
+    }
+
+    // 변경된 점을 덮는 질의만 무효화한다
+    @Test
+    void mutationInvalidatesOnlyCoveringQueries() {
+        CachedRTree cache = new CachedRTree(tree(1, 2_000), 16);
+        Rectangle a = new Rectangle(100, 100, 200, 200);
+        Rectangle b = new Rectangle(600, 600, 700, 700);
+        Point source = new Point(400, 400);
+        cache.search(a);
+        cache.search(b);
+        List<Point> knn = toList(cache.nearest(source, 5));
+        double radius = knn.get(4).distance(source);
+        assertEquals(3, cache.getMissCount());
+
+        Point insideA = new Point(150.5, 150.5);
+        cache.add(insideA);
+        assertEquals(1, cache.getInvalidationCount());
+        assertTrue(toSet(cache.search(a)).contains(insideA)); // 다시 계산
+        cache.search(b);
+        cache.nearest(source, 5);
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+
+        cache.add(new Point(400 + radius + 1, 400)); // kNN 반경 밖
+        cache.nearest(source, 5);
+        assertEquals(3, cache.getHitCount());
+
+        Point near = new Point(400 + radius / 2, 400); // 반경 안
+        cache.add(near);
+        assertEquals(2, cache.getInvalidationCount());
+        assertEquals(near, toList(cache.nearest(source, 5)).get(0));
+        assertEquals(5, cache.getMissCount());
+    }
+
+    // 캐시를 거친 결과는 같은 변경을 받은 캐시 없는 트리의 결과와 같다
+    @Test
+    void cachedAnswersMatchUncachedTree() {
+        for (boolean tinyLfu : new boolean[] { false, true }) {
+            CachedRTree cache = new CachedRTree(tree(2, 3_000), 8, tinyLfu);
+            RTreeImpl reference = tree(2, 3_000);
+            Random rnd = new Random(3);
+            Rectangle[] boxes = new Rectangle[12];
+            Point[] sources = new Point[12];
+            for (int i = 0; i < boxes.length; i++) {
+                double x = rnd.nextInt(900), y = rnd.nextInt(900);
+                boxes[i] = new Rectangle(x, y, x + 100, y + 100);
+                sources[i] = new Point(x, y);
+            }
+            for (int step = 0; step < 5_000; step++) {
+                int q = rnd.nextInt(boxes.length);
+                switch (rnd.nextInt(4)) {
+                    case 0: {
+                        Point p = new Point(rnd.nextInt(1000), rnd.nextInt(1000));
+                        if (rnd.nextBoolean()) {
+                            cache.add(p);
+                            reference.add(p);
+                        } else {
+                            cache.delete(p);
+                            reference.delete(p);
+                        }
+                        break;
+                    }
+                    case 1:
+                        assertEquals(toSet(reference.search(boxes[q])), toSet(cache.search(boxes[q])), "step " + step);
+                        break;
+                    default:
+                        assertEquals(distances(reference.nearest(sources[q], 7), sources[q]),
+                                distances(cache.nearest(sources[q], 7), sources[q]), "step " + step);
+                }
+            }
+            assertTrue(cache.getHitCount() > 0, "tinyLfu " + tinyLfu);
+            assertTrue(cache.size() <= 8);
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedResultIsEvicted() {
+        CachedRTree cache = new CachedRTree(tree(4, 500), 2);
+        Rectangle a = new Rectangle(0, 0, 100, 100), b = new Rectangle(200, 200, 300, 300), c = new Rectangle(400, 400, 500, 500);
+        cache.search(a);
+        cache.search(b);
+        cache.search(a); // b가 가장 오래 안 쓰였다
+        cache.search(c);
+        assertEquals(1, cache.getEvictionCount());
+        cache.search(a);
+        assertEquals(2, cache.getHitCount());
+        cache.search(b);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    // 미스 계산 도중 그 영역에 들어온 점이 있으면 계산 결과를 저장하지 않는다
+    @Test
+    void resultComputedAcrossAConcurrentMutationIsNotStored() {
+        RTreeImpl inner = tree(5, 1_000);
+        Point late = new Point(50.5, 50.5);
+        CachedRTree[] cache = new CachedRTree[1];
+        RTree racing = new RTree() {
+            @Override
+            public void add(Point point) {
+                inner.add(point);
+            }
+
+            @Override
+            public void delete(Point point) {
+                inner.delete(point);
+            }
+
+            @Override
+            public Iterator<Point> search(Rectangle rectangle) {
+                Iterator<Point> before = inner.search(rectangle); // 변경 전 결과
+                if (!inner.search(new Rectangle(late, late)).hasNext()) cache[0].add(late);
+                return before;
+            }
+
+            @Override
+            public Iterator<Point> nearest(Point source, int maxCount) {
+                return inner.nearest(source, maxCount);
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return inner.isEmpty();
+            }
+        };
+        cache[0] = new CachedRTree(racing, 8);
+        Rectangle box = new Rectangle(0, 0, 100, 100);
+        cache[0].search(box);
+        assertEquals(1, cache[0].getRejectedCount());
+        assertEquals(0, cache[0].size());
+        assertTrue(toSet(cache[0].search(box)).contains(late));
+    }
+
+    private static Set<Point> toSet(Iterator<Point> it) {
+        Set<Point> out = new HashSet<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+
+    private static List<Point> toList(Iterator<Point> it) {
+        List<Point> out = new ArrayList<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+
+    private static List<Double> distances(Iterator<Point> it, Point source) {
+        List<Double> out = new ArrayList<>();
+        while (it.hasNext()) out.add(it.next().distance(source));
+        return out;
+    }
+}
@@ -0,0 +1,240 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentRTreeTest {
+
+    private static final Rectangle WORLD = new Rectangle(0, 0, 300, 300);
+
+    // 내려온 뒤 루트가 높아져도 부모를 레벨 사슬의 처음부터 찾을 수 있어야 한다 (예전에는 드물게 "parent entry not found")
+    @Test
+    void concurrentAddsKeepEveryPoint() throws Exception {
+        for (int round = 0; round < 8; round++) {
+            ConcurrentRTree tree = new ConcurrentRTree(6);
+            Set<Point> added = ConcurrentHashMap.newKeySet();
+            long seed = round;
+            run(4, id -> {
+                Random rnd = new Random(seed * 100 + id);
+                for (int i = 0; i < 30_000; i++) {
+                    Point p = new Point(rnd.nextInt(300), rnd.nextInt(300));
+                    tree.add(p);
+                    added.add(p);
+                }
+            });
+            assertEquals(added.size(), tree.size(), "round " + round);
+            assertEquals(added, toSet(tree.search(WORLD)), "round " + round);
+            for (Point p : added) assertTrue(tree.contains(p), "round " + round + ": lost " + p);
+        }
+    }
+
+    // 키마다 쓰는 스레드가 하나인 add/delete 기록과 동시에 읽은 contains 결과를 시간 구간으로 맞춰 보고,
+    // 내내 있던 점이 search / nearest 결과에서 빠지거나 두 번 나오지 않는지 확인한다
+    @Test
+    void historyIsLinearizableAndQueriesSeeStablePoints() throws Exception {
+        for (long seed : new long[] { 42, 7 }) {
+            History h = new History(seed, 4, 1_500, 20_000, 3_000);
+            h.run(3);
+            assertEquals(Collections.emptyList(), h.weakViolations, "seed " + seed);
+            assertEquals(0, h.containsViolations(), "seed " + seed);
+            for (int k = 0; k < h.present.length; k++) {
+                assertEquals(h.present[k], h.tree.contains(h.keys[k]), "seed " + seed + ": final state of " + h.keys[k]);
+            }
+            assertEquals(h.expectedSize(), h.tree.size(), "seed " + seed);
+        }
+    }
+
+    private static final class History {
+        final ConcurrentRTree tree = new ConcurrentRTree(6); // 작은 노드로 분할이 자주 일어나게
+        final int writers, keysPerWriter, opsPerWriter;
+        final Point[] keys;
+        final Point[] stablePoints;
+        final long seed;
+        // 키 번호, 시작/끝 시각, add 여부
+        final int[][] wKey;
+        final long[][] wStart, wEnd;
+        final boolean[][] wAdd;
+        final List<long[]> reads = Collections.synchronizedList(new ArrayList<>()); // {key, start, end, result}
+        final List<String> weakViolations = Collections.synchronizedList(new ArrayList<>());
+        final boolean[] present; // 키마다 마지막 쓰기의 결과
+
+        History(long seed, int writers, int keysPerWriter, int opsPerWriter, int stable) {
+            this.seed = seed;
+            this.writers = writers;
+            this.keysPerWriter = keysPerWriter;
+            this.opsPerWriter = opsPerWriter;
+            Random rnd = new Random(seed);
+            LinkedHashSet<Point> unique = new LinkedHashSet<>();
+            while (unique.size() < writers * keysPerWriter + stable) unique.add(new Point(rnd.nextInt(2_000), rnd.nextInt(2_000)));
+            keys = unique.toArray(new Point[0]);
+            stablePoints = Arrays.copyOfRange(keys, writers * keysPerWriter, keys.length);
+            for (Point p : stablePoints) tree.add(p);
+            wKey = new int[writers][opsPerWriter];
+            wStart = new long[writers][opsPerWriter];
+            wEnd = new long[writers][opsPerWriter];
+            wAdd = new boolean[writers][opsPerWriter];
+            present = new boolean[writers * keysPerWriter];
+        }
+
+        void run(int readers) throws Exception {
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger writersLeft = new AtomicInteger(writers);
+            ConcurrentRTreeTest.run(writers + readers, id -> {
+                if (id < writers) {
+                    try {
+                        write(id);
+                    } finally {
+                        if (writersLeft.decrementAndGet() == 0) done.set(true); // 읽기는 쓰기가 모두 끝날 때까지
+                    }
+                } else {
+                    read(id - writers, done);
+                }
+            });
+            for (int w = 0; w < writers; w++) {
+                for (int i = 0; i < opsPerWriter; i++) present[wKey[w][i]] = wAdd[w][i];
+            }
+        }
+
+        private void write(int id) {
+            Random r = new Random(seed * 31 + id);
+            for (int i = 0; i < opsPerWriter; i++) {
+                int key = id * keysPerWriter + r.nextInt(keysPerWriter);
+                boolean add = r.nextInt(5) < 3;
+                wKey[id][i] = key;
+                wAdd[id][i] = add;
+                wStart[id][i] = System.nanoTime();
+                if (add) tree.add(keys[key]);
+                else tree.delete(keys[key]);
+                wEnd[id][i] = System.nanoTime();
+            }
+        }
+
+        private void read(int id, AtomicBoolean done) {
+            Random r = new Random(seed * 31 + 100 + id);
+            ArrayList<long[]> local = new ArrayList<>();
+            while (!done.get()) {
+                int key = r.nextInt(writers * keysPerWriter);
+                long start = System.nanoTime();
+                boolean found = tree.contains(keys[key]);
+                local.add(new long[] { key, start, System.nanoTime(), found ? 1 : 0 });
+                if ((local.size() & 63) == 0) checkWeak(r);
+            }
+            reads.addAll(local);
+        }
+
+        // 키마다 쓰기는 한 스레드에서 순서대로 일어났으므로, 읽기 구간 [s, e]에서 가능한 값은
+        // s 이전에 끝난 마지막 쓰기의 결과와, 구간과 겹친 쓰기들의 결과뿐이다
+        int containsViolations() {
+            int violations = 0;
+            Map<Integer, List<long[]>> byKey = new HashMap<>();
+            for (long[] read : reads) byKey.computeIfAbsent((int) read[0], k -> new ArrayList<>()).add(read);
+            for (int w = 0; w < writers; w++) {
+                Map<Integer, List<Integer>> ops = new HashMap<>();
+                for (int i = 0; i < opsPerWriter; i++) ops.computeIfAbsent(wKey[w][i], k -> new ArrayList<>()).add(i);
+                for (Map.Entry<Integer, List<Integer>> e : ops.entrySet()) {
+                    for (long[] read : byKey.getOrDefault(e.getKey(), Collections.emptyList())) {
+                        boolean before = false, canTrue = false, canFalse = false;
+                        for (int i : e.getValue()) {
+                            if (wEnd[w][i] < read[1]) before = wAdd[w][i];
+                            else if (wStart[w][i] < read[2]) {
+                                if (wAdd[w][i]) canTrue = true;
+                                else canFalse = true;
+                            }
+                        }
+                        if (before) canTrue = true;
+                        else canFalse = true;
+                        if (read[3] == 1 ? !canTrue : !canFalse) violations++;
+                    }
+                }
+            }
+            return violations;
+        }
+
+        int expectedSize() {
+            int expected = stablePoints.length;
+            for (boolean p : present) if (p) expected++;
+            return expected;
+        }
+
+        // 안정된 점이 search 결과에서 빠지거나 어떤 점이든 두 번 나오는지, nearest가 거리순이고 더 가까운 안정된 점을 빠뜨리지 않는지.
+        // 지워졌다가 다시 들어간 점은 결과에 있어도 없어도 된다
+        private void checkWeak(Random r) {
+            double x = r.nextInt(2_000), y = r.nextInt(2_000);
+            Rectangle box = new Rectangle(x, y, x + 150, y + 150);
+            Set<Point> found = new HashSet<>();
+            for (Iterator<Point> it = tree.search(box); it.hasNext(); ) {
+                Point p = it.next();
+                if (!found.add(p)) weakViolations.add("search returned " + p + " twice");
+            }
+            for (Point p : stablePoints) {
+                if (box.contains(p) && !found.contains(p)) weakViolations.add("search missed " + p);
+            }
+
+            Point source = new Point(x, y);
+            int k = 20;
+            List<Point> near = new ArrayList<>();
+            tree.nearest(source, k).forEachRemaining(near::add);
+            for (int i = 1; i < near.size(); i++) {
+                if (near.get(i).distance(source) < near.get(i - 1).distance(source)) weakViolations.add("nearest out of order");
+            }
+            double limit = near.size() < k ? Double.POSITIVE_INFINITY : near.get(near.size() - 1).distance(source);
+            Set<Point> nearSet = new HashSet<>();
+            for (Point p : near) {
+                if (!nearSet.add(p)) weakViolations.add("nearest returned " + p + " twice");
+            }
+            for (Point p : stablePoints) {
+                if (p.distance(source) < limit && !nearSet.contains(p)) weakViolations.add("nearest missed " + p);
+            }
+        }
+    }
+
+    interface Body {
+        void run(int id) throws Exception;
+    }
+
+    // threads개의 스레드로 body를 돌리고, 하나라도 예외를 던지면 그 예외로 실패한다
+    static void run(int threads, Body body) throws Exception {
+        List<Thread> workers = new ArrayList<>();
+        Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread w = new Thread(() -> {
+                try {
+                    body.run(id);
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        if (failure[0] == null) failure[0] = e;
+                    }
+                }
+            });
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+        if (failure[0] instanceof Exception) throw (Exception) failure[0];
+        if (failure[0] != null) throw new AssertionError(failure[0]);
+    }
+
+    static Set<Point> toSet(Iterator<Point> it) {
+        Set<Point> out = new HashSet<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+}
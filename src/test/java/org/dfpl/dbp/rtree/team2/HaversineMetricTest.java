@@ -0,0 +1,139 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HaversineMetricTest {
+
+    private static final DistanceMetric H = DistanceMetric.HAVERSINE;
+
+    // 박스 안 어느 점의 키보다도 minKey가 크지 않고, 경계를 촘촘히 훑은 최솟값과 거의 같다.
+    // 날짜 변경선(±180)에 붙은 박스와 반대편 점, 극에 닿는 박스도 섞는다
+    @Test
+    void minKeyIsATightLowerBound() {
+        Random rnd = new Random(36);
+        for (int b = 0; b < 2_000; b++) {
+            double minX, maxX, minY, maxY;
+            switch (b % 4) {
+                case 0: // 동쪽 끝에 붙은 박스
+                    minX = 180 - rnd.nextDouble() * 30;
+                    maxX = 180;
+                    break;
+                case 1: // 서쪽 끝에 붙은 박스
+                    minX = -180;
+                    maxX = -180 + rnd.nextDouble() * 30;
+                    break;
+                default:
+                    minX = -180 + rnd.nextDouble() * 360;
+                    maxX = Math.min(180, minX + rnd.nextDouble() * 200);
+            }
+            switch (b % 3) {
+                case 0: // 북극 모자
+                    minY = 90 - rnd.nextDouble() * 20;
+                    maxY = 90;
+                    break;
+                case 1: // 남극 모자
+                    minY = -90;
+                    maxY = -90 + rnd.nextDouble() * 20;
+                    break;
+                default:
+                    minY = -90 + rnd.nextDouble() * 180;
+                    maxY = Math.min(90, minY + rnd.nextDouble() * 60);
+            }
+            for (int q = 0; q < 10; q++) {
+                double x = q % 2 == 0 ? -minX + rnd.nextGaussian() * 5 : -180 + rnd.nextDouble() * 360; // 반대편 경도 근처
+                x = Math.max(-180, Math.min(180, x));
+                double y = -90 + rnd.nextDouble() * 180;
+                double lower = H.minKey(minX, minY, maxX, maxY, x, y);
+                String at = String.format("box [%.3f, %.3f]-[%.3f, %.3f] point (%.3f, %.3f)", minX, minY, maxX, maxY, x, y);
+                assertTrue(lower >= 0, at);
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) assertEquals(0, lower, at);
+
+                for (int i = 0; i < 50; i++) {
+                    double px = minX + rnd.nextDouble() * (maxX - minX);
+                    double py = minY + rnd.nextDouble() * (maxY - minY);
+                    assertTrue(lower <= H.key(x, y, px, py) + 1e-15, at);
+                }
+                double sampled = Double.POSITIVE_INFINITY;
+                int steps = 400;
+                for (int i = 0; i <= steps; i++) {
+                    double px = minX + (maxX - minX) * i / steps;
+                    double py = minY + (maxY - minY) * i / steps;
+                    sampled = Math.min(sampled, Math.min(H.key(x, y, px, minY), H.key(x, y, px, maxY)));
+                    sampled = Math.min(sampled, Math.min(H.key(x, y, minX, py), H.key(x, y, maxX, py)));
+                }
+                if (lower > 0) {
+                    assertTrue(lower <= sampled + 1e-15, at);
+                    assertTrue(sampled - lower < 1e-4, at + ": " + lower + " vs sampled " + sampled);
+                }
+            }
+        }
+    }
+
+    // 날짜 변경선을 사이에 둔 두 점은 경도 차를 감아서 재므로 가깝다
+    @Test
+    void antimeridianNeighbours() {
+        double d = H.distance(179.9, 0, -179.9, 0);
+        assertTrue(d < 23_000 && d > 22_000, String.valueOf(d)); // 적도에서 0.2도 ≈ 22.2km
+        double lower = H.minKey(-180, -10, -170, 10, 179.5, 0);
+        assertEquals(H.key(179.5, 0, -180, 0), lower, 1e-15);
+    }
+
+    // 하버사인 kNN은 전수 조사로 대권 거리 순서대로 뽑은 k개와 같다
+    @Test
+    void haversineNearestMatchesBruteForce() {
+        Random rnd = new Random(360);
+        RTreeImpl tree = new RTreeImpl(false);
+        tree.setDistanceMetric(H);
+        Set<Point> set = new HashSet<>();
+        while (set.size() < 8_000) {
+            double x, y;
+            switch (set.size() % 3) {
+                case 0: // 날짜 변경선 근처
+                    x = rnd.nextBoolean() ? 175 + rnd.nextDouble() * 5 : -180 + rnd.nextDouble() * 5;
+                    y = -60 + rnd.nextDouble() * 120;
+                    break;
+                case 1: // 극 근처
+                    x = -180 + rnd.nextDouble() * 360;
+                    y = rnd.nextBoolean() ? 80 + rnd.nextDouble() * 10 : -90 + rnd.nextDouble() * 10;
+                    break;
+                default:
+                    x = -180 + rnd.nextDouble() * 360;
+                    y = -90 + rnd.nextDouble() * 180;
+            }
+            set.add(new Point(x, y));
+        }
+        List<Point> points = new ArrayList<>(set);
+        for (Point p : points) tree.add(p);
+
+        for (int q = 0; q < 300; q++) {
+            double x = q % 3 == 0 ? (rnd.nextBoolean() ? 179.99 : -179.99) : -180 + rnd.nextDouble() * 360;
+            double y = q % 3 == 1 ? (rnd.nextBoolean() ? 89.9 : -89.9) : -90 + rnd.nextDouble() * 180;
+            Point source = new Point(x, y);
+            int k = 1 + rnd.nextInt(20);
+            List<Double> all = new ArrayList<>();
+            for (Point p : points) all.add(H.key(x, y, p.getX(), p.getY()));
+            Collections.sort(all);
+            assertEquals(all.subList(0, k), keys(tree.nearest(source, k), source), "query " + source + " k=" + k);
+        }
+    }
+
+    private static List<Double> keys(Iterator<Point> it, Point source) {
+        List<Double> out = new ArrayList<>();
+        while (it.hasNext()) {
+            Point p = it.next();
+            out.add(H.key(source.getX(), source.getY(), p.getX(), p.getY()));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,72 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HilbertRTreeTest {
+
+    private static final Rectangle WORLD = new Rectangle(0, 0, 1000, 1000);
+
+    // M == 3이면 m == 1이라 형제 없는 노드가 비어 버릴 수 있다 (예전에는 null MBR로 NPE)
+    @Test
+    void deleteDownToEmptyNodesWithSmallFanout() {
+        for (int maxEntries = 3; maxEntries <= 6; maxEntries++) {
+            for (long seed = 1; seed <= 10; seed++) {
+                HilbertRTree tree = new HilbertRTree(WORLD, maxEntries);
+                List<Point> points = randomPoints(seed, 300);
+                for (Point p : points) tree.add(p);
+                Collections.shuffle(points, new Random(seed));
+
+                Set<Point> left = new HashSet<>(points);
+                for (int i = 0; i < 200; i++) {
+                    tree.delete(points.get(i));
+                    left.remove(points.get(i));
+                }
+                String at = "M=" + maxEntries + " seed " + seed;
+                assertEquals(left.size(), tree.size(), at);
+                assertEquals(left, toSet(tree.search(WORLD)), at);
+                Rectangle box = new Rectangle(200, 200, 600, 500);
+                Set<Point> inBox = new HashSet<>();
+                for (Point p : left) if (box.contains(p)) inBox.add(p);
+                assertEquals(inBox, toSet(tree.search(box)), at);
+                assertEquals(10, count(tree.nearest(new Point(500, 500), 10)), at);
+
+                for (int i = 200; i < points.size(); i++) tree.delete(points.get(i));
+                assertTrue(tree.isEmpty(), at);
+                assertEquals(0, count(tree.search(WORLD)), at);
+                tree.add(new Point(1, 1)); // 다 지운 뒤에도 다시 쓸 수 있어야 한다
+                assertEquals(1, count(tree.search(WORLD)), at);
+            }
+        }
+    }
+
+    private static List<Point> randomPoints(long seed, int n) {
+        Random rnd = new Random(seed);
+        LinkedHashSet<Point> unique = new LinkedHashSet<>();
+        while (unique.size() < n) unique.add(new Point(rnd.nextInt(1000), rnd.nextInt(1000)));
+        return new ArrayList<>(unique);
+    }
+
+    private static Set<Point> toSet(Iterator<Point> it) {
+        Set<Point> out = new HashSet<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+
+    private static int count(Iterator<Point> it) {
+        int n = 0;
+        for (; it.hasNext(); it.next()) n++;
+        return n;
+    }
+}
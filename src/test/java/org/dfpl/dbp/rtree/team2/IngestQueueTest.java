@@ -0,0 +1,176 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestQueueTest {
+
+    private static final Point GATE = new Point(-1, -1);
+
+    // GATE를 넣는 동안 쓰기 스레드를 붙잡아 두는 트리. 그 사이 들어온 요청은 다음 묶음 하나로 모인다
+    private static final class GatedTree extends RTreeImpl {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        GatedTree() {
+            super(false);
+        }
+
+        @Override
+        public void add(Point point) {
+            if (GATE.equals(point)) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.add(point);
+        }
+    }
+
+    // 작은 링을 여러 생산자가 감아 돌며 기다려도 모든 future가 맞는 결과로 끝난다
+    @Test
+    void manyProducersWrapSmallRing() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            int producers = 8;
+            int perProducer = 1_500;
+            RTreeImpl tree = new RTreeImpl(false);
+            IngestQueue queue = new IngestQueue(tree, 16, 8);
+            ExecutorService pool = Executors.newFixedThreadPool(producers);
+            List<Future<List<CompletableFuture<Boolean>>>> submitted = new ArrayList<>();
+            for (int t = 0; t < producers; t++) {
+                int id = t;
+                submitted.add(pool.submit(() -> {
+                    List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+                    for (int i = 0; i < perProducer; i++) {
+                        Point p = new Point(id * 10_000 + i % 100, i / 100);
+                        // 같은 점에 대한 요청은 한 생산자만 보내므로 결과가 정해진다
+                        futures.add(queue.add(p));
+                        futures.add(queue.add(p));
+                        futures.add(queue.delete(p));
+                        futures.add(queue.delete(p));
+                        futures.add(queue.add(p));
+                    }
+                    return futures;
+                }));
+            }
+            boolean[] expected = { true, false, true, false, true };
+            for (Future<List<CompletableFuture<Boolean>>> f : submitted) {
+                List<CompletableFuture<Boolean>> futures = f.get();
+                for (int i = 0; i < futures.size(); i++) {
+                    assertEquals(expected[i % expected.length], futures.get(i).get(), "request " + i);
+                }
+            }
+            pool.shutdown();
+            queue.close();
+
+            assertEquals(producers * perProducer, tree.size());
+            assertEquals(producers * perProducer * 5L, queue.getAppliedCount());
+            assertEquals(0, queue.pending());
+            assertTrue(queue.getBatchCount() >= producers * perProducer * 5L / 8);
+        });
+    }
+
+    // 한 묶음 안에서 Hilbert 순서로 정렬해도 같은 점에 대한 요청은 제출 순서대로 적용된다
+    @Test
+    void batchKeepsOrderForTheSamePoint() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            GatedTree tree = new GatedTree();
+            IngestQueue queue = new IngestQueue(tree, 256, 256);
+            CompletableFuture<Boolean> gate = queue.add(GATE);
+            tree.entered.await();
+
+            Point p = new Point(500, 500);
+            List<CompletableFuture<Boolean>> others = new ArrayList<>();
+            List<CompletableFuture<Boolean>> same = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                // 다른 점들이 사이사이 끼어 있어 정렬하면 자리가 바뀐다
+                others.add(queue.add(new Point(999 - i * 31, i * 17)));
+                if (i % 5 == 0) same.add(queue.add(p));
+                if (i % 5 == 2) same.add(queue.delete(p));
+            }
+            same.add(queue.add(p));
+            same.add(queue.add(p));
+            tree.release.countDown();
+            queue.close();
+
+            assertTrue(gate.get());
+            assertEquals(2, queue.getBatchCount(), "GATE 하나, 나머지 전부 한 묶음");
+            for (CompletableFuture<Boolean> f : others) assertTrue(f.get());
+            List<Boolean> flags = new ArrayList<>();
+            for (CompletableFuture<Boolean> f : same) flags.add(f.get());
+            assertEquals(List.of(true, true, true, true, true, true, true, true, true, true, true, true, true, false), flags);
+            assertTrue(toSet(tree.search(new Rectangle(500, 500, 500, 500))).contains(p));
+        });
+    }
+
+    // close는 이미 받은 요청을 모두 적용한 뒤 돌아오고, 그 뒤의 요청은 거절한다
+    @Test
+    void closeDrainsAndRejects() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            GatedTree tree = new GatedTree();
+            IngestQueue queue = new IngestQueue(tree, 1_024, 16);
+            queue.add(GATE);
+            tree.entered.await();
+
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            Set<Point> points = new HashSet<>();
+            for (int i = 0; i < 200; i++) {
+                Point q = new Point(i, i * 3);
+                points.add(q);
+                futures.add(queue.add(q));
+            }
+            Thread closer = new Thread(queue::close);
+            closer.start();
+            // 닫히는 중에 받아 준 요청도 적용되어야 한다 (링이 차서 생산자가 막히지 않게 천천히 넣는다)
+            boolean rejected = false;
+            for (int i = 200; i < 1_000 && !rejected; i++) {
+                Point q = new Point(i, i * 3);
+                try {
+                    futures.add(queue.add(q));
+                    points.add(q);
+                    Thread.sleep(1);
+                } catch (IllegalStateException e) {
+                    rejected = true;
+                }
+            }
+            assertTrue(rejected);
+            assertTrue(closer.isAlive(), "쓰기 스레드가 붙잡혀 있는 동안 close는 기다린다");
+            tree.release.countDown();
+            closer.join();
+
+            for (CompletableFuture<Boolean> f : futures) {
+                assertTrue(f.isDone());
+                assertTrue(f.get());
+            }
+            assertEquals(points.size() + 1, tree.size());
+            assertEquals(0, queue.pending());
+            assertThrows(IllegalStateException.class, () -> queue.add(new Point(1e6, 1e6)));
+            assertThrows(IllegalStateException.class, () -> queue.delete(new Point(0, 0)));
+        });
+    }
+
+    private static Set<Point> toSet(Iterator<Point> it) {
+        Set<Point> out = new HashSet<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+}
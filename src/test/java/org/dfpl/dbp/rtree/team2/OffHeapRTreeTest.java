@@ -0,0 +1,235 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapRTreeTest {
+
+    // 80바이트 헤더 때문에 양자화한 내부 노드가 더 커지는 작은 M에서는 양자화하지 않는다
+    @Test
+    void quantizationIsDisabledWhereItDoesNotShrinkInnerNodes() {
+        assertEquals(0, new OffHeapRTree(4, false, true, 16).getMbrBits());
+        assertEquals(0, new OffHeapRTree(7, false, true, 16).getMbrBits());
+        assertEquals(16, new OffHeapRTree(8, false, true, 16).getMbrBits());
+        assertEquals(0, new OffHeapRTree(4, false, true, 8).getMbrBits());
+        assertEquals(8, new OffHeapRTree(5, false, true, 8).getMbrBits());
+        assertEquals(16, new OffHeapRTree(4, false, false, 16).getMbrBits());
+
+        for (int m : new int[] { 4, 5, 8, 16 }) {
+            for (boolean floats : new boolean[] { false, true }) {
+                OffHeapRTree plain = fill(new OffHeapRTree(m, false, floats, 0), 1, 20_000);
+                for (int bits : new int[] { 8, 16 }) {
+                    OffHeapRTree quantized = fill(new OffHeapRTree(m, false, floats, bits), 1, 20_000);
+                    String at = "M=" + m + " floats=" + floats + " bits=" + bits;
+                    assertTrue(quantized.innerNodeBytes() <= plain.innerNodeBytes() * 11 / 10, at); // 분할 모양 차이만큼의 여유
+                }
+            }
+        }
+    }
+
+    // 양자화해도 복원한 MBR이 실제 MBR을 덮으므로 결과는 같다
+    @Test
+    void quantizedTreeAnswersLikePlainTree() {
+        for (int bits : new int[] { 8, 16 }) {
+            OffHeapRTree plain = fill(new OffHeapRTree(16, false, false, 0), 3, 20_000);
+            OffHeapRTree quantized = fill(new OffHeapRTree(16, false, false, bits), 3, 20_000);
+            assertEquals(bits, quantized.getMbrBits());
+            Random rnd = new Random(5);
+            for (int i = 0; i < 200; i++) {
+                double x = rnd.nextDouble() * 1000, y = rnd.nextDouble() * 1000;
+                Rectangle box = new Rectangle(x, y, x + rnd.nextDouble() * 100, y + rnd.nextDouble() * 100);
+                assertEquals(toSet(plain.search(box)), toSet(quantized.search(box)), "bits " + bits);
+                Point source = new Point(x, y);
+                assertEquals(distances(plain.nearest(source, 10), source), distances(quantized.nearest(source, 10), source),
+                        "bits " + bits);
+            }
+        }
+    }
+
+    // 넣고 지우기를 섞어도 검색/kNN이 전수 조사와 같고, 끝까지 지우면 빈 루트 리프 하나만 남는다 (condenseTree)
+    @Test
+    void addDeleteToEmptyMatchesBruteForce() {
+        for (int m : new int[] { 4, 5, 8, 16, 64 }) {
+            for (boolean vectorized : new boolean[] { false, true }) {
+                String at = "M=" + m + " vectorized=" + vectorized;
+                OffHeapRTree tree = new OffHeapRTree(m, vectorized);
+                Set<Point> expected = new HashSet<>();
+                Random rnd = new Random(m * 31 + (vectorized ? 1 : 0));
+                for (int i = 0; i < 12_000; i++) {
+                    // 좁은 격자라 이미 있는 점을 넣거나 없는 점을 지우는 경우도 섞인다
+                    Point p = new Point(rnd.nextInt(200), rnd.nextInt(200));
+                    if (i < 4_000 || rnd.nextInt(3) > 0) {
+                        tree.add(p);
+                        expected.add(p);
+                    } else {
+                        tree.delete(p);
+                        expected.remove(p);
+                    }
+                    if (i % 1_000 == 999) check(tree, expected, rnd, at);
+                }
+                List<Point> rest = new ArrayList<>(expected);
+                Collections.shuffle(rest, rnd);
+                for (int i = 0; i < rest.size(); i++) {
+                    tree.delete(rest.get(i));
+                    expected.remove(rest.get(i));
+                    if (i % 500 == 0) check(tree, expected, rnd, at);
+                }
+                assertTrue(tree.isEmpty(), at);
+                assertEquals(0, tree.size(), at);
+                assertEquals(1, tree.nodeCount(), at);
+                assertFalse(tree.search(new Rectangle(-1e9, -1e9, 1e9, 1e9)).hasNext(), at);
+                assertFalse(tree.nearest(new Point(0, 0), 3).hasNext(), at);
+            }
+        }
+    }
+
+    // 지운 노드는 free-list로 재사용하므로 넣고 지우기를 반복해도 노드 수와 확보한 메모리가 늘지 않는다
+    @Test
+    void churnReusesFreedNodes() {
+        OffHeapRTree tree = new OffHeapRTree(4, false);
+        List<Point> points = new ArrayList<>();
+        Random rnd = new Random(21);
+        for (int i = 0; i < 30_000; i++) points.add(new Point(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000));
+
+        long empty = tree.offHeapBytes();
+        for (Point p : points) tree.add(p);
+        int nodes = tree.nodeCount();
+        long bytes = tree.offHeapBytes();
+        assertTrue(bytes > 2 * empty, "리프가 슬랩 하나(4096개)를 넘어 슬랩이 늘어난다");
+
+        // 모두 지웠다가 같은 순서로 다시 넣으면 같은 모양이 되고 새 슬랩은 필요 없다
+        for (Point p : points) tree.delete(p);
+        assertEquals(1, tree.nodeCount());
+        assertEquals(bytes, tree.offHeapBytes());
+        for (Point p : points) tree.add(p);
+        assertEquals(nodes, tree.nodeCount());
+        assertEquals(bytes, tree.offHeapBytes());
+
+        // 절반씩 바꿔 넣기를 반복해도 노드 수는 일정 범위 안에 머물고 메모리는 처음 확보한 만큼에서 멈춘다
+        long peak = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < points.size(); i += 2) {
+                tree.delete(points.get(i));
+                Point q = new Point(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000);
+                points.set(i, q);
+                tree.add(q);
+            }
+            assertEquals(points.size(), tree.size());
+            assertTrue(tree.nodeCount() <= nodes * 3 / 2, "round " + round + ": " + tree.nodeCount() + " nodes");
+            if (round == 2) peak = tree.offHeapBytes();
+            if (round > 2) assertEquals(peak, tree.offHeapBytes(), "round " + round);
+        }
+    }
+
+    // float 모드는 점을 가장 가까운 float로 저장하고, 원래 double 좌표로 지워도 그 점을 찾는다
+    @Test
+    void floatModeRoundsPoints() {
+        OffHeapRTree tree = new OffHeapRTree(8, false, true);
+        assertTrue(tree.isFloatCoordinates());
+        Point original = new Point(0.1, 1234.5678901234);
+        Point rounded = new Point((float) 0.1, (float) 1234.5678901234);
+        tree.add(original);
+        tree.add(rounded); // 같은 float가 되므로 중복
+        assertEquals(1, tree.size());
+        assertEquals(Set.of(rounded), toSet(tree.search(new Rectangle(0, 1000, 1, 2000))));
+        assertEquals(List.of(rounded), toList(tree.nearest(new Point(0, 0), 5)));
+
+        tree.delete(new Point(0.1 + 1e-12, 1234.5678901234)); // 반올림하면 같은 float
+        assertTrue(tree.isEmpty());
+        tree.add(rounded);
+        tree.delete(original);
+        assertTrue(tree.isEmpty());
+    }
+
+    // float 모드 검색/kNN은 float로 반올림한 점들에 대한 전수 조사와 같다 (MBR 양자화를 켜도)
+    @Test
+    void floatModeMatchesBruteForceOverRoundedPoints() {
+        for (int bits : new int[] { 0, 8, 16 }) {
+            String at = "bits " + bits;
+            OffHeapRTree tree = new OffHeapRTree(16, false, true, bits);
+            assertEquals(bits, tree.getMbrBits(), at);
+            Random rnd = new Random(13);
+            List<Point> originals = new ArrayList<>();
+            Set<Point> expected = new HashSet<>();
+            for (int i = 0; i < 20_000; i++) {
+                Point p = new Point(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000);
+                originals.add(p);
+                expected.add(new Point((float) p.getX(), (float) p.getY()));
+                tree.add(p);
+            }
+            for (int i = 0; i < 5_000; i++) {
+                Point p = originals.get(i);
+                tree.delete(p);
+                expected.remove(new Point((float) p.getX(), (float) p.getY()));
+            }
+            assertEquals(expected.size(), tree.size(), at);
+
+            for (int q = 0; q < 200; q++) {
+                double x = rnd.nextDouble() * 1000, y = rnd.nextDouble() * 1000;
+                Rectangle box = new Rectangle(x, y, x + rnd.nextDouble() * 100, y + rnd.nextDouble() * 100);
+                Set<Point> inside = new HashSet<>();
+                for (Point p : expected) if (box.contains(p)) inside.add(p);
+                assertEquals(inside, toSet(tree.search(box)), at);
+
+                Point source = new Point(x, y);
+                List<Double> all = new ArrayList<>();
+                for (Point p : expected) all.add(p.distance(source));
+                Collections.sort(all);
+                assertEquals(all.subList(0, 10), distances(tree.nearest(source, 10), source), at);
+            }
+        }
+    }
+
+    private static void check(OffHeapRTree tree, Set<Point> expected, Random rnd, String at) {
+        assertEquals(expected.size(), tree.size(), at);
+        for (int q = 0; q < 5; q++) {
+            double x = rnd.nextInt(200), y = rnd.nextInt(200);
+            Rectangle box = new Rectangle(x, y, x + rnd.nextInt(40), y + rnd.nextInt(40));
+            Set<Point> inside = new HashSet<>();
+            for (Point p : expected) if (box.contains(p)) inside.add(p);
+            assertEquals(inside, toSet(tree.search(box)), at);
+
+            Point source = new Point(x, y);
+            int k = 1 + rnd.nextInt(10);
+            List<Double> all = new ArrayList<>();
+            for (Point p : expected) all.add(p.distance(source));
+            Collections.sort(all);
+            assertEquals(all.subList(0, Math.min(k, all.size())), distances(tree.nearest(source, k), source), at);
+        }
+    }
+
+    private static OffHeapRTree fill(OffHeapRTree tree, long seed, int n) {
+        Random rnd = new Random(seed);
+        for (int i = 0; i < n; i++) tree.add(new Point(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000));
+        return tree;
+    }
+
+    private static Set<Point> toSet(Iterator<Point> it) {
+        Set<Point> out = new HashSet<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+
+    private static List<Point> toList(Iterator<Point> it) {
+        List<Point> out = new ArrayList<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+
+    private static List<Double> distances(Iterator<Point> it, Point source) {
+        List<Double> out = new ArrayList<>();
+        while (it.hasNext()) out.add(it.next().distance(source));
+        return out;
+    }
+}
@@ -0,0 +1,113 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PointFileLoaderTest {
+
+    private static final String[] SEPARATORS = { ",", "\t", ";", " ", ", ", " \t " };
+
+    // 여러 조각으로 나뉘는 크기의 파일에서, 읽은 좌표가 split + Double.parseDouble로 읽은 값과 비트까지 같아야 한다
+    // (fast path로 읽는 보통의 좌표와 parseDouble로 넘기는 17자리 / 큰 지수 값을 섞는다)
+    @Test
+    void parsesLikeSplitAndParseDouble(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("points.txt");
+        Random rnd = new Random(1);
+        List<String> expected = new ArrayList<>();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("id,x,y,name\n"); // 헤더
+            for (int i = 0; i < 150_000; i++) {
+                String x = number(rnd), y = number(rnd);
+                String sep = SEPARATORS[rnd.nextInt(SEPARATORS.length)];
+                out.write(i + sep + x + sep + y + sep + "p" + i + (rnd.nextInt(10) == 0 ? "\r\n" : "\n"));
+                if (rnd.nextInt(50) == 0) out.write("\n"); // 빈 줄
+                expected.add(key(Double.parseDouble(x), Double.parseDouble(y)));
+            }
+        }
+        assertTrue(Files.size(file) > 4 << 20);
+
+        List<String> actual = Collections.synchronizedList(new ArrayList<>());
+        long count = new PointFileLoader(file, 1, 2, 1).stream((xs, ys, n) -> {
+            for (int i = 0; i < n; i++) actual.add(key(xs[i], ys[i]));
+        });
+        assertEquals(expected.size(), count);
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    private static String number(Random rnd) {
+        double v = (rnd.nextDouble() - 0.5) * 2_000;
+        switch (rnd.nextInt(8)) {
+            case 0: return Double.toString(v);                                   // 17자리까지
+            case 1: return String.format(Locale.ROOT, "%.6f", v);
+            case 2: return String.format(Locale.ROOT, "%.3e", v);
+            case 3: return Integer.toString((int) v);
+            case 4: return "+" + String.format(Locale.ROOT, "%.2f", Math.abs(v));
+            case 5: return String.format(Locale.ROOT, "%.4fE-30", v);            // 지수가 fast path 범위 밖
+            case 6: return String.format(Locale.ROOT, "%.15f", v / 1e5);         // 유효 숫자가 많다
+            default: return String.format(Locale.ROOT, "%.1f", v);
+        }
+    }
+
+    private static String key(double x, double y) {
+        return Long.toHexString(Double.doubleToLongBits(x)) + ":" + Long.toHexString(Double.doubleToLongBits(y));
+    }
+
+    @Test
+    void rejectsMalformedAndNonFiniteCoordinates(@TempDir Path dir) throws IOException {
+        for (String bad : new String[] { "1.5,abc", "1.5,NaN", "Infinity,2", "1.5e,2", "7" }) {
+            Path file = dir.resolve("bad.txt");
+            Files.writeString(file, "1,2\n3,4\n" + bad + "\n5,6\n");
+            NumberFormatException e = assertThrows(NumberFormatException.class,
+                    () -> new PointFileLoader(file).stream((xs, ys, n) -> { }), bad);
+            // 바이트 위치는 잘못된 줄(8바이트부터) 안을 가리킨다
+            Matcher m = Pattern.compile("at byte (\\d+)").matcher(e.getMessage());
+            assertTrue(m.find(), e.getMessage());
+            long at = Long.parseLong(m.group(1));
+            assertTrue(at >= 8 && at <= 8 + bad.length(), e.getMessage());
+        }
+    }
+
+    @Test
+    void loadPackedDropsDuplicatesAndAddToKeepsAll(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("dups.txt");
+        StringBuilder sb = new StringBuilder();
+        HashSet<Point> distinct = new HashSet<>();
+        Random rnd = new Random(2);
+        for (int i = 0; i < 5_000; i++) {
+            Point p = new Point(rnd.nextInt(50), rnd.nextInt(50));
+            distinct.add(p);
+            sb.append(p.getX()).append(',').append(p.getY()).append('\n');
+        }
+        Files.writeString(file, sb);
+
+        RTreeImpl packed = new PointFileLoader(file).loadPacked();
+        assertEquals(distinct.size(), packed.size());
+        HashSet<Point> found = new HashSet<>();
+        packed.search(new Rectangle(-1, -1, 100, 100)).forEachRemaining(found::add);
+        assertEquals(distinct, found);
+
+        RTreeImpl added = new RTreeImpl(false);
+        assertEquals(5_000, new PointFileLoader(file).addTo(added));
+        assertEquals(distinct.size(), added.size());
+    }
+}
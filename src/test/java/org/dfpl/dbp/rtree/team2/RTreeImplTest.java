@@ -0,0 +1,218 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RTreeImplTest {
+
+    private static final Rectangle WORLD = new Rectangle(0, 0, 1000, 1000);
+
+    // condenseTree가 점을 다시 넣다가 분할이 나면 부모 MBR이 새 형제까지 덮어야 한다.
+    // 그렇지 않으면 상위 노드가 점을 놓쳐서 search / delete에서 그 점이 보이지 않는다
+    @Test
+    void reinsertAfterDeleteKeepsEveryPointReachable() {
+        for (long seed = 1; seed <= 20; seed++) {
+            Random rnd = new Random(seed);
+            RTreeImpl tree = new RTreeImpl(false);
+            LinkedHashSet<Point> points = new LinkedHashSet<>();
+            while (points.size() < 300) points.add(new Point(rnd.nextInt(1000), rnd.nextInt(1000)));
+            for (Point p : points) tree.add(p);
+
+            List<Point> order = new ArrayList<>(points);
+            Collections.shuffle(order, rnd);
+            for (int i = 0; i < 200; i++) {
+                Point p = order.get(i);
+                assertTrue(contains(tree, p), "seed " + seed + ": point not reachable before delete " + p);
+                tree.delete(p);
+                points.remove(p);
+            }
+            assertEquals(points.size(), count(tree.search(WORLD)), "seed " + seed);
+            for (Point p : points) assertTrue(contains(tree, p), "seed " + seed + ": lost " + p);
+        }
+    }
+
+    // 점마다 nearest(k + 1)에서 자기 자신을 뺀 결과와 거리가 같아야 하고, 모든 점이 정확히 한 번 불려야 한다
+    @Test
+    void allNearestMatchesSerialNearest() {
+        for (DistanceMetric metric : new DistanceMetric[] { DistanceMetric.EUCLIDEAN, DistanceMetric.HAVERSINE }) {
+            for (int n : new int[] { 1, 2, 7, 3_000 }) {
+                RTreeImpl tree = new RTreeImpl(false);
+                tree.setDistanceMetric(metric);
+                // 하버사인이면 (경도, 위도)로 본다
+                for (Point p : distinctPoints(n, n, metric == DistanceMetric.HAVERSINE ? 160 : 1000)) {
+                    tree.add(metric == DistanceMetric.HAVERSINE ? new Point(p.getX() * 2 - 160, p.getY() - 80) : p);
+                }
+                for (int k : new int[] { 1, 3, 10 }) {
+                    Map<Point, double[]> seen = new ConcurrentHashMap<>();
+                    tree.allNearest(k, (point, neighbors, distances) -> {
+                        assertEquals(neighbors.length, distances.length);
+                        for (int i = 0; i < neighbors.length; i++) {
+                            assertEquals(metric.distance(point.getX(), point.getY(), neighbors[i].getX(), neighbors[i].getY()),
+                                    distances[i], 1e-9 * Math.max(1, distances[i]));
+                        }
+                        assertNull(seen.put(point, distances), "visited twice: " + point);
+                    });
+                    String at = metric + " n=" + n + " k=" + k;
+                    assertEquals(n, seen.size(), at);
+                    for (Map.Entry<Point, double[]> e : seen.entrySet()) {
+                        Point p = e.getKey();
+                        List<Double> expected = new ArrayList<>();
+                        tree.nearest(p.getX(), p.getY(), k + 1, (x, y, d) -> {
+                            if (x != p.getX() || y != p.getY()) expected.add(d);
+                            return true;
+                        });
+                        if (expected.size() > k) expected.remove(k);
+                        double[] actual = e.getValue();
+                        assertEquals(expected.size(), actual.length, at + " at " + p);
+                        for (int i = 0; i < actual.length; i++) {
+                            assertEquals(expected.get(i), actual[i], 1e-9 * Math.max(1, actual[i]), at + " at " + p);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // 태그 요약으로 서브트리를 건너뛰어도 술어로 거른 결과, 전수 조사 결과와 같아야 한다 (add/delete, optimize 교체, 태그 변경 뒤에도)
+    @Test
+    void tagPushdownMatchesPredicateAndBruteForce() throws Exception {
+        RTreeImpl tree = new RTreeImpl(false);
+        Set<Point> points = new LinkedHashSet<>();
+        ToLongFunction<Point> byCoordinates = p -> ((long) p.getX() % 7 == 0 ? 1 : 0) | (p.getY() < 100 ? 2 : 0);
+        tree.setTagger(byCoordinates);
+        Random rnd = new Random(11);
+        for (int step = 0; step < 20_000; step++) {
+            Point p = new Point(rnd.nextInt(1000), rnd.nextInt(1000));
+            if (rnd.nextInt(3) == 0) {
+                tree.delete(p);
+                points.remove(p);
+            } else {
+                tree.add(p);
+                points.add(p);
+            }
+            if (step % 500 == 0) checkTagged(tree, points, byCoordinates, rnd, "step " + step);
+        }
+        tree.optimize().get();
+        checkTagged(tree, points, byCoordinates, rnd, "after optimize");
+
+        ToLongFunction<Point> retagged = p -> ((long) p.getY() % 5 == 0 ? 1 : 0) | (p.getX() > 900 ? 2 : 0);
+        tree.setTagger(retagged);
+        checkTagged(tree, points, retagged, rnd, "after retag");
+
+        tree.setTagger(null);
+        assertThrows(IllegalStateException.class, () -> tree.nearest(new Point(0, 0), 3, 1, null));
+    }
+
+    // maxDistance로 자르면 정확한 결과의 앞부분(거리 maxDistance 이하)만 나오고,
+    // 근사 모드의 i번째 거리는 실제 i번째 최근접 거리의 (1 + epsilon)배를 넘지 않는다
+    @Test
+    void boundedAndApproximateNearestStayWithinTheirBounds() {
+        for (DistanceMetric metric : new DistanceMetric[] { DistanceMetric.EUCLIDEAN, DistanceMetric.HAVERSINE }) {
+            RTreeImpl tree = new RTreeImpl(false);
+            tree.setDistanceMetric(metric);
+            List<Point> points = new ArrayList<>();
+            for (Point p : distinctPoints(21, 5_000, 1000)) {
+                // 하버사인이면 (경도, 위도)로 본다
+                Point q = metric == DistanceMetric.HAVERSINE ? new Point(p.getX() * 0.3 - 150, p.getY() * 0.15 - 75) : p;
+                tree.add(q);
+                points.add(q);
+            }
+            Random rnd = new Random(22);
+            for (int i = 0; i < 100; i++) {
+                Point source = points.get(rnd.nextInt(points.size()));
+                double sx = source.getX() + rnd.nextDouble(), sy = source.getY() + rnd.nextDouble();
+                int k = 1 + rnd.nextInt(20);
+                List<Double> exact = new ArrayList<>();
+                for (Point p : points) exact.add(metric.distance(sx, sy, p.getX(), p.getY()));
+                Collections.sort(exact);
+                String at = metric + " query " + i;
+
+                double maxDistance = exact.get(rnd.nextInt(30));
+                List<Double> bounded = new ArrayList<>();
+                tree.nearest(sx, sy, k, maxDistance, (x, y, d) -> bounded.add(d));
+                List<Double> prefix = new ArrayList<>();
+                for (int j = 0; j < k && exact.get(j) <= maxDistance; j++) prefix.add(exact.get(j));
+                assertEquals(prefix.size(), bounded.size(), at);
+                for (int j = 0; j < prefix.size(); j++) assertEquals(prefix.get(j), bounded.get(j), 1e-9, at);
+
+                for (double epsilon : new double[] { 0, 0.25, 1 }) {
+                    List<Double> approx = new ArrayList<>();
+                    Set<Point> distinct = new LinkedHashSet<>();
+                    tree.nearest(sx, sy, k, Double.POSITIVE_INFINITY, epsilon, (x, y, d) -> {
+                        assertEquals(metric.distance(sx, sy, x, y), d, 1e-9);
+                        approx.add(d);
+                        distinct.add(new Point(x, y));
+                        return true;
+                    });
+                    assertEquals(k, approx.size(), at + " eps " + epsilon);
+                    assertEquals(k, distinct.size(), at + " eps " + epsilon);
+                    for (int j = 0; j < k; j++) {
+                        if (j > 0) assertTrue(approx.get(j) >= approx.get(j - 1), at + " eps " + epsilon + ": not sorted");
+                        assertTrue(approx.get(j) <= exact.get(j) * (1 + epsilon) + 1e-9, at + " eps " + epsilon + " rank " + j);
+                    }
+                }
+            }
+            assertThrows(IllegalArgumentException.class, () -> tree.nearest(0, 0, 3, 10, -0.5, (x, y, d) -> true));
+        }
+    }
+
+    private static void checkTagged(RTreeImpl tree, Set<Point> points, ToLongFunction<Point> tagger, Random rnd, String at) {
+        for (int i = 0; i < 10; i++) {
+            Point source = new Point(rnd.nextInt(1000), rnd.nextInt(1000));
+            int k = 1 + rnd.nextInt(12);
+            for (long required : new long[] { 1, 2, 3 }) {
+                Predicate<Point> hasTags = p -> (tagger.applyAsLong(p) & required) == required;
+                Predicate<Point> odd = p -> ((long) p.getX() & 1) == 1;
+                List<Double> expected = bruteForce(points, source, k, hasTags.and(odd));
+                assertEquals(expected, distances(tree.nearest(source, k, required, odd), source), at + " tags " + required);
+                assertEquals(expected, distances(tree.nearest(source, k, hasTags.and(odd)), source), at + " tags " + required);
+            }
+        }
+    }
+
+    private static List<Double> bruteForce(Set<Point> points, Point source, int k, Predicate<Point> filter) {
+        List<Double> all = new ArrayList<>();
+        for (Point p : points) if (filter.test(p)) all.add(p.distance(source));
+        Collections.sort(all);
+        return new ArrayList<>(all.subList(0, Math.min(k, all.size())));
+    }
+
+    private static List<Double> distances(Iterator<Point> it, Point source) {
+        List<Double> out = new ArrayList<>();
+        while (it.hasNext()) out.add(it.next().distance(source));
+        return out;
+    }
+
+    private static List<Point> distinctPoints(long seed, int n, int range) {
+        Random rnd = new Random(seed);
+        LinkedHashSet<Point> points = new LinkedHashSet<>();
+        while (points.size() < n) points.add(new Point(rnd.nextInt(range), rnd.nextInt(range)));
+        return new ArrayList<>(points);
+    }
+
+    private static boolean contains(RTreeImpl tree, Point p) {
+        return tree.search(new Rectangle(p.getX(), p.getY(), p.getX(), p.getY())).hasNext();
+    }
+
+    private static int count(Iterator<Point> it) {
+        int n = 0;
+        for (; it.hasNext(); it.next()) n++;
+        return n;
+    }
+}
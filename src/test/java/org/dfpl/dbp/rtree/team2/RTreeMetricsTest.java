@@ -0,0 +1,135 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RTreeMetricsTest {
+
+    // 버킷 i는 [2^(i-1), 2^i)이고 백분위는 버킷 상한(최댓값 이하)으로 근사한다
+    @Test
+    void histogramBuckets() {
+        RTreeMetrics.Histogram h = new RTreeMetrics.Histogram();
+        assertEquals(0, h.percentile(0.5));
+        for (long v : new long[] { 0, 1, 2, 3, 4, 7, 8, 100, 1000, -5 }) h.record(v);
+        assertEquals(10, h.count());
+        assertEquals(1125 / 10.0, h.mean());
+        assertEquals(1000, h.max());
+        assertEquals(0, h.percentile(0.2));   // 0, 0(-5)
+        assertEquals(3, h.percentile(0.5));   // 2, 3 -> [2, 4)
+        assertEquals(15, h.percentile(0.8));  // 8 -> [8, 16)
+        assertEquals(1000, h.percentile(1.0)); // [512, 1024)의 상한 1023보다 최댓값이 작다
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.max());
+    }
+
+    // 정해진 연산을 돌린 뒤 카운터가 트레이스로 센 값과 맞고, 재삽입은 삭제당으로 센다
+    @Test
+    void countersMatchTrace(@TempDir Path dir) throws Exception {
+        RTreeImpl tree = new RTreeImpl(false);
+        Random rnd = new Random(8);
+        Set<Point> set = new LinkedHashSet<>();
+        while (set.size() < 1_000) set.add(new Point(rnd.nextInt(10_000), rnd.nextInt(10_000)));
+        List<Point> points = new ArrayList<>(set);
+
+        Path file = dir.resolve("trace.bin");
+        try (TraceRecorder rec = new TraceRecorder(file)) {
+            tree.setTraceRecorder(rec);
+            for (Point p : points) tree.add(p);
+            for (int i = 0; i < 20; i++) {
+                double x = rnd.nextInt(9_000), y = rnd.nextInt(9_000);
+                drain(tree.search(new Rectangle(x, y, x + 1_000, y + 1_000)));
+            }
+            for (int i = 0; i < 7; i++) drain(tree.nearest(new Point(rnd.nextInt(10_000), rnd.nextInt(10_000)), 5));
+            for (int i = 0; i < 600; i++) tree.delete(points.get(i));
+            tree.setTraceRecorder(null);
+        }
+        List<TraceRecorder.Event> events = TraceRecorder.read(file);
+
+        RTreeMetrics.Snapshot s = tree.getMetrics().snapshot();
+        assertEquals(1_000, s.getCount(RTreeMetrics.Operation.ADD));
+        assertEquals(20, s.getCount(RTreeMetrics.Operation.SEARCH));
+        assertEquals(7, s.getCount(RTreeMetrics.Operation.NEAREST));
+        assertEquals(600, s.getCount(RTreeMetrics.Operation.DELETE));
+
+        long splits = 0, reinserts = 0, underflows = 0, visited = 0, pruned = 0;
+        Set<Long> queries = new HashSet<>();
+        for (TraceRecorder.Event e : events) {
+            if (e.getKind() == TraceRecorder.Kind.BEGIN_SEARCH || e.getKind() == TraceRecorder.Kind.BEGIN_NEAREST) {
+                queries.add(e.getOp());
+            }
+        }
+        for (TraceRecorder.Event e : events) {
+            switch (e.getKind()) {
+                case SPLIT: splits++; break;
+                case REINSERT: reinserts++; break;
+                case UNDERFLOW: underflows++; break;
+                case END:
+                    if (queries.contains(e.getOp())) {
+                        visited += (long) e.get(0);
+                        pruned += (long) e.get(1);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        assertEquals(splits / 2, s.getSplits()); // 나뉜 두 노드에 SPLIT이 하나씩 남는다
+        assertEquals(reinserts, s.getReinserts());
+        assertEquals(underflows, s.getUnderflows());
+        assertTrue(s.getSplits() > 0 && s.getReinserts() > 0 && s.getUnderflows() > 0, s.toString());
+        assertEquals(visited, s.getNodesVisited());
+        assertEquals(pruned, s.getNodesPruned());
+        assertEquals((double) visited / 27, s.getAverageVisitedPerQuery(), 1e-9);
+
+        assertEquals((double) s.getSplits() / 1_000, s.getSplitsPerInsert());
+        assertEquals((double) s.getReinserts() / 600, s.getReinsertsPerDelete());
+        assertEquals((double) s.getUnderflows() / 600, s.getUnderflowsPerDelete());
+
+        RTreeMetrics m = tree.getMetrics();
+        assertEquals(20 + 7, m.visitedPerQuery().count());
+        assertEquals(1_000, m.latency(RTreeMetrics.Operation.ADD).count());
+        assertTrue(s.getLatencyP50Nanos(RTreeMetrics.Operation.ADD) <= s.getLatencyP99Nanos(RTreeMetrics.Operation.ADD));
+        assertTrue(s.getLatencyP99Nanos(RTreeMetrics.Operation.ADD) <= s.getLatencyMaxNanos(RTreeMetrics.Operation.ADD));
+    }
+
+    // JMX로 등록하면 같은 값이 속성으로 보이고, reset은 모두 0으로 돌린다
+    @Test
+    void mxBeanAttributes() throws Exception {
+        RTreeImpl tree = new RTreeImpl(false);
+        for (int i = 0; i < 100; i++) tree.add(new Point(i, i));
+        drain(tree.search(new Rectangle(0, 0, 10, 10)));
+        RTreeMetrics m = tree.getMetrics();
+        ObjectName name = m.register("metrics-test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(100L, server.getAttribute(name, "InsertCount"));
+            assertEquals(1L, server.getAttribute(name, "SearchCount"));
+            assertEquals(m.getSplitCount(), server.getAttribute(name, "SplitCount"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "InsertCount"));
+            assertEquals(0L, m.snapshot().getSplits());
+        } finally {
+            m.unregister(name);
+        }
+    }
+
+    private static void drain(Iterator<?> it) {
+        while (it.hasNext()) it.next();
+    }
+}
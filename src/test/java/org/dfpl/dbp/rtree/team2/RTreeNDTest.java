@@ -0,0 +1,86 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RTreeNDTest {
+
+    // 2·3차원 전용 구현과 일반 d차원 구현 모두 add/delete 뒤의 search / nearest가 전수 조사와 같아야 한다.
+    // 한 축이 상수인 평평한 데이터도 섞는다
+    @Test
+    void matchesBruteForceInEveryDimension() {
+        for (int d = 1; d <= 5; d++) {
+            for (boolean generic : new boolean[] { false, true }) {
+                for (boolean flat : new boolean[] { false, true }) {
+                    RTreeND tree = generic ? new RTreeND(new GeometryND(d), 8) : new RTreeND(d, 8);
+                    check(tree, d, flat, "d=" + d + (generic ? " generic" : "") + (flat ? " flat" : ""));
+                }
+            }
+        }
+    }
+
+    private static void check(RTreeND tree, int d, boolean flat, String at) {
+        Random rnd = new Random(d * 10 + (flat ? 1 : 0));
+        Set<PointND> points = new LinkedHashSet<>();
+        for (int step = 0; step < 6_000; step++) {
+            PointND p = randomPoint(rnd, d, flat);
+            if (rnd.nextInt(4) == 0 && !points.isEmpty()) {
+                PointND victim = rnd.nextBoolean() ? p : points.iterator().next();
+                tree.delete(victim);
+                points.remove(victim);
+            } else {
+                tree.add(p);
+                points.add(p);
+            }
+        }
+        assertEquals(points.size(), tree.size(), at);
+
+        for (int i = 0; i < 100; i++) {
+            double[] lo = new double[d], hi = new double[d];
+            for (int a = 0; a < d; a++) {
+                lo[a] = rnd.nextInt(100);
+                hi[a] = lo[a] + rnd.nextInt(40);
+            }
+            if (flat) {
+                lo[d - 1] = 0;
+                hi[d - 1] = 0;
+            }
+            RectangleND box = new RectangleND(lo, hi);
+            Set<PointND> expected = new HashSet<>();
+            for (PointND p : points) if (box.contains(p)) expected.add(p);
+            assertEquals(expected, toSet(tree.search(box)), at + " box " + box);
+
+            PointND source = randomPoint(rnd, d, false);
+            int k = 1 + rnd.nextInt(15);
+            List<Double> all = new ArrayList<>();
+            for (PointND p : points) all.add(p.distance(source));
+            Collections.sort(all);
+            List<Double> actual = new ArrayList<>();
+            for (Iterator<PointND> it = tree.nearest(source, k); it.hasNext(); ) actual.add(it.next().distance(source));
+            assertEquals(all.subList(0, Math.min(k, all.size())), actual, at + " source " + source);
+        }
+    }
+
+    private static PointND randomPoint(Random rnd, int d, boolean flat) {
+        double[] c = new double[d];
+        for (int a = 0; a < d; a++) c[a] = rnd.nextInt(100);
+        if (flat) c[d - 1] = 0; // 예: 시간 축이 상수
+        return new PointND(c);
+    }
+
+    private static Set<PointND> toSet(Iterator<PointND> it) {
+        Set<PointND> out = new HashSet<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+}
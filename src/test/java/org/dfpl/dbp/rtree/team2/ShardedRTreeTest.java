@@ -0,0 +1,106 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedRTreeTest {
+
+    private static final Rectangle DOMAIN = new Rectangle(0, 0, 1000, 1000);
+
+    // 격자 / kd 분할 모두 같은 변경을 받은 RTreeImpl 하나와 같은 답을 내야 한다 (영역 밖의 점 포함)
+    @Test
+    void answersLikeASingleTree() {
+        List<Point> sample = new ArrayList<>();
+        Random rnd = new Random(1);
+        for (int i = 0; i < 2_000; i++) sample.add(new Point(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000));
+        ShardedRTree[] sharded = { new ShardedRTree(DOMAIN, 3, 2), new ShardedRTree(sample, 8), new ShardedRTree(DOMAIN, 1, 1) };
+        for (ShardedRTree tree : sharded) {
+            RTreeImpl single = new RTreeImpl(false);
+            Random ops = new Random(2);
+            for (int step = 0; step < 20_000; step++) {
+                Point p = new Point(ops.nextInt(1200) - 100, ops.nextInt(1200) - 100);
+                if (ops.nextInt(3) == 0) {
+                    tree.delete(p);
+                    single.delete(p);
+                } else {
+                    tree.add(p);
+                    single.add(p);
+                }
+            }
+            compare(tree, single, new Random(3), tree.getShardCount() + " shards");
+        }
+    }
+
+    // 한쪽에 몰린 데이터를 재분할하면 샤드 크기 편차가 줄고, 재분할 중의 변경도 새 샤드에 남는다
+    @Test
+    void rebalanceEvensShardsAndKeepsConcurrentMutations() throws Exception {
+        List<Point> sample = new ArrayList<>();
+        Random rnd = new Random(4);
+        for (int i = 0; i < 2_000; i++) sample.add(new Point(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000));
+        ShardedRTree tree = new ShardedRTree(sample, 8);
+        RTreeImpl single = new RTreeImpl(false);
+        for (int i = 0; i < 30_000; i++) {
+            Point p = new Point(rnd.nextDouble() * 100, rnd.nextDouble() * 100); // 한 구석
+            tree.add(p);
+            single.add(p);
+        }
+        double before = tree.skew();
+        assertTrue(before > 4, "skew " + before);
+
+        CompletableFuture<Void> rebalance = tree.rebalance();
+        List<Point> added = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            Point p = new Point(rnd.nextDouble() * 1000, rnd.nextDouble() * 1000);
+            tree.add(p);
+            single.add(p);
+            added.add(p);
+            if (i % 3 == 0) {
+                Point victim = added.get(rnd.nextInt(added.size()));
+                tree.delete(victim);
+                single.delete(victim);
+            }
+        }
+        rebalance.get();
+        double after = tree.skew();
+        assertTrue(after < before / 2, "skew " + before + " -> " + after);
+        compare(tree, single, new Random(5), "after rebalance");
+    }
+
+    private static void compare(ShardedRTree tree, RTreeImpl single, Random rnd, String at) {
+        assertEquals(single.size(), tree.size(), at);
+        int total = 0;
+        for (int s : tree.shardSizes()) total += s;
+        assertEquals(single.size(), total, at);
+        assertEquals(toSet(single.search(new Rectangle(-200, -200, 1200, 1200))), toSet(tree.search(new Rectangle(-200, -200, 1200, 1200))), at);
+        for (int i = 0; i < 200; i++) {
+            double x = rnd.nextInt(1100) - 50, y = rnd.nextInt(1100) - 50;
+            Rectangle box = new Rectangle(x, y, x + rnd.nextInt(300), y + rnd.nextInt(300));
+            assertEquals(toSet(single.search(box)), toSet(tree.search(box)), at + " box " + box);
+            Point source = new Point(x, y);
+            int k = 1 + rnd.nextInt(30);
+            assertEquals(distances(single.nearest(source, k), source), distances(tree.nearest(source, k), source), at + " source " + source);
+        }
+    }
+
+    private static Set<Point> toSet(Iterator<Point> it) {
+        Set<Point> out = new HashSet<>();
+        while (it.hasNext()) out.add(it.next());
+        return out;
+    }
+
+    private static List<Double> distances(Iterator<Point> it, Point source) {
+        List<Double> out = new ArrayList<>();
+        while (it.hasNext()) out.add(it.next().distance(source));
+        return out;
+    }
+}
@@ -0,0 +1,148 @@
+package org.dfpl.dbp.rtree.team2;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceRecorderTest {
+
+    private static void emit(TraceRecorder rec, int thread, int i) {
+        rec.record(1, TraceRecorder.Kind.VISITED, false, thread, 0, thread, i, 2.0 * i, -i);
+    }
+
+    // 블록을 받아 둔 채 쉬던 스레드가 링을 한 바퀴 넘게 지난 뒤 써도 최근 이벤트를 덮지 않는다
+    @Test
+    void idleThreadDoesNotClobberNewerEvents() throws Exception {
+        TraceRecorder rec = new TraceRecorder(128);
+        ExecutorService idle = Executors.newSingleThreadExecutor();
+        ExecutorService busy = Executors.newSingleThreadExecutor();
+        try {
+            idle.submit(() -> emit(rec, 1, 0)).get();
+            busy.submit(() -> {
+                for (int i = 0; i < 1_000; i++) emit(rec, 2, i);
+            }).get();
+            idle.submit(() -> emit(rec, 1, 1)).get();
+        } finally {
+            idle.shutdown();
+            busy.shutdown();
+        }
+
+        List<TraceRecorder.Event> events = rec.events();
+        TraceRecorder.Event last = events.get(events.size() - 1);
+        assertEquals(1, last.getNodeId());
+        assertEquals(1, (int) last.get(1));
+
+        // 바쁜 스레드가 마지막 블록에 쓴 1000 % 64개는 빠짐없이 순서대로 남는다
+        List<Integer> kept = new ArrayList<>();
+        for (TraceRecorder.Event e : events) if (e.getNodeId() == 2) kept.add((int) e.get(1));
+        int tail = 1_000 % 64;
+        assertTrue(kept.size() >= tail, "kept " + kept.size());
+        for (int j = 0; j < tail; j++) assertEquals(1_000 - tail + j, kept.get(kept.size() - tail + j));
+    }
+
+    // 여러 스레드가 섞여 써도 스레드별 순서가 유지되고 찢긴 레코드가 없다
+    @Test
+    void concurrentWritersKeepPerThreadOrder() throws Exception {
+        int threads = 4;
+        int perThread = 20_000;
+        TraceRecorder rec = new TraceRecorder(256);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t + 1;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) emit(rec, id, i);
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(rec.recorded() >= threads * perThread); // 뒤처져 버린 블록의 칸까지 센다
+        List<TraceRecorder.Event> events = rec.events();
+        assertTrue(events.size() <= 256);
+        assertFalse(events.isEmpty());
+        int[] prev = new int[threads + 1];
+        Arrays.fill(prev, -1);
+        for (TraceRecorder.Event e : events) {
+            int id = (int) e.getNodeId();
+            int i = (int) e.get(1);
+            assertEquals(id, (int) e.get(0));
+            assertEquals(2.0 * i, e.get(2));
+            assertEquals(-i, (int) e.get(3));
+            assertTrue(i > prev[id], "thread " + id + ": " + i + " after " + prev[id]);
+            prev[id] = i;
+        }
+    }
+
+    // 파일 모드로 남긴 기록과 링 모드에서 writeTo로 저장한 기록을 같은 형식으로 다시 읽는다
+    @Test
+    void fileFormatRoundTrip(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("trace.bin");
+        TraceRecorder ring = new TraceRecorder(1 << 16);
+        List<TraceRecorder.Event> fromFile;
+        try (TraceRecorder rec = new TraceRecorder(file)) {
+            RTreeImpl tree = new RTreeImpl(false);
+            Random rnd = new Random(5);
+            List<Point> points = new ArrayList<>();
+            for (int i = 0; i < 300; i++) points.add(new Point(rnd.nextInt(1000), rnd.nextInt(1000)));
+            for (TraceRecorder r : new TraceRecorder[] { rec, ring }) {
+                tree = new RTreeImpl(false);
+                tree.setTraceRecorder(r);
+                for (Point p : points) tree.add(p);
+                drain(tree.search(new Rectangle(100, 100, 400, 400)));
+                drain(tree.nearest(new Point(500, 500), 5));
+                tree.delete(points.get(0));
+            }
+            fromFile = rec.events();
+        }
+        assertEquals(fromFile.size(), TraceRecorder.read(file).size());
+
+        List<TraceRecorder.Event> fromRing = ring.events();
+        Path saved = dir.resolve("ring.bin");
+        ring.writeTo(saved);
+        List<TraceRecorder.Event> reread = TraceRecorder.read(saved);
+        assertEquals(fromRing.size(), reread.size());
+        assertEquals(fromFile.size(), reread.size(), "같은 연산은 두 모드에서 같은 이벤트를 남긴다");
+        for (int i = 0; i < reread.size(); i++) {
+            TraceRecorder.Event a = fromRing.get(i);
+            TraceRecorder.Event b = reread.get(i);
+            TraceRecorder.Event c = fromFile.get(i);
+            assertEquals(a.toString(), b.toString());
+            assertEquals(c.getOp(), b.getOp());
+            assertEquals(c.getKind(), b.getKind()); // 노드 id는 트리마다 달라 종류와 연산 번호만 맞춘다
+            assertEquals(a.getNodeId(), b.getNodeId());
+            assertEquals(a.getParentId(), b.getParentId());
+            assertEquals(a.isLeaf(), b.isLeaf());
+        }
+        assertEquals(TraceRecorder.Kind.BEGIN_ADD, reread.get(0).getKind());
+        assertEquals(5, TraceRecorder.operation(reread, 302).stream()
+                .filter(e -> e.getKind() == TraceRecorder.Kind.KNN_CONFIRMED).count());
+
+        Path bad = dir.resolve("bad.bin");
+        Files.write(bad, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        assertThrows(IOException.class, () -> TraceRecorder.read(bad));
+    }
+
+    private static void drain(Iterator<?> it) {
+        while (it.hasNext()) it.next();
+    }
+}
@@ -0,0 +1,99 @@
+package org.dfpl.dbp.rtree.team2.server;
+
+import org.dfpl.dbp.rtree.team2.RTreeImpl;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RTreeServerTest {
+
+    private RTreeServer server;
+    private HttpClient client;
+    private String base;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new RTreeServer(new RTreeImpl(false), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+        server.start();
+        client = HttpClient.newHttpClient();
+        base = "http://127.0.0.1:" + server.getPort();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    private HttpResponse<String> get(String pathAndQuery) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(base + pathAndQuery)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(base + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JSONObject json(HttpResponse<String> response, int status) {
+        assertEquals(status, response.statusCode(), response.body());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        return new JSONObject(response.body());
+    }
+
+    // add / search / nearest / delete가 문서에 적힌 JSON 모양으로 답한다
+    @Test
+    void answersWithDocumentedJson() throws Exception {
+        assertEquals(1, json(post("/add", "{\"x\": 1, \"y\": 2}"), 200).getInt("count"));
+        assertEquals(3, json(post("/add", "{\"points\": [[5, 5], [9, 9], [50, 50]]}"), 200).getInt("count"));
+
+        JSONObject found = json(get("/search?minX=0&minY=0&maxX=10&maxY=10"), 200);
+        assertEquals(3, found.getInt("count"));
+        assertEquals(3, found.getJSONArray("points").length());
+
+        JSONObject near = json(get("/nearest?x=10&y=10&k=2"), 200);
+        JSONArray points = near.getJSONArray("points");
+        assertEquals(2, near.getInt("count"));
+        assertEquals(9, points.getJSONArray(0).getDouble(0));
+        assertEquals(9, points.getJSONArray(0).getDouble(1));
+        assertEquals(5, points.getJSONArray(1).getDouble(0));
+
+        assertEquals(1, json(post("/delete", "{\"points\": [[9, 9]]}"), 200).getInt("count"));
+        assertEquals(2, json(get("/search?minX=0&minY=0&maxX=10&maxY=10"), 200).getInt("count"));
+    }
+
+    // 잘못된 값, 없는 경로, 맞지 않는 메서드는 400 / 404 / 405와 {"error": ..}
+    @Test
+    void rejectsBadRequests() throws Exception {
+        assertTrue(json(get("/search?minX=0&minY=0&maxX=10"), 400).has("error"));
+        assertTrue(json(get("/search?minX=0&minY=0&maxX=Infinity&maxY=10"), 400).has("error"));
+        assertTrue(json(get("/nearest?x=-Infinity&y=0&k=1"), 400).has("error"));
+        assertTrue(json(get("/nearest?x=NaN&y=0&k=1"), 400).has("error"));
+        assertTrue(json(get("/nearest?x=0&y=0&k=1.5"), 400).has("error"));
+        assertTrue(json(get("/nearest?x=0&y=0&k=0"), 400).has("error"));
+        assertTrue(json(post("/add", "not json"), 400).has("error"));
+        assertTrue(json(post("/add", "{\"x\": \"Infinity\", \"y\": 0}"), 400).has("error"));
+        assertTrue(json(post("/add", "{\"x\": 1}"), 400).has("error"));
+
+        // 배열 중간에서 실패하면 앞의 점은 적용되고 메시지에 그 수가 남는다
+        String error = json(post("/add", "{\"points\": [[1, 1], [\"-Infinity\", 2]]}"), 400).getString("error");
+        assertTrue(error.contains("applied 1"), error);
+        assertEquals(1, json(get("/search?minX=-1e300&minY=-1e300&maxX=1e300&maxY=1e300"), 200).getInt("count"));
+
+        assertTrue(json(get("/unknown"), 404).has("error"));
+        assertTrue(json(get("/add"), 405).has("error"));
+        assertTrue(json(post("/search", "{}"), 405).has("error"));
+    }
+}
@@ -0,0 +1,201 @@
+package org.dfpl.lecture.database.assignment.assignment21011755;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryBookBulkLoaderTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    // 테스트마다 새 H2 메모리 DB. title은 NOT NULL이라 title이 null인 행은 실패한다
+    private static String createDatabase() throws SQLException {
+        String url = "jdbc:h2:mem:library" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        try (Connection con = DriverManager.getConnection(url); Statement stmt = con.createStatement()) {
+            stmt.execute("CREATE TABLE library_book (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200) NOT NULL,"
+                    + " author VARCHAR(200), publisher VARCHAR(200), pub_year VARCHAR(10))");
+        }
+        return url;
+    }
+
+    private static List<LibraryBook> books(int n) {
+        List<LibraryBook> books = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) books.add(new LibraryBook("title " + i, "author " + i, "publisher", "2024"));
+        return books;
+    }
+
+    private static List<String> titles(String url) throws SQLException {
+        List<String> titles = new ArrayList<>();
+        try (Connection con = DriverManager.getConnection(url); Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT title FROM library_book ORDER BY id")) {
+            while (rs.next()) titles.add(rs.getString(1));
+        }
+        return titles;
+    }
+
+    // 커밋 시점마다 그때까지 보낸 행 수와 executeBatch 한 번에 보낸 행 수를 기록한다
+    private static final class Recorder {
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> commits = Collections.synchronizedList(new ArrayList<>());
+        int sent;
+        int pending;
+
+        Connection wrap(Connection con) {
+            return proxy(Connection.class, con, (target, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (method.getName().equals("prepareStatement")) {
+                    return proxy(PreparedStatement.class, (PreparedStatement) result, (ps, m, a) -> {
+                        if (m.getName().equals("addBatch") && (a == null || a.length == 0)) pending++;
+                        Object r = invoke(ps, m, a);
+                        if (m.getName().equals("executeBatch")) {
+                            batches.add(pending);
+                            sent += pending;
+                            pending = 0;
+                        }
+                        return r;
+                    });
+                }
+                if (method.getName().equals("commit")) commits.add(sent);
+                return result;
+            });
+        }
+    }
+
+    interface Handler<T> {
+        Object handle(T target, Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, T target, Handler<T> handler) {
+        InvocationHandler h = (p, method, args) -> handler.handle(target, method, args);
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, h));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Test
+    void commitsAfterWholeBatchesOnceCommitEveryIsReached() throws SQLException {
+        String url = createDatabase();
+        Recorder recorder = new Recorder();
+        LibraryBookBulkLoader loader = new LibraryBookBulkLoader(() -> recorder.wrap(DriverManager.getConnection(url)));
+        loader.setBatchSize(3);
+        loader.setCommitEvery(7); // 묶음 크기의 배수가 아니다: 9, 18행에서 커밋하고 나머지는 끝에서
+
+        assertEquals(20, loader.insert(books(20)));
+        assertEquals(List.of(3, 3, 3, 3, 3, 3, 2), recorder.batches);
+        assertEquals(List.of(9, 18, 20), recorder.commits);
+        List<String> titles = titles(url);
+        assertEquals(20, titles.size());
+        assertEquals("title 0", titles.get(0));
+        assertEquals("title 19", titles.get(19));
+    }
+
+    @Test
+    void failingRowRollsBackOnlyTheOpenTransaction() throws SQLException {
+        String url = createDatabase();
+        LibraryBookBulkLoader loader = new LibraryBookBulkLoader(() -> DriverManager.getConnection(url));
+        loader.setBatchSize(3);
+        loader.setCommitEvery(6);
+        List<LibraryBook> books = books(20);
+        books.set(10, new LibraryBook(null, "author", "publisher", "2024"));
+
+        // 0~5행은 커밋됐고, 6~8행은 열린 트랜잭션에 있다가 9~11행 묶음이 실패하면서 되돌려진다
+        assertThrows(SQLException.class, () -> loader.insert(books));
+        List<String> titles = titles(url);
+        assertEquals(6, titles.size());
+        assertEquals("title 5", titles.get(5));
+    }
+
+    @Test
+    void failingWorkerConnectionStopsTheParallelLoad() throws SQLException {
+        String url = createDatabase();
+        SQLException boom = new SQLException("boom");
+        AtomicInteger opened = new AtomicInteger();
+        LibraryBookBulkLoader loader = new LibraryBookBulkLoader(() -> {
+            Connection con = DriverManager.getConnection(url);
+            if (opened.incrementAndGet() != 2) return con;
+            // 두 번째 연결은 세 번째 executeBatch에서 실패한다
+            AtomicInteger executed = new AtomicInteger();
+            return proxy(Connection.class, con, (target, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (!method.getName().equals("prepareStatement")) return result;
+                return proxy(PreparedStatement.class, (PreparedStatement) result, (ps, m, a) -> {
+                    if (m.getName().equals("executeBatch") && executed.incrementAndGet() == 3) throw boom;
+                    return invoke(ps, m, a);
+                });
+            });
+        });
+        loader.setBatchSize(10);
+        loader.setCommitEvery(50);
+        loader.setConnections(3);
+
+        SQLException thrown = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertThrows(SQLException.class, () -> loader.insert(books(50_000))));
+        assertSame(boom, thrown);
+        assertFalse(loaderThreadsAlive(), "loader threads left running");
+        assertTrue(titles(url).size() < 50_000);
+    }
+
+    @Test
+    void failingOpenStopsTheParallelLoad() throws SQLException {
+        String url = createDatabase();
+        SQLException refused = new SQLException("refused");
+        AtomicInteger opened = new AtomicInteger();
+        LibraryBookBulkLoader loader = new LibraryBookBulkLoader(() -> {
+            if (opened.incrementAndGet() == 3) throw refused;
+            return DriverManager.getConnection(url);
+        });
+        loader.setBatchSize(10);
+        loader.setConnections(3);
+
+        SQLException thrown = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertThrows(SQLException.class, () -> loader.insert(books(50_000))));
+        assertSame(refused, thrown);
+        assertFalse(loaderThreadsAlive(), "loader threads left running");
+    }
+
+    @Test
+    void rejectsTableNamesThatAreNotIdentifiers() {
+        ConnectionSource none = () -> {
+            throw new SQLException("not used");
+        };
+        new LibraryBookBulkLoader(none, "library_book");
+        new LibraryBookBulkLoader(none, "lib.library_book");
+        for (String bad : new String[] { "", "1book", "library_book; DROP TABLE x", "a b", "`t`", "a.b.c" }) {
+            assertThrows(IllegalArgumentException.class, () -> new LibraryBookBulkLoader(none, bad), bad);
+        }
+    }
+
+    private static boolean loaderThreadsAlive() {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().startsWith("library-book-loader-") && t.isAlive()) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package org.dfpl.lecture.database.assignment.assignment21011755;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryBookReaderTest {
+
+    private static final Charset EUC_KR = Charset.forName("EUC-KR");
+
+    // 줄바꿈이 든 필드가 없으면 readLine + parseCSVLine으로 읽은 책과 똑같아야 한다 (64KB 버퍼 경계를 여러 번 넘는 크기)
+    @Test
+    void readsTheSameBooksAsParseCSVLine(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("books.csv");
+        Random rnd = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(file, EUC_KR)) {
+            out.write("도서명,저자,출판사,발행년도,ISBN\r\n");
+            for (int i = 0; i < 20_000; i++) {
+                String title = "책" + i;
+                if (i % 10 == 0) title = "\"" + title + ", 부제\"";
+                else if (i % 25 == 1) title = "\"" + title + " \"\"인용\"\"\"";
+                String end = i % 3 == 0 ? "\n" : "\r\n";
+                if (i % 97 == 0) out.write(end);                 // 빈 줄
+                if (i % 89 == 0) out.write("필드,셋뿐" + end);    // 필드가 모자란 레코드
+                out.write(title + ", 저자" + i + " ,출판사," + (1950 + rnd.nextInt(75)) + "," + (9788900000000L + i) + end);
+            }
+        }
+
+        List<String> expected = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(file, EUC_KR)) {
+            String line = br.readLine();
+            while ((line = br.readLine()) != null) {
+                ArrayList<String> cols = Assignment.parseCSVLine(line);
+                if (cols.size() < 4) continue;
+                expected.add(new LibraryBook(cols.get(0), cols.get(1), cols.get(2), cols.get(3)).toString());
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        try (LibraryBookReader books = new LibraryBookReader(file.toString(), "EUC-KR")) {
+            for (LibraryBook b : books) actual.add(b.toString());
+        }
+        assertEquals(20_000, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    // 따옴표 안의 쉼표 / 줄바꿈 / "", BOM, CR만 있는 줄 끝, 버퍼보다 긴 레코드, 끝에 줄바꿈이 없는 마지막 레코드
+    @Test
+    void handlesQuotedNewlinesAndRecordsLongerThanTheBuffer() throws IOException {
+        String longField = "x".repeat(200_000);
+        String text = "\uFEFFa,b\r\n"
+                + "\"제목, 부제\",\"첫 줄\r\n둘째 줄\",\"말 \"\"인용\"\"\"\n"
+                + "  앞뒤 공백  ,\"\"\r"
+                + longField + ",\"" + longField + "\n" + longField + "\"\n"
+                + "\n"
+                + "마지막,줄";
+        try (CSVReader csv = new CSVReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)) {
+            assertRecord(csv, "a", "b");
+            assertRecord(csv, "제목, 부제", "첫 줄\r\n둘째 줄", "말 \"인용\"");
+            assertRecord(csv, "앞뒤 공백", "");
+            assertRecord(csv, longField, longField + "\n" + longField);
+            assertRecord(csv, "");
+            assertRecord(csv, "마지막", "줄");
+            assertFalse(csv.next());
+            assertEquals(6, csv.getRecordCount());
+        }
+    }
+
+    private static void assertRecord(CSVReader csv, String... fields) throws IOException {
+        assertTrue(csv.next());
+        assertEquals(fields.length, csv.getFieldCount());
+        for (int i = 0; i < fields.length; i++) assertEquals(fields[i], csv.get(i), "field " + i);
+    }
+}
@@ -0,0 +1,92 @@
+package org.dfpl.lecture.dataloading;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TSVReaderTest {
+
+    private static final Charset EUC_KR = Charset.forName("EUC-KR");
+
+    // 여러 조각으로 나뉘어 병렬로 읽혀도 readAll은 파일 순서를 지키고 줄 위치도 맞다
+    @Test
+    void parallelChunksKeepFileOrder(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("big.tsv");
+        Random rnd = new Random(11);
+        List<String> lines = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        List<Long> positions = new ArrayList<>();
+        long pos = 0;
+        for (int i = 0; sb.length() < 6 << 20; i++) {
+            String line = i + "\t" + (rnd.nextBoolean() ? "이름" : "name") + rnd.nextInt(100_000) + "\t" + rnd.nextDouble();
+            lines.add(line);
+            positions.add(pos);
+            sb.append(line).append('\n');
+            pos += (line + "\n").getBytes(StandardCharsets.UTF_8).length;
+        }
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (TSVReader reader = new TSVReader(file)) {
+            assertTrue(reader.spliterator().trySplit() != null, "파일이 여러 조각으로 나뉜다");
+            assertEquals(lines, reader.readAll(TSVReader.Record::toString));
+            List<Long> read = reader.records(true).map(TSVReader.Record::getPosition).collect(Collectors.toList());
+            assertEquals(positions, read);
+            AtomicInteger count = new AtomicInteger();
+            reader.forEach(r -> {
+                assertEquals(3, r.getFieldCount());
+                count.incrementAndGet();
+            });
+            assertEquals(lines.size(), count.get());
+        }
+    }
+
+    // 머리줄은 건너뛰고, 줄 끝의 '\r'과 빈 줄은 무시하며 마지막 줄에 '\n'이 없어도 읽는다
+    @Test
+    void headerCrlfAndBlankLines(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("small.tsv");
+        Files.write(file, "id\tname\r\n1\tKim\r\n\r\n\n2\t\r\n3\tLee".getBytes(StandardCharsets.UTF_8));
+
+        try (TSVReader reader = new TSVReader(file, true)) {
+            List<String> names = reader.readAll(r -> r.getString(0) + ":" + r.get(1));
+            assertEquals(List.of("1:Kim", "2:", "3:Lee"), names);
+        }
+        try (TSVReader reader = new TSVReader(file)) {
+            List<Long> positions = reader.records(false).map(TSVReader.Record::getPosition).collect(Collectors.toList());
+            assertEquals(List.of(0L, 9L, 19L, 23L), positions);
+            assertThrows(IndexOutOfBoundsException.class,
+                    () -> reader.records(false).forEach(r -> r.getString(2)));
+        }
+    }
+
+    // 주어진 인코딩으로 풀고, UTF-8이 깨진 바이트는 대체 문자로 바꾼다
+    @Test
+    void decodesWithTheGivenCharset(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("euckr.tsv");
+        Files.write(file, "B001\t홍길동\nB002\t김철수\n".getBytes(EUC_KR));
+        try (TSVReader reader = new TSVReader(file, EUC_KR)) {
+            assertEquals(List.of("홍길동", "김철수"), reader.readAll(r -> r.getString(1)));
+        }
+
+        Path broken = dir.resolve("broken.tsv");
+        Files.write(broken, new byte[] { 'a', '\t', (byte) 0xC3, '\n', 'b', '\t', 'c', '\n' });
+        try (TSVReader reader = new TSVReader(broken, StandardCharsets.UTF_8)) {
+            assertEquals(List.of("a\t\uFFFD", "b\tc"), reader.readAll(TSVReader.Record::toString));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new TSVReader(file, StandardCharsets.UTF_16));
+    }
+}